@@ -37,6 +37,7 @@ import com.alibaba.otter.manager.biz.config.channel.dal.dataobject.ChannelDO;
 import com.alibaba.otter.manager.biz.config.parameter.SystemParameterService;
 import com.alibaba.otter.manager.biz.config.pipeline.PipelineService;
 import com.alibaba.otter.manager.biz.remote.ConfigRemoteService;
+import com.alibaba.otter.manager.biz.remote.StatsRemoteService;
 import com.alibaba.otter.shared.arbitrate.ArbitrateManageService;
 import com.alibaba.otter.shared.common.model.config.channel.Channel;
 import com.alibaba.otter.shared.common.model.config.channel.ChannelStatus;
@@ -59,6 +60,7 @@ public class ChannelServiceImpl implements ChannelService {
     private ArbitrateManageService arbitrateManageService;
     private TransactionTemplate    transactionTemplate;
     private ConfigRemoteService    configRemoteService;
+    private StatsRemoteService     statsRemoteService;
     private PipelineService        pipelineService;
     private ChannelDAO             channelDao;
 
@@ -445,6 +447,13 @@ public class ChannelServiceImpl implements ChannelService {
                         }
                     }
 
+                    // 关闭后清理pipeline的快照类统计，避免一直展示已释放的连接池等信息
+                    if (newStatus.isStop() && statsRemoteService != null) {
+                        for (Pipeline pipeline : pipelines) {
+                            statsRemoteService.clearSnapshotStat(pipeline.getId());
+                        }
+                    }
+
                 } catch (Exception e) {
                     logger.error("ERROR ## switch the channel(" + channelId + ") status has an exception.");
                     throw new ManagerException(e);
@@ -709,4 +718,8 @@ public class ChannelServiceImpl implements ChannelService {
         this.systemParameterService = systemParameterService;
     }
 
+    public void setStatsRemoteService(StatsRemoteService statsRemoteService) {
+        this.statsRemoteService = statsRemoteService;
+    }
+
 }
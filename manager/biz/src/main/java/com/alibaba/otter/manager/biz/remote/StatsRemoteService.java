@@ -16,7 +16,14 @@
 
 package com.alibaba.otter.manager.biz.remote;
 
+import java.util.List;
+
+import com.alibaba.otter.shared.common.model.statistics.datasource.DataSourceStat;
+import com.alibaba.otter.shared.common.model.statistics.pipe.PipeChooseStat;
+import com.alibaba.otter.shared.communication.model.statistics.BatchStatEvent;
+import com.alibaba.otter.shared.communication.model.statistics.DataSourceStatEvent;
 import com.alibaba.otter.shared.communication.model.statistics.DelayCountEvent;
+import com.alibaba.otter.shared.communication.model.statistics.PipeChooseStatEvent;
 import com.alibaba.otter.shared.communication.model.statistics.TableStatEvent;
 import com.alibaba.otter.shared.communication.model.statistics.ThroughputStatEvent;
 
@@ -42,4 +49,39 @@ public interface StatsRemoteService {
      */
     public void onThroughputStat(ThroughputStatEvent event);
 
+    /**
+     * 接收数据库连接池相关统计信息
+     */
+    public void onDataSourceStat(DataSourceStatEvent event);
+
+    /**
+     * 接收节点一个聚合周期内合并发送的统计信息
+     */
+    public void onBatchStat(BatchStatEvent event);
+
+    /**
+     * 查询pipeline最近一次上报的数据库连接池统计信息
+     */
+    public List<DataSourceStat> listDataSourceStat(Long pipelineId);
+
+    /**
+     * 接收节点上报的自适应pipe选择统计信息
+     */
+    public void onPipeChooseStat(PipeChooseStatEvent event);
+
+    /**
+     * 查询pipeline最近一次上报的自适应pipe选择统计信息
+     */
+    public List<PipeChooseStat> listPipeChooseStat(Long pipelineId);
+
+    /**
+     * 清理pipeline的快照类统计信息(连接池/pipe选择)，比如pipeline停止后
+     */
+    public void clearSnapshotStat(Long pipelineId);
+
+    /**
+     * 查询pipeline在节点上因为堆积被丢弃的统计条数
+     */
+    public Long getDroppedStatCount(Long pipelineId);
+
 }
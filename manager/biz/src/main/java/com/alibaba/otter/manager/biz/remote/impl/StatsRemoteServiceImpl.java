@@ -16,9 +16,12 @@
 
 package com.alibaba.otter.manager.biz.remote.impl;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -29,22 +32,28 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 
 import com.alibaba.otter.manager.biz.remote.StatsRemoteService;
+import com.alibaba.otter.manager.biz.statistics.StatAccumulator;
+import com.alibaba.otter.manager.biz.statistics.StatAccumulator.Merger;
 import com.alibaba.otter.manager.biz.statistics.delay.DelayStatService;
 import com.alibaba.otter.manager.biz.statistics.table.TableStatService;
 import com.alibaba.otter.manager.biz.statistics.throughput.ThroughputStatService;
+import com.alibaba.otter.shared.common.model.statistics.datasource.DataSourceStat;
 import com.alibaba.otter.shared.common.model.statistics.delay.DelayCount;
 import com.alibaba.otter.shared.common.model.statistics.delay.DelayStat;
+import com.alibaba.otter.shared.common.model.statistics.pipe.PipeChooseStat;
 import com.alibaba.otter.shared.common.model.statistics.table.TableStat;
 import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputStat;
 import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputType;
 import com.alibaba.otter.shared.common.utils.thread.NamedThreadFactory;
 import com.alibaba.otter.shared.communication.core.CommunicationRegistry;
+import com.alibaba.otter.shared.communication.model.statistics.BatchStatEvent;
+import com.alibaba.otter.shared.communication.model.statistics.DataSourceStatEvent;
 import com.alibaba.otter.shared.communication.model.statistics.DelayCountEvent;
+import com.alibaba.otter.shared.communication.model.statistics.DelayCountEvent.Action;
+import com.alibaba.otter.shared.communication.model.statistics.PipeChooseStatEvent;
 import com.alibaba.otter.shared.communication.model.statistics.StatisticsEventType;
 import com.alibaba.otter.shared.communication.model.statistics.TableStatEvent;
 import com.alibaba.otter.shared.communication.model.statistics.ThroughputStatEvent;
-import com.google.common.base.Function;
-import com.google.common.collect.OtterMigrateMap;
 
 /**
  * 统计模块远程接口
@@ -54,32 +63,44 @@ import com.google.common.collect.OtterMigrateMap;
  */
 public class StatsRemoteServiceImpl implements StatsRemoteService {
 
-    private static final Logger                            logger       = LoggerFactory.getLogger(StatsRemoteServiceImpl.class);
-    private static final int                               DEFAULT_POOL = 10;
-    private DelayStatService                               delayStatService;
-    private TableStatService                               tableStatService;
-    private ThroughputStatService                          throughputStatService;
-    private Long                                           statUnit     = 60 * 1000L;                                           //统计周期，默认60秒
-    private ScheduledThreadPoolExecutor                    scheduler;
-    private Map<Long, AvgStat>                             delayStats;
-    private Map<Long, Map<ThroughputType, ThroughputStat>> throughputStats;
+    private static final Logger                                        logger          = LoggerFactory.getLogger(StatsRemoteServiceImpl.class);
+    private static final int                                           DEFAULT_POOL    = 10;
+    private DelayStatService                                           delayStatService;
+    private TableStatService                                           tableStatService;
+    private ThroughputStatService                                      throughputStatService;
+    private Long                                                       statUnit        = 60 * 1000L;                                           //统计周期，默认60秒
+    private ScheduledThreadPoolExecutor                                scheduler;
+    private StatAccumulator<Long, AvgStat>                             delayStats;
+    private StatAccumulator<Long, Map<ThroughputType, ThroughputStat>> throughputStats;
+    private Map<Long, Map<Long, List<DataSourceStat>>>                 dataSourceStats = new HashMap<Long, Map<Long, List<DataSourceStat>>>(); // pipelineId -> nid -> 最近一次的连接池快照
+    private Map<Long, Map<Long, List<PipeChooseStat>>>                 pipeChooseStats = new HashMap<Long, Map<Long, List<PipeChooseStat>>>(); // pipelineId -> nid -> 最近一次的pipe选择快照
+    private Map<Long, AtomicLong>                                      droppedStats    = new ConcurrentHashMap<Long, AtomicLong>();           // 节点上报的丢弃统计条数
 
     public StatsRemoteServiceImpl(){
         // 注册一下事件处理
         CommunicationRegistry.regist(StatisticsEventType.delayCount, this);
         CommunicationRegistry.regist(StatisticsEventType.tableStat, this);
         CommunicationRegistry.regist(StatisticsEventType.throughputStat, this);
+        CommunicationRegistry.regist(StatisticsEventType.dataSourceStat, this);
+        CommunicationRegistry.regist(StatisticsEventType.batchStat, this);
+        CommunicationRegistry.regist(StatisticsEventType.pipeChooseStat, this);
 
-        delayStats = OtterMigrateMap.makeComputingMap(new Function<Long, AvgStat>() {
+        // 按pipelineId分段合并，不同pipeline的上报之间不再争用同一把锁
+        delayStats = new StatAccumulator<Long, AvgStat>(new Merger<AvgStat>() {
 
-            public AvgStat apply(Long pipelineId) {
-                return new AvgStat();
+            public AvgStat merge(AvgStat old, AvgStat stat) {
+                old.merge(stat);
+                return old;
             }
         });
-        throughputStats = OtterMigrateMap.makeComputingMap(new Function<Long, Map<ThroughputType, ThroughputStat>>() {
+        throughputStats = new StatAccumulator<Long, Map<ThroughputType, ThroughputStat>>(new Merger<Map<ThroughputType, ThroughputStat>>() {
 
-            public Map<ThroughputType, ThroughputStat> apply(Long pipelineId) {
-                return new HashMap<ThroughputType, ThroughputStat>();
+            public Map<ThroughputType, ThroughputStat> merge(Map<ThroughputType, ThroughputStat> old,
+                                                             Map<ThroughputType, ThroughputStat> stats) {
+                for (ThroughputStat stat : stats.values()) {
+                    mergeThroughputStat(old, stat);
+                }
+                return old;
             }
         });
 
@@ -125,9 +146,9 @@ public class StatsRemoteServiceImpl implements StatsRemoteService {
         if (statUnit <= 0) {
             delayStatService.createDelayStat(stat);
         } else {
-            synchronized (delayStats) {
-                delayStats.get(count.getPipelineId()).merge(stat);
-            }
+            AvgStat avg = new AvgStat();
+            avg.merge(stat);
+            delayStats.merge(count.getPipelineId(), avg);
         }
     }
 
@@ -139,25 +160,19 @@ public class StatsRemoteServiceImpl implements StatsRemoteService {
                 throughputStatService.createOrUpdateThroughput(stat);
             }
         } else {
-            synchronized (throughputStats) {
-                for (ThroughputStat stat : event.getStats()) {
-                    Map<ThroughputType, ThroughputStat> data = throughputStats.get(stat.getPipelineId());
-                    ThroughputStat old = data.get(stat.getType());
-                    if (old != null) {
-                        //执行合并
-                        old.setNumber(stat.getNumber() + old.getNumber());
-                        old.setSize(stat.getSize() + old.getSize());
-                        if (stat.getEndTime().after(old.getEndTime())) {
-                            old.setEndTime(stat.getEndTime());
-                        }
-
-                        if (stat.getStartTime().before(old.getStartTime())) {
-                            old.setStartTime(stat.getStartTime());
-                        }
-                    } else {
-                        data.put(stat.getType(), stat);
-                    }
+            // 先在本次上报内按pipeline合并，再进入缓冲
+            Map<Long, Map<ThroughputType, ThroughputStat>> stats = new HashMap<Long, Map<ThroughputType, ThroughputStat>>();
+            for (ThroughputStat stat : event.getStats()) {
+                Map<ThroughputType, ThroughputStat> data = stats.get(stat.getPipelineId());
+                if (data == null) {
+                    data = new HashMap<ThroughputType, ThroughputStat>();
+                    stats.put(stat.getPipelineId(), data);
                 }
+                mergeThroughputStat(data, stat);
+            }
+
+            for (Map.Entry<Long, Map<ThroughputType, ThroughputStat>> entry : stats.entrySet()) {
+                throughputStats.merge(entry.getKey(), entry.getValue());
             }
         }
     }
@@ -170,31 +185,198 @@ public class StatsRemoteServiceImpl implements StatsRemoteService {
         }
     }
 
-    private void flushDelayStat() {
-        synchronized (delayStats) {
-            // 需要做同步，避免delay数据丢失
-            for (Map.Entry<Long, AvgStat> stat : delayStats.entrySet()) {
-                if (stat.getValue().count.get() > 0) {
-                    DelayStat delay = new DelayStat();
-                    delay.setPipelineId(stat.getKey());
-                    delay.setDelayTime(stat.getValue().getAvg());
-                    delay.setDelayNumber(0L);
-                    delayStatService.createDelayStat(delay);
+    public void onDataSourceStat(DataSourceStatEvent event) {
+        Assert.notNull(event);
+        Assert.notNull(event.getNid());
+        Assert.notNull(event.getStats());
+        Map<Long, List<DataSourceStat>> stats = new HashMap<Long, List<DataSourceStat>>();
+        for (DataSourceStat stat : event.getStats()) {
+            List<DataSourceStat> data = stats.get(stat.getPipelineId());
+            if (data == null) {
+                data = new ArrayList<DataSourceStat>();
+                stats.put(stat.getPipelineId(), data);
+            }
+            data.add(stat);
+        }
+
+        // 一次上报是当前节点所有共享连接池的完整快照
+        replaceSnapshot(dataSourceStats, event.getNid(), stats);
+    }
+
+    public List<DataSourceStat> listDataSourceStat(Long pipelineId) {
+        return listSnapshot(dataSourceStats, pipelineId);
+    }
+
+    public void onPipeChooseStat(PipeChooseStatEvent event) {
+        Assert.notNull(event);
+        Assert.notNull(event.getNid());
+        Assert.notNull(event.getStats());
+        Map<Long, List<PipeChooseStat>> stats = new HashMap<Long, List<PipeChooseStat>>();
+        for (PipeChooseStat stat : event.getStats()) {
+            List<PipeChooseStat> data = stats.get(stat.getPipelineId());
+            if (data == null) {
+                data = new ArrayList<PipeChooseStat>();
+                stats.put(stat.getPipelineId(), data);
+            }
+            data.add(stat);
+        }
+
+        // 一次上报是当前节点作为发送方的完整快照
+        replaceSnapshot(pipeChooseStats, event.getNid(), stats);
+    }
+
+    public List<PipeChooseStat> listPipeChooseStat(Long pipelineId) {
+        return listSnapshot(pipeChooseStats, pipelineId);
+    }
+
+    public void clearSnapshotStat(Long pipelineId) {
+        synchronized (dataSourceStats) {
+            dataSourceStats.remove(pipelineId);
+        }
+        synchronized (pipeChooseStats) {
+            pipeChooseStats.remove(pipelineId);
+        }
+    }
+
+    public void onBatchStat(BatchStatEvent event) {
+        Assert.notNull(event);
+        if (event.getDelayCounts() != null) {
+            for (DelayCount count : event.getDelayCounts()) {
+                DelayCountEvent delayCountEvent = new DelayCountEvent();
+                delayCountEvent.setCount(count);
+                delayCountEvent.setAction(Action.RESET);
+                onDelayCount(delayCountEvent);
+            }
+        }
+
+        if (event.getThroughputStats() != null && !event.getThroughputStats().isEmpty()) {
+            ThroughputStatEvent throughputStatEvent = new ThroughputStatEvent();
+            throughputStatEvent.setStats(event.getThroughputStats());
+            onThroughputStat(throughputStatEvent);
+        }
+
+        if (event.getTableStats() != null && !event.getTableStats().isEmpty()) {
+            TableStatEvent tableStatEvent = new TableStatEvent();
+            tableStatEvent.setStats(event.getTableStats());
+            onTableStat(tableStatEvent);
+        }
+
+        if (event.getDroppedStats() != null) {
+            for (Map.Entry<Long, Long> entry : event.getDroppedStats().entrySet()) {
+                AtomicLong dropped = droppedStats.get(entry.getKey());
+                if (dropped == null) {
+                    synchronized (droppedStats) {
+                        dropped = droppedStats.get(entry.getKey());
+                        if (dropped == null) {
+                            dropped = new AtomicLong(0);
+                            droppedStats.put(entry.getKey(), dropped);
+                        }
+                    }
                 }
+
+                dropped.addAndGet(entry.getValue());
+                logger.warn("pipeline[{}] dropped {} stats on node by buffer is full", entry.getKey(), entry.getValue());
             }
-            delayStats.clear();
         }
     }
 
-    private void flushThroughputStat() {
-        synchronized (throughputStats) {
-            Collection<Map<ThroughputType, ThroughputStat>> stats = throughputStats.values();
-            for (Map<ThroughputType, ThroughputStat> stat : stats) {
-                for (ThroughputStat data : stat.values()) {
-                    throughputStatService.createOrUpdateThroughput(data);
+    public Long getDroppedStatCount(Long pipelineId) {
+        AtomicLong dropped = droppedStats.get(pipelineId);
+        return dropped == null ? 0L : dropped.get();
+    }
+
+    /**
+     * 使用节点上报的完整快照覆盖该节点之前的数据，快照中不存在的pipeline说明已经在该节点上释放
+     */
+    private <T> void replaceSnapshot(Map<Long, Map<Long, List<T>>> snapshots, Long nid, Map<Long, List<T>> stats) {
+        synchronized (snapshots) {
+            Iterator<Map.Entry<Long, Map<Long, List<T>>>> iter = snapshots.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<Long, Map<Long, List<T>>> entry = iter.next();
+                if (!stats.containsKey(entry.getKey())) {
+                    entry.getValue().remove(nid);
+                    if (entry.getValue().isEmpty()) {
+                        iter.remove();
+                    }
                 }
             }
-            throughputStats.clear();
+
+            for (Map.Entry<Long, List<T>> entry : stats.entrySet()) {
+                Map<Long, List<T>> nodes = snapshots.get(entry.getKey());
+                if (nodes == null) {
+                    nodes = new HashMap<Long, List<T>>();
+                    snapshots.put(entry.getKey(), nodes);
+                }
+                nodes.put(nid, entry.getValue());
+            }
+        }
+    }
+
+    private <T> List<T> listSnapshot(Map<Long, Map<Long, List<T>>> snapshots, Long pipelineId) {
+        List<T> result = new ArrayList<T>();
+        synchronized (snapshots) {
+            Map<Long, List<T>> nodes = snapshots.get(pipelineId);
+            if (nodes != null) {
+                for (List<T> stats : nodes.values()) {
+                    result.addAll(stats);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void mergeThroughputStat(Map<ThroughputType, ThroughputStat> data, ThroughputStat stat) {
+        ThroughputStat old = data.get(stat.getType());
+        if (old != null) {
+            //执行合并
+            old.setNumber(stat.getNumber() + old.getNumber());
+            old.setSize(stat.getSize() + old.getSize());
+            if (stat.getEndTime().after(old.getEndTime())) {
+                old.setEndTime(stat.getEndTime());
+            }
+
+            if (stat.getStartTime().before(old.getStartTime())) {
+                old.setStartTime(stat.getStartTime());
+            }
+        } else {
+            data.put(stat.getType(), stat);
+        }
+    }
+
+    private void flushDelayStat() {
+        // drain之后的上报进入下一个周期，不会丢失
+        Map<Long, AvgStat> stats = delayStats.drain();
+        long start = System.currentTimeMillis();
+        List<DelayStat> delays = new ArrayList<DelayStat>(stats.size());
+        for (Map.Entry<Long, AvgStat> stat : stats.entrySet()) {
+            if (stat.getValue().count.get() > 0) {
+                DelayStat delay = new DelayStat();
+                delay.setPipelineId(stat.getKey());
+                delay.setDelayTime(stat.getValue().getAvg());
+                delay.setDelayNumber(0L);
+                delays.add(delay);
+            }
+        }
+
+        if (!delays.isEmpty()) {
+            delayStatService.createDelayStats(delays);
+            delayStats.flushed(delays.size(), System.currentTimeMillis() - start);
+            logger.info("flush delay stat : {}", delayStats);
+        }
+    }
+
+    private void flushThroughputStat() {
+        Map<Long, Map<ThroughputType, ThroughputStat>> stats = throughputStats.drain();
+        long start = System.currentTimeMillis();
+        List<ThroughputStat> datas = new ArrayList<ThroughputStat>();
+        for (Map<ThroughputType, ThroughputStat> stat : stats.values()) {
+            datas.addAll(stat.values());
+        }
+
+        if (!datas.isEmpty()) {
+            throughputStatService.createThroughputs(datas);
+            throughputStats.flushed(datas.size(), System.currentTimeMillis() - start);
+            logger.info("flush throughput stat : {}", throughputStats);
         }
     }
 
@@ -208,6 +390,11 @@ public class StatsRemoteServiceImpl implements StatsRemoteService {
             number.addAndGet(stat.getDelayTime());
         }
 
+        public void merge(AvgStat stat) {
+            count.addAndGet(stat.count.get());
+            number.addAndGet(stat.number.get());
+        }
+
         public Long getAvg() {
             if (count.get() > 0) {
                 return number.get() / count.get();
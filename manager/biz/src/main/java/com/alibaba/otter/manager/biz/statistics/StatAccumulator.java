@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.manager.biz.statistics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * 统计数据的合并缓冲，上报的数据按key(pipelineId/pairId)合并后，由定时任务批量入库
+ *
+ * 1. 按key的hash分段加锁，不同pipeline之间的上报不再争用同一把锁
+ * 2. drain时逐段替换为新的map，不阻塞后续的上报
+ * 3. 记录堆积的上报次数和最近一次入库的耗时，用于观察入库是否跟得上上报
+ * </pre>
+ *
+ * @author jianghang
+ */
+public class StatAccumulator<K, V> {
+
+    private static final int DEFAULT_STRIPES = 16;
+    private final Merger<V>  merger;
+    private final Stripe[]   stripes;
+    private final AtomicLong pending         = new AtomicLong(0); // 尚未入库的上报次数
+    private volatile int     lastFlushSize   = 0;
+    private volatile long    lastFlushCost   = 0;
+    private volatile long    lastFlushTime   = 0;
+
+    public StatAccumulator(Merger<V> merger){
+        this(merger, DEFAULT_STRIPES);
+    }
+
+    public StatAccumulator(Merger<V> merger, int stripes){
+        this.merger = merger;
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    public void merge(K key, V stat) {
+        Stripe stripe = stripes[index(key)];
+        synchronized (stripe) {
+            V old = (V) stripe.datas.get(key);
+            stripe.datas.put(key, old == null ? stat : merger.merge(old, stat));
+            stripe.count++;
+        }
+        pending.incrementAndGet();
+    }
+
+    /**
+     * 取出当前合并的所有数据，并清空缓冲
+     */
+    public Map<K, V> drain() {
+        Map<K, V> result = new HashMap<K, V>();
+        for (Stripe stripe : stripes) {
+            Map<K, V> datas;
+            int count;
+            synchronized (stripe) {
+                if (stripe.count == 0) {
+                    continue;
+                }
+
+                datas = stripe.datas;
+                count = stripe.count;
+                stripe.datas = new HashMap<Object, Object>();
+                stripe.count = 0;
+            }
+
+            result.putAll(datas);
+            pending.addAndGet(-count);
+        }
+
+        return result;
+    }
+
+    /**
+     * 记录一次入库的结果
+     */
+    public void flushed(int size, long cost) {
+        this.lastFlushSize = size;
+        this.lastFlushCost = cost;
+        this.lastFlushTime = System.currentTimeMillis();
+    }
+
+    private int index(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (stripes.length - 1);
+    }
+
+    public long getPending() {
+        return pending.get();
+    }
+
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    public long getLastFlushCost() {
+        return lastFlushCost;
+    }
+
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    public String toString() {
+        return String.format("pending[%s] lastFlushSize[%s] lastFlushCost[%sms]",
+                             pending.get(),
+                             lastFlushSize,
+                             lastFlushCost);
+    }
+
+    /**
+     * 同一个key的两次上报如何合并，允许直接修改并返回old
+     */
+    public static interface Merger<V> {
+
+        public V merge(V old, V stat);
+    }
+
+    private static class Stripe {
+
+        private Map datas = new HashMap<Object, Object>();
+        private int count = 0;
+    }
+}
@@ -31,6 +31,11 @@ public interface DelayStatService {
 
     public void createDelayStat(DelayStat stat);
 
+    /**
+     * 批量插入delayStat
+     */
+    public void createDelayStats(List<DelayStat> stats);
+
     public DelayStat findRealtimeDelayStat(Long pipelineId);
 
     public Map<Long, DelayStatInfo> listTimelineDelayStat(Long pipelineId, Date start, Date end);
@@ -29,6 +29,8 @@ public interface DelayStatDAO {
 
     public void insertDelayStat(DelayStatDO delayStat);
 
+    public void insertDelayStats(List<DelayStatDO> delayStats);
+
     public void deleteDelayStat(Long delayStatId);
 
     public void modifyDelayStat(DelayStatDO delayStat);
@@ -16,11 +16,13 @@
 
 package com.alibaba.otter.manager.biz.statistics.delay.dal.ibatis;
 
+import java.sql.SQLException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.orm.ibatis.SqlMapClientCallback;
 import org.springframework.orm.ibatis.support.SqlMapClientDaoSupport;
 
 import com.alibaba.otter.shared.common.utils.Assert;
@@ -28,6 +30,7 @@ import com.alibaba.otter.manager.biz.statistics.delay.dal.DelayStatDAO;
 import com.alibaba.otter.manager.biz.statistics.delay.dal.dataobject.DelayStatDO;
 import com.alibaba.otter.manager.biz.statistics.delay.param.TimelineDelayCondition;
 import com.alibaba.otter.manager.biz.statistics.delay.param.TopDelayStat;
+import com.ibatis.sqlmap.client.SqlMapExecutor;
 
 /**
  * @author danping.yudp
@@ -40,6 +43,21 @@ public class IbatisDelayStatDAO extends SqlMapClientDaoSupport implements DelayS
         getSqlMapClientTemplate().insert("insertDelayStat", delayStat);
     }
 
+    @Override
+    public void insertDelayStats(final List<DelayStatDO> delayStats) {
+        getSqlMapClientTemplate().execute(new SqlMapClientCallback<Object>() {
+
+            public Object doInSqlMapClient(SqlMapExecutor executor) throws SQLException {
+                executor.startBatch();
+                for (DelayStatDO data : delayStats) {
+                    executor.insert("batchInsertDelayStat", data);
+                }
+                executor.executeBatch();
+                return null;
+            }
+        });
+    }
+
     @Override
     public void deleteDelayStat(Long delayStatId) {
         Assert.assertNotNull(delayStatId);
@@ -53,6 +53,18 @@ public class DelayStatServiceImpl implements DelayStatService {
         delayStatDao.insertDelayStat(delayStatModelToDo(stat));
     }
 
+    /**
+     * 在数据库中批量插入delayStat
+     */
+    public void createDelayStats(List<DelayStat> stats) {
+        Assert.assertNotNull(stats);
+        List<DelayStatDO> delayStatDOs = new ArrayList<DelayStatDO>(stats.size());
+        for (DelayStat stat : stats) {
+            delayStatDOs.add(delayStatModelToDo(stat));
+        }
+        delayStatDao.insertDelayStats(delayStatDOs);
+    }
+
     /**
      * 通过pipeLineId得到一个以gmtCreate倒排序的第一条记录
      */
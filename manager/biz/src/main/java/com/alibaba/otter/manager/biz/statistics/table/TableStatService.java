@@ -47,4 +47,24 @@ public interface TableStatService {
      * 查询对应的报表数据
      */
     public Map<Long, BehaviorHistoryInfo> listTimelineBehaviorHistory(TimelineBehaviorHistoryCondition condition);
+
+    /**
+     * 内存中尚未入库的table统计上报次数，用于观察入库是否跟得上上报
+     */
+    public long getPendingTableStatCount();
+
+    /**
+     * 最近一次table统计批量入库的耗时(ms)
+     */
+    public long getLastTableStatFlushCost();
+
+    /**
+     * 内存中尚未入库的history统计上报次数
+     */
+    public long getPendingBehaviorHistoryCount();
+
+    /**
+     * 最近一次history统计批量入库的耗时(ms)
+     */
+    public long getLastBehaviorHistoryFlushCost();
 }
@@ -28,6 +28,11 @@ public interface TableHistoryStatDAO {
      */
     public void insertTableHistoryStat(TableHistoryStatDO tableHistoryStatDO);
 
+    /**
+     * 批量插入记录
+     */
+    public void insertTableHistoryStats(List<TableHistoryStatDO> tableHistoryStatDOs);
+
     /**
      * 根据pairId列出 start-end时间段下的tableStat
      */
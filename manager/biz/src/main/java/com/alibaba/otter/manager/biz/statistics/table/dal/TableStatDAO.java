@@ -31,6 +31,13 @@ public interface TableStatDAO {
 
     public int modifyTableStat(TableStatDO tableStat);
 
+    /**
+     * 批量增量更新，返回每条记录的影响行数，驱动不支持时对应位置为{@linkplain java.sql.Statement#SUCCESS_NO_INFO}
+     */
+    public int[] modifyTableStats(List<TableStatDO> tableStats);
+
+    public void insertTableStats(List<TableStatDO> tableStats);
+
     public TableStatDO findTableStatById(Long tableStatId);
 
     public TableStatDO findTableStatByPipelineIdAndPairId(Long pipelineId, Long dataMediaPairId);
@@ -16,13 +16,16 @@
 
 package com.alibaba.otter.manager.biz.statistics.table.dal.ibatis;
 
+import java.sql.SQLException;
 import java.util.List;
 
+import org.springframework.orm.ibatis.SqlMapClientCallback;
 import org.springframework.orm.ibatis.support.SqlMapClientDaoSupport;
 
 import com.alibaba.otter.manager.biz.statistics.table.dal.TableHistoryStatDAO;
 import com.alibaba.otter.manager.biz.statistics.table.dal.dataobject.TableHistoryStatDO;
 import com.alibaba.otter.manager.biz.statistics.table.param.BehaviorHistoryCondition;
+import com.ibatis.sqlmap.client.SqlMapExecutor;
 
 /**
  * @author sarah.lij 2012-7-17 下午06:35:52
@@ -34,6 +37,21 @@ public class IbatisTableHistoryStatDAO extends SqlMapClientDaoSupport implements
         getSqlMapClientTemplate().insert("insertTableHistoryStat", tableHistoryStatDO);
     }
 
+    @Override
+    public void insertTableHistoryStats(final List<TableHistoryStatDO> tableHistoryStatDOs) {
+        getSqlMapClientTemplate().execute(new SqlMapClientCallback<Object>() {
+
+            public Object doInSqlMapClient(SqlMapExecutor executor) throws SQLException {
+                executor.startBatch();
+                for (TableHistoryStatDO data : tableHistoryStatDOs) {
+                    executor.insert("batchInsertTableHistoryStat", data);
+                }
+                executor.executeBatch();
+                return null;
+            }
+        });
+    }
+
     @Override
     public List<TableHistoryStatDO> listTimelineTableStat(BehaviorHistoryCondition condition) {
         return (List<TableHistoryStatDO>) getSqlMapClientTemplate().queryForList("listTimelineTableStat", condition);
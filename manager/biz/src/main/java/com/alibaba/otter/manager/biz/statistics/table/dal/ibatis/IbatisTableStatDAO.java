@@ -16,13 +16,19 @@
 
 package com.alibaba.otter.manager.biz.statistics.table.dal.ibatis;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.springframework.orm.ibatis.SqlMapClientCallback;
 import org.springframework.orm.ibatis.support.SqlMapClientDaoSupport;
 
 import com.alibaba.otter.manager.biz.statistics.table.dal.TableStatDAO;
 import com.alibaba.otter.manager.biz.statistics.table.dal.dataobject.TableStatDO;
 import com.alibaba.otter.manager.biz.statistics.table.param.BehaviorHistoryCondition;
+import com.ibatis.sqlmap.client.SqlMapExecutor;
+import com.ibatis.sqlmap.engine.execution.BatchException;
+import com.ibatis.sqlmap.engine.execution.BatchResult;
 
 /**
  * @author simon
@@ -45,6 +51,55 @@ public class IbatisTableStatDAO extends SqlMapClientDaoSupport implements TableS
         return (getSqlMapClientTemplate().update("modifyTableStat", tableStat));
     }
 
+    @Override
+    public int[] modifyTableStats(final List<TableStatDO> tableStats) {
+        return getSqlMapClientTemplate().execute(new SqlMapClientCallback<int[]>() {
+
+            public int[] doInSqlMapClient(SqlMapExecutor executor) throws SQLException {
+                executor.startBatch();
+                for (TableStatDO tableStat : tableStats) {
+                    executor.update("modifyTableStat", tableStat);
+                }
+
+                List<BatchResult> results = null;
+                try {
+                    results = executor.executeBatchDetailed();
+                } catch (BatchException e) {
+                    throw new SQLException(e.getMessage(), e);
+                }
+
+                // 同一个statement的batch按顺序合并为一个结果
+                List<Integer> affects = new ArrayList<Integer>(tableStats.size());
+                for (BatchResult result : results) {
+                    for (int count : result.getUpdateCounts()) {
+                        affects.add(count);
+                    }
+                }
+
+                int[] counts = new int[affects.size()];
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = affects.get(i);
+                }
+                return counts;
+            }
+        });
+    }
+
+    @Override
+    public void insertTableStats(final List<TableStatDO> tableStats) {
+        getSqlMapClientTemplate().execute(new SqlMapClientCallback<Object>() {
+
+            public Object doInSqlMapClient(SqlMapExecutor executor) throws SQLException {
+                executor.startBatch();
+                for (TableStatDO tableStat : tableStats) {
+                    executor.insert("batchInsertTableStat", tableStat);
+                }
+                executor.executeBatch();
+                return null;
+            }
+        });
+    }
+
     @Override
     public TableStatDO findTableStatById(Long tableStatId) {
 
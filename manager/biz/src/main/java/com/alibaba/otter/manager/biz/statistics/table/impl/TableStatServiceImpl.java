@@ -16,9 +16,8 @@
 
 package com.alibaba.otter.manager.biz.statistics.table.impl;
 
+import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,8 +27,11 @@ import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 
+import com.alibaba.otter.manager.biz.statistics.StatAccumulator;
+import com.alibaba.otter.manager.biz.statistics.StatAccumulator.Merger;
 import com.alibaba.otter.manager.biz.statistics.table.TableStatService;
 import com.alibaba.otter.manager.biz.statistics.table.dal.TableHistoryStatDAO;
 import com.alibaba.otter.manager.biz.statistics.table.dal.TableStatDAO;
@@ -44,49 +46,41 @@ import com.alibaba.otter.shared.common.utils.thread.NamedThreadFactory;
 /**
  * @author danping.yudp
  */
-public class TableStatServiceImpl implements TableStatService, InitializingBean {
+public class TableStatServiceImpl implements TableStatService, InitializingBean, DisposableBean {
 
-    private static final Logger         logger     = LoggerFactory.getLogger(TableStatServiceImpl.class);
-    private TableStatDAO                tableStatDao;
-    private TableHistoryStatDAO         tableHistoryStatDao;
-    private Map<Long, TableStat>        tableStats = new HashMap<Long, TableStat>();
-    private Long                        statUnit   = 60 * 1000L;                                         //统计周期，默认60秒
-    private ScheduledThreadPoolExecutor scheduler;
+    private static final Logger                logger        = LoggerFactory.getLogger(TableStatServiceImpl.class);
+    private TableStatDAO                       tableStatDao;
+    private TableHistoryStatDAO                tableHistoryStatDao;
+    private StatAccumulator<Long, TableStatDO> tableStats    = new StatAccumulator<Long, TableStatDO>(new TableStatMerger()); // TABLE_STAT的累计值，按pairId合并
+    private StatAccumulator<Long, TableStat>   historyStats  = new StatAccumulator<Long, TableStat>(new HistoryStatMerger()); // TABLE_HISTORY_STAT的周期数据，按pairId合并
+    private Long                               statUnit      = 60 * 1000L;                                                    //统计周期，默认60秒
+    private Long                               flushInterval = 5 * 1000L;                                                     //TABLE_STAT的入库间隔，<=0时每次上报直接入库
+    private ScheduledThreadPoolExecutor        scheduler;
 
     /**
      * 先通过pipeLineId和DataMediaPairId在数据库里查找对应的tableStat，如果有，则增量更新对应的Table统计状态， 如果没有则将该数据插入
+     * 
+     * <pre>
+     * flushInterval > 0时，同一个pair的多次上报先在内存中合并，由定时任务批量入库
+     * </pre>
      */
     public void updateTableStat(TableStat stat) {
         Assert.assertNotNull(stat);
-        int affect = tableStatDao.modifyTableStat(tableStatModelToDo(stat));
-        if (affect == 0) {
-            tableStatDao.insertTableStat(tableStatModelToDo(stat));
+        if (flushInterval <= 0) {
+            int affect = tableStatDao.modifyTableStat(tableStatModelToDo(stat));
+            if (affect == 0) {
+                tableStatDao.insertTableStat(tableStatModelToDo(stat));
+            }
+        } else {
+            tableStats.merge(stat.getDataMediaPairId(), tableStatModelToDo(stat));
         }
 
         if (stat.getStartTime() != null && stat.getEndTime() != null) {
             if (statUnit <= 0) {
                 insertBehaviorHistory(stat);
             } else {
-                synchronized (tableStats) {
-                    // 插入历史数据表
-                    TableStat old = tableStats.get(stat.getDataMediaPairId());
-                    if (old != null) {
-                        //合并数据
-                        old.setInsertCount(stat.getInsertCount() + old.getInsertCount());
-                        old.setUpdateCount(stat.getUpdateCount() + old.getUpdateCount());
-                        old.setDeleteCount(stat.getDeleteCount() + old.getDeleteCount());
-                        old.setFileCount(stat.getFileCount() + old.getFileCount());
-                        old.setFileSize(stat.getFileSize() + old.getFileSize());
-                        if (stat.getEndTime().after(old.getEndTime())) {
-                            old.setEndTime(stat.getEndTime());
-                        }
-                        if (stat.getStartTime().before(old.getStartTime())) {
-                            old.setStartTime(stat.getStartTime());
-                        }
-                    } else {
-                        tableStats.put(stat.getDataMediaPairId(), stat);
-                    }
-                }
+                // 插入历史数据表
+                historyStats.merge(stat.getDataMediaPairId(), stat);
             }
         }
     }
@@ -141,17 +135,115 @@ public class TableStatServiceImpl implements TableStatService, InitializingBean
         return behaviorHistoryInfos;
     }
 
+    public long getPendingTableStatCount() {
+        return tableStats.getPending();
+    }
+
+    public long getLastTableStatFlushCost() {
+        return tableStats.getLastFlushCost();
+    }
+
+    public long getPendingBehaviorHistoryCount() {
+        return historyStats.getPending();
+    }
+
+    public long getLastBehaviorHistoryFlushCost() {
+        return historyStats.getLastFlushCost();
+    }
+
     private void flushBehaviorHistory() {
-        synchronized (tableStats) {
-            // 需要做同步，避免delay数据丢失
-            Collection<TableStat> stats = tableStats.values();
-            for (TableStat stat : stats) {
-                insertBehaviorHistory(stat);
+        Map<Long, TableStat> stats = historyStats.drain();
+        if (stats.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<TableHistoryStatDO> datas = new ArrayList<TableHistoryStatDO>(stats.size());
+        for (TableStat stat : stats.values()) {
+            datas.add(tableHistoryStatModelToDo(stat));
+        }
+        tableHistoryStatDao.insertTableHistoryStats(datas);
+        historyStats.flushed(datas.size(), System.currentTimeMillis() - start);
+        if (logger.isInfoEnabled()) {
+            logger.info("flush table history stat : {}", historyStats);
+        }
+    }
+
+    /**
+     * 批量更新TABLE_STAT，没有更新到记录的pair再批量插入
+     * 
+     * <pre>
+     * 入库失败时，尚未落库的累计值重新合并回缓冲，由下一次flush继续处理，避免丢失整个周期的数据
+     * </pre>
+     */
+    private void flushTableStat() {
+        Map<Long, TableStatDO> stats = tableStats.drain();
+        if (stats.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<TableStatDO> datas = new ArrayList<TableStatDO>(stats.values());
+        int[] affects;
+        try {
+            affects = tableStatDao.modifyTableStats(datas);
+        } catch (RuntimeException e) {
+            restoreTableStats(datas);
+            throw e;
+        }
+
+        // 已经update成功的记录不能再合并回去，否则会被重复累加
+        List<TableStatDO> inserts = new ArrayList<TableStatDO>();
+        int i = 0;
+        try {
+            for (; i < datas.size(); i++) {
+                TableStatDO data = datas.get(i);
+                int affect = i < affects.length ? affects[i] : Statement.SUCCESS_NO_INFO;
+                if (affect == 0) {
+                    inserts.add(data);
+                } else if (affect == Statement.SUCCESS_NO_INFO) {
+                    // 驱动没有返回影响行数，反查一次记录是否存在
+                    if (tableStatDao.findTableStatByPipelineIdAndPairId(data.getPipelineId(),
+                        data.getDataMediaPairId()) == null) {
+                        inserts.add(data);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // 反查失败，剩余记录中只有明确未update到的才合并回去，SUCCESS_NO_INFO的记录可能已经update过，宁可少算不重复累加
+            for (; i < datas.size(); i++) {
+                if (i < affects.length && affects[i] == 0) {
+                    inserts.add(datas.get(i));
+                }
+            }
+            restoreTableStats(inserts);
+            throw e;
+        }
+
+        if (!inserts.isEmpty()) {
+            try {
+                tableStatDao.insertTableStats(inserts);
+            } catch (RuntimeException e) {
+                restoreTableStats(inserts);
+                throw e;
             }
-            tableStats.clear();
+        }
+        long cost = System.currentTimeMillis() - start;
+        tableStats.flushed(datas.size(), cost);
+        if (cost > flushInterval) {
+            logger.warn("flush table stat is slow : {}", tableStats);
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("flush table stat : {}", tableStats);
         }
     }
 
+    private void restoreTableStats(List<TableStatDO> datas) {
+        for (TableStatDO data : datas) {
+            tableStats.merge(data.getDataMediaPairId(), data);
+        }
+        logger.warn("flush table stat failed, restore {} stats for next flush", datas.size());
+    }
+
     public void afterPropertiesSet() throws Exception {
         scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("Otter-Statistics-Table"),
                                                     new ThreadPoolExecutor.CallerRunsPolicy());
@@ -167,6 +259,70 @@ public class TableStatServiceImpl implements TableStatService, InitializingBean
                 }
             }, statUnit, statUnit, TimeUnit.MILLISECONDS);
         }
+
+        if (flushInterval > 0) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+
+                public void run() {
+                    try {
+                        flushTableStat();
+                    } catch (Exception e) {
+                        logger.error("flush table stat failed!", e);
+                    }
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void destroy() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdown(); // 取消定时任务，等待正在执行的flush结束
+            scheduler.awaitTermination(2, TimeUnit.SECONDS);
+        }
+
+        // 关闭前将内存中的累计值入库，避免丢失最后一个周期的数据
+        try {
+            flushTableStat();
+        } catch (Exception e) {
+            logger.error("flush table stat failed on destroy , pending : " + tableStats, e);
+        }
+
+        try {
+            flushBehaviorHistory();
+        } catch (Exception e) {
+            logger.error("flush delay stat failed on destroy , pending : " + historyStats, e);
+        }
+    }
+
+    private static class TableStatMerger implements Merger<TableStatDO> {
+
+        public TableStatDO merge(TableStatDO old, TableStatDO stat) {
+            old.setInsertCount(stat.getInsertCount() + old.getInsertCount());
+            old.setUpdateCount(stat.getUpdateCount() + old.getUpdateCount());
+            old.setDeleteCount(stat.getDeleteCount() + old.getDeleteCount());
+            old.setFileCount(stat.getFileCount() + old.getFileCount());
+            old.setFileSize(stat.getFileSize() + old.getFileSize());
+            return old;
+        }
+    }
+
+    private static class HistoryStatMerger implements Merger<TableStat> {
+
+        public TableStat merge(TableStat old, TableStat stat) {
+            //合并数据
+            old.setInsertCount(stat.getInsertCount() + old.getInsertCount());
+            old.setUpdateCount(stat.getUpdateCount() + old.getUpdateCount());
+            old.setDeleteCount(stat.getDeleteCount() + old.getDeleteCount());
+            old.setFileCount(stat.getFileCount() + old.getFileCount());
+            old.setFileSize(stat.getFileSize() + old.getFileSize());
+            if (stat.getEndTime().after(old.getEndTime())) {
+                old.setEndTime(stat.getEndTime());
+            }
+            if (stat.getStartTime().before(old.getStartTime())) {
+                old.setStartTime(stat.getStartTime());
+            }
+            return old;
+        }
     }
 
     /**
@@ -269,4 +425,12 @@ public class TableStatServiceImpl implements TableStatService, InitializingBean
         this.tableHistoryStatDao = tableHistoryStatDao;
     }
 
+    public void setStatUnit(Long statUnit) {
+        this.statUnit = statUnit;
+    }
+
+    public void setFlushInterval(Long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
 }
@@ -40,4 +40,9 @@ public interface ThroughputStatService {
     public ThroughputStat findThroughputStatByPipelineId(ThroughputCondition condition);
 
     public void createOrUpdateThroughput(ThroughputStat item);
+
+    /**
+     * 批量插入吞吐量统计
+     */
+    public void createThroughputs(List<ThroughputStat> items);
 }
@@ -30,6 +30,8 @@ public interface ThroughputDAO {
 
     public void insertThroughputStat(ThroughputStatDO throughputStat);
 
+    public void insertThroughputStats(List<ThroughputStatDO> throughputStats);
+
     public void deleteThroughputStat(Long throughputStatId);
 
     public void modifyThroughputStat(ThroughputStatDO throughputStat);
@@ -16,10 +16,12 @@
 
 package com.alibaba.otter.manager.biz.statistics.throughput.dal.ibatis;
 
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.orm.ibatis.SqlMapClientCallback;
 import org.springframework.orm.ibatis.support.SqlMapClientDaoSupport;
 
 import com.alibaba.otter.manager.biz.statistics.throughput.dal.ThroughputDAO;
@@ -27,6 +29,7 @@ import com.alibaba.otter.manager.biz.statistics.throughput.dal.dataobject.Throug
 import com.alibaba.otter.manager.biz.statistics.throughput.param.RealtimeThroughputCondition;
 import com.alibaba.otter.manager.biz.statistics.throughput.param.ThroughputCondition;
 import com.alibaba.otter.manager.biz.statistics.throughput.param.TimelineThroughputCondition;
+import com.ibatis.sqlmap.client.SqlMapExecutor;
 
 /**
  * @author simon
@@ -39,6 +42,21 @@ public class IbatisThroughputDAO extends SqlMapClientDaoSupport implements Throu
         getSqlMapClientTemplate().insert("insertThroughputStat", throughputStat);
     }
 
+    @Override
+    public void insertThroughputStats(final List<ThroughputStatDO> throughputStats) {
+        getSqlMapClientTemplate().execute(new SqlMapClientCallback<Object>() {
+
+            public Object doInSqlMapClient(SqlMapExecutor executor) throws SQLException {
+                executor.startBatch();
+                for (ThroughputStatDO data : throughputStats) {
+                    executor.insert("batchInsertThroughputStat", data);
+                }
+                executor.executeBatch();
+                return null;
+            }
+        });
+    }
+
     @Override
     public void deleteThroughputStat(Long throughputStatId) {
         getSqlMapClientTemplate().delete("deleteThroughputStat", throughputStatId);
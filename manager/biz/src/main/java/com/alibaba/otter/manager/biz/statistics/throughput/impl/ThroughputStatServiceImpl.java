@@ -57,6 +57,18 @@ public class ThroughputStatServiceImpl implements ThroughputStatService {
         throughputDao.insertThroughputStat(throughputStatModelToDo(item));
     }
 
+    /**
+     * 在数据库中批量插入throughputStat
+     */
+    public void createThroughputs(List<ThroughputStat> items) {
+        Assert.assertNotNull(items);
+        List<ThroughputStatDO> throughputStatDOs = new ArrayList<ThroughputStatDO>(items.size());
+        for (ThroughputStat item : items) {
+            throughputStatDOs.add(throughputStatModelToDo(item));
+        }
+        throughputDao.insertThroughputStats(throughputStatDOs);
+    }
+
     public ThroughputStat findThroughputStatByPipelineId(ThroughputCondition condition) {
         Assert.assertNotNull(condition);
         ThroughputStatDO throughputStatDO = throughputDao.findRealtimeThroughputStat(condition);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.manager.biz.remote.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.shared.common.model.statistics.datasource.DataSourceStat;
+import com.alibaba.otter.shared.common.model.statistics.pipe.PipeChooseStat;
+import com.alibaba.otter.shared.communication.model.statistics.DataSourceStatEvent;
+import com.alibaba.otter.shared.communication.model.statistics.PipeChooseStatEvent;
+
+/**
+ * @author jianghang
+ */
+public class StatsRemoteServiceImplTest {
+
+    private StatsRemoteServiceImpl statsRemoteService = new StatsRemoteServiceImpl();
+
+    @Test
+    public void testDataSourceStatPerNode() {
+        // extract/load节点上报同一个pipeline的快照，互不覆盖
+        statsRemoteService.onDataSourceStat(buildEvent(1L, 10L, "jdbc:source", 20L, "jdbc:other"));
+        statsRemoteService.onDataSourceStat(buildEvent(2L, 10L, "jdbc:target"));
+        Assert.assertEquals(statsRemoteService.listDataSourceStat(10L).size(), 2);
+        Assert.assertEquals(statsRemoteService.listDataSourceStat(20L).size(), 1);
+
+        // 同一个节点的新快照覆盖旧快照，快照中不存在的pipeline被清理
+        statsRemoteService.onDataSourceStat(buildEvent(1L, 10L, "jdbc:source"));
+        Assert.assertEquals(statsRemoteService.listDataSourceStat(10L).size(), 2);
+        Assert.assertTrue(statsRemoteService.listDataSourceStat(20L).isEmpty());
+
+        // 空快照清理该节点所有的数据
+        statsRemoteService.onDataSourceStat(buildEvent(2L));
+        List<DataSourceStat> stats = statsRemoteService.listDataSourceStat(10L);
+        Assert.assertEquals(stats.size(), 1);
+        Assert.assertEquals(stats.get(0).getUrl(), "jdbc:source");
+
+        statsRemoteService.clearSnapshotStat(10L);
+        Assert.assertTrue(statsRemoteService.listDataSourceStat(10L).isEmpty());
+    }
+
+    @Test
+    public void testPipeChooseStatPerNode() {
+        PipeChooseStatEvent event = new PipeChooseStatEvent();
+        event.setNid(1L);
+        event.setStats(new ArrayList<PipeChooseStat>());
+        for (long targetNid = 2; targetNid <= 3; targetNid++) {
+            PipeChooseStat stat = new PipeChooseStat();
+            stat.setPipelineId(10L);
+            stat.setNid(1L);
+            stat.setTargetNid(targetNid);
+            event.getStats().add(stat);
+        }
+        statsRemoteService.onPipeChooseStat(event);
+        Assert.assertEquals(statsRemoteService.listPipeChooseStat(10L).size(), 2);
+
+        // 空快照清理该节点之前的数据
+        event.setStats(new ArrayList<PipeChooseStat>());
+        statsRemoteService.onPipeChooseStat(event);
+        Assert.assertTrue(statsRemoteService.listPipeChooseStat(10L).isEmpty());
+    }
+
+    /**
+     * 参数为pipelineId和url交替出现
+     */
+    private DataSourceStatEvent buildEvent(Long nid, Object... args) {
+        List<DataSourceStat> stats = new ArrayList<DataSourceStat>();
+        for (int i = 0; i < args.length; i += 2) {
+            DataSourceStat stat = new DataSourceStat();
+            stat.setPipelineId((Long) args[i]);
+            stat.setNid(nid);
+            stat.setUrl((String) args[i + 1]);
+            stats.add(stat);
+        }
+
+        DataSourceStatEvent event = new DataSourceStatEvent();
+        event.setNid(nid);
+        event.setStats(stats);
+        return event;
+    }
+}
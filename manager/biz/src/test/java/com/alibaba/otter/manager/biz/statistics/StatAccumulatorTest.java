@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.manager.biz.statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.manager.biz.statistics.StatAccumulator.Merger;
+
+/**
+ * @author jianghang
+ */
+public class StatAccumulatorTest {
+
+    private Merger<AtomicLong> merger = new Merger<AtomicLong>() {
+
+                                          public AtomicLong merge(AtomicLong old, AtomicLong stat) {
+                                              old.addAndGet(stat.get());
+                                              return old;
+                                          }
+                                      };
+
+    @Test
+    public void testMergeAndDrain() {
+        StatAccumulator<Long, AtomicLong> accumulator = new StatAccumulator<Long, AtomicLong>(merger, 3);
+        for (long i = 0; i < 100; i++) {
+            accumulator.merge(i % 10, new AtomicLong(1));
+        }
+        Assert.assertEquals(accumulator.getPending(), 100L);
+
+        Map<Long, AtomicLong> datas = accumulator.drain();
+        Assert.assertEquals(datas.size(), 10);
+        for (AtomicLong data : datas.values()) {
+            Assert.assertEquals(data.get(), 10L);
+        }
+        Assert.assertEquals(accumulator.getPending(), 0L);
+        Assert.assertTrue(accumulator.drain().isEmpty());
+
+        // drain之后的数据进入新的map，不影响已经取出的结果
+        accumulator.merge(1L, new AtomicLong(5));
+        Assert.assertEquals(datas.get(1L).get(), 10L);
+        Assert.assertEquals(accumulator.drain().get(1L).get(), 5L);
+    }
+
+    @Test
+    public void testFlushed() {
+        StatAccumulator<Long, AtomicLong> accumulator = new StatAccumulator<Long, AtomicLong>(merger);
+        accumulator.flushed(10, 20);
+        Assert.assertEquals(accumulator.getLastFlushSize(), 10);
+        Assert.assertEquals(accumulator.getLastFlushCost(), 20L);
+        Assert.assertTrue(accumulator.getLastFlushTime() > 0);
+    }
+
+    @Test
+    public void testConcurrentMerge() throws Exception {
+        final StatAccumulator<Long, AtomicLong> accumulator = new StatAccumulator<Long, AtomicLong>(merger);
+        final int threads = 8;
+        final int loops = 10000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+
+                public void run() {
+                    for (long j = 0; j < loops; j++) {
+                        accumulator.merge(j % 100, new AtomicLong(1));
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+
+        // 上报的同时不断drain，所有数据都必须且只能被取出一次
+        List<Map<Long, AtomicLong>> drains = new ArrayList<Map<Long, AtomicLong>>();
+        while (latch.getCount() > 0) {
+            drains.add(accumulator.drain());
+        }
+        drains.add(accumulator.drain());
+
+        long total = 0;
+        for (Map<Long, AtomicLong> datas : drains) {
+            for (AtomicLong data : datas.values()) {
+                total += data.get();
+            }
+        }
+        Assert.assertEquals(total, (long) threads * loops);
+        Assert.assertEquals(accumulator.getPending(), 0L);
+    }
+}
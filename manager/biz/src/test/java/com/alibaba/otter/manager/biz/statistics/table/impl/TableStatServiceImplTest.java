@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.manager.biz.statistics.table.impl;
+
+import java.lang.reflect.Method;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.ReflectionUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.manager.biz.statistics.table.dal.TableStatDAO;
+import com.alibaba.otter.manager.biz.statistics.table.dal.dataobject.TableStatDO;
+import com.alibaba.otter.shared.common.model.statistics.table.TableStat;
+
+/**
+ * @author jianghang
+ */
+public class TableStatServiceImplTest {
+
+    private Method flushMethod = ReflectionUtils.findMethod(TableStatServiceImpl.class, "flushTableStat");
+
+    @Test
+    public void testFlushMerge() {
+        MockTableStatDAO dao = new MockTableStatDAO();
+        TableStatServiceImpl service = buildService(dao);
+        service.updateTableStat(buildStat(1L, 10L));
+        service.updateTableStat(buildStat(1L, 5L));
+        service.updateTableStat(buildStat(2L, 1L));
+        flush(service);
+
+        Assert.assertEquals(dao.stats.size(), 2);
+        Assert.assertEquals(dao.stats.get(1L).getInsertCount().longValue(), 15L);
+        Assert.assertEquals(dao.stats.get(2L).getInsertCount().longValue(), 1L);
+
+        // 第二次为update
+        service.updateTableStat(buildStat(1L, 3L));
+        flush(service);
+        Assert.assertEquals(dao.stats.get(1L).getInsertCount().longValue(), 18L);
+        Assert.assertEquals(dao.inserts, 2);
+    }
+
+    @Test
+    public void testSuccessNoInfo() {
+        MockTableStatDAO dao = new MockTableStatDAO();
+        dao.noInfo = true;
+        TableStatServiceImpl service = buildService(dao);
+        service.updateTableStat(buildStat(1L, 10L));
+        flush(service);
+        // 驱动没有返回影响行数，反查不存在后插入
+        Assert.assertEquals(dao.stats.get(1L).getInsertCount().longValue(), 10L);
+        Assert.assertEquals(dao.lookups, 1);
+
+        service.updateTableStat(buildStat(1L, 2L));
+        flush(service);
+        // 反查存在，不重复插入
+        Assert.assertEquals(dao.stats.get(1L).getInsertCount().longValue(), 12L);
+        Assert.assertEquals(dao.inserts, 1);
+        Assert.assertEquals(dao.lookups, 2);
+    }
+
+    @Test
+    public void testRestoreOnFailure() {
+        MockTableStatDAO dao = new MockTableStatDAO();
+        TableStatServiceImpl service = buildService(dao);
+        service.updateTableStat(buildStat(1L, 10L));
+        dao.failModify = true;
+        try {
+            flush(service);
+            Assert.fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        // update失败，合并回缓冲后和新的上报一起入库
+        dao.failModify = false;
+        service.updateTableStat(buildStat(1L, 5L));
+        flush(service);
+        Assert.assertEquals(dao.stats.get(1L).getInsertCount().longValue(), 15L);
+
+        // insert失败，只合并回未入库的记录，已update的记录不会重复累加
+        service.updateTableStat(buildStat(1L, 1L));
+        service.updateTableStat(buildStat(2L, 7L));
+        dao.failInsert = true;
+        try {
+            flush(service);
+            Assert.fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+        Assert.assertEquals(dao.stats.get(1L).getInsertCount().longValue(), 16L);
+
+        dao.failInsert = false;
+        flush(service);
+        Assert.assertEquals(dao.stats.get(1L).getInsertCount().longValue(), 16L);
+        Assert.assertEquals(dao.stats.get(2L).getInsertCount().longValue(), 7L);
+    }
+
+    @Test
+    public void testPendingAndDestroy() throws Exception {
+        MockTableStatDAO dao = new MockTableStatDAO();
+        TableStatServiceImpl service = buildService(dao);
+        service.afterPropertiesSet();
+        service.updateTableStat(buildStat(1L, 10L));
+        service.updateTableStat(buildStat(1L, 5L));
+        Assert.assertEquals(service.getPendingTableStatCount(), 2L);
+        Assert.assertEquals(service.getPendingBehaviorHistoryCount(), 0L);
+        Assert.assertTrue(dao.stats.isEmpty());
+
+        // 关闭时将尚未入库的累计值入库
+        service.destroy();
+        Assert.assertEquals(service.getPendingTableStatCount(), 0L);
+        Assert.assertTrue(service.getLastTableStatFlushCost() >= 0);
+        Assert.assertEquals(dao.stats.get(1L).getInsertCount().longValue(), 15L);
+    }
+
+    private TableStatServiceImpl buildService(TableStatDAO dao) {
+        TableStatServiceImpl service = new TableStatServiceImpl();
+        service.setTableStatDao(dao);
+        return service;
+    }
+
+    private void flush(TableStatServiceImpl service) {
+        ReflectionUtils.makeAccessible(flushMethod);
+        ReflectionUtils.invokeMethod(flushMethod, service);
+    }
+
+    private TableStat buildStat(Long pairId, Long insertCount) {
+        TableStat stat = new TableStat();
+        stat.setPipelineId(1L);
+        stat.setDataMediaPairId(pairId);
+        stat.setInsertCount(insertCount);
+        stat.setUpdateCount(0L);
+        stat.setDeleteCount(0L);
+        stat.setFileCount(0L);
+        stat.setFileSize(0L);
+        return stat;
+    }
+
+    /**
+     * 按pairId保存记录的内存DAO
+     */
+    private static class MockTableStatDAO implements TableStatDAO {
+
+        private Map<Long, TableStatDO> stats      = new HashMap<Long, TableStatDO>();
+        private boolean                noInfo     = false;
+        private boolean                failModify = false;
+        private boolean                failInsert = false;
+        private int                    inserts    = 0;
+        private int                    lookups    = 0;
+
+        public int[] modifyTableStats(List<TableStatDO> tableStats) {
+            if (failModify) {
+                throw new RuntimeException("modify failed");
+            }
+
+            int[] affects = new int[tableStats.size()];
+            for (int i = 0; i < tableStats.size(); i++) {
+                affects[i] = modifyTableStat(tableStats.get(i));
+                if (noInfo) {
+                    affects[i] = Statement.SUCCESS_NO_INFO;
+                }
+            }
+            return affects;
+        }
+
+        public void insertTableStats(List<TableStatDO> tableStats) {
+            if (failInsert) {
+                throw new RuntimeException("insert failed");
+            }
+
+            for (TableStatDO tableStat : tableStats) {
+                insertTableStat(tableStat);
+            }
+        }
+
+        public int modifyTableStat(TableStatDO tableStat) {
+            TableStatDO old = stats.get(tableStat.getDataMediaPairId());
+            if (old == null) {
+                return 0;
+            }
+
+            old.setInsertCount(old.getInsertCount() + tableStat.getInsertCount());
+            return 1;
+        }
+
+        public void insertTableStat(TableStatDO tableStat) {
+            TableStatDO data = new TableStatDO();
+            data.setDataMediaPairId(tableStat.getDataMediaPairId());
+            data.setInsertCount(tableStat.getInsertCount());
+            stats.put(tableStat.getDataMediaPairId(), data);
+            inserts++;
+        }
+
+        public TableStatDO findTableStatByPipelineIdAndPairId(Long pipelineId, Long dataMediaPairId) {
+            lookups++;
+            return stats.get(dataMediaPairId);
+        }
+
+        public void deleteTableStat(Long tableStatId) {
+        }
+
+        public TableStatDO findTableStatById(Long tableStatId) {
+            return null;
+        }
+
+        public List<TableStatDO> listTableStatsByPipelineId(Long pipelineId) {
+            return new ArrayList<TableStatDO>(stats.values());
+        }
+
+        public List<TableStatDO> listTableStatsByPairId(Long dataMediaPairId) {
+            return new ArrayList<TableStatDO>();
+        }
+    }
+}
@@ -29,6 +29,7 @@ import com.alibaba.otter.node.common.config.ConfigClientService;
 import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfig;
 import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigRegistry;
 import com.alibaba.otter.shared.common.model.config.ConfigException;
+import com.alibaba.otter.shared.common.model.config.ConfigHelper;
 import com.alibaba.otter.shared.common.model.config.channel.Channel;
 import com.alibaba.otter.shared.common.model.config.node.Node;
 import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
@@ -210,6 +211,8 @@ public class ConfigClientServiceImpl implements InternalConfigClientService, Arb
             if (excludeId == null || !pipeline.getId().equals(excludeId)) {
                 channelMapping.put(pipeline.getId(), channelId);
             }
+            // pipeline配置已刷新，清理对应的pair索引
+            ConfigHelper.invalidateIndex(pipeline.getId());
         }
     }
 
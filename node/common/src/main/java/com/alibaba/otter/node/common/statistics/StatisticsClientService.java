@@ -18,7 +18,9 @@ package com.alibaba.otter.node.common.statistics;
 
 import java.util.List;
 
+import com.alibaba.otter.shared.common.model.statistics.datasource.DataSourceStat;
 import com.alibaba.otter.shared.common.model.statistics.delay.DelayCount;
+import com.alibaba.otter.shared.common.model.statistics.pipe.PipeChooseStat;
 import com.alibaba.otter.shared.common.model.statistics.table.TableStat;
 import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputStat;
 
@@ -54,4 +56,14 @@ public interface StatisticsClientService {
      */
     public void sendTableStats(List<TableStat> stats);
 
+    /**
+     * 发送数据库连接池相关统计信息
+     */
+    public void sendDataSourceStats(List<DataSourceStat> stats);
+
+    /**
+     * 发送自适应pipe选择相关统计信息
+     */
+    public void sendPipeChooseStats(List<PipeChooseStat> stats);
+
 }
@@ -16,7 +16,9 @@
 
 package com.alibaba.otter.node.common.statistics.impl;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -30,19 +32,34 @@ import org.springframework.beans.factory.InitializingBean;
 
 import com.alibaba.otter.node.common.communication.NodeCommmunicationClient;
 import com.alibaba.otter.node.common.statistics.StatisticsClientService;
+import com.alibaba.otter.shared.arbitrate.impl.alarm.AlarmClientService;
+import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigUtils;
+import com.alibaba.otter.shared.common.model.statistics.datasource.DataSourceStat;
 import com.alibaba.otter.shared.common.model.statistics.delay.DelayCount;
+import com.alibaba.otter.shared.common.model.statistics.pipe.PipeChooseStat;
 import com.alibaba.otter.shared.common.model.statistics.table.TableStat;
 import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputStat;
 import com.alibaba.otter.shared.common.utils.thread.NamedThreadFactory;
 import com.alibaba.otter.shared.communication.core.model.Callback;
+import com.alibaba.otter.shared.communication.model.statistics.BatchStatEvent;
+import com.alibaba.otter.shared.communication.model.statistics.DataSourceStatEvent;
 import com.alibaba.otter.shared.communication.model.statistics.DelayCountEvent;
 import com.alibaba.otter.shared.communication.model.statistics.DelayCountEvent.Action;
+import com.alibaba.otter.shared.communication.model.statistics.PipeChooseStatEvent;
 import com.alibaba.otter.shared.communication.model.statistics.TableStatEvent;
 import com.alibaba.otter.shared.communication.model.statistics.ThroughputStatEvent;
 
 /**
  * 统计信息的本地客户端服务
  * 
+ * <pre>
+ * flushInterval > 0时，delay/throughput/table统计先在本地按周期聚合，由一个定时任务串行发送:
+ * 1. 同一时刻只有一个发送请求，manager处理慢时后续的统计继续在本地合并，不会堆积请求
+ * 2. 发送失败的数据合并回下一个周期，合并后的统计条数超过maxStats时丢弃
+ * 3. batch=true时一个周期的所有统计合并为一个{@linkplain BatchStatEvent}，丢弃数量随event一起上报，需要manager先升级支持
+ * 4. batch=false时按统计类型分别发送，丢弃数量累计后通过node报警通道上报(老版本manager同样支持)，dropAlarmInterval内最多报警一次
+ * </pre>
+ * 
  * @author jianghang
  */
 public class StatisticsClientServiceImpl implements StatisticsClientService, InitializingBean {
@@ -54,8 +71,21 @@ public class StatisticsClientServiceImpl implements StatisticsClientService, Ini
                                                                                                                 10 * 1000);
     private static ScheduledThreadPoolExecutor scheduler;
     private NodeCommmunicationClient           nodeCommmunicationClient;
+    private long                               flushInterval         = 1000L;                                                    // 统计的聚合周期，<=0时不做聚合
+    private int                                maxStats              = 10 * 1000;                                                // 聚合后允许堆积的统计条数
+    private boolean                            batch                 = false;                                                    // 是否合并为一个BatchStatEvent发送
+    private long                               dropAlarmInterval     = 60 * 1000L;                                               // 丢弃数量的报警间隔
+    private StatisticsWindow                   window;
+    private AlarmClientService                 alarmClientService;
+    private Map<Long, Long>                    unreportedDrops       = new HashMap<Long, Long>();                                // 尚未通过报警上报的丢弃数量，只在flush线程中访问
+    private long                               lastDropAlarmTime     = 0;
 
     public void sendIncDelayCount(final DelayCount delayCount) {
+        if (flushInterval > 0) {
+            aggregateDelayCount(delayCount);
+            return;
+        }
+
         DelayCountEvent event = new DelayCountEvent();
         event.setCount(delayCount);
         event.setAction(Action.INC);
@@ -69,6 +99,11 @@ public class StatisticsClientServiceImpl implements StatisticsClientService, Ini
     }
 
     public void sendDecDelayCount(final DelayCount delayCount) {
+        if (flushInterval > 0) {
+            aggregateDelayCount(delayCount);
+            return;
+        }
+
         DelayCountEvent event = new DelayCountEvent();
         event.setCount(delayCount);
         event.setAction(Action.DEC);
@@ -82,6 +117,11 @@ public class StatisticsClientServiceImpl implements StatisticsClientService, Ini
     }
 
     public void sendResetDelayCount(final DelayCount delayCount) {
+        if (flushInterval > 0) {
+            aggregateDelayCount(delayCount);
+            return;
+        }
+
         DelayCountEvent event = new DelayCountEvent();
         event.setCount(delayCount);
         event.setAction(Action.RESET);
@@ -95,6 +135,15 @@ public class StatisticsClientServiceImpl implements StatisticsClientService, Ini
     }
 
     public void sendThroughputs(final List<ThroughputStat> stats) {
+        if (flushInterval > 0) {
+            synchronized (this) {
+                for (ThroughputStat stat : stats) {
+                    window.addThroughputStat(stat);
+                }
+            }
+            return;
+        }
+
         ThroughputStatEvent event = new ThroughputStatEvent();
         event.setStats(stats);
         nodeCommmunicationClient.callManager(event, new Callback<Object>() {
@@ -107,6 +156,15 @@ public class StatisticsClientServiceImpl implements StatisticsClientService, Ini
     }
 
     public void sendTableStats(final List<TableStat> stats) {
+        if (flushInterval > 0) {
+            synchronized (this) {
+                for (TableStat stat : stats) {
+                    window.addTableStat(stat);
+                }
+            }
+            return;
+        }
+
         TableStatEvent event = new TableStatEvent();
         event.setStats(stats);
         nodeCommmunicationClient.callManager(event, new Callback<Object>() {
@@ -117,6 +175,30 @@ public class StatisticsClientServiceImpl implements StatisticsClientService, Ini
         });
     }
 
+    public void sendDataSourceStats(final List<DataSourceStat> stats) {
+        DataSourceStatEvent event = new DataSourceStatEvent();
+        event.setNid(ArbitrateConfigUtils.getCurrentNid());
+        event.setStats(stats);
+        nodeCommmunicationClient.callManager(event, new Callback<Object>() {
+
+            public void call(Object event) {
+                logger.info("sendDataSourceStats successed for {}", stats);
+            }
+        });
+    }
+
+    public void sendPipeChooseStats(final List<PipeChooseStat> stats) {
+        PipeChooseStatEvent event = new PipeChooseStatEvent();
+        event.setNid(ArbitrateConfigUtils.getCurrentNid());
+        event.setStats(stats);
+        nodeCommmunicationClient.callManager(event, new Callback<Object>() {
+
+            public void call(Object event) {
+                logger.info("sendPipeChooseStats successed for {}", stats);
+            }
+        });
+    }
+
     // ================= helper method ==============
     public void afterPropertiesSet() throws Exception {
         scheduler = new ScheduledThreadPoolExecutor(DEFAULT_POOL, new NamedThreadFactory("Otter-Statistics-Client"),
@@ -127,6 +209,131 @@ public class StatisticsClientServiceImpl implements StatisticsClientService, Ini
                 doSendDelayCountEvent();
             }
         });
+
+        window = new StatisticsWindow(maxStats);
+        if (flushInterval > 0) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+
+                public void run() {
+                    try {
+                        flush();
+                    } catch (Throwable e) {
+                        logger.error("flush statistics failed!", e);
+                    }
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void aggregateDelayCount(DelayCount delayCount) {
+        window.addDelayCount(delayCount);
+    }
+
+    /**
+     * 发送一个周期的统计数据，失败的数据合并回当前周期等待下一次发送
+     */
+    private void flush() {
+        StatisticsWindow current = null;
+        synchronized (this) {
+            if (window.isEmpty()) {
+                return;
+            }
+
+            current = window;
+            window = new StatisticsWindow(maxStats);
+        }
+
+        Map<Long, Long> droppedStats = current.getDroppedStats();
+        if (!droppedStats.isEmpty()) {
+            logger.warn("statistics dropped by buffer is full, dropped : {}", droppedStats);
+        }
+
+        boolean success = batch ? sendBatch(current) : sendSeparately(current);
+        if (!success) {
+            synchronized (this) {
+                // 失败的数据在前，保证超过maxStats时优先丢弃新出现的统计项
+                current.merge(window);
+                window = current;
+            }
+        }
+    }
+
+    private boolean sendBatch(StatisticsWindow current) {
+        BatchStatEvent event = new BatchStatEvent();
+        event.setDelayCounts(current.getDelayCounts());
+        event.setThroughputStats(current.getThroughputStats());
+        event.setTableStats(current.getTableStats());
+        event.setDroppedStats(current.getDroppedStats());
+        try {
+            nodeCommmunicationClient.callManager(event);
+            if (logger.isDebugEnabled()) {
+                logger.debug("sendBatchStat successed for {}", event);
+            }
+            return true;
+        } catch (Exception e) {
+            logger.warn("sendBatchStat failed , merge to next period", e);
+            return false;
+        }
+    }
+
+    /**
+     * 兼容老版本的manager，按统计类型分别发送，每种类型一个周期只调用一次
+     */
+    private boolean sendSeparately(StatisticsWindow current) {
+        // 老版本manager不认识BatchStatEvent，丢弃数量转为node报警上报，不随统计数据合并回下一个周期
+        for (Map.Entry<Long, Long> entry : current.getDroppedStats().entrySet()) {
+            Long dropped = unreportedDrops.get(entry.getKey());
+            unreportedDrops.put(entry.getKey(), dropped == null ? entry.getValue() : dropped + entry.getValue());
+        }
+        current.clearDroppedStats();
+        sendDropAlarm();
+
+        try {
+            for (DelayCount delayCount : current.getDelayCounts()) {
+                DelayCountEvent event = new DelayCountEvent();
+                event.setCount(delayCount);
+                event.setAction(Action.RESET); // manager只使用延迟时间
+                nodeCommmunicationClient.callManager(event);
+            }
+            current.clearDelays();
+
+            List<ThroughputStat> throughputStats = current.getThroughputStats();
+            if (!throughputStats.isEmpty()) {
+                ThroughputStatEvent event = new ThroughputStatEvent();
+                event.setStats(throughputStats);
+                nodeCommmunicationClient.callManager(event);
+                current.clearThroughputStats();
+            }
+
+            List<TableStat> tableStats = current.getTableStats();
+            if (!tableStats.isEmpty()) {
+                TableStatEvent event = new TableStatEvent();
+                event.setStats(tableStats);
+                nodeCommmunicationClient.callManager(event);
+                current.clearTableStats();
+            }
+            return true;
+        } catch (Exception e) {
+            logger.warn("sendStats failed , merge to next period", e);
+            return false;
+        }
+    }
+
+    private void sendDropAlarm() {
+        long now = System.currentTimeMillis();
+        if (unreportedDrops.isEmpty() || alarmClientService == null || now - lastDropAlarmTime < dropAlarmInterval) {
+            return;
+        }
+
+        Long nid = ArbitrateConfigUtils.getCurrentNid();
+        for (Map.Entry<Long, Long> entry : unreportedDrops.entrySet()) {
+            alarmClientService.sendAlarm(nid,
+                entry.getKey(),
+                "statistics dropped",
+                "dropped " + entry.getValue() + " stats by buffer is full, maxStats : " + maxStats);
+        }
+        unreportedDrops.clear();
+        lastDropAlarmTime = now;
     }
 
     private void doSendDelayCountEvent() {
@@ -151,4 +358,24 @@ public class StatisticsClientServiceImpl implements StatisticsClientService, Ini
         this.nodeCommmunicationClient = nodeCommmunicationClient;
     }
 
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public void setMaxStats(int maxStats) {
+        this.maxStats = maxStats;
+    }
+
+    public void setBatch(boolean batch) {
+        this.batch = batch;
+    }
+
+    public void setDropAlarmInterval(long dropAlarmInterval) {
+        this.dropAlarmInterval = dropAlarmInterval;
+    }
+
+    public void setAlarmClientService(AlarmClientService alarmClientService) {
+        this.alarmClientService = alarmClientService;
+    }
+
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.common.statistics.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.alibaba.otter.shared.common.model.statistics.delay.DelayCount;
+import com.alibaba.otter.shared.common.model.statistics.table.TableStat;
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputStat;
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputType;
+
+/**
+ * <pre>
+ * 一个聚合周期内的统计数据，非线程安全，由调用方做同步
+ *
+ * 1. delay按pipelineId记录延迟时间的总和和次数，发送时取平均值
+ * 2. throughput按pipelineId+type合并，table按pairId合并，合并规则和manager保持一致
+ * 3. 合并后的条数超过maxStats时，新出现的统计项直接丢弃，并按pipelineId记录丢弃的数量
+ * </pre>
+ *
+ * @author jianghang
+ */
+class StatisticsWindow {
+
+    private final int                                      maxStats;
+    private int                                            size         = 0;
+    private Map<Long, long[]>                              delays       = new LinkedHashMap<Long, long[]>();                              // pipelineId -> {总延迟时间，次数}
+    private Map<Long, Map<ThroughputType, ThroughputStat>> throughputs  = new LinkedHashMap<Long, Map<ThroughputType, ThroughputStat>>();
+    private Map<Long, TableStat>                           tables       = new LinkedHashMap<Long, TableStat>();
+    private Map<Long, Long>                                droppedStats = new HashMap<Long, Long>();                                      // 按pipelineId记录丢弃的统计条数
+
+    public StatisticsWindow(int maxStats){
+        this.maxStats = maxStats;
+    }
+
+    public void addDelayCount(DelayCount count) {
+        if (count.getTime() == null) {
+            return; // 没有延迟时间的统计manager无法处理，直接忽略
+        }
+
+        mergeDelay(count.getPipelineId(), count.getTime(), 1);
+    }
+
+    public void addThroughputStat(ThroughputStat stat) {
+        Map<ThroughputType, ThroughputStat> data = throughputs.get(stat.getPipelineId());
+        ThroughputStat old = data == null ? null : data.get(stat.getType());
+        if (old != null) {
+            old.setNumber(stat.getNumber() + old.getNumber());
+            old.setSize(stat.getSize() + old.getSize());
+            old.setStartTime(min(old.getStartTime(), stat.getStartTime()));
+            old.setEndTime(max(old.getEndTime(), stat.getEndTime()));
+        } else if (reserve(stat.getPipelineId(), 1)) {
+            if (data == null) {
+                data = new LinkedHashMap<ThroughputType, ThroughputStat>();
+                throughputs.put(stat.getPipelineId(), data);
+            }
+
+            data.put(stat.getType(), copy(stat));
+        }
+    }
+
+    public void addTableStat(TableStat stat) {
+        TableStat old = tables.get(stat.getDataMediaPairId());
+        if (old != null) {
+            old.setInsertCount(stat.getInsertCount() + old.getInsertCount());
+            old.setUpdateCount(stat.getUpdateCount() + old.getUpdateCount());
+            old.setDeleteCount(stat.getDeleteCount() + old.getDeleteCount());
+            old.setFileCount(stat.getFileCount() + old.getFileCount());
+            old.setFileSize(stat.getFileSize() + old.getFileSize());
+            old.setStartTime(min(old.getStartTime(), stat.getStartTime()));
+            old.setEndTime(max(old.getEndTime(), stat.getEndTime()));
+        } else if (reserve(stat.getPipelineId(), 1)) {
+            tables.put(stat.getDataMediaPairId(), copy(stat));
+        }
+    }
+
+    /**
+     * 合并另一个周期的数据，比如发送失败的数据重新放回
+     */
+    public void merge(StatisticsWindow other) {
+        for (Map.Entry<Long, long[]> entry : other.delays.entrySet()) {
+            mergeDelay(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+        for (Map<ThroughputType, ThroughputStat> data : other.throughputs.values()) {
+            for (ThroughputStat stat : data.values()) {
+                addThroughputStat(stat);
+            }
+        }
+        for (TableStat stat : other.tables.values()) {
+            addTableStat(stat);
+        }
+        for (Map.Entry<Long, Long> entry : other.droppedStats.entrySet()) {
+            drop(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public List<DelayCount> getDelayCounts() {
+        List<DelayCount> result = new ArrayList<DelayCount>(delays.size());
+        for (Map.Entry<Long, long[]> entry : delays.entrySet()) {
+            DelayCount count = new DelayCount();
+            count.setPipelineId(entry.getKey());
+            count.setNumber(0L);
+            count.setTime(entry.getValue()[0] / entry.getValue()[1]);
+            result.add(count);
+        }
+        return result;
+    }
+
+    public List<ThroughputStat> getThroughputStats() {
+        List<ThroughputStat> result = new ArrayList<ThroughputStat>();
+        for (Map<ThroughputType, ThroughputStat> data : throughputs.values()) {
+            result.addAll(data.values());
+        }
+        return result;
+    }
+
+    public List<TableStat> getTableStats() {
+        return new ArrayList<TableStat>(tables.values());
+    }
+
+    public Map<Long, Long> getDroppedStats() {
+        return new HashMap<Long, Long>(droppedStats);
+    }
+
+    public void clearDelays() {
+        size -= delays.size();
+        delays.clear();
+    }
+
+    public void clearThroughputStats() {
+        for (Map<ThroughputType, ThroughputStat> data : throughputs.values()) {
+            size -= data.size();
+        }
+        throughputs.clear();
+    }
+
+    public void clearTableStats() {
+        size -= tables.size();
+        tables.clear();
+    }
+
+    public void clearDroppedStats() {
+        droppedStats.clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0 && droppedStats.isEmpty();
+    }
+
+    // ================= helper method ==============
+
+    private void mergeDelay(Long pipelineId, long time, long count) {
+        long[] delay = delays.get(pipelineId);
+        if (delay != null) {
+            delay[0] += time;
+            delay[1] += count;
+        } else if (reserve(pipelineId, count)) {
+            delays.put(pipelineId, new long[] { time, count });
+        }
+    }
+
+    /**
+     * 为新出现的统计项占一个位置，超过上限时记录丢弃
+     */
+    private boolean reserve(Long pipelineId, long count) {
+        if (size >= maxStats) {
+            drop(pipelineId, count);
+            return false;
+        }
+
+        size++;
+        return true;
+    }
+
+    private void drop(Long pipelineId, long count) {
+        Long dropped = droppedStats.get(pipelineId);
+        droppedStats.put(pipelineId, dropped == null ? count : dropped + count);
+    }
+
+    private ThroughputStat copy(ThroughputStat stat) {
+        ThroughputStat result = new ThroughputStat();
+        result.setPipelineId(stat.getPipelineId());
+        result.setType(stat.getType());
+        result.setNumber(stat.getNumber());
+        result.setSize(stat.getSize());
+        result.setStartTime(stat.getStartTime());
+        result.setEndTime(stat.getEndTime());
+        return result;
+    }
+
+    private TableStat copy(TableStat stat) {
+        TableStat result = new TableStat();
+        result.setPipelineId(stat.getPipelineId());
+        result.setDataMediaPairId(stat.getDataMediaPairId());
+        result.setInsertCount(stat.getInsertCount());
+        result.setUpdateCount(stat.getUpdateCount());
+        result.setDeleteCount(stat.getDeleteCount());
+        result.setFileCount(stat.getFileCount());
+        result.setFileSize(stat.getFileSize());
+        result.setStartTime(stat.getStartTime());
+        result.setEndTime(stat.getEndTime());
+        return result;
+    }
+
+    private static Date min(Date a, Date b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return b.before(a) ? b : a;
+    }
+
+    private static Date max(Date a, Date b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return b.after(a) ? b : a;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.common.statistics.impl;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.util.ReflectionUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.common.BaseOtterTest;
+import com.alibaba.otter.node.common.communication.NodeCommmunicationClient;
+import com.alibaba.otter.shared.arbitrate.impl.alarm.AlarmClientService;
+import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfig;
+import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigRegistry;
+import com.alibaba.otter.shared.common.model.config.channel.Channel;
+import com.alibaba.otter.shared.common.model.config.node.Node;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+import com.alibaba.otter.shared.common.model.statistics.delay.DelayCount;
+import com.alibaba.otter.shared.common.model.statistics.table.TableStat;
+import com.alibaba.otter.shared.communication.core.model.Event;
+import com.alibaba.otter.shared.communication.model.statistics.BatchStatEvent;
+import com.alibaba.otter.shared.communication.model.statistics.DelayCountEvent;
+import com.alibaba.otter.shared.communication.model.statistics.TableStatEvent;
+
+/**
+ * 测试统计数据按周期聚合发送，失败重试及丢弃数量的上报
+ * 
+ * @author jianghang
+ */
+public class StatisticsClientServiceImplTest extends BaseOtterTest {
+
+    private Method          flushMethod = ReflectionUtils.findMethod(StatisticsClientServiceImpl.class, "flush");
+    private ArbitrateConfig config      = new ArbitrateConfig() {
+
+                                            public Node currentNode() {
+                                                Node node = new Node();
+                                                node.setId(1L);
+                                                return node;
+                                            }
+
+                                            public Node findNode(Long nid) {
+                                                return null;
+                                            }
+
+                                            public Channel findChannel(Long channelId) {
+                                                return null;
+                                            }
+
+                                            public Pipeline findPipeline(Long pipelineId) {
+                                                return null;
+                                            }
+
+                                            public Channel findChannelByPipelineId(Long pipelineId) {
+                                                return null;
+                                            }
+
+                                            public Pipeline findOppositePipeline(Long pipelineId) {
+                                                return null;
+                                            }
+                                        };
+
+    @BeforeClass
+    public void setUp() {
+        ArbitrateConfigRegistry.regist(config);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        ArbitrateConfigRegistry.unRegist(config);
+    }
+
+    @Test
+    public void test_batch() throws Exception {
+        MockCommmunicationClient client = new MockCommmunicationClient();
+        StatisticsClientServiceImpl service = buildService(client, new MockAlarmClientService(), true, 100);
+        service.sendIncDelayCount(buildDelay(1L, 100L));
+        service.sendResetDelayCount(buildDelay(1L, 300L));
+        service.sendTableStats(Arrays.asList(buildTable(1L, 10L, 1L), buildTable(1L, 10L, 2L)));
+        flush(service);
+
+        // 一个周期只调用一次manager
+        want.collection(client.events).sizeEq(1);
+        BatchStatEvent event = (BatchStatEvent) client.events.get(0);
+        want.number(event.getDelayCounts().get(0).getTime()).isEqualTo(200L);
+        want.number(event.getTableStats().get(0).getInsertCount()).isEqualTo(3L);
+
+        // 没有数据不发送
+        flush(service);
+        want.collection(client.events).sizeEq(1);
+    }
+
+    @Test
+    public void test_merge_back() throws Exception {
+        MockCommmunicationClient client = new MockCommmunicationClient();
+        StatisticsClientServiceImpl service = buildService(client, new MockAlarmClientService(), true, 100);
+        service.sendTableStats(Arrays.asList(buildTable(1L, 10L, 1L)));
+        client.fail = true;
+        flush(service);
+        want.collection(client.events).sizeEq(0);
+
+        // 失败的数据合并到下一个周期
+        client.fail = false;
+        service.sendTableStats(Arrays.asList(buildTable(1L, 10L, 2L)));
+        flush(service);
+        want.collection(client.events).sizeEq(1);
+        BatchStatEvent event = (BatchStatEvent) client.events.get(0);
+        want.number(event.getTableStats().get(0).getInsertCount()).isEqualTo(3L);
+    }
+
+    @Test
+    public void test_dropped_batch() throws Exception {
+        MockCommmunicationClient client = new MockCommmunicationClient();
+        MockAlarmClientService alarm = new MockAlarmClientService();
+        StatisticsClientServiceImpl service = buildService(client, alarm, true, 1);
+        service.sendTableStats(Arrays.asList(buildTable(1L, 10L, 1L), buildTable(1L, 11L, 1L)));
+        flush(service);
+
+        BatchStatEvent event = (BatchStatEvent) client.events.get(0);
+        want.number(event.getDroppedStats().get(1L)).isEqualTo(1L);
+        want.collection(alarm.messages).sizeEq(0);
+    }
+
+    @Test
+    public void test_dropped_separately() throws Exception {
+        MockCommmunicationClient client = new MockCommmunicationClient();
+        MockAlarmClientService alarm = new MockAlarmClientService();
+        StatisticsClientServiceImpl service = buildService(client, alarm, false, 2);
+        service.sendResetDelayCount(buildDelay(1L, 100L));
+        service.sendTableStats(Arrays.asList(buildTable(1L, 10L, 1L), buildTable(1L, 11L, 1L)));
+        flush(service);
+
+        // 兼容模式下按类型分别发送，丢弃数量通过报警上报
+        want.collection(client.events).sizeEq(2);
+        want.bool(client.events.get(0) instanceof DelayCountEvent).is(true);
+        want.bool(client.events.get(1) instanceof TableStatEvent).is(true);
+        want.collection(alarm.messages).sizeEq(1);
+        want.string(alarm.messages.get(0)).isEqualTo("1:1:dropped 1 stats by buffer is full, maxStats : 2");
+
+        // 报警间隔内累计，不重复报警
+        service.sendTableStats(Arrays.asList(buildTable(1L, 10L, 1L), buildTable(1L, 11L, 1L),
+            buildTable(1L, 12L, 1L)));
+        flush(service);
+        want.collection(alarm.messages).sizeEq(1);
+
+        service.setDropAlarmInterval(0);
+        service.sendTableStats(Arrays.asList(buildTable(1L, 10L, 1L)));
+        flush(service);
+        want.collection(alarm.messages).sizeEq(2);
+        want.string(alarm.messages.get(1)).isEqualTo("1:1:dropped 1 stats by buffer is full, maxStats : 2");
+    }
+
+    private StatisticsClientServiceImpl buildService(NodeCommmunicationClient client, AlarmClientService alarm,
+                                                     boolean batch, int maxStats) throws Exception {
+        StatisticsClientServiceImpl service = new StatisticsClientServiceImpl();
+        service.setNodeCommmunicationClient(client);
+        service.setAlarmClientService(alarm);
+        service.setBatch(batch);
+        service.setMaxStats(maxStats);
+        service.setFlushInterval(60 * 60 * 1000L); // 定时任务不触发，由测试手工flush
+        service.afterPropertiesSet();
+        return service;
+    }
+
+    private void flush(StatisticsClientServiceImpl service) {
+        ReflectionUtils.makeAccessible(flushMethod);
+        ReflectionUtils.invokeMethod(flushMethod, service);
+    }
+
+    private DelayCount buildDelay(Long pipelineId, Long time) {
+        DelayCount count = new DelayCount();
+        count.setPipelineId(pipelineId);
+        count.setTime(time);
+        count.setNumber(1L);
+        return count;
+    }
+
+    private TableStat buildTable(Long pipelineId, Long pairId, Long insertCount) {
+        TableStat stat = new TableStat();
+        stat.setPipelineId(pipelineId);
+        stat.setDataMediaPairId(pairId);
+        stat.setInsertCount(insertCount);
+        stat.setUpdateCount(0L);
+        stat.setDeleteCount(0L);
+        stat.setFileCount(0L);
+        stat.setFileSize(0L);
+        return stat;
+    }
+
+    private static class MockCommmunicationClient extends NodeCommmunicationClient {
+
+        private List<Event> events = new ArrayList<Event>();
+        private boolean     fail   = false;
+
+        public Object callManager(Event event) {
+            if (fail) {
+                throw new RuntimeException("call manager failed");
+            }
+
+            events.add(event);
+            return true;
+        }
+    }
+
+    private static class MockAlarmClientService extends AlarmClientService {
+
+        private List<String> messages = new ArrayList<String>();
+
+        public void sendAlarm(Long currentNid, Long pipelineId, String title, String msg) {
+            messages.add(currentNid + ":" + pipelineId + ":" + msg);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.common.statistics.impl;
+
+import java.util.Date;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.common.BaseOtterTest;
+import com.alibaba.otter.shared.common.model.statistics.delay.DelayCount;
+import com.alibaba.otter.shared.common.model.statistics.table.TableStat;
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputStat;
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputType;
+
+/**
+ * @author jianghang
+ */
+public class StatisticsWindowTest extends BaseOtterTest {
+
+    @Test
+    public void test_aggregate() {
+        StatisticsWindow window = new StatisticsWindow(100);
+        window.addDelayCount(buildDelay(1L, 100L));
+        window.addDelayCount(buildDelay(1L, 300L));
+        window.addDelayCount(buildDelay(1L, null)); // 忽略
+        window.addThroughputStat(buildThroughput(1L, ThroughputType.ROW, 10L, new Date(2000), new Date(3000)));
+        window.addThroughputStat(buildThroughput(1L, ThroughputType.ROW, 5L, new Date(1000), new Date(2000)));
+        window.addThroughputStat(buildThroughput(1L, ThroughputType.FILE, 1L, null, null));
+        window.addTableStat(buildTable(1L, 10L, 3L));
+        window.addTableStat(buildTable(1L, 10L, 4L));
+
+        // 一个周期内的延迟取平均值
+        List<DelayCount> delays = window.getDelayCounts();
+        want.collection(delays).sizeEq(1);
+        want.number(delays.get(0).getTime()).isEqualTo(200L);
+
+        List<ThroughputStat> throughputs = window.getThroughputStats();
+        want.collection(throughputs).sizeEq(2);
+        ThroughputStat row = throughputs.get(0);
+        want.number(row.getNumber()).isEqualTo(15L);
+        want.number(row.getSize()).isEqualTo(150L);
+        want.number(row.getStartTime().getTime()).isEqualTo(1000L);
+        want.number(row.getEndTime().getTime()).isEqualTo(3000L);
+
+        List<TableStat> tables = window.getTableStats();
+        want.collection(tables).sizeEq(1);
+        want.number(tables.get(0).getInsertCount()).isEqualTo(7L);
+        want.number(window.size()).isEqualTo(4);
+        want.map(window.getDroppedStats()).sizeEq(0);
+    }
+
+    @Test
+    public void test_reserve() {
+        StatisticsWindow window = new StatisticsWindow(2);
+        window.addTableStat(buildTable(1L, 10L, 1L));
+        window.addTableStat(buildTable(1L, 11L, 1L));
+        // 超过maxStats的新统计项被丢弃，按pipeline计数
+        window.addTableStat(buildTable(1L, 12L, 1L));
+        window.addTableStat(buildTable(2L, 20L, 1L));
+        window.addDelayCount(buildDelay(2L, 100L));
+        // 已存在的统计项继续合并
+        window.addTableStat(buildTable(1L, 10L, 1L));
+
+        want.number(window.size()).isEqualTo(2);
+        want.number(window.getTableStats().get(0).getInsertCount()).isEqualTo(2L);
+        want.number(window.getDroppedStats().get(1L)).isEqualTo(1L);
+        want.number(window.getDroppedStats().get(2L)).isEqualTo(2L);
+
+        window.clearTableStats();
+        want.number(window.size()).isEqualTo(0);
+        window.addTableStat(buildTable(1L, 12L, 1L));
+        want.number(window.size()).isEqualTo(1);
+
+        window.clearDroppedStats();
+        window.clearTableStats();
+        want.bool(window.isEmpty()).is(true);
+    }
+
+    @Test
+    public void test_merge() {
+        // 模拟发送失败，失败的周期在前，新周期的数据合并进来
+        StatisticsWindow failed = new StatisticsWindow(3);
+        failed.addDelayCount(buildDelay(1L, 100L));
+        failed.addTableStat(buildTable(1L, 10L, 1L));
+        failed.addTableStat(buildTable(1L, 11L, 1L));
+        failed.addTableStat(buildTable(1L, 12L, 1L)); // 丢弃
+
+        StatisticsWindow current = new StatisticsWindow(3);
+        current.addDelayCount(buildDelay(1L, 300L));
+        current.addDelayCount(buildDelay(1L, 200L));
+        current.addTableStat(buildTable(1L, 10L, 5L));
+        current.addTableStat(buildTable(2L, 20L, 1L));
+
+        failed.merge(current);
+        // 延迟按次数加权平均
+        want.number(failed.getDelayCounts().get(0).getTime()).isEqualTo(200L);
+        want.number(failed.getTableStats().get(0).getInsertCount()).isEqualTo(6L);
+        want.number(failed.size()).isEqualTo(3);
+        // 新周期的统计项放不下，优先丢弃
+        want.number(failed.getDroppedStats().get(1L)).isEqualTo(1L);
+        want.number(failed.getDroppedStats().get(2L)).isEqualTo(1L);
+
+        // 合并不影响原有的对象
+        want.number(current.getTableStats().get(0).getInsertCount()).isEqualTo(5L);
+    }
+
+    private DelayCount buildDelay(Long pipelineId, Long time) {
+        DelayCount count = new DelayCount();
+        count.setPipelineId(pipelineId);
+        count.setTime(time);
+        count.setNumber(1L);
+        return count;
+    }
+
+    private ThroughputStat buildThroughput(Long pipelineId, ThroughputType type, Long number, Date start, Date end) {
+        ThroughputStat stat = new ThroughputStat();
+        stat.setPipelineId(pipelineId);
+        stat.setType(type);
+        stat.setNumber(number);
+        stat.setSize(number * 10);
+        stat.setStartTime(start);
+        stat.setEndTime(end);
+        return stat;
+    }
+
+    private TableStat buildTable(Long pipelineId, Long pairId, Long insertCount) {
+        TableStat stat = new TableStat();
+        stat.setPipelineId(pipelineId);
+        stat.setDataMediaPairId(pairId);
+        stat.setInsertCount(insertCount);
+        stat.setUpdateCount(0L);
+        stat.setDeleteCount(0L);
+        stat.setFileCount(0L);
+        stat.setFileSize(0L);
+        return stat;
+    }
+}
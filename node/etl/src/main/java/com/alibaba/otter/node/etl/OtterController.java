@@ -38,9 +38,12 @@ import com.alibaba.otter.node.common.config.model.NodeTask.TaskEvent;
 import com.alibaba.otter.node.etl.common.datasource.DataSourceService;
 import com.alibaba.otter.node.etl.common.db.dialect.DbDialectFactory;
 import com.alibaba.otter.node.etl.common.jmx.StageAggregationCollector;
+import com.alibaba.otter.node.etl.common.pipe.impl.AdaptivePipeChooser;
+import com.alibaba.otter.node.etl.common.pipe.impl.memory.OffHeapRowDataMemoryPipe;
 import com.alibaba.otter.node.etl.common.task.GlobalTask;
 import com.alibaba.otter.node.etl.extract.ExtractTask;
 import com.alibaba.otter.node.etl.load.LoadTask;
+import com.alibaba.otter.node.etl.load.loader.db.TableLoadLimiter;
 import com.alibaba.otter.node.etl.select.SelectTask;
 import com.alibaba.otter.node.etl.transform.TransformTask;
 import com.alibaba.otter.shared.arbitrate.ArbitrateEventService;
@@ -114,6 +117,9 @@ public class OtterController implements NodeTaskListener, OtterControllerMBean {
     private ExecutorService executorService;
 
     private StageAggregationCollector stageAggregationCollector;
+    private AdaptivePipeChooser       adaptivePipeChooser;
+    private OffHeapRowDataMemoryPipe  offHeapRowDataMemoryPipe;
+    private TableLoadLimiter          tableLoadLimiter;
 
     public void start() throws Throwable {
         // 初始化节点
@@ -269,6 +275,9 @@ public class OtterController implements NodeTaskListener, OtterControllerMBean {
     private void releasePipeline(Long pipelineId) {
         dataSourceService.destroy(pipelineId);
         dbDialectFactory.destory(pipelineId);
+        if (tableLoadLimiter != null) {
+            tableLoadLimiter.destory(pipelineId);
+        }
     }
 
     private void initNid() {
@@ -325,6 +334,14 @@ public class OtterController implements NodeTaskListener, OtterControllerMBean {
         return VersionInfo.getVersion() + " [ r" + VersionInfo.getRevision() + " ] @ " + VersionInfo.getDate();
     }
 
+    @Override
+    public String getOffHeapMemoryPipeInfo() {
+        if (offHeapRowDataMemoryPipe == null) {
+            return null;
+        }
+        return offHeapRowDataMemoryPipe.statistics();
+    }
+
     @Override
     public int getRunningPipelineCount() {
         return controllers.size();
@@ -420,6 +437,27 @@ public class OtterController implements NodeTaskListener, OtterControllerMBean {
         return pendingProcess(pipelineId, StageType.LOAD);
     }
 
+    @Override
+    public String pipeChooseStatistics(Long pipelineId) {
+        if (adaptivePipeChooser == null) {
+            return null;
+        }
+        return adaptivePipeChooser.statistics(pipelineId);
+    }
+
+    @Override
+    public String tableMetaStatistics(Long pipelineId) {
+        return dbDialectFactory.tableMetaStatistics(pipelineId);
+    }
+
+    @Override
+    public String loadLimitStatistics(Long pipelineId) {
+        if (tableLoadLimiter == null) {
+            return null;
+        }
+        return tableLoadLimiter.statistics(pipelineId);
+    }
+
 
     private String pendingProcess(Long pipelineId, StageType stage) {
         GlobalTask task = controllers.get(pipelineId).get(stage);
@@ -460,6 +498,18 @@ public class OtterController implements NodeTaskListener, OtterControllerMBean {
         this.stageAggregationCollector = stageAggregationCollector;
     }
 
+    public void setAdaptivePipeChooser(AdaptivePipeChooser adaptivePipeChooser) {
+        this.adaptivePipeChooser = adaptivePipeChooser;
+    }
+
+    public void setOffHeapRowDataMemoryPipe(OffHeapRowDataMemoryPipe offHeapRowDataMemoryPipe) {
+        this.offHeapRowDataMemoryPipe = offHeapRowDataMemoryPipe;
+    }
+
+    public void setTableLoadLimiter(TableLoadLimiter tableLoadLimiter) {
+        this.tableLoadLimiter = tableLoadLimiter;
+    }
+
     public void setExecutorService(ExecutorService executorService) {
         this.executorService = executorService;
     }
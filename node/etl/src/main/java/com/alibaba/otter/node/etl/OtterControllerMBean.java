@@ -55,6 +55,11 @@ public interface OtterControllerMBean {
      */
     public String getNodeVersionInfo();
 
+    /**
+     * 堆外内存pipe的使用情况
+     */
+    public String getOffHeapMemoryPipeInfo();
+
     /**
      * 当前节点是否运行select
      */
@@ -126,4 +131,19 @@ public interface OtterControllerMBean {
      * load pending队列信息
      */
     public String loadPendingProcess(Long pipelineId);
+
+    /**
+     * rpc/http pipe自适应选择的统计信息
+     */
+    public String pipeChooseStatistics(Long pipelineId);
+
+    /**
+     * table meta缓存的命中/加载统计信息
+     */
+    public String tableMetaStatistics(Long pipelineId);
+
+    /**
+     * load按目标表自适应并发的统计信息
+     */
+    public String loadLimitStatistics(Long pipelineId);
 }
@@ -17,9 +17,14 @@
 package com.alibaba.otter.node.etl.common.datasource.impl;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -28,14 +33,19 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
 import com.alibaba.otter.common.push.datasource.DataSourceHanlder;
+import com.alibaba.otter.node.common.config.ConfigClientService;
+import com.alibaba.otter.node.common.statistics.StatisticsClientService;
 import com.alibaba.otter.node.etl.common.datasource.DataSourceService;
 import com.alibaba.otter.shared.common.model.config.data.DataMediaSource;
 import com.alibaba.otter.shared.common.model.config.data.DataMediaType;
 import com.alibaba.otter.shared.common.model.config.data.db.DbMediaSource;
+import com.alibaba.otter.shared.common.model.statistics.datasource.DataSourceStat;
+import com.alibaba.otter.shared.common.utils.thread.NamedThreadFactory;
 import com.google.common.base.Function;
 import com.google.common.collect.OtterMigrateMap;
 
@@ -45,7 +55,7 @@ import com.google.common.collect.OtterMigrateMap;
  * @author xiaoqing.zhouxq
  * @author zebinxu, add {@link DataSourceHanlder}
  */
-public class DBDataSourceService implements DataSourceService, DisposableBean {
+public class DBDataSourceService implements DataSourceService, InitializingBean, DisposableBean {
 
     private static final Logger                       logger                        = LoggerFactory.getLogger(DBDataSourceService.class);
 
@@ -69,6 +79,24 @@ public class DBDataSourceService implements DataSourceService, DisposableBean {
 
     private int                                       minEvictableIdleTimeMillis    = 5 * 60 * 1000;
 
+    private int                                       sharedMaxActive               = 64;                                                // 共享连接池的最大连接数
+
+    private int                                       statInterval                  = 60 * 1000;                                         // 共享连接池统计信息的上报间隔
+
+    private ConfigClientService                       configClientService;
+
+    private StatisticsClientService                   statisticsClientService;
+
+    private ScheduledExecutorService                  scheduler;
+
+    private volatile boolean                          statReported                  = false;                                             // 上一次是否上报过连接池快照
+
+    /**
+     * 开启useSharedDataSource的pipeline共用的连接池.<br>
+     * key = url + username + password + encode<br>
+     */
+    private Map<String, SharedDataSource>             sharedDataSources             = new HashMap<String, SharedDataSource>();
+
     /**
      * 一个pipeline下面有一组DataSource.<br>
      * key = pipelineId<br>
@@ -92,6 +120,10 @@ public class DBDataSourceService implements DataSourceService, DisposableBean {
                             return customDataSource;
                         }
 
+                        if (isSharedDataSource(pipelineId, dbMediaSource)) {
+                            return attachSharedDataSource(pipelineId, dbMediaSource);
+                        }
+
                         return createDataSource(dbMediaSource.getUrl(),
                             dbMediaSource.getUsername(),
                             dbMediaSource.getPassword(),
@@ -116,6 +148,11 @@ public class DBDataSourceService implements DataSourceService, DisposableBean {
         if (sources != null) {
             for (DataSource source : sources.values()) {
                 try {
+                    if (source instanceof PipelineDataSource) {
+                        detachSharedDataSource((PipelineDataSource) source);
+                        continue;
+                    }
+
                     // for filter to destroy custom datasource
                     if (letHandlerDestroyIfSupport(pipelineId, source)) {
                         continue;
@@ -151,13 +188,102 @@ public class DBDataSourceService implements DataSourceService, DisposableBean {
 
     }
 
+    public void afterPropertiesSet() throws Exception {
+        if (statisticsClientService != null && statInterval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Otter-DataSource-Stat"));
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+
+                public void run() {
+                    try {
+                        sendDataSourceStats();
+                    } catch (Throwable e) {
+                        logger.warn("send datasource stats failed", e);
+                    }
+                }
+            }, statInterval, statInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
     public void destroy() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+
         for (Long pipelineId : dataSources.keySet()) {
             destroy(pipelineId);
         }
     }
 
-    private DataSource createDataSource(String url, String userName, String password, String driverClassName,
+    /**
+     * 只针对mysql开启共享，oracle的lob处理依赖dbcp原生的connection
+     */
+    private boolean isSharedDataSource(Long pipelineId, DbMediaSource dbMediaSource) {
+        if (configClientService == null || !dbMediaSource.getType().isMysql()) {
+            return false;
+        }
+
+        return configClientService.findPipeline(pipelineId).getParameters().getUseSharedDataSource();
+    }
+
+    private DataSource attachSharedDataSource(Long pipelineId, DbMediaSource dbMediaSource) {
+        String key = StringUtils.join(new Object[] { dbMediaSource.getUrl(), dbMediaSource.getUsername(),
+                dbMediaSource.getPassword(), dbMediaSource.getEncode() }, '|');
+        synchronized (sharedDataSources) {
+            SharedDataSource sharedDataSource = sharedDataSources.get(key);
+            if (sharedDataSource == null) {
+                BasicDataSource dbcpDs = createDataSource(dbMediaSource.getUrl(),
+                    dbMediaSource.getUsername(),
+                    dbMediaSource.getPassword(),
+                    dbMediaSource.getDriver(),
+                    dbMediaSource.getType(),
+                    dbMediaSource.getEncode());
+                dbcpDs.setMaxActive(sharedMaxActive);
+                dbcpDs.setMaxIdle(sharedMaxActive);
+                sharedDataSource = new SharedDataSource(dbMediaSource.getUrl(), dbMediaSource.getUsername(), dbcpDs);
+                sharedDataSources.put(key, sharedDataSource);
+            }
+
+            return sharedDataSource.attach(pipelineId);
+        }
+    }
+
+    private void detachSharedDataSource(PipelineDataSource pipelineDataSource) throws SQLException {
+        SharedDataSource sharedDataSource = pipelineDataSource.getSharedDataSource();
+        synchronized (sharedDataSources) {
+            // 最后一个pipeline释放后关闭连接池
+            if (sharedDataSource.detach(pipelineDataSource) && sharedDataSources.values().remove(sharedDataSource)) {
+                sharedDataSource.close();
+            }
+        }
+    }
+
+    private void sendDataSourceStats() {
+        List<SharedDataSource> sources = null;
+        synchronized (sharedDataSources) {
+            sources = new ArrayList<SharedDataSource>(sharedDataSources.values());
+        }
+
+        if (sources.isEmpty() && !statReported) {
+            return;
+        }
+
+        Long nid = configClientService.currentNode().getId();
+        List<DataSourceStat> stats = new ArrayList<DataSourceStat>();
+        for (SharedDataSource source : sources) {
+            for (DataSourceStat stat : source.stats()) {
+                stat.setNid(nid);
+                stats.add(stat);
+            }
+        }
+
+        // 每次上报的都是当前node的完整快照，连接池全部释放后再发送一次空快照，让manager清理掉之前的数据
+        if (!stats.isEmpty() || statReported) {
+            statisticsClientService.sendDataSourceStats(stats);
+            statReported = !stats.isEmpty();
+        }
+    }
+
+    private BasicDataSource createDataSource(String url, String userName, String password, String driverClassName,
                                         DataMediaType dataMediaType, String encoding) {
         BasicDataSource dbcpDs = new BasicDataSource();
 
@@ -269,4 +395,20 @@ public class DBDataSourceService implements DataSourceService, DisposableBean {
     public void setDataSourceHandlers(List<DataSourceHanlder> dataSourceHandlers) {
         this.dataSourceHandlers = dataSourceHandlers;
     }
+
+    public void setSharedMaxActive(int sharedMaxActive) {
+        this.sharedMaxActive = sharedMaxActive;
+    }
+
+    public void setStatInterval(int statInterval) {
+        this.statInterval = statInterval;
+    }
+
+    public void setConfigClientService(ConfigClientService configClientService) {
+        this.configClientService = configClientService;
+    }
+
+    public void setStatisticsClientService(StatisticsClientService statisticsClientService) {
+        this.statisticsClientService = statisticsClientService;
+    }
 }
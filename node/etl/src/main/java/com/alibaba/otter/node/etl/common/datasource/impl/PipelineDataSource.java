@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.common.datasource.impl;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Date;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.alibaba.otter.shared.common.model.statistics.datasource.DataSourceStat;
+
+/**
+ * 单个pipeline对{@linkplain SharedDataSource}的使用视图，获取连接时受份额控制
+ * 
+ * @author jianghang
+ */
+class PipelineDataSource implements DataSource {
+
+    private final Long             pipelineId;
+    private final SharedDataSource sharedDataSource;
+    int                            active      = 0;                // 由sharedDataSource的锁保护
+    private int                    references  = 0;                // 由sharedDataSource的锁保护
+    private long                   borrowCount = 0;
+    private long                   waitCount   = 0;
+    private long                   waitTime    = 0;
+    private long                   maxWaitTime = 0;
+    private Date                   startTime   = new Date();
+
+    public PipelineDataSource(Long pipelineId, SharedDataSource sharedDataSource){
+        this.pipelineId = pipelineId;
+        this.sharedDataSource = sharedDataSource;
+    }
+
+    public Connection getConnection() throws SQLException {
+        return sharedDataSource.borrow(this);
+    }
+
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Not supported by PipelineDataSource");
+    }
+
+    public PrintWriter getLogWriter() throws SQLException {
+        return sharedDataSource.getDataSource().getLogWriter();
+    }
+
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        sharedDataSource.getDataSource().setLogWriter(out);
+    }
+
+    public void setLoginTimeout(int seconds) throws SQLException {
+        sharedDataSource.getDataSource().setLoginTimeout(seconds);
+    }
+
+    public int getLoginTimeout() throws SQLException {
+        return sharedDataSource.getDataSource().getLoginTimeout();
+    }
+
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("PipelineDataSource is not a wrapper for " + iface.getName());
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+
+    public Long getPipelineId() {
+        return pipelineId;
+    }
+
+    SharedDataSource getSharedDataSource() {
+        return sharedDataSource;
+    }
+
+    void retain() {
+        references++;
+    }
+
+    /**
+     * 返回true代表引用已经全部释放
+     */
+    boolean release() {
+        return --references <= 0;
+    }
+
+    synchronized void record(boolean waited, long cost) {
+        borrowCount++;
+        if (waited) {
+            waitCount++;
+        }
+        waitTime += cost;
+        if (cost > maxWaitTime) {
+            maxWaitTime = cost;
+        }
+    }
+
+    synchronized DataSourceStat snapshot(Date now) {
+        DataSourceStat stat = new DataSourceStat();
+        stat.setPipelineId(pipelineId);
+        stat.setBorrowCount(borrowCount);
+        stat.setWaitCount(waitCount);
+        stat.setWaitTime(waitTime);
+        stat.setMaxWaitTime(maxWaitTime);
+        stat.setStartTime(startTime);
+        stat.setEndTime(now);
+
+        borrowCount = 0;
+        waitCount = 0;
+        waitTime = 0;
+        maxWaitTime = 0;
+        startTime = now;
+        return stat;
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.common.datasource.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.dbcp.BasicDataSource;
+
+import com.alibaba.otter.shared.common.model.statistics.datasource.DataSourceStat;
+
+/**
+ * <pre>
+ * 多个pipeline共享的数据库连接池，相同url/user的数据源只创建一个dbcp连接池
+ * 
+ * 公平份额控制：
+ * 1. 每个pipeline的份额 = maxActive / 当前使用该连接池的pipeline数
+ * 2. 连接池还有余量时，任意pipeline都可以超出份额获取连接
+ * 3. 连接池用满后，超出份额的pipeline需要等待，未超出份额的pipeline仍可以进入dbcp排队，保证优先拿到归还的连接
+ * </pre>
+ * 
+ * @author jianghang
+ */
+class SharedDataSource {
+
+    private final String                        url;
+    private final String                        username;
+    private final BasicDataSource               dataSource;
+    private final int                           maxActive;
+    private final long                          maxWait;                                                    // 单位ms，非正数表示无限等待
+    private final ReentrantLock                 lock      = new ReentrantLock();
+    private final Condition                     released  = lock.newCondition();
+    private final Map<Long, PipelineDataSource> pipelines = new HashMap<Long, PipelineDataSource>();
+    private int                                 active    = 0;                                              // 所有pipeline借出的连接数
+
+    public SharedDataSource(String url, String username, BasicDataSource dataSource){
+        this.url = url;
+        this.username = username;
+        this.dataSource = dataSource;
+        this.maxActive = dataSource.getMaxActive();
+        this.maxWait = dataSource.getMaxWait();
+    }
+
+    /**
+     * pipeline开始使用该连接池，同一个pipeline多次引用返回同一个对象
+     */
+    public PipelineDataSource attach(Long pipelineId) {
+        lock.lock();
+        try {
+            PipelineDataSource pipelineDataSource = pipelines.get(pipelineId);
+            if (pipelineDataSource == null) {
+                pipelineDataSource = new PipelineDataSource(pipelineId, this);
+                pipelines.put(pipelineId, pipelineDataSource);
+            }
+            pipelineDataSource.retain();
+            return pipelineDataSource;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * pipeline释放对连接池的引用，返回true代表已经没有pipeline在使用
+     */
+    public boolean detach(PipelineDataSource pipelineDataSource) {
+        lock.lock();
+        try {
+            if (pipelineDataSource.release() && pipelines.get(pipelineDataSource.getPipelineId()) == pipelineDataSource) {
+                pipelines.remove(pipelineDataSource.getPipelineId());
+                released.signalAll();// 份额发生了变化
+            }
+            return pipelines.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() throws SQLException {
+        dataSource.close();
+    }
+
+    BasicDataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 按照份额获取一个连接，连接close时归还份额
+     */
+    Connection borrow(PipelineDataSource pipelineDataSource) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean waited = false;
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+            while (pipelineDataSource.active >= quota() && active >= maxActive) {
+                waited = true;
+                if (maxWait <= 0) {
+                    released.await();
+                } else if (nanos <= 0) {
+                    throw new SQLException("pipeline[" + pipelineDataSource.getPipelineId()
+                                           + "] wait shared connection timeout, quota : " + quota() + " , url : " + url);
+                } else {
+                    nanos = released.awaitNanos(nanos);
+                }
+            }
+
+            pipelineDataSource.active++;
+            active++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("pipeline[" + pipelineDataSource.getPipelineId() + "] wait shared connection interrupted");
+        } finally {
+            lock.unlock();
+        }
+
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+        } finally {
+            if (connection == null) {
+                giveBack(pipelineDataSource);
+            }
+        }
+
+        pipelineDataSource.record(waited, System.currentTimeMillis() - start);
+        return wrap(connection, pipelineDataSource);
+    }
+
+    /**
+     * 生成当前连接池下各pipeline的统计信息，并重置统计周期
+     */
+    public List<DataSourceStat> stats() {
+        List<DataSourceStat> result = new ArrayList<DataSourceStat>();
+        Date now = new Date();
+        lock.lock();
+        try {
+            for (PipelineDataSource pipelineDataSource : pipelines.values()) {
+                DataSourceStat stat = pipelineDataSource.snapshot(now);
+                stat.setUrl(url);
+                stat.setUsername(username);
+                stat.setMaxActive(maxActive);
+                stat.setQuota(quota());
+                stat.setPoolActive(dataSource.getNumActive());
+                stat.setPoolIdle(dataSource.getNumIdle());
+                stat.setPipelineActive(pipelineDataSource.active);
+                result.add(stat);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    private int quota() {
+        return Math.max(1, maxActive / Math.max(1, pipelines.size()));
+    }
+
+    private void giveBack(PipelineDataSource pipelineDataSource) {
+        lock.lock();
+        try {
+            pipelineDataSource.active--;
+            active--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Connection wrap(final Connection connection, final PipelineDataSource pipelineDataSource) {
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class[] { Connection.class },
+            new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("close".equals(method.getName())) {
+                        if (closed.compareAndSet(false, true)) {
+                            try {
+                                connection.close();
+                            } finally {
+                                giveBack(pipelineDataSource);// 多次close只归还一次份额
+                            }
+                        }
+                        return null;
+                    }
+
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                }
+            });
+    }
+}
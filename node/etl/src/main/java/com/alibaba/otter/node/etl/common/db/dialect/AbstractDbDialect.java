@@ -21,7 +21,6 @@ import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.NestableRuntimeException;
@@ -38,10 +37,14 @@ import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
 import com.alibaba.otter.node.etl.common.datasource.DataSourceService;
+import com.alibaba.otter.shared.common.model.config.ConfigHelper;
+import com.alibaba.otter.shared.common.model.config.ModeValueFilter;
+import com.alibaba.otter.shared.common.model.config.data.DataMedia.ModeValue;
+import com.alibaba.otter.shared.common.utils.meta.DdlSchemaFilter;
+import com.alibaba.otter.shared.common.utils.meta.DdlTableNameFilter;
 import com.alibaba.otter.shared.common.utils.meta.DdlUtils;
 import com.alibaba.otter.shared.common.utils.meta.DdlUtilsFilter;
 import com.google.common.base.Function;
-import com.google.common.collect.OtterMigrateMap;
 
 /**
  * @author jianghang 2011-10-27 下午01:50:19
@@ -49,7 +52,8 @@ import com.google.common.collect.OtterMigrateMap;
  */
 public abstract class AbstractDbDialect implements DbDialect {
 
-    protected static final Logger      logger = LoggerFactory.getLogger(AbstractDbDialect.class);
+    protected static final Logger      logger                   = LoggerFactory.getLogger(AbstractDbDialect.class);
+    protected static final int         DEFAULT_TABLE_CACHE_SIZE = 10000;                                        // 最多缓存的table meta数量
     protected int                      databaseMajorVersion;
     protected int                      databaseMinorVersion;
     protected String                   databaseName;
@@ -58,7 +62,7 @@ public abstract class AbstractDbDialect implements DbDialect {
     protected JdbcTemplate             jdbcTemplate;
     protected TransactionTemplate      transactionTemplate;
     protected LobHandler               lobHandler;
-    protected Map<List<String>, Table> tables;
+    protected TableMetaCache           tables;
 
     public AbstractDbDialect(final JdbcTemplate jdbcTemplate, LobHandler lobHandler){
         this.jdbcTemplate = jdbcTemplate;
@@ -101,12 +105,11 @@ public abstract class AbstractDbDialect implements DbDialect {
     }
 
     public Table findTable(String schema, String table, boolean useCache) {
-        List<String> key = Arrays.asList(schema, table);
         if (useCache == false) {
-            tables.remove(key);
+            tables.invalidate(schema, table);
         }
 
-        return tables.get(key);
+        return tables.get(schema, table);
     }
 
     public Table findTable(String schema, String table) {
@@ -115,13 +118,74 @@ public abstract class AbstractDbDialect implements DbDialect {
 
     public void reloadTable(String schema, String table) {
         if (StringUtils.isNotEmpty(table)) {
-            tables.remove(Arrays.asList(schema, table));
+            tables.invalidate(schema, table);
+        } else if (StringUtils.isNotEmpty(schema)) {
+            // 没有表名，比如drop/create database，只清空对应schema下的table
+            tables.invalidateSchema(schema);
         } else {
             // 如果没有存在表名，则直接清空所有的table，重新加载
-            tables.clear();
+            tables.invalidateAll();
         }
     }
 
+    public int preloadTables(String namespace, String name) {
+        long version = tables.getVersion();
+        ModeValue namespaceMode = ConfigHelper.parseMode(namespace);
+        final ModeValueFilter namespaceFilter = ConfigHelper.makeModeValueFilter(namespaceMode, namespace);
+        ModeValue nameMode = ConfigHelper.parseMode(name);
+        final ModeValueFilter nameFilter = ConfigHelper.makeModeValueFilter(nameMode, name);
+        String tableNamePattern = ConfigHelper.makeSQLPattern(nameMode, name);
+
+        int count = 0;
+        try {
+            List<String> schemas = null;
+            if (namespaceMode.getMode().isSingle()) {
+                schemas = Arrays.asList(namespace);
+            } else {
+                schemas = DdlUtils.findSchemas(jdbcTemplate,
+                    ConfigHelper.makeSQLPattern(namespaceMode, namespace),
+                    new DdlSchemaFilter() {
+
+                        public boolean accept(String schemaName) {
+                            return namespaceFilter.accept(schemaName);
+                        }
+                    });
+            }
+
+            for (String schema : schemas) {
+                // 一个schema下匹配的table一次性查询出来，避免逐张表查询
+                DdlUtilsFilter filter = getDdlUtilsFilter(jdbcTemplate, schema, schema, tableNamePattern);
+                List<Table> result = DdlUtils.findTables(jdbcTemplate,
+                    schema,
+                    schema,
+                    tableNamePattern,
+                    filter,
+                    new DdlTableNameFilter() {
+
+                        public boolean accept(String catalogName, String schemaName, String tableName) {
+                            return nameFilter.accept(tableName);
+                        }
+                    });
+
+                for (Table table : result) {
+                    afterFindTable(table, jdbcTemplate, schema, schema, table.getName());
+                    if (tables.preload(schema, table, version)) {
+                        count++;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 预加载失败不影响使用，按需加载即可
+            logger.warn("preload tables [" + namespace + "." + name + "] failed", e);
+        }
+
+        return count;
+    }
+
+    public TableMetaCache getTableMetaCache() {
+        return tables;
+    }
+
     public String getName() {
         return databaseName;
     }
@@ -169,7 +233,7 @@ public abstract class AbstractDbDialect implements DbDialect {
     // ================================ helper method ==========================
 
     private void initTables(final JdbcTemplate jdbcTemplate) {
-        this.tables = OtterMigrateMap.makeSoftValueComputingMap(new Function<List<String>, Table>() {
+        this.tables = new TableMetaCache(new Function<List<String>, Table>() {
 
             public Table apply(List<String> names) {
                 Assert.isTrue(names.size() == 2);
@@ -189,7 +253,7 @@ public abstract class AbstractDbDialect implements DbDialect {
                         e);
                 }
             }
-        });
+        }, DEFAULT_TABLE_CACHE_SIZE);
     }
 
     protected DdlUtilsFilter getDdlUtilsFilter(JdbcTemplate jdbcTemplate, String catalogName, String schemaName,
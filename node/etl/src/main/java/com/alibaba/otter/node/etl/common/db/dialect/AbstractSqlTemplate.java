@@ -39,6 +39,36 @@ public abstract class AbstractSqlTemplate implements SqlTemplate {
         return sql.toString().intern();// 不使用intern，避免方法区内存消耗过多
     }
 
+    public String getBatchSelectSql(String schemaName, String tableName, String[] pkNames, String[] columnNames,
+                                    int batchSize) {
+        StringBuilder sql = new StringBuilder("select ");
+        String[] allColumns = new String[pkNames.length + columnNames.length];
+        System.arraycopy(pkNames, 0, allColumns, 0, pkNames.length);
+        System.arraycopy(columnNames, 0, allColumns, pkNames.length, columnNames.length);
+
+        int size = allColumns.length;
+        for (int i = 0; i < size; i++) {
+            sql.append(appendEscape(allColumns[i])).append((i + 1 < size) ? " , " : "");
+        }
+
+        sql.append(" from ").append(getFullName(schemaName, tableName)).append(" where ");
+        if (pkNames.length == 1) {
+            sql.append(appendEscape(pkNames[0])).append(" in (");
+            for (int i = 0; i < batchSize; i++) {
+                sql.append("?").append((i + 1 < batchSize) ? " , " : "");
+            }
+            sql.append(")");
+        } else {
+            // 联合主键不使用(a,b) in ((?,?))的写法，低版本mysql针对row constructor无法走索引
+            for (int i = 0; i < batchSize; i++) {
+                sql.append("(");
+                appendColumnEquals(sql, pkNames, "and");
+                sql.append(")").append((i + 1 < batchSize) ? " or " : "");
+            }
+        }
+        return sql.toString();// batchSize不固定，不做intern
+    }
+
     public String getUpdateSql(String schemaName, String tableName, String[] pkNames, String[] columnNames, boolean updatePks, String shardColumn) {
         StringBuilder sql = new StringBuilder("update " + getFullName(schemaName, tableName) + " set ");
         appendExcludeSingleShardColumnEquals(sql, columnNames, ",", updatePks, shardColumn);
@@ -67,5 +67,10 @@ public interface DbDialect {
 
     public void reloadTable(String schema, String table);
 
+    /**
+     * 按照DataMedia的namespace/name配置批量预加载table meta信息，返回加载的table数
+     */
+    public int preloadTables(String namespace, String name);
+
     public void destory();
 }
@@ -19,7 +19,9 @@ package com.alibaba.otter.node.etl.common.db.dialect;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -32,8 +34,12 @@ import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import com.alibaba.otter.node.common.config.ConfigClientService;
 import com.alibaba.otter.node.etl.common.datasource.DataSourceService;
+import com.alibaba.otter.shared.common.model.config.data.DataMedia;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaPair;
 import com.alibaba.otter.shared.common.model.config.data.db.DbMediaSource;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
 import com.google.common.base.Function;
 import com.google.common.collect.MigrateMap;
 import com.google.common.collect.OtterMigrateMap;
@@ -48,6 +54,7 @@ public class DbDialectFactory implements DisposableBean {
     private static final Logger                      logger = LoggerFactory.getLogger(DbDialectFactory.class);
     private DataSourceService                        dataSourceService;
     private DbDialectGenerator                       dbDialectGenerator;
+    private ConfigClientService                      configClientService;
 
     // 第一层pipelineId , 第二层DbMediaSource id
     private Map<Long, Map<DbMediaSource, DbDialect>> dialects;
@@ -62,7 +69,7 @@ public class DbDialectFactory implements DisposableBean {
                     public DbDialect apply(final DbMediaSource source) {
                         DataSource dataSource = dataSourceService.getDataSource(pipelineId, source);
                         final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
-                        return (DbDialect) jdbcTemplate.execute(new ConnectionCallback() {
+                        DbDialect dbDialect = (DbDialect) jdbcTemplate.execute(new ConnectionCallback() {
 
                             public Object doInConnection(Connection c) throws SQLException, DataAccessException {
                                 DatabaseMetaData meta = c.getMetaData();
@@ -90,6 +97,8 @@ public class DbDialectFactory implements DisposableBean {
                             }
                         });
 
+                        preloadTables(pipelineId, source, dbDialect);
+                        return dbDialect;
                     }
                 });
             }
@@ -131,6 +140,61 @@ public class DbDialectFactory implements DisposableBean {
         }
     }
 
+    /**
+     * table meta缓存的统计信息
+     */
+    public String tableMetaStatistics(Long pipelineId) {
+        Map<DbMediaSource, DbDialect> dialect = dialects.containsKey(pipelineId) ? dialects.get(pipelineId) : null;
+        if (dialect == null) {
+            return null;
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<DbMediaSource, DbDialect> entry : dialect.entrySet()) {
+            if (entry.getValue() instanceof AbstractDbDialect) {
+                result.append(entry.getKey().getName())
+                    .append(" : ")
+                    .append(((AbstractDbDialect) entry.getValue()).getTableMetaCache().statistics())
+                    .append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * pipeline启动时，预先加载当前数据源下所有DataMediaPair涉及的table meta
+     */
+    private void preloadTables(Long pipelineId, DbMediaSource source, DbDialect dbDialect) {
+        if (configClientService == null) {
+            return;
+        }
+
+        Pipeline pipeline = configClientService.findPipeline(pipelineId);
+        if (pipeline == null || !pipeline.getParameters().getUseTableMetaPreload()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        int count = 0;
+        Set<List<String>> loaded = new HashSet<List<String>>();
+        for (DataMediaPair pair : pipeline.getPairs()) {
+            for (DataMedia media : new DataMedia[] { pair.getSource(), pair.getTarget() }) {
+                if (source.equals(media.getSource())
+                    && loaded.add(Arrays.asList(media.getNamespace(), media.getName()))) {
+                    count += dbDialect.preloadTables(media.getNamespace(), media.getName());
+                }
+            }
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info(String.format("preload %d tables for pipeline[%d] , source[%s] , cost %d ms",
+                count,
+                pipelineId,
+                source.getName(),
+                System.currentTimeMillis() - start));
+        }
+    }
+
     // =============== setter / getter =================
 
     public void setDataSourceService(DataSourceService dataSourceService) {
@@ -141,4 +205,8 @@ public class DbDialectFactory implements DisposableBean {
         this.dbDialectGenerator = dbDialectGenerator;
     }
 
+    public void setConfigClientService(ConfigClientService configClientService) {
+        this.configClientService = configClientService;
+    }
+
 }
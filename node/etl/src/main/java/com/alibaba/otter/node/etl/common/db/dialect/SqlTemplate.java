@@ -26,6 +26,12 @@ public interface SqlTemplate {
 
     public String getSelectSql(String schemaName, String tableName, String[] pkNames, String[] columnNames);
 
+    /**
+     * 获取批量反查的sql，一次查询batchSize组主键，返回结果中主键字段在前，columnNames在后
+     */
+    public String getBatchSelectSql(String schemaName, String tableName, String[] pkNames, String[] columnNames,
+                                    int batchSize);
+
     public String getUpdateSql(String schemaName, String tableName, String[] pkNames, String[] columnNames, boolean updatePks, String shardColumn);
 
     public String getDeleteSql(String schemaName, String tableName, String[] pkNames);
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.common.db.dialect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.NestableRuntimeException;
+import org.apache.ddlutils.model.Table;
+
+import com.google.common.base.Function;
+
+/**
+ * <pre>
+ * table meta信息的缓存，替换原先的soft value computing map
+ * 
+ * 1. 强引用+LRU淘汰，不会因为GC压力被整体清空，最多缓存maxSize张表
+ * 2. 带版本号，失效操作会推进版本，失效之前发起的加载结果不会再写入缓存，避免ddl之后缓存旧的meta
+ * 3. 同一张表并发miss时只加载一次
+ * 4. 记录命中/未命中/加载耗时等统计信息
+ * </pre>
+ * 
+ * @author jianghang
+ */
+public class TableMetaCache {
+
+    private final Function<List<String>, Table>                  loader;
+    private final int                                            maxSize;
+    private final Map<List<String>, Table>                       tables;
+    private final ConcurrentMap<List<String>, FutureTask<Table>> loadings      = new ConcurrentHashMap<List<String>, FutureTask<Table>>();
+    private final AtomicLong                                     version       = new AtomicLong(0);
+    private final AtomicLong                                     hitCount      = new AtomicLong(0);
+    private final AtomicLong                                     missCount     = new AtomicLong(0);
+    private final AtomicLong                                     loadCount     = new AtomicLong(0);
+    private final AtomicLong                                     loadFailCount = new AtomicLong(0);
+    private final AtomicLong                                     loadTime      = new AtomicLong(0); // 累计加载耗时，单位ms
+    private final AtomicLong                                     preloadCount  = new AtomicLong(0);
+    private final AtomicLong                                     evictionCount = new AtomicLong(0);
+    private final AtomicLong                                     invalidCount  = new AtomicLong(0);
+
+    public TableMetaCache(Function<List<String>, Table> loader, final int maxSize){
+        this.loader = loader;
+        this.maxSize = maxSize;
+        this.tables = new LinkedHashMap<List<String>, Table>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 2380476305329405539L;
+
+            protected boolean removeEldestEntry(Map.Entry<List<String>, Table> eldest) {
+                if (size() > maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Table get(final String schema, final String table) {
+        final List<String> key = Arrays.asList(schema, table);
+        Table result = null;
+        synchronized (tables) {
+            result = tables.get(key);
+        }
+
+        if (result != null) {
+            hitCount.incrementAndGet();
+            return result;
+        }
+
+        missCount.incrementAndGet();
+        FutureTask<Table> task = loadings.get(key);
+        if (task == null) {
+            final long loadVersion = version.get();
+            FutureTask<Table> newTask = new FutureTask<Table>(new Callable<Table>() {
+
+                public Table call() throws Exception {
+                    long start = System.currentTimeMillis();
+                    try {
+                        Table table = loader.apply(key);
+                        put(key, table, loadVersion, true);
+                        return table;
+                    } catch (RuntimeException e) {
+                        loadFailCount.incrementAndGet();
+                        throw e;
+                    } finally {
+                        loadCount.incrementAndGet();
+                        loadTime.addAndGet(System.currentTimeMillis() - start);
+                    }
+                }
+            });
+
+            task = loadings.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                try {
+                    newTask.run();
+                } finally {
+                    loadings.remove(key, newTask);
+                }
+            }
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NestableRuntimeException("find table [" + schema + "." + table + "] interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new NestableRuntimeException("find table [" + schema + "." + table + "] error", e.getCause());
+        }
+    }
+
+    /**
+     * 预加载的table，已存在或者缓存已满时忽略，返回是否写入了缓存
+     */
+    public boolean preload(String schema, Table table, long loadVersion) {
+        boolean result = put(Arrays.asList(schema, table.getName()), table, loadVersion, false);
+        if (result) {
+            preloadCount.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * 当前版本号，预加载前获取，加载期间出现失效操作时放弃写入
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void invalidate(String schema, String table) {
+        List<String> key = Arrays.asList(schema, table);
+        synchronized (tables) {
+            version.incrementAndGet();
+            tables.remove(key);
+        }
+        loadings.remove(key);
+        invalidCount.incrementAndGet();
+    }
+
+    /**
+     * 失效某个schema下的所有table，比如drop database
+     */
+    public void invalidateSchema(String schema) {
+        synchronized (tables) {
+            version.incrementAndGet();
+            Iterator<List<String>> iter = tables.keySet().iterator();
+            while (iter.hasNext()) {
+                if (StringUtils.equalsIgnoreCase(iter.next().get(0), schema)) {
+                    iter.remove();
+                }
+            }
+        }
+        loadings.clear();
+        invalidCount.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        synchronized (tables) {
+            version.incrementAndGet();
+            tables.clear();
+        }
+        loadings.clear();
+        invalidCount.incrementAndGet();
+    }
+
+    public int size() {
+        synchronized (tables) {
+            return tables.size();
+        }
+    }
+
+    public List<List<String>> keys() {
+        synchronized (tables) {
+            return new ArrayList<List<String>>(tables.keySet());
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    public long getLoadTime() {
+        return loadTime.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public String statistics() {
+        long hit = hitCount.get();
+        long miss = missCount.get();
+        long load = loadCount.get();
+        return String.format("size:%d/%d , hit:%d , miss:%d , hitRate:%.2f%% , load:%d , loadFail:%d , avgLoadTime:%dms , preload:%d , eviction:%d , invalid:%d",
+            size(),
+            maxSize,
+            hit,
+            miss,
+            (hit + miss) == 0 ? 0d : hit * 100d / (hit + miss),
+            load,
+            loadFailCount.get(),
+            load == 0 ? 0 : loadTime.get() / load,
+            preloadCount.get(),
+            evictionCount.get(),
+            invalidCount.get());
+    }
+
+    private boolean put(List<String> key, Table table, long loadVersion, boolean overwrite) {
+        synchronized (tables) {
+            if (version.get() != loadVersion) {
+                return false; // 加载期间出现了失效操作，结果可能是旧的
+            }
+            if (!overwrite && (tables.containsKey(key) || tables.size() >= maxSize)) {
+                return false;
+            }
+
+            tables.put(key, table);
+            return true;
+        }
+    }
+}
@@ -30,6 +30,19 @@ public class MysqlSqlTemplate extends AbstractSqlTemplate {
 
     public String getMergeSql(String schemaName, String tableName, String[] pkNames, String[] columnNames,
                               String[] viewColumnNames, boolean includePks, String shardColumn) {
+        return buildMergeSql(schemaName, tableName, pkNames, columnNames, includePks, shardColumn, 1).intern();// intern优化，避免出现大量相同的字符串
+    }
+
+    /**
+     * 获取多值的mergeSql，一条sql中包含rows组values，参数按行依次排列，每行的字段顺序和{@linkplain #getMergeSql}一致
+     */
+    public String getMultiValuesMergeSql(String schemaName, String tableName, String[] pkNames, String[] columnNames,
+                                         boolean includePks, String shardColumn, int rows) {
+        return buildMergeSql(schemaName, tableName, pkNames, columnNames, includePks, shardColumn, rows);// rows不固定，不做intern
+    }
+
+    private String buildMergeSql(String schemaName, String tableName, String[] pkNames, String[] columnNames,
+                                 boolean includePks, String shardColumn, int rows) {
         StringBuilder sql = new StringBuilder("insert into " + getFullName(schemaName, tableName) + "(");
         int size = columnNames.length;
         for (int i = 0; i < size; i++) {
@@ -40,16 +53,19 @@ public class MysqlSqlTemplate extends AbstractSqlTemplate {
             sql.append(appendEscape(pkNames[i])).append((i + 1 < size) ? " , " : "");
         }
 
-        sql.append(") values (");
-        size = columnNames.length;
-        for (int i = 0; i < size; i++) {
-            sql.append("?").append(" , ");
-        }
-        size = pkNames.length;
-        for (int i = 0; i < size; i++) {
-            sql.append("?").append((i + 1 < size) ? " , " : "");
+        sql.append(") values ");
+        for (int row = 0; row < rows; row++) {
+            sql.append("(");
+            size = columnNames.length;
+            for (int i = 0; i < size; i++) {
+                sql.append("?").append(" , ");
+            }
+            size = pkNames.length;
+            for (int i = 0; i < size; i++) {
+                sql.append("?").append((i + 1 < size) ? " , " : "");
+            }
+            sql.append(")").append((row + 1 < rows) ? " , " : "");
         }
-        sql.append(")");
         sql.append(" on duplicate key update ");
 
         size = columnNames.length;
@@ -79,7 +95,7 @@ public class MysqlSqlTemplate extends AbstractSqlTemplate {
             }
         }
 
-        return sql.toString().intern();// intern优化，避免出现大量相同的字符串
+        return sql.toString();
     }
 
     protected String appendEscape(String columnName) {
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.common.pipe.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.alibaba.otter.node.common.config.ConfigClientService;
+import com.alibaba.otter.node.common.statistics.StatisticsClientService;
+import com.alibaba.otter.shared.common.model.statistics.pipe.PipeChooseStat;
+import com.alibaba.otter.shared.common.utils.thread.NamedThreadFactory;
+import com.google.common.base.Function;
+import com.google.common.collect.OtterMigrateMap;
+
+/**
+ * <pre>
+ * 基于实际传输耗时的RPC/HTTP自适应选择
+ *
+ * 1. 每个pipeline + 对端节点针对RPC/HTTP分别维护put(发送端序列化/写文件)和get(接收端拉取+反序列化)两个耗时模型，load节点负载均衡时各自独立
+ * 2. 耗时模型为 cost = latency + size * costPerByte，基于带衰减的最小二乘在线拟合，越新的样本权重越高
+ * 3. get耗时由接收端测量，rpc拉取时顺带回传，http拉取后单独回传给发送端
+ * 4. 两种pipe都有足够样本时选择预估耗时更低的，否则按固定阀值选择，并定期对缺少样本/样本过期的pipe做一次探测
+ * 5. 发送端定期通过统计通道上报选择次数和耗时模型
+ * </pre>
+ *
+ * @author jianghang
+ */
+public class AdaptivePipeChooser implements InitializingBean, DisposableBean {
+
+    private static final Logger                 logger                  = LoggerFactory.getLogger(AdaptivePipeChooser.class);
+    private static final double                 DECAY                   = 0.9;                                                // 每个新样本的衰减系数
+    private static final int                    MIN_SAMPLES             = 3;                                                  // 参与比较的最少样本数
+    private long                                rpcMaxSize              = 16 * 1024 * 1024L;                                  // 超过该大小不走rpc，避免内存压力
+    private int                                 probeInterval           = 32;                                                 // 每隔多少个batch做一次探测
+    private long                                expireTime              = 10 * 60 * 1000L;                                    // 样本过期时间，10分钟
+    private long                                statInterval            = 60 * 1000L;                                         // 统计信息的上报间隔
+    private Map<Long, Map<Long, PipelineCosts>> costs;                                                                        // pipelineId -> 对端nid -> 耗时模型
+    private ConfigClientService                 configClientService;
+    private StatisticsClientService             statisticsClientService;
+    private ScheduledExecutorService            scheduler;
+    private Date                                statTime                = new Date();
+    private volatile boolean                    statReported            = false;                                              // 上一次是否上报过统计
+
+    public AdaptivePipeChooser(){
+        costs = OtterMigrateMap.makeComputingMap(new Function<Long, Map<Long, PipelineCosts>>() {
+
+            public Map<Long, PipelineCosts> apply(Long pipelineId) {
+                return OtterMigrateMap.makeComputingMap(new Function<Long, PipelineCosts>() {
+
+                    public PipelineCosts apply(Long nid) {
+                        return new PipelineCosts();
+                    }
+                });
+            }
+        });
+    }
+
+    public void afterPropertiesSet() throws Exception {
+        if (statisticsClientService != null && statInterval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Otter-PipeChoose-Stat"));
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+
+                public void run() {
+                    try {
+                        sendStats();
+                    } catch (Throwable e) {
+                        logger.warn("send pipe choose stats failed", e);
+                    }
+                }
+            }, statInterval, statInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void destroy() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 返回true代表选择rpc，false代表选择http
+     *
+     * @param nid 接收数据的节点
+     * @param sizeThresold 样本不足时使用的固定阀值
+     */
+    public boolean chooseRpc(Long pipelineId, Long nid, long size, long sizeThresold) {
+        PipelineCosts pipelineCosts = costs.get(pipelineId).get(nid);
+        if (size > rpcMaxSize) {
+            pipelineCosts.httpCount.incrementAndGet();
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean rpcReady = pipelineCosts.rpcGet.isReady(now, expireTime);
+        boolean httpReady = pipelineCosts.httpGet.isReady(now, expireTime);
+        boolean rpc;
+        if (rpcReady && httpReady) {
+            rpc = pipelineCosts.predictRpc(size) <= pipelineCosts.predictHttp(size);
+        } else {
+            rpc = size <= sizeThresold;
+            // 对缺少样本的pipe进行探测
+            if (pipelineCosts.batchCount.incrementAndGet() % probeInterval == 0 && (rpc ? !httpReady : !rpcReady)) {
+                rpc = !rpc;
+                pipelineCosts.probeCount.incrementAndGet();
+            }
+        }
+
+        (rpc ? pipelineCosts.rpcCount : pipelineCosts.httpCount).incrementAndGet();
+        return rpc;
+    }
+
+    /**
+     * 发送端记录put耗时
+     *
+     * @param nid 接收数据的节点
+     */
+    public void recordPut(Long pipelineId, Long nid, boolean rpc, long size, long elapsed) {
+        PipelineCosts pipelineCosts = costs.get(pipelineId).get(nid);
+        (rpc ? pipelineCosts.rpcPut : pipelineCosts.httpPut).add(size, elapsed);
+    }
+
+    /**
+     * 接收端记录get耗时
+     *
+     * @param nid 发送数据的节点
+     */
+    public void recordGet(Long pipelineId, Long nid, boolean rpc, long size, long elapsed) {
+        PipelineCosts pipelineCosts = costs.get(pipelineId).get(nid);
+        (rpc ? pipelineCosts.rpcGet : pipelineCosts.httpGet).add(size, elapsed);
+    }
+
+    /**
+     * 接收端的get耗时模型，用于回传给发送端
+     *
+     * @param nid 发送数据的节点
+     */
+    public double[] getCosts(Long pipelineId, Long nid, boolean rpc) {
+        PipelineCosts pipelineCosts = costs.get(pipelineId).get(nid);
+        return (rpc ? pipelineCosts.rpcGet : pipelineCosts.httpGet).toArray();
+    }
+
+    /**
+     * 发送端合并接收端回传的get耗时模型
+     *
+     * @param nid 回传耗时的接收节点
+     */
+    public void mergeCosts(Long pipelineId, Long nid, double[] rpcCosts, double[] httpCosts) {
+        PipelineCosts pipelineCosts = costs.get(pipelineId).get(nid);
+        pipelineCosts.rpcGet.fromArray(rpcCosts);
+        pipelineCosts.httpGet.fromArray(httpCosts);
+    }
+
+    public String statistics(Long pipelineId) {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<Long, PipelineCosts> entry : costs.get(pipelineId).entrySet()) {
+            PipelineCosts pipelineCosts = entry.getValue();
+            builder.append("node[").append(entry.getKey()).append("]\n");
+            builder.append("rpc[count=").append(pipelineCosts.rpcCount.get());
+            builder.append(", put=").append(pipelineCosts.rpcPut);
+            builder.append(", get=").append(pipelineCosts.rpcGet).append("]\n");
+            builder.append("http[count=").append(pipelineCosts.httpCount.get());
+            builder.append(", put=").append(pipelineCosts.httpPut);
+            builder.append(", get=").append(pipelineCosts.httpGet).append("]\n");
+            builder.append("probe=").append(pipelineCosts.probeCount.get()).append("\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 生成统计周期内发送过数据的pipeline + 接收节点的统计信息
+     */
+    public List<PipeChooseStat> stats() {
+        List<PipeChooseStat> result = new ArrayList<PipeChooseStat>();
+        Date now = new Date();
+        for (Map.Entry<Long, Map<Long, PipelineCosts>> pipeline : costs.entrySet()) {
+            for (Map.Entry<Long, PipelineCosts> node : pipeline.getValue().entrySet()) {
+                PipeChooseStat stat = node.getValue().snapshot();
+                if (stat == null) {
+                    continue;
+                }
+
+                stat.setPipelineId(pipeline.getKey());
+                stat.setTargetNid(node.getKey());
+                stat.setStartTime(statTime);
+                stat.setEndTime(now);
+                result.add(stat);
+            }
+        }
+        statTime = now;
+        return result;
+    }
+
+    private void sendStats() {
+        List<PipeChooseStat> stats = stats();
+        if (!stats.isEmpty() || statReported) {
+            Long nid = configClientService.currentNode().getId();
+            for (PipeChooseStat stat : stats) {
+                stat.setNid(nid);
+            }
+            // 统计为空时也需要上报一次，清理manager上之前的快照
+            statisticsClientService.sendPipeChooseStats(stats);
+            statReported = !stats.isEmpty();
+        }
+    }
+
+    private static class PipelineCosts {
+
+        private CostModel  rpcPut     = new CostModel();
+        private CostModel  rpcGet     = new CostModel();
+        private CostModel  httpPut    = new CostModel();
+        private CostModel  httpGet    = new CostModel();
+        private AtomicLong batchCount = new AtomicLong(0);
+        private AtomicLong rpcCount   = new AtomicLong(0);
+        private AtomicLong httpCount  = new AtomicLong(0);
+        private AtomicLong probeCount = new AtomicLong(0);
+        private long       lastRpc    = 0;                // 上一次上报时的计数，只由上报线程访问
+        private long       lastHttp   = 0;
+        private long       lastProbe  = 0;
+
+        double predictRpc(long size) {
+            return rpcPut.predict(size) + rpcGet.predict(size);
+        }
+
+        double predictHttp(long size) {
+            return httpPut.predict(size) + httpGet.predict(size);
+        }
+
+        /**
+         * 返回上一次上报之后的统计，没有发送过数据时返回null
+         */
+        PipeChooseStat snapshot() {
+            long rpc = rpcCount.get();
+            long http = httpCount.get();
+            long probe = probeCount.get();
+            if (rpc == lastRpc && http == lastHttp) {
+                return null;
+            }
+
+            PipeChooseStat stat = new PipeChooseStat();
+            stat.setRpcCount(rpc - lastRpc);
+            stat.setHttpCount(http - lastHttp);
+            stat.setProbeCount(probe - lastProbe);
+            stat.setRpcLatency(predictRpc(0));
+            stat.setRpcCostPerKB(predictRpc(1024) - predictRpc(0));
+            stat.setHttpLatency(predictHttp(0));
+            stat.setHttpCostPerKB(predictHttp(1024) - predictHttp(0));
+            lastRpc = rpc;
+            lastHttp = http;
+            lastProbe = probe;
+            return stat;
+        }
+    }
+
+    /**
+     * 带衰减的线性回归 elapsed = latency + size * costPerByte
+     */
+    private static class CostModel {
+
+        private double weight;     // 衰减后的样本权重和
+        private double sumX;
+        private double sumY;
+        private double sumXX;
+        private double sumXY;
+        private int    samples;
+        private long   lastUpdate;
+
+        synchronized void add(long size, long elapsed) {
+            weight = weight * DECAY + 1;
+            sumX = sumX * DECAY + size;
+            sumY = sumY * DECAY + elapsed;
+            sumXX = sumXX * DECAY + (double) size * size;
+            sumXY = sumXY * DECAY + (double) size * elapsed;
+            samples++;
+            lastUpdate = System.currentTimeMillis();
+        }
+
+        synchronized boolean isReady(long now, long expireTime) {
+            return samples >= MIN_SAMPLES && now - lastUpdate <= expireTime;
+        }
+
+        synchronized double predict(long size) {
+            if (weight == 0) {
+                return 0;
+            }
+
+            double costPerByte = costPerByte();
+            double latency = Math.max(0, (sumY - costPerByte * sumX) / weight);
+            return latency + costPerByte * size;
+        }
+
+        private double costPerByte() {
+            double variance = weight * sumXX - sumX * sumX;
+            if (variance > 1e-6 * weight * sumXX) {
+                return Math.max(0, (weight * sumXY - sumX * sumY) / variance);
+            } else if (sumX > 0) {
+                // 样本大小基本一致，无法拟合出latency，全部按吞吐量计算
+                return sumY / sumX;
+            } else {
+                return 0;
+            }
+        }
+
+        synchronized double[] toArray() {
+            // 只传递样本的时间间隔，避免两端时钟不一致
+            long age = lastUpdate > 0 ? System.currentTimeMillis() - lastUpdate : -1;
+            return new double[] { weight, sumX, sumY, sumXX, sumXY, samples, age };
+        }
+
+        synchronized void fromArray(double[] values) {
+            if (values == null || values.length < 7) {
+                return;
+            }
+
+            weight = values[0];
+            sumX = values[1];
+            sumY = values[2];
+            sumXX = values[3];
+            sumXY = values[4];
+            samples = (int) values[5];
+            lastUpdate = values[6] >= 0 ? System.currentTimeMillis() - (long) values[6] : 0;
+        }
+
+        public synchronized String toString() {
+            if (weight == 0) {
+                return "none";
+            }
+            return String.format("{samples=%d, latency=%.1fms, costPerKB=%.3fms}",
+                samples,
+                predict(0),
+                costPerByte() * 1024);
+        }
+    }
+
+    // ================ setter / getter ===============
+
+    public void setRpcMaxSize(long rpcMaxSize) {
+        this.rpcMaxSize = rpcMaxSize;
+    }
+
+    public void setProbeInterval(int probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    public void setExpireTime(long expireTime) {
+        this.expireTime = expireTime;
+    }
+
+    public void setStatInterval(long statInterval) {
+        this.statInterval = statInterval;
+    }
+
+    public void setConfigClientService(ConfigClientService configClientService) {
+        this.configClientService = configClientService;
+    }
+
+    public void setStatisticsClientService(StatisticsClientService statisticsClientService) {
+        this.statisticsClientService = statisticsClientService;
+    }
+}
@@ -0,0 +1,674 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.common.pipe.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.alibaba.otter.shared.common.model.config.channel.ChannelParameter.SyncConsistency;
+import com.alibaba.otter.shared.common.model.config.channel.ChannelParameter.SyncMode;
+import com.alibaba.otter.shared.etl.model.EventColumn;
+import com.alibaba.otter.shared.etl.model.EventData;
+import com.alibaba.otter.shared.etl.model.EventType;
+import com.alibaba.otter.shared.etl.model.Identity;
+import com.alibaba.otter.shared.etl.model.RowBatch;
+
+/**
+ * <pre>
+ * RowBatch的列式二进制编码，用于http/rpc pipe之间的数据传输
+ *
+ * 格式(version 1):
+ * 1. magic(4字节，为负数，可以和老的protobuf格式开头的长度字段区分) + version
+ * 2. 字符串字典：schema/table/字段名/eventType等重复出现的字符串只输出一次
+ * 3. 表字典：每张表一份字段定义(name/type/index/isKey)，以及该表出现过的字段组合(layout)
+ * 4. segment：连续的相同表+相同layout的记录组成一个segment，按列输出
+ *    a. 行属性向量：eventType/executeTime(差值)/size/syncMode/syncConsistency/sql等
+ *    b. 字段向量：每个字段一个null位图+update位图，值如果全部为规范的整数则按varlong输出，否则按字符串输出
+ *
+ * 解码时直接构造EventData，不再产生中间的protobuf对象，记录顺序和编码前保持一致
+ * </pre>
+ *
+ * @author jianghang
+ */
+public class ColumnarRowBatchCodec {
+
+    public static final int      MAGIC         = 0xC01DBA7C;
+    public static final byte     VERSION       = 1;
+
+    private static final Charset UTF_8         = Charset.forName("UTF-8");
+    private static final byte    VALUE_STRING  = 0;
+    private static final byte    VALUE_LONG    = 1;
+    private static final int     GROUP_KEYS    = 0;
+    private static final int     GROUP_OLDKEYS = 1;
+    private static final int     GROUP_COLUMNS = 2;
+
+    public static byte[] encode(RowBatch rowBatch) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        encode(rowBatch, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * 输出rowBatch，不关闭output
+     */
+    public static void encode(RowBatch rowBatch, OutputStream output) throws IOException {
+        Dictionary dictionary = new Dictionary();
+        List<Segment> segments = new ArrayList<Segment>();
+        Segment segment = null;
+        for (EventData eventData : rowBatch.getDatas()) {
+            TableDef table = dictionary.table(eventData);
+            int layout = table.layout(dictionary, eventData);
+            if (segment == null || segment.table != table || segment.layout != layout) {
+                segment = new Segment(table, layout);
+                segments.add(segment);
+            }
+            segment.datas.add(eventData);
+        }
+
+        // 先输出数据段，字典在数据段构造完成后才能确定
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream bodyOut = new DataOutputStream(body);
+        writeVarInt(bodyOut, segments.size());
+        for (Segment seg : segments) {
+            writeSegment(bodyOut, dictionary, seg);
+        }
+        bodyOut.flush();
+
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        Identity identity = rowBatch.getIdentity();
+        writeVarLong(out, identity.getChannelId());
+        writeVarLong(out, identity.getPipelineId());
+        writeVarLong(out, identity.getProcessId());
+        // 字符串字典
+        writeVarInt(out, dictionary.strings.size());
+        for (String str : dictionary.strings) {
+            writeString(out, str);
+        }
+        // 表字典
+        writeVarInt(out, dictionary.tables.size());
+        for (TableDef table : dictionary.tables) {
+            writeVarLong(out, zigzag(table.pairId));
+            writeVarLong(out, zigzag(table.tableId));
+            writeVarInt(out, table.schemaName);
+            writeVarInt(out, table.tableName);
+            writeVarInt(out, table.columns.size());
+            for (ColumnDef column : table.columns) {
+                writeVarInt(out, column.name);
+                writeVarLong(out, zigzag(column.type));
+                writeVarLong(out, zigzag(column.index));
+                out.writeBoolean(column.isKey);
+            }
+            writeVarInt(out, table.layouts.size());
+            for (int[][] layout : table.layouts) {
+                for (int[] group : layout) {
+                    writeVarInt(out, group.length);
+                    for (int ref : group) {
+                        writeVarInt(out, ref);
+                    }
+                }
+            }
+        }
+        body.writeTo(out);
+        out.flush();
+    }
+
+    public static RowBatch decode(byte[] data) throws IOException {
+        return decode(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * 从input中读取一个rowBatch，只读取rowBatch自身的字节，不关闭input
+     */
+    public static RowBatch decode(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("unknow magic : " + Integer.toHexString(magic));
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("unsupport version : " + version);
+        }
+
+        Identity identity = new Identity();
+        identity.setChannelId(readVarLong(in));
+        identity.setPipelineId(readVarLong(in));
+        identity.setProcessId(readVarLong(in));
+        String[] strings = new String[readVarInt(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(in);
+        }
+
+        TableDef[] tables = new TableDef[readVarInt(in)];
+        for (int i = 0; i < tables.length; i++) {
+            TableDef table = new TableDef(unzigzag(readVarLong(in)),
+                unzigzag(readVarLong(in)),
+                readVarInt(in),
+                readVarInt(in));
+            int columnSize = readVarInt(in);
+            for (int j = 0; j < columnSize; j++) {
+                table.columns.add(new ColumnDef(readVarInt(in),
+                    (int) unzigzag(readVarLong(in)),
+                    (int) unzigzag(readVarLong(in)),
+                    in.readBoolean()));
+            }
+            int layoutSize = readVarInt(in);
+            for (int j = 0; j < layoutSize; j++) {
+                int[][] layout = new int[3][];
+                for (int k = 0; k < layout.length; k++) {
+                    layout[k] = new int[readVarInt(in)];
+                    for (int m = 0; m < layout[k].length; m++) {
+                        layout[k][m] = readVarInt(in);
+                    }
+                }
+                table.layouts.add(layout);
+            }
+            tables[i] = table;
+        }
+
+        RowBatch rowBatch = new RowBatch();
+        rowBatch.setIdentity(identity);
+        int segmentSize = readVarInt(in);
+        for (int i = 0; i < segmentSize; i++) {
+            readSegment(in, strings, tables, rowBatch);
+        }
+        return rowBatch;
+    }
+
+    // ======================== segment ===================
+
+    private static void writeSegment(DataOutputStream out, Dictionary dictionary, Segment segment) throws IOException {
+        List<EventData> datas = segment.datas;
+        int size = datas.size();
+        writeVarInt(out, segment.table.id);
+        writeVarInt(out, segment.layout);
+        writeVarInt(out, size);
+
+        // 行属性向量
+        long executeTime = 0;
+        for (EventData data : datas) {
+            writeVarInt(out, dictionary.string(data.getEventType().getValue()));
+        }
+        for (EventData data : datas) {
+            writeVarLong(out, zigzag(data.getExecuteTime() - executeTime));
+            executeTime = data.getExecuteTime();
+        }
+        for (EventData data : datas) {
+            writeVarLong(out, zigzag(data.getSize()));
+        }
+        for (EventData data : datas) {
+            writeVarInt(out, dictionary.string(data.getSyncMode() == null ? null : data.getSyncMode().getValue()));
+        }
+        for (EventData data : datas) {
+            writeVarInt(out, dictionary.string(data.getSyncConsistency() == null ? null : data.getSyncConsistency()
+                .getValue()));
+        }
+        boolean[] bits = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            bits[i] = datas.get(i).isRemedy();
+        }
+        writeBitmap(out, bits);
+        for (int i = 0; i < size; i++) {
+            bits[i] = datas.get(i).isWithoutSchema();
+        }
+        writeBitmap(out, bits);
+        writeOptionalStrings(out, datas, bits, 0);
+        writeOptionalStrings(out, datas, bits, 1);
+        writeOptionalStrings(out, datas, bits, 2);
+
+        // 字段向量
+        int[][] layout = segment.table.layouts.get(segment.layout);
+        for (int group = 0; group < layout.length; group++) {
+            for (int position = 0; position < layout[group].length; position++) {
+                writeColumnVector(out, datas, group, position);
+            }
+        }
+    }
+
+    private static void readSegment(DataInputStream in, String[] strings, TableDef[] tables, RowBatch rowBatch)
+                                                                                                              throws IOException {
+        TableDef table = tables[readVarInt(in)];
+        int[][] layout = table.layouts.get(readVarInt(in));
+        int size = readVarInt(in);
+        EventData[] datas = new EventData[size];
+        String schemaName = stringOf(strings, table.schemaName);
+        String tableName = stringOf(strings, table.tableName);
+        for (int i = 0; i < size; i++) {
+            EventData data = new EventData();
+            data.setPairId(table.pairId);
+            data.setTableId(table.tableId);
+            // 和protobuf格式保持一致，空值解析为空字符
+            data.setSchemaName(schemaName == null ? "" : schemaName);
+            data.setTableName(tableName == null ? "" : tableName);
+            data.setEventType(EventType.valuesOf(stringOf(strings, readVarInt(in))));
+            datas[i] = data;
+        }
+
+        long executeTime = 0;
+        for (EventData data : datas) {
+            executeTime += unzigzag(readVarLong(in));
+            data.setExecuteTime(executeTime);
+        }
+        for (EventData data : datas) {
+            data.setSize(unzigzag(readVarLong(in)));
+        }
+        for (EventData data : datas) {
+            String syncMode = stringOf(strings, readVarInt(in));
+            if (syncMode != null) {
+                data.setSyncMode(SyncMode.valuesOf(syncMode));
+            }
+        }
+        for (EventData data : datas) {
+            String syncConsistency = stringOf(strings, readVarInt(in));
+            if (syncConsistency != null) {
+                data.setSyncConsistency(SyncConsistency.valuesOf(syncConsistency));
+            }
+        }
+        boolean[] bits = readBitmap(in, size);
+        for (int i = 0; i < size; i++) {
+            datas[i].setRemedy(bits[i]);
+        }
+        bits = readBitmap(in, size);
+        for (int i = 0; i < size; i++) {
+            datas[i].setWithoutSchema(bits[i]);
+        }
+        readOptionalStrings(in, datas, 0);
+        readOptionalStrings(in, datas, 1);
+        readOptionalStrings(in, datas, 2);
+
+        for (EventData data : datas) {
+            data.setKeys(new ArrayList<EventColumn>(layout[GROUP_KEYS].length));
+            data.setOldKeys(new ArrayList<EventColumn>(layout[GROUP_OLDKEYS].length));
+            data.setColumns(new ArrayList<EventColumn>(layout[GROUP_COLUMNS].length));
+        }
+        for (int group = 0; group < layout.length; group++) {
+            for (int position = 0; position < layout[group].length; position++) {
+                readColumnVector(in, strings, table.columns.get(layout[group][position]), datas, group);
+            }
+        }
+
+        for (EventData data : datas) {
+            rowBatch.merge(data);
+        }
+    }
+
+    private static void writeColumnVector(DataOutputStream out, List<EventData> datas, int group, int position)
+                                                                                                              throws IOException {
+        int size = datas.size();
+        boolean[] nulls = new boolean[size];
+        boolean[] updates = new boolean[size];
+        String[] values = new String[size];
+        boolean allLong = true;
+        for (int i = 0; i < size; i++) {
+            EventColumn column = columns(datas.get(i), group).get(position);
+            nulls[i] = column.isNull();
+            updates[i] = column.isUpdate();
+            if (!nulls[i]) {
+                // 和protobuf格式保持一致，非null字段的空值解析为空字符
+                values[i] = column.getColumnValue() == null ? "" : column.getColumnValue();
+                allLong &= isCanonicalLong(values[i]);
+            }
+        }
+
+        writeBitmap(out, nulls);
+        writeBitmap(out, updates);
+        out.writeByte(allLong ? VALUE_LONG : VALUE_STRING);
+        for (int i = 0; i < size; i++) {
+            if (!nulls[i]) {
+                if (allLong) {
+                    writeVarLong(out, zigzag(Long.parseLong(values[i])));
+                } else {
+                    writeString(out, values[i]);
+                }
+            }
+        }
+    }
+
+    private static void readColumnVector(DataInputStream in, String[] strings, ColumnDef def, EventData[] datas,
+                                         int group) throws IOException {
+        int size = datas.length;
+        boolean[] nulls = readBitmap(in, size);
+        boolean[] updates = readBitmap(in, size);
+        byte valueType = in.readByte();
+        String name = stringOf(strings, def.name);
+        for (int i = 0; i < size; i++) {
+            EventColumn column = new EventColumn();
+            column.setColumnName(name);
+            column.setColumnType(def.type);
+            column.setIndex(def.index);
+            column.setKey(def.isKey);
+            column.setNull(nulls[i]);
+            column.setUpdate(updates[i]);
+            if (!nulls[i]) {
+                if (valueType == VALUE_LONG) {
+                    column.setColumnValue(String.valueOf(unzigzag(readVarLong(in))));
+                } else {
+                    column.setColumnValue(readString(in));
+                }
+            }
+            columns(datas[i], group).add(column);
+        }
+    }
+
+    private static void writeOptionalStrings(DataOutputStream out, List<EventData> datas, boolean[] bits, int field)
+                                                                                                                   throws IOException {
+        for (int i = 0; i < datas.size(); i++) {
+            String value = optionalString(datas.get(i), field);
+            bits[i] = value != null && value.length() > 0;
+        }
+        writeBitmap(out, bits);
+        for (int i = 0; i < datas.size(); i++) {
+            if (bits[i]) {
+                writeString(out, optionalString(datas.get(i), field));
+            }
+        }
+    }
+
+    private static void readOptionalStrings(DataInputStream in, EventData[] datas, int field) throws IOException {
+        boolean[] bits = readBitmap(in, datas.length);
+        for (int i = 0; i < datas.length; i++) {
+            // 和protobuf格式保持一致，空值解析为空字符
+            String value = bits[i] ? readString(in) : "";
+            if (field == 0) {
+                datas[i].setSql(value);
+            } else if (field == 1) {
+                datas[i].setDdlSchemaName(value);
+            } else {
+                datas[i].setHint(value);
+            }
+        }
+    }
+
+    private static String optionalString(EventData data, int field) {
+        if (field == 0) {
+            return data.getSql();
+        } else if (field == 1) {
+            return data.getDdlSchemaName();
+        } else {
+            return data.getHint();
+        }
+    }
+
+    private static List<EventColumn> columns(EventData data, int group) {
+        if (group == GROUP_KEYS) {
+            return data.getKeys();
+        } else if (group == GROUP_OLDKEYS) {
+            return data.getOldKeys();
+        } else {
+            return data.getColumns();
+        }
+    }
+
+    /**
+     * 判断是否为可无损转化为long的字符串，比如"0","-12"，排除"007","+1","-0"这类转回字符串会有变化的值
+     */
+    private static boolean isCanonicalLong(String value) {
+        int length = value.length();
+        int start = (length > 0 && value.charAt(0) == '-') ? 1 : 0;
+        if (length == start || length - start > 18) { // 18位以内不会溢出
+            return false;
+        }
+        if (value.charAt(start) == '0') {
+            return length == 1;
+        }
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ======================== dictionary ===================
+
+    private static class Dictionary {
+
+        private Map<String, Integer>        stringIndex = new HashMap<String, Integer>();
+        private List<String>                strings     = new ArrayList<String>();
+        private Map<List<Object>, TableDef> tableIndex  = new HashMap<List<Object>, TableDef>();
+        private List<TableDef>              tables      = new ArrayList<TableDef>();
+
+        /**
+         * 返回字符串的编号，0代表null
+         */
+        int string(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer index = stringIndex.get(value);
+            if (index == null) {
+                strings.add(value);
+                index = strings.size();
+                stringIndex.put(value, index);
+            }
+            return index;
+        }
+
+        TableDef table(EventData data) {
+            List<Object> key = Arrays.<Object> asList(data.getPairId(),
+                data.getTableId(),
+                data.getSchemaName(),
+                data.getTableName());
+            TableDef table = tableIndex.get(key);
+            if (table == null) {
+                table = new TableDef(data.getPairId(),
+                    data.getTableId(),
+                    string(data.getSchemaName()),
+                    string(data.getTableName()));
+                table.id = tables.size();
+                tables.add(table);
+                tableIndex.put(key, table);
+            }
+            return table;
+        }
+    }
+
+    private static class TableDef {
+
+        private int                         id;
+        private long                        pairId;
+        private long                        tableId;
+        private int                         schemaName;
+        private int                         tableName;
+        private List<ColumnDef>             columns     = new ArrayList<ColumnDef>();
+        private Map<ColumnDef, Integer>     columnIndex = new HashMap<ColumnDef, Integer>();
+        private List<int[][]>               layouts     = new ArrayList<int[][]>();
+        private Map<List<Integer>, Integer> layoutIndex = new HashMap<List<Integer>, Integer>();
+
+        TableDef(long pairId, long tableId, int schemaName, int tableName){
+            this.pairId = pairId;
+            this.tableId = tableId;
+            this.schemaName = schemaName;
+            this.tableName = tableName;
+        }
+
+        int layout(Dictionary dictionary, EventData data) {
+            int[][] layout = new int[3][];
+            List<Integer> key = new ArrayList<Integer>();
+            for (int group = 0; group < layout.length; group++) {
+                List<EventColumn> columns = columns(data, group);
+                layout[group] = new int[columns.size()];
+                key.add(-1); // 分隔符
+                for (int i = 0; i < columns.size(); i++) {
+                    layout[group][i] = column(dictionary, columns.get(i));
+                    key.add(layout[group][i]);
+                }
+            }
+
+            Integer index = layoutIndex.get(key);
+            if (index == null) {
+                index = layouts.size();
+                layouts.add(layout);
+                layoutIndex.put(key, index);
+            }
+            return index;
+        }
+
+        private int column(Dictionary dictionary, EventColumn column) {
+            ColumnDef def = new ColumnDef(dictionary.string(column.getColumnName()),
+                column.getColumnType(),
+                column.getIndex(),
+                column.isKey());
+            Integer index = columnIndex.get(def);
+            if (index == null) {
+                index = columns.size();
+                columns.add(def);
+                columnIndex.put(def, index);
+            }
+            return index;
+        }
+    }
+
+    private static class ColumnDef {
+
+        private final int     name;
+        private final int     type;
+        private final int     index;
+        private final boolean isKey;
+
+        ColumnDef(int name, int type, int index, boolean isKey){
+            this.name = name;
+            this.type = type;
+            this.index = index;
+            this.isKey = isKey;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + name;
+            result = prime * result + type;
+            result = prime * result + index;
+            result = prime * result + (isKey ? 1231 : 1237);
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ColumnDef)) {
+                return false;
+            }
+            ColumnDef other = (ColumnDef) obj;
+            return name == other.name && type == other.type && index == other.index && isKey == other.isKey;
+        }
+    }
+
+    private static class Segment {
+
+        private final TableDef        table;
+        private final int             layout;
+        private final List<EventData> datas = new ArrayList<EventData>();
+
+        Segment(TableDef table, int layout){
+            this.table = table;
+            this.layout = layout;
+        }
+    }
+
+    // ======================== primitive ===================
+
+    private static String stringOf(String[] strings, int index) {
+        return index == 0 ? null : strings[index - 1];
+    }
+
+    private static void writeBitmap(DataOutputStream out, boolean[] bits) throws IOException {
+        int size = bits.length;
+        for (int i = 0; i < size; i += 8) {
+            int b = 0;
+            for (int j = 0; j < 8 && i + j < size; j++) {
+                if (bits[i + j]) {
+                    b |= 1 << j;
+                }
+            }
+            out.writeByte(b);
+        }
+    }
+
+    private static boolean[] readBitmap(DataInputStream in, int size) throws IOException {
+        boolean[] bits = new boolean[size];
+        for (int i = 0; i < size; i += 8) {
+            int b = in.readUnsignedByte();
+            for (int j = 0; j < 8 && i + j < size; j++) {
+                bits[i + j] = (b & (1 << j)) != 0;
+            }
+        }
+        return bits;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varlong");
+    }
+}
@@ -35,6 +35,8 @@ import com.alibaba.otter.node.etl.common.pipe.impl.http.AttachmentHttpPipe;
 import com.alibaba.otter.node.etl.common.pipe.impl.http.HttpPipeKey;
 import com.alibaba.otter.node.etl.common.pipe.impl.http.RowDataHttpPipe;
 import com.alibaba.otter.node.etl.common.pipe.impl.memory.MemoryPipeKey;
+import com.alibaba.otter.node.etl.common.pipe.impl.memory.OffHeapMemoryPipeKey;
+import com.alibaba.otter.node.etl.common.pipe.impl.memory.OffHeapRowDataMemoryPipe;
 import com.alibaba.otter.node.etl.common.pipe.impl.memory.RowDataMemoryPipe;
 import com.alibaba.otter.node.etl.common.pipe.impl.rpc.RowDataRpcPipe;
 import com.alibaba.otter.node.etl.common.pipe.impl.rpc.RpcPipeKey;
@@ -42,6 +44,7 @@ import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
 import com.alibaba.otter.shared.common.model.config.pipeline.PipelineParameter.PipeChooseMode;
 import com.alibaba.otter.shared.etl.model.DbBatch;
 import com.alibaba.otter.shared.etl.model.EventData;
+import com.alibaba.otter.shared.etl.model.Identity;
 
 /**
  * 管道操作相关工具类
@@ -52,11 +55,13 @@ import com.alibaba.otter.shared.etl.model.EventData;
 public class RowDataPipeDelegate {
 
     private RowDataMemoryPipe rowDataMemoryPipe;
+    private OffHeapRowDataMemoryPipe offHeapRowDataMemoryPipe;
     private AttachmentHttpPipe attachmentHttpPipe;
     private RowDataHttpPipe rowDataHttpPipe;
     private RowDataRpcPipe rowDataRpcPipe;
     private ConfigClientService configClientService;
     private ExecutorService executorService;
+    private AdaptivePipeChooser adaptivePipeChooser;
     /**
      * 默认1MB
      */
@@ -68,7 +73,12 @@ public class RowDataPipeDelegate {
     public List<PipeKey> put(final DbBatch data, Long nid) throws PipeException {
         List<PipeKey> keys = new ArrayList<PipeKey>();
         if (isLocal(nid)) {
-            keys.add(rowDataMemoryPipe.put(data));
+            Pipeline pipeline = configClientService.findPipeline(data.getRowBatch().getIdentity().getPipelineId());
+            if (pipeline.getParameters().getUseOffHeapMemoryPipe()) {
+                keys.add(offHeapRowDataMemoryPipe.put(data));
+            } else {
+                keys.add(rowDataMemoryPipe.put(data));
+            }
         } else {
             Future<PipeKey> future = null;
             Pipeline pipeline = configClientService.findPipeline(data.getRowBatch().getIdentity().getPipelineId());
@@ -88,20 +98,26 @@ public class RowDataPipeDelegate {
             }
             try {
                 PipeChooseMode pipeChooseMode = pipeline.getParameters().getPipeChooseType();
+                long size = calculateSize(data);
+                boolean rpc;
                 if (pipeChooseMode.isAutomatic()) {
-                    if (calculateSize(data) <= sizeThresold) {
-                        keys.add(rowDataRpcPipe.put(data));
-                    } else {
-                        keys.add(rowDataHttpPipe.put(data));
-                    }
+                    rpc = size <= sizeThresold;
+                } else if (pipeChooseMode.isAdaptive()) {
+                    rpc = adaptivePipeChooser.chooseRpc(pipeline.getId(), nid, size, sizeThresold);
                 } else if (pipeChooseMode.isRpc()) {
-                    keys.add(rowDataRpcPipe.put(data));
+                    rpc = true;
                 } else if (pipeChooseMode.isHttp()) {
-                    keys.add(rowDataHttpPipe.put(data));
+                    rpc = false;
                 } else {
                     throw new PipeException("pipeChooseMode is error!" + pipeChooseMode);
                 }
 
+                long start = System.currentTimeMillis();
+                keys.add(rpc ? rowDataRpcPipe.put(data, nid) : rowDataHttpPipe.put(data));
+                if (pipeChooseMode.isAdaptive()) {
+                    adaptivePipeChooser.recordPut(pipeline.getId(), nid, rpc, size, System.currentTimeMillis() - start);
+                }
+
                 // 等待一下附件处理
                 if (future != null) {
                     keys.add(future.get());
@@ -123,14 +139,23 @@ public class RowDataPipeDelegate {
                 continue; // 忽略空的key
             }
 
-            if (key instanceof MemoryPipeKey) {
+            if (key instanceof OffHeapMemoryPipeKey) {
+                // 直接返回
+                return offHeapRowDataMemoryPipe.get((OffHeapMemoryPipeKey) key);
+            } else if (key instanceof MemoryPipeKey) {
                 dbBatch = rowDataMemoryPipe.get((MemoryPipeKey) key);
                 // 直接返回
                 return dbBatch;
             } else if (key instanceof HttpPipeKey) {
                 // 区分一下数据下载
                 if (key.getDataType().isDbBatch()) {
-                    dbBatch = rowDataHttpPipe.get((HttpPipeKey) key);
+                    HttpPipeKey httpPipeKey = (HttpPipeKey) key;
+                    long start = System.currentTimeMillis();
+                    dbBatch = rowDataHttpPipe.get(httpPipeKey);
+                    if (recordGet(httpPipeKey.getIdentity(), httpPipeKey.getNid(), false, dbBatch, start)) {
+                        // http拉取没有顺带回传耗时的请求，单独回传给发送端
+                        rowDataRpcPipe.feedbackCosts(httpPipeKey.getIdentity(), httpPipeKey.getNid());
+                    }
                 } else {
                     future = executorService.submit(new Callable<File>() {
 
@@ -148,7 +173,10 @@ public class RowDataPipeDelegate {
                     });
                 }
             } else if (key instanceof RpcPipeKey) {
-                dbBatch = rowDataRpcPipe.get((RpcPipeKey) key);
+                RpcPipeKey rpcPipeKey = (RpcPipeKey) key;
+                long start = System.currentTimeMillis();
+                dbBatch = rowDataRpcPipe.get(rpcPipeKey);
+                recordGet(rpcPipeKey.getIdentity(), rpcPipeKey.getNid(), true, dbBatch, start);
             } else {
                 throw new PipeException("unknow_PipeKey", key.toString());
             }
@@ -179,6 +207,24 @@ public class RowDataPipeDelegate {
         return size;
     }
 
+    /**
+     * 记录拉取耗时，返回true代表该pipeline使用自适应选择并记录成功
+     */
+    private boolean recordGet(Identity identity, Long nid, boolean rpc, DbBatch dbBatch, long start) {
+        if (nid == null || dbBatch == null || dbBatch.getRowBatch() == null) {
+            return false; // 老版本的发送方没有nid，无法区分
+        }
+
+        Pipeline pipeline = configClientService.findPipeline(identity.getPipelineId());
+        if (!pipeline.getParameters().getPipeChooseType().isAdaptive()) {
+            return false;
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        adaptivePipeChooser.recordGet(identity.getPipelineId(), nid, rpc, calculateSize(dbBatch), elapsed);
+        return true;
+    }
+
     private boolean isLocal(Long nid) {
         return configClientService.currentNode().getId().equals(nid);
     }
@@ -189,6 +235,10 @@ public class RowDataPipeDelegate {
         this.rowDataMemoryPipe = rowDataMemoryPipe;
     }
 
+    public void setOffHeapRowDataMemoryPipe(OffHeapRowDataMemoryPipe offHeapRowDataMemoryPipe) {
+        this.offHeapRowDataMemoryPipe = offHeapRowDataMemoryPipe;
+    }
+
     public void setAttachmentHttpPipe(AttachmentHttpPipe attachmentHttpPipe) {
         this.attachmentHttpPipe = attachmentHttpPipe;
     }
@@ -209,6 +259,10 @@ public class RowDataPipeDelegate {
         this.executorService = executorService;
     }
 
+    public void setAdaptivePipeChooser(AdaptivePipeChooser adaptivePipeChooser) {
+        this.adaptivePipeChooser = adaptivePipeChooser;
+    }
+
     public void setSizeThresold(long sizeThresold) {
         this.sizeThresold = sizeThresold;
     }
@@ -16,7 +16,10 @@
 
 package com.alibaba.otter.node.etl.common.pipe.impl.http;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.util.Set;
@@ -181,6 +184,44 @@ public abstract class AbstractHttpPipe<T, KEY extends HttpPipeKey> implements Pi
         }
     }
 
+    /**
+     * 在数据读取完成后，校验流末尾的加密信息，同decodeFile的校验逻辑，不需要额外读取一遍文件
+     */
+    protected void checkEncrypted(InputStream input, String key, String crc) {
+        try {
+            byte[] keyBytes = new byte[ByteUtils.stringToBytes(key).length];
+            readFully(input, keyBytes);
+            String keystr = ByteUtils.bytesToString(keyBytes);
+            if (!key.equals(keystr)) {
+                throw new ChecksumException("unmatch garble key with[" + key + "],[" + keystr + "]");
+            }
+
+            byte[] crcBytes = new byte[ByteUtils.stringToBytes(crc).length];
+            readFully(input, crcBytes);
+            String crcStr = ByteUtils.bytesToString(crcBytes);
+            if (!crc.equals(crcStr)) {
+                throw new ChecksumException("unmatch crc with[" + crc + "],[" + crcStr + "]");
+            }
+
+            if (input.read() != -1) {
+                throw new ChecksumException("unexpected data after crc");
+            }
+        } catch (Exception e) {
+            throw new PipeException("read_encrypted_error", e);
+        }
+    }
+
+    protected void readFully(InputStream input, byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            int n = input.read(bytes, offset, bytes.length - offset);
+            if (n < 0) {
+                throw new EOFException("expect " + bytes.length + " bytes but read " + offset);
+            }
+            offset += n;
+        }
+    }
+
     // ==================== setter / getter ==================
 
     public void setConfigClientService(ConfigClientService configClientService) {
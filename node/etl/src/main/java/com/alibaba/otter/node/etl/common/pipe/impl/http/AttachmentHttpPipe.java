@@ -83,9 +83,11 @@ public class AttachmentHttpPipe extends AbstractHttpPipe<Object, HttpPipeKey> im
         Pipeline pipeline = configClientService.findPipeline(fileBatch.getIdentity().getPipelineId());
         int poolSize = pipeline.getParameters().getFileLoadPoolSize();
         boolean useLocalFileMutliThread = pipeline.getParameters().getUseLocalFileMutliThread();
+        boolean useStreamingArchive = pipeline.getParameters().getUseStreamingArchive();
         ArchiveBean archiveBean = getArchiveBean();
         archiveBean.adjustPoolSize(poolSize);// 调整线程池大小
         archiveBean.setUseLocalFileMutliThread(useLocalFileMutliThread);// 设置是否启用local多线程同步
+        archiveBean.setUseStreamingPack(useStreamingArchive);// 设置是否启用并行压缩流式打包
         boolean done = archiveBean.pack(file, fileDatas, new ArchiveRetriverCallback<FileData>() {
 
             public InputStream retrive(FileData fileData) {
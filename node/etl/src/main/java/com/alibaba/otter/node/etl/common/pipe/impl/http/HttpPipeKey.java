@@ -32,6 +32,7 @@ public class HttpPipeKey extends PipeKey {
     private String            crc;                                    // checksum数字串
     private String            key;                                    // 密钥串
     private String            url;                                    // 数据文件
+    private Long              nid;                                    // 数据所在的节点，老版本的发送方为null
 
     public String getCrc() {
         return crc;
@@ -49,6 +50,14 @@ public class HttpPipeKey extends PipeKey {
         this.key = key;
     }
 
+    public Long getNid() {
+        return nid;
+    }
+
+    public void setNid(Long nid) {
+        this.nid = nid;
+    }
+
     public String getUrl() {
         return url;
     }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.common.pipe.impl.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * 基于mmap的文件读取，避免大文件读取时内核态到用户态的数据拷贝，close时主动释放映射
+ *
+ * @author jianghang
+ */
+public class MappedFileInputStream extends InputStream {
+
+    private MappedByteBuffer buffer;
+    private int              mark = 0;
+
+    public MappedFileInputStream(File file) throws IOException{
+        if (file.length() > Integer.MAX_VALUE) {
+            throw new IOException("file is too large to map : " + file.getPath());
+        }
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            // 映射建立后即可关闭channel
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    public int read() throws IOException {
+        return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+
+        len = Math.min(len, buffer.remaining());
+        buffer.get(b, off, len);
+        return len;
+    }
+
+    public long skip(long n) throws IOException {
+        int skip = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skip);
+        return skip;
+    }
+
+    public int available() throws IOException {
+        return buffer.remaining();
+    }
+
+    public boolean markSupported() {
+        return true;
+    }
+
+    public synchronized void mark(int readlimit) {
+        mark = buffer.position();
+    }
+
+    public synchronized void reset() throws IOException {
+        buffer.position(mark);
+    }
+
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+
+        // 不等gc回收，主动释放mmap，避免文件被清理后仍然占用磁盘空间
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        } catch (Throwable e) {
+            // ignore，交由gc进行回收
+        } finally {
+            buffer = null;
+        }
+    }
+}
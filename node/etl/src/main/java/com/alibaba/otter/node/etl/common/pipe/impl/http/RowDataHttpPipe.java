@@ -24,6 +24,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -35,11 +37,11 @@ import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.util.CollectionUtils;
 
-import com.alibaba.fastjson.JSONReader;
 import com.alibaba.otter.node.etl.common.io.EncryptedData;
 import com.alibaba.otter.node.etl.common.io.download.DataRetriever;
 import com.alibaba.otter.node.etl.common.pipe.PipeDataType;
 import com.alibaba.otter.node.etl.common.pipe.exception.PipeException;
+import com.alibaba.otter.node.etl.common.pipe.impl.ColumnarRowBatchCodec;
 import com.alibaba.otter.node.etl.model.protobuf.BatchProto;
 import com.alibaba.otter.shared.common.model.config.channel.ChannelParameter.SyncConsistency;
 import com.alibaba.otter.shared.common.model.config.channel.ChannelParameter.SyncMode;
@@ -62,6 +64,11 @@ import com.alibaba.otter.shared.etl.model.RowBatch;
  */
 public class RowDataHttpPipe extends AbstractHttpPipe<DbBatch, HttpPipeKey> {
 
+    private static final int STREAM_BUFFER_SIZE   = 64 * 1024;
+    private long             mmapThreshold        = 8 * 1024 * 1024L; // 超过8MB的文件使用mmap读取
+    private int              streamConnectTimeout = 10 * 1000;        // 流式读取的连接超时，10秒
+    private int              streamReadTimeout    = 60 * 1000;        // 流式读取的读超时，1分钟
+
     @Override
     public HttpPipeKey put(final DbBatch data) throws PipeException {
         return saveDbBatch(data);
@@ -82,59 +89,8 @@ public class RowDataHttpPipe extends AbstractHttpPipe<DbBatch, HttpPipeKey> {
      */
     private HttpPipeKey saveDbBatch(DbBatch dbBatch) {
         RowBatch rowBatch = dbBatch.getRowBatch();
-        // 转化为proto对象
-        BatchProto.RowBatch.Builder rowBatchBuilder = BatchProto.RowBatch.newBuilder();
-        rowBatchBuilder.setIdentity(build(rowBatch.getIdentity()));
-        // 处理具体的字段rowData
-        for (EventData eventData : rowBatch.getDatas()) {
-            BatchProto.RowData.Builder rowDataBuilder = BatchProto.RowData.newBuilder();
-            rowDataBuilder.setPairId(eventData.getPairId());
-            rowDataBuilder.setTableId(eventData.getTableId());
-            if (eventData.getSchemaName() != null) {
-                rowDataBuilder.setSchemaName(eventData.getSchemaName());
-            }
-            rowDataBuilder.setTableName(eventData.getTableName());
-            rowDataBuilder.setEventType(eventData.getEventType().getValue());
-            rowDataBuilder.setExecuteTime(eventData.getExecuteTime());
-            // add by ljh at 2012-10-31
-            if (eventData.getSyncMode() != null) {
-                rowDataBuilder.setSyncMode(eventData.getSyncMode().getValue());
-            }
-            if (eventData.getSyncConsistency() != null) {
-                rowDataBuilder.setSyncConsistency(eventData.getSyncConsistency().getValue());
-            }
-
-            // 构造key column
-            for (EventColumn keyColumn : eventData.getKeys()) {
-                rowDataBuilder.addKeys(buildColumn(keyColumn));
-            }
-            // 构造old key column
-            if (CollectionUtils.isEmpty(eventData.getOldKeys()) == false) {
-                for (EventColumn keyColumn : eventData.getOldKeys()) {
-                    rowDataBuilder.addOldKeys(buildColumn(keyColumn));
-                }
-            }
-
-            // 构造其他 column
-            for (EventColumn column : eventData.getColumns()) {
-                rowDataBuilder.addColumns(buildColumn(column));
-            }
-
-            rowDataBuilder.setRemedy(eventData.isRemedy());
-            rowDataBuilder.setSize(eventData.getSize());
-            if (StringUtils.isNotEmpty(eventData.getSql())) {
-                rowDataBuilder.setSql(eventData.getSql());
-            }
-            if (StringUtils.isNotEmpty(eventData.getDdlSchemaName())) {
-                rowDataBuilder.setDdlSchemaName(eventData.getDdlSchemaName());
-            }
-            if (StringUtils.isNotEmpty(eventData.getHint())) {
-                rowDataBuilder.setHint(eventData.getHint());
-            }
-            rowDataBuilder.setWithoutSchema(eventData.isWithoutSchema());
-            // 添加一条rowData记录
-            rowBatchBuilder.addRows(rowDataBuilder.build());
-        }
+        Pipeline pipeline = configClientService.findPipeline(rowBatch.getIdentity().getPipelineId());
+        boolean columnar = pipeline.getParameters().getUseColumnarBatch();
 
         // 处理下FileBatch
         FileBatch fileBatch = dbBatch.getFileBatch();
@@ -165,11 +121,16 @@ public class RowDataHttpPipe extends AbstractHttpPipe<DbBatch, HttpPipeKey> {
         OutputStream output = null;
         try {
             output = new BufferedOutputStream(new FileOutputStream(file));
-            com.alibaba.otter.node.etl.model.protobuf.BatchProto.RowBatch rowBatchProto = rowBatchBuilder.build();
-            // 输出大小
-            output.write(ByteUtils.int2bytes(rowBatchProto.getSerializedSize()));
-            // 输出row batch
-            rowBatchProto.writeTo(output);
+            if (columnar) {
+                // 输出列式row batch，以magic开头
+                ColumnarRowBatchCodec.encode(rowBatch, output);
+            } else {
+                BatchProto.RowBatch rowBatchProto = buildRowBatchProto(rowBatch);
+                // 输出大小
+                output.write(ByteUtils.int2bytes(rowBatchProto.getSerializedSize()));
+                // 输出row batch
+                rowBatchProto.writeTo(output);
+            }
 
             com.alibaba.otter.node.etl.model.protobuf.BatchProto.FileBatch fileBatchProto = fileBatchBuilder.build();
             // 输出大小
@@ -187,7 +148,7 @@ public class RowDataHttpPipe extends AbstractHttpPipe<DbBatch, HttpPipeKey> {
         key.setUrl(remoteUrlBuilder.getUrl(rowBatch.getIdentity().getPipelineId(), filename));
         key.setDataType(PipeDataType.DB_BATCH);
         key.setIdentity(rowBatch.getIdentity());
-        Pipeline pipeline = configClientService.findPipeline(rowBatch.getIdentity().getPipelineId());
+        key.setNid(configClientService.currentNode().getId());
         if (pipeline.getParameters().getUseFileEncrypt()) {
             // 加密处理
             EncryptedData encryptedData = encryptFile(file);
@@ -198,6 +159,67 @@ public class RowDataHttpPipe extends AbstractHttpPipe<DbBatch, HttpPipeKey> {
         return key;
     }
 
+    /**
+     * 构造rowBatch对应的proto对象
+     */
+    private BatchProto.RowBatch buildRowBatchProto(RowBatch rowBatch) {
+        // 转化为proto对象
+        BatchProto.RowBatch.Builder rowBatchBuilder = BatchProto.RowBatch.newBuilder();
+        rowBatchBuilder.setIdentity(build(rowBatch.getIdentity()));
+        // 处理具体的字段rowData
+        for (EventData eventData : rowBatch.getDatas()) {
+            BatchProto.RowData.Builder rowDataBuilder = BatchProto.RowData.newBuilder();
+            rowDataBuilder.setPairId(eventData.getPairId());
+            rowDataBuilder.setTableId(eventData.getTableId());
+            if (eventData.getSchemaName() != null) {
+                rowDataBuilder.setSchemaName(eventData.getSchemaName());
+            }
+            rowDataBuilder.setTableName(eventData.getTableName());
+            rowDataBuilder.setEventType(eventData.getEventType().getValue());
+            rowDataBuilder.setExecuteTime(eventData.getExecuteTime());
+            // add by ljh at 2012-10-31
+            if (eventData.getSyncMode() != null) {
+                rowDataBuilder.setSyncMode(eventData.getSyncMode().getValue());
+            }
+            if (eventData.getSyncConsistency() != null) {
+                rowDataBuilder.setSyncConsistency(eventData.getSyncConsistency().getValue());
+            }
+
+            // 构造key column
+            for (EventColumn keyColumn : eventData.getKeys()) {
+                rowDataBuilder.addKeys(buildColumn(keyColumn));
+            }
+            // 构造old key column
+            if (CollectionUtils.isEmpty(eventData.getOldKeys()) == false) {
+                for (EventColumn keyColumn : eventData.getOldKeys()) {
+                    rowDataBuilder.addOldKeys(buildColumn(keyColumn));
+                }
+            }
+
+            // 构造其他 column
+            for (EventColumn column : eventData.getColumns()) {
+                rowDataBuilder.addColumns(buildColumn(column));
+            }
+
+            rowDataBuilder.setRemedy(eventData.isRemedy());
+            rowDataBuilder.setSize(eventData.getSize());
+            if (StringUtils.isNotEmpty(eventData.getSql())) {
+                rowDataBuilder.setSql(eventData.getSql());
+            }
+            if (StringUtils.isNotEmpty(eventData.getDdlSchemaName())) {
+                rowDataBuilder.setDdlSchemaName(eventData.getDdlSchemaName());
+            }
+            if (StringUtils.isNotEmpty(eventData.getHint())) {
+                rowDataBuilder.setHint(eventData.getHint());
+            }
+            rowDataBuilder.setWithoutSchema(eventData.isWithoutSchema());
+            // 添加一条rowData记录
+            rowBatchBuilder.addRows(rowDataBuilder.build());
+        }
+
+        return rowBatchBuilder.build();
+    }
+
     /**
      * 处理对应的dbBatch
      * @param key
@@ -206,6 +228,15 @@ public class RowDataHttpPipe extends AbstractHttpPipe<DbBatch, HttpPipeKey> {
     private DbBatch getDbBatch(HttpPipeKey key) {
         String dataUrl = key.getUrl();
         Pipeline pipeline = configClientService.findPipeline(key.getIdentity().getPipelineId());
+        if (pipeline.getParameters().getUseStreamDownload()) {
+            try {
+                return streamDbBatch(key);
+            } catch (Exception e) {
+                // 流式读取失败，退化为文件下载，由下载器处理重试
+                logger.warn("stream_download_error, fallback to file download : " + dataUrl, e);
+            }
+        }
+
         DataRetriever dataRetriever = dataRetrieverFactory.createRetriever(pipeline.getParameters().getRetriever(),
             dataUrl,
             downloadDir);
@@ -221,95 +252,142 @@ public class RowDataHttpPipe extends AbstractHttpPipe<DbBatch, HttpPipeKey> {
             dataRetriever.disconnect();
         }
 
-        // 处理下有加密的数据
-        if (StringUtils.isNotEmpty(key.getKey()) && StringUtils.isNotEmpty(key.getCrc())) {
-            decodeFile(archiveFile, key.getKey(), key.getCrc());
-        }
-
         InputStream input = null;
-        JSONReader reader = null;
         try {
-            input = new BufferedInputStream(new FileInputStream(archiveFile));
-            DbBatch dbBatch = new DbBatch();
-            byte[] lengthBytes = new byte[4];
-            input.read(lengthBytes);
-            int length = ByteUtils.bytes2int(lengthBytes);
-            BatchProto.RowBatch rowbatchProto = BatchProto.RowBatch.parseFrom(new LimitedInputStream(input, length));
-            // 构造原始的model对象
-            RowBatch rowBatch = new RowBatch();
-            rowBatch.setIdentity(build(rowbatchProto.getIdentity()));
-            for (BatchProto.RowData rowDataProto : rowbatchProto.getRowsList()) {
-                EventData eventData = new EventData();
-                eventData.setPairId(rowDataProto.getPairId());
-                eventData.setTableId(rowDataProto.getTableId());
-                eventData.setTableName(rowDataProto.getTableName());
-                eventData.setSchemaName(rowDataProto.getSchemaName());
-                eventData.setEventType(EventType.valuesOf(rowDataProto.getEventType()));
-                eventData.setExecuteTime(rowDataProto.getExecuteTime());
-                // add by ljh at 2012-10-31
-                if (StringUtils.isNotEmpty(rowDataProto.getSyncMode())) {
-                    eventData.setSyncMode(SyncMode.valuesOf(rowDataProto.getSyncMode()));
-                }
-                if (StringUtils.isNotEmpty(rowDataProto.getSyncConsistency())) {
-                    eventData.setSyncConsistency(SyncConsistency.valuesOf(rowDataProto.getSyncConsistency()));
-                }
-                // 处理主键
-                List<EventColumn> keys = new ArrayList<EventColumn>();
-                for (BatchProto.Column columnProto : rowDataProto.getKeysList()) {
-                    keys.add(buildColumn(columnProto));
-                }
-                eventData.setKeys(keys);
-                // 处理old主键
-                if (CollectionUtils.isEmpty(rowDataProto.getOldKeysList()) == false) {
-                    List<EventColumn> oldKeys = new ArrayList<EventColumn>();
-                    for (BatchProto.Column columnProto : rowDataProto.getOldKeysList()) {
-                        oldKeys.add(buildColumn(columnProto));
-                    }
-                    eventData.setOldKeys(oldKeys);
-                }
-                // 处理具体的column value
-                List<EventColumn> columns = new ArrayList<EventColumn>();
-                for (BatchProto.Column columnProto : rowDataProto.getColumnsList()) {
-                    columns.add(buildColumn(columnProto));
-                }
-                eventData.setColumns(columns);
-
-                eventData.setRemedy(rowDataProto.getRemedy());
-                eventData.setSize(rowDataProto.getSize());
-                eventData.setSql(rowDataProto.getSql());
-                eventData.setDdlSchemaName(rowDataProto.getDdlSchemaName());
-                eventData.setHint(rowDataProto.getHint());
-                eventData.setWithoutSchema(rowDataProto.getWithoutSchema());
-                // 添加到总记录
-                rowBatch.merge(eventData);
+            if (archiveFile.length() >= mmapThreshold && archiveFile.length() <= Integer.MAX_VALUE) {
+                // 大文件直接mmap读取
+                input = new MappedFileInputStream(archiveFile);
+            } else {
+                input = new BufferedInputStream(new FileInputStream(archiveFile));
             }
-            dbBatch.setRowBatch(rowBatch);
-
-            input.read(lengthBytes);
-            length = ByteUtils.bytes2int(lengthBytes);
-            BatchProto.FileBatch filebatchProto = BatchProto.FileBatch.parseFrom(new LimitedInputStream(input, length));
-            // 构造原始的model对象
-            FileBatch fileBatch = new FileBatch();
-            fileBatch.setIdentity(build(filebatchProto.getIdentity()));
-            for (BatchProto.FileData fileDataProto : filebatchProto.getFilesList()) {
-                FileData fileData = new FileData();
-                fileData.setPairId(fileDataProto.getPairId());
-                fileData.setTableId(fileDataProto.getTableId());
-                fileData.setEventType(EventType.valuesOf(fileDataProto.getEventType()));
-                fileData.setLastModifiedTime(fileDataProto.getLastModifiedTime());
-                fileData.setNameSpace(fileDataProto.getNamespace());
-                fileData.setPath(fileDataProto.getPath());
-                fileData.setSize(fileDataProto.getSize());
-                // 添加到filebatch中
-                fileBatch.getFiles().add(fileData);
+            DbBatch dbBatch = parseDbBatch(input);
+            // 处理下有加密的数据，校验信息在文件末尾，解析完成后直接校验
+            if (StringUtils.isNotEmpty(key.getKey()) && StringUtils.isNotEmpty(key.getCrc())) {
+                checkEncrypted(input, key.getKey(), key.getCrc());
             }
-            dbBatch.setFileBatch(fileBatch);
             return dbBatch;
         } catch (IOException e) {
             throw new PipeException("deserial_error", e);
         } finally {
-            IOUtils.closeQuietly(reader);
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * 直接从http响应流中解析dbBatch，不落地文件
+     */
+    private DbBatch streamDbBatch(HttpPipeKey key) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(key.getUrl()).openConnection();
+        connection.setConnectTimeout(streamConnectTimeout);
+        connection.setReadTimeout(streamReadTimeout);
+        InputStream input = null;
+        try {
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("unexpected response code " + code + " for " + key.getUrl());
+            }
+
+            input = new BufferedInputStream(connection.getInputStream(), STREAM_BUFFER_SIZE);
+            DbBatch dbBatch = parseDbBatch(input);
+            if (StringUtils.isNotEmpty(key.getKey()) && StringUtils.isNotEmpty(key.getCrc())) {
+                checkEncrypted(input, key.getKey(), key.getCrc());
+            }
+            return dbBatch;
+        } finally {
+            IOUtils.closeQuietly(input);
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * 顺序解析rowBatch和fileBatch，只依赖InputStream顺序读取，文件和网络流共用
+     */
+    private DbBatch parseDbBatch(InputStream input) throws IOException {
+        DbBatch dbBatch = new DbBatch();
+        byte[] lengthBytes = new byte[4];
+        input.mark(lengthBytes.length);
+        readFully(input, lengthBytes);
+        int length = ByteUtils.bytes2int(lengthBytes);
+        if (length == ColumnarRowBatchCodec.MAGIC) {
+            // 列式格式，长度字段不可能为负数
+            input.reset();
+            dbBatch.setRowBatch(ColumnarRowBatchCodec.decode(input));
+        } else {
+            dbBatch.setRowBatch(buildRowBatch(BatchProto.RowBatch.parseFrom(new LimitedInputStream(input, length))));
         }
+
+        readFully(input, lengthBytes);
+        length = ByteUtils.bytes2int(lengthBytes);
+        BatchProto.FileBatch filebatchProto = BatchProto.FileBatch.parseFrom(new LimitedInputStream(input, length));
+        // 构造原始的model对象
+        FileBatch fileBatch = new FileBatch();
+        fileBatch.setIdentity(build(filebatchProto.getIdentity()));
+        for (BatchProto.FileData fileDataProto : filebatchProto.getFilesList()) {
+            FileData fileData = new FileData();
+            fileData.setPairId(fileDataProto.getPairId());
+            fileData.setTableId(fileDataProto.getTableId());
+            fileData.setEventType(EventType.valuesOf(fileDataProto.getEventType()));
+            fileData.setLastModifiedTime(fileDataProto.getLastModifiedTime());
+            fileData.setNameSpace(fileDataProto.getNamespace());
+            fileData.setPath(fileDataProto.getPath());
+            fileData.setSize(fileDataProto.getSize());
+            // 添加到filebatch中
+            fileBatch.getFiles().add(fileData);
+        }
+        dbBatch.setFileBatch(fileBatch);
+        return dbBatch;
+    }
+
+    private RowBatch buildRowBatch(BatchProto.RowBatch rowbatchProto) {
+        // 构造原始的model对象
+        RowBatch rowBatch = new RowBatch();
+        rowBatch.setIdentity(build(rowbatchProto.getIdentity()));
+        for (BatchProto.RowData rowDataProto : rowbatchProto.getRowsList()) {
+            EventData eventData = new EventData();
+            eventData.setPairId(rowDataProto.getPairId());
+            eventData.setTableId(rowDataProto.getTableId());
+            eventData.setTableName(rowDataProto.getTableName());
+            eventData.setSchemaName(rowDataProto.getSchemaName());
+            eventData.setEventType(EventType.valuesOf(rowDataProto.getEventType()));
+            eventData.setExecuteTime(rowDataProto.getExecuteTime());
+            // add by ljh at 2012-10-31
+            if (StringUtils.isNotEmpty(rowDataProto.getSyncMode())) {
+                eventData.setSyncMode(SyncMode.valuesOf(rowDataProto.getSyncMode()));
+            }
+            if (StringUtils.isNotEmpty(rowDataProto.getSyncConsistency())) {
+                eventData.setSyncConsistency(SyncConsistency.valuesOf(rowDataProto.getSyncConsistency()));
+            }
+            // 处理主键
+            List<EventColumn> keys = new ArrayList<EventColumn>();
+            for (BatchProto.Column columnProto : rowDataProto.getKeysList()) {
+                keys.add(buildColumn(columnProto));
+            }
+            eventData.setKeys(keys);
+            // 处理old主键
+            if (CollectionUtils.isEmpty(rowDataProto.getOldKeysList()) == false) {
+                List<EventColumn> oldKeys = new ArrayList<EventColumn>();
+                for (BatchProto.Column columnProto : rowDataProto.getOldKeysList()) {
+                    oldKeys.add(buildColumn(columnProto));
+                }
+                eventData.setOldKeys(oldKeys);
+            }
+            // 处理具体的column value
+            List<EventColumn> columns = new ArrayList<EventColumn>();
+            for (BatchProto.Column columnProto : rowDataProto.getColumnsList()) {
+                columns.add(buildColumn(columnProto));
+            }
+            eventData.setColumns(columns);
+
+            eventData.setRemedy(rowDataProto.getRemedy());
+            eventData.setSize(rowDataProto.getSize());
+            eventData.setSql(rowDataProto.getSql());
+            eventData.setDdlSchemaName(rowDataProto.getDdlSchemaName());
+            eventData.setHint(rowDataProto.getHint());
+            eventData.setWithoutSchema(rowDataProto.getWithoutSchema());
+            // 添加到总记录
+            rowBatch.merge(eventData);
+        }
+        return rowBatch;
     }
 
     private EventColumn buildColumn(BatchProto.Column columnProto) {
@@ -380,4 +458,18 @@ public class RowDataHttpPipe extends AbstractHttpPipe<DbBatch, HttpPipeKey> {
         return identity;
     }
 
+    // ==================== setter / getter ==================
+
+    public void setMmapThreshold(long mmapThreshold) {
+        this.mmapThreshold = mmapThreshold;
+    }
+
+    public void setStreamConnectTimeout(int streamConnectTimeout) {
+        this.streamConnectTimeout = streamConnectTimeout;
+    }
+
+    public void setStreamReadTimeout(int streamReadTimeout) {
+        this.streamReadTimeout = streamReadTimeout;
+    }
+
 }
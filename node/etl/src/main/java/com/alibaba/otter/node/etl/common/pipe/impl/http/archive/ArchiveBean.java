@@ -17,6 +17,7 @@
 package com.alibaba.otter.node.etl.common.pipe.impl.http.archive;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -25,9 +26,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -36,11 +42,14 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -64,6 +73,8 @@ import de.schlichtherle.util.zip.ZipOutputStream;
  * 优化思路：
  * 1. 针对网络服务文件，考虑使用多线程进行数据获取 (压缩效率 << 获取网络文件数据I/O latency)，提前获取网络文件
  * 2. 针对本地文件，直接进行数据流压缩
+ * 3. 开启streaming模式后，各文件在线程池中直接压缩为独立的deflate数据块，主线程按顺序将压缩好的数据块写入zip，不再落地临时文件
+ *    图片/压缩包等本身已压缩的文件采用STORED方式，不再做二次压缩
  * 
  * </pre>
  * 
@@ -74,10 +85,20 @@ public class ArchiveBean implements InitializingBean, DisposableBean {
 
     private static final int    DEFAULT_POOL_SIZE       = 5;
     private static final String WORKER_NAME             = "AttachmentHttpPipe";
+    private static final int    BUFFER_SIZE             = 8 * 1024;
+    private static final int    DEFAULT_BLOCK_SIZE      = 4 * 1024 * 1024;
     private int                 poolSize                = DEFAULT_POOL_SIZE;
     private ExecutorService     executor;
     private int                 retry                   = 3;
     private boolean             useLocalFileMutliThread = true;
+    private boolean             useStreamingPack        = false;                     // 是否启用并行压缩流式打包
+    private int                 streamingBlockSize      = DEFAULT_BLOCK_SIZE;        // 单个压缩数据块在内存中的最大字节数，超过后写入临时文件
+
+    // 本身已经是压缩格式的文件，再次deflate基本没有收益
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList("jpg", "jpeg", "png",
+                                                               "gif", "webp", "zip", "gz", "tgz", "bz2", "xz", "7z",
+                                                               "rar", "jar", "war", "mp3", "mp4", "flv", "avi", "mov",
+                                                               "swf"));
 
     public static class ArchiveEntry {
 
@@ -135,7 +156,11 @@ public class ArchiveBean implements InitializingBean, DisposableBean {
         Exception exception = null;
         while (++count <= retry) {
             try {
-                return doPack(targetArchiveFile, fileDatas, callback);
+                if (useStreamingPack) {
+                    return doStreamingPack(targetArchiveFile, fileDatas, callback);
+                } else {
+                    return doPack(targetArchiveFile, fileDatas, callback);
+                }
             } catch (Exception ex) {
                 exception = ex;
             }
@@ -274,6 +299,172 @@ public class ArchiveBean implements InitializingBean, DisposableBean {
         return exist;
     }
 
+    /**
+     * 执行流式压缩，各文件并行压缩为独立的数据块，按文件顺序写入zip
+     */
+    private boolean doStreamingPack(final File targetArchiveFile, List<FileData> fileDatas,
+                                    final ArchiveRetriverCallback<FileData> callback) {
+        // 首先判断下对应的目标文件是否存在，如存在则执行删除
+        if (true == targetArchiveFile.exists() && false == NioUtils.delete(targetArchiveFile, 3)) {
+            throw new ArchiveException(String.format("[%s] exist and delete failed",
+                targetArchiveFile.getAbsolutePath()));
+        }
+
+        boolean exist = false;
+        ZipOutputStream zipOut = null;
+        Map<String, FileData> entries = new LinkedHashMap<String, FileData>();
+        LinkedList<Future<ArchiveBlock>> window = new LinkedList<Future<ArchiveBlock>>(); // 正在压缩的数据块
+        // 只有超过streamingBlockSize的数据块才会使用这个目录
+        final File spillDir = new File(targetArchiveFile.getParentFile(),
+            FilenameUtils.getBaseName(targetArchiveFile.getPath()));
+        try {
+            for (FileData fileData : fileDatas) {
+                if (fileData.getEventType().isDelete()) {
+                    continue; // 忽略delete类型的数据打包，因为只需直接在目标进行删除
+                }
+
+                String entryName = buildEntryName(fileData);
+                // 过滤一些重复的文件数据同步
+                if (entries.containsKey(entryName) == false) {
+                    entries.put(entryName, fileData);
+                }
+            }
+
+            zipOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(targetArchiveFile)));
+            // 控制同时在内存中的数据块数量，写出一个再提交一个
+            int windowSize = poolSize * 2;
+            Iterator<Map.Entry<String, FileData>> iter = entries.entrySet().iterator();
+            while (iter.hasNext() || !window.isEmpty()) {
+                while (window.size() < windowSize && iter.hasNext()) {
+                    Map.Entry<String, FileData> entry = iter.next();
+                    final String name = entry.getKey();
+                    final FileData fileData = entry.getValue();
+                    Callable<ArchiveBlock> task = new Callable<ArchiveBlock>() {
+
+                        public ArchiveBlock call() throws Exception {
+                            InputStream input = null;
+                            try {
+                                input = callback.retrive(fileData);
+                                if (input instanceof LazyFileInputStream) {
+                                    input = ((LazyFileInputStream) input).getInputSteam();// 获取原始的stream
+                                }
+
+                                return input == null ? null : compress(name, input, spillDir);
+                            } finally {
+                                IOUtils.closeQuietly(input);
+                            }
+                        }
+                    };
+
+                    if (StringUtils.isBlank(fileData.getNameSpace()) && !useLocalFileMutliThread) {
+                        window.add(new FutureTask<ArchiveBlock>(task));// 采用串行处理，轮到时由当前线程执行
+                    } else {
+                        window.add(executor.submit(task));
+                    }
+                }
+
+                Future<ArchiveBlock> future = window.poll();
+                if (future instanceof FutureTask && !future.isDone()) {
+                    // 还未开始执行的任务直接由当前线程执行，正在执行的任务run会直接返回
+                    ((FutureTask<ArchiveBlock>) future).run();
+                }
+
+                ArchiveBlock block = future.get();
+                if (block == null) {
+                    continue;
+                }
+
+                try {
+                    exist = true;
+                    block.writeTo(zipOut);
+                } finally {
+                    block.release();
+                }
+            }
+
+            if (exist) {
+                zipOut.finish();
+            }
+        } catch (Exception e) {
+            throw new ArchiveException(e);
+        } finally {
+            for (Future<ArchiveBlock> future : window) {
+                releaseQuietly(future);
+            }
+            IOUtils.closeQuietly(zipOut);
+            try {
+                FileUtils.deleteDirectory(spillDir);// 删除临时目录
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        return exist;
+    }
+
+    private String buildEntryName(FileData fileData) {
+        String namespace = fileData.getNameSpace();
+        String path = fileData.getPath();
+        if (StringUtils.isBlank(namespace)) {
+            return FilenameUtils.getPath(path) + FilenameUtils.getName(path);
+        } else {
+            return namespace + File.separator + path;
+        }
+    }
+
+    /**
+     * 将文件压缩为一个独立的数据块，已压缩格式的文件直接保存原始数据
+     */
+    private ArchiveBlock compress(String name, InputStream input, File spillDir) throws IOException {
+        boolean stored = COMPRESSED_EXTENSIONS.contains(StringUtils.lowerCase(FilenameUtils.getExtension(name)));
+        ArchiveBlock block = new ArchiveBlock(name, stored ? ZipEntry.STORED : ZipEntry.DEFLATED, spillDir,
+            streamingBlockSize);
+        // zip中的deflate数据不带zlib的头尾，需要使用nowrap模式
+        Deflater deflater = stored ? null : new Deflater(Deflater.BEST_SPEED, true);
+        CRC32 crc = new CRC32();
+        long size = 0;
+        boolean success = false;
+        try {
+            OutputStream output = stored ? block : new DeflaterOutputStream(block, deflater, BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                crc.update(buffer, 0, count);
+                output.write(buffer, 0, count);
+                size += count;
+            }
+
+            if (output instanceof DeflaterOutputStream) {
+                ((DeflaterOutputStream) output).finish();
+            }
+            block.close();
+            block.complete(crc.getValue(), size);
+            success = true;
+            return block;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            if (!success) {
+                block.release();
+            }
+        }
+    }
+
+    private void releaseQuietly(Future<ArchiveBlock> future) {
+        future.cancel(true);
+        if (future.isDone() && !future.isCancelled()) {
+            try {
+                ArchiveBlock block = future.get();
+                if (block != null) {
+                    block.release();
+                }
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+    }
+
     public List<File> unpack(File archiveFile, File targetDir) throws ArchiveException {
         // 首先判断下对应的目标文件是否存在，如存在则执行删除
         if (false == archiveFile.exists()) {
@@ -354,6 +545,98 @@ public class ArchiveBean implements InitializingBean, DisposableBean {
 
     }
 
+    /**
+     * 一个文件压缩后的数据块，优先保存在内存中，超过阀值后转存到临时文件
+     */
+    private static class ArchiveBlock extends OutputStream {
+
+        private final String          name;
+        private final int             method;
+        private final File            spillDir;
+        private final int             maxMemorySize;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        private File                  spillFile;
+        private OutputStream          spillOutput;
+        private long                  compressedSize;
+        private long                  size;
+        private long                  crc;
+
+        public ArchiveBlock(String name, int method, File spillDir, int maxMemorySize){
+            this.name = name;
+            this.method = method;
+            this.spillDir = spillDir;
+            this.maxMemorySize = maxMemorySize;
+        }
+
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (spillOutput == null && buffer.size() + len > maxMemorySize) {
+                spill();
+            }
+
+            if (spillOutput != null) {
+                spillOutput.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+            }
+            compressedSize += len;
+        }
+
+        public void close() throws IOException {
+            if (spillOutput != null) {
+                spillOutput.close();
+            }
+        }
+
+        public void complete(long crc, long size) {
+            this.crc = crc;
+            this.size = size;
+        }
+
+        /**
+         * 将数据块作为一个已压缩的entry写入zip
+         */
+        public void writeTo(ZipOutputStream zipOut) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            entry.setMethod(method);
+            entry.setCrc(crc);
+            entry.setSize(size);
+            entry.setCompressedSize(compressedSize);
+            zipOut.putNextEntry(entry, false);// 数据已经是最终格式，不再进行deflate
+            if (spillFile == null) {
+                buffer.writeTo(zipOut);
+            } else {
+                InputStream input = null;
+                try {
+                    input = new FileInputStream(spillFile);
+                    NioUtils.copy(input, zipOut);
+                } finally {
+                    IOUtils.closeQuietly(input);
+                }
+            }
+            zipOut.closeEntry();
+        }
+
+        public void release() {
+            buffer = null;
+            IOUtils.closeQuietly(spillOutput);
+            if (spillFile != null) {
+                NioUtils.delete(spillFile, 3);
+            }
+        }
+
+        private void spill() throws IOException {
+            FileUtils.forceMkdir(spillDir);
+            spillFile = File.createTempFile("block", ".tmp", spillDir);
+            spillOutput = new BufferedOutputStream(new FileOutputStream(spillFile));
+            buffer.writeTo(spillOutput);
+            buffer = null;
+        }
+    }
+
     // 调整一下线程池
     public void adjustPoolSize(int newPoolSize) {
         if (newPoolSize != poolSize) {
@@ -388,4 +671,12 @@ public class ArchiveBean implements InitializingBean, DisposableBean {
         this.useLocalFileMutliThread = useLocalFileMutliThread;
     }
 
+    public void setUseStreamingPack(boolean useStreamingPack) {
+        this.useStreamingPack = useStreamingPack;
+    }
+
+    public void setStreamingBlockSize(int streamingBlockSize) {
+        this.streamingBlockSize = streamingBlockSize;
+    }
+
 }
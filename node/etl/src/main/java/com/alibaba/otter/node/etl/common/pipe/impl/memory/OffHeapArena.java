@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.common.pipe.impl.memory;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <pre>
+ * 固定容量的堆外内存区域，按page进行分配和回收
+ *
+ * 1. 内存按chunk申请，每个chunk包含多个page，chunk在第一次使用时才进行申请
+ * 2. 一份数据可以占用多个不连续的page，避免内存碎片
+ * 3. 空闲page不足时，申请方阻塞等待，实现背压
+ * </pre>
+ *
+ * @author jianghang
+ */
+public class OffHeapArena {
+
+    private static final int   CHUNK_SIZE = 32 * 1024 * 1024; // 每次申请32MB的堆外内存
+    private final int          pageSize;
+    private final int          pageCount;
+    private final int          pagesPerChunk;
+    private final ByteBuffer[] chunks;
+    private final int[]        freePages;                    // 空闲page栈
+    private int                freeCount;
+    private ReentrantLock      lock       = new ReentrantLock();
+    private Condition          notFull    = lock.newCondition();
+
+    public OffHeapArena(long capacity, int pageSize){
+        if (pageSize <= 0 || capacity < pageSize) {
+            throw new IllegalArgumentException("capacity : " + capacity + " , pageSize : " + pageSize);
+        }
+
+        this.pageSize = pageSize;
+        this.pageCount = (int) Math.min(Integer.MAX_VALUE, capacity / pageSize);
+        this.pagesPerChunk = Math.max(1, CHUNK_SIZE / pageSize);
+        this.chunks = new ByteBuffer[(pageCount + pagesPerChunk - 1) / pagesPerChunk];
+        this.freePages = new int[pageCount];
+        // 倒序入栈，优先使用低位的page，尽量少申请chunk
+        for (int i = 0; i < pageCount; i++) {
+            freePages[i] = pageCount - 1 - i;
+        }
+        this.freeCount = pageCount;
+    }
+
+    /**
+     * 申请可容纳length字节的page，超过等待时间返回null，超过总容量直接返回null
+     */
+    public int[] allocate(int length, long timeout, TimeUnit unit) throws InterruptedException {
+        int need = (length + pageSize - 1) / pageSize;
+        if (need > pageCount) {
+            return null;
+        }
+
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (freeCount < need) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+
+            int[] pages = new int[need];
+            for (int i = 0; i < need; i++) {
+                pages[i] = freePages[--freeCount];
+                int chunk = pages[i] / pagesPerChunk;
+                if (chunks[chunk] == null) {
+                    int size = Math.min(pagesPerChunk, pageCount - chunk * pagesPerChunk) * pageSize;
+                    chunks[chunk] = ByteBuffer.allocateDirect(size);
+                }
+            }
+            return pages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 释放page，唤醒等待的申请方
+     */
+    public void free(int[] pages) {
+        if (pages == null || pages.length == 0) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            for (int page : pages) {
+                freePages[freeCount++] = page;
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 将数据写入已申请的page
+     */
+    public void write(int[] pages, byte[] data, int length) {
+        int offset = 0;
+        for (int page : pages) {
+            int size = Math.min(pageSize, length - offset);
+            page(page).put(data, offset, size);
+            offset += size;
+        }
+    }
+
+    /**
+     * 读取page中的数据，返回的流不需要关闭
+     */
+    public InputStream read(final int[] pages, final int length) {
+        return new InputStream() {
+
+            private int        index  = 0;
+            private int        remain = length;
+            private ByteBuffer current;
+
+            public int read() {
+                if (!prepare()) {
+                    return -1;
+                }
+                remain--;
+                return current.get() & 0xFF;
+            }
+
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!prepare()) {
+                    return -1;
+                }
+
+                len = Math.min(len, current.remaining());
+                current.get(b, off, len);
+                remain -= len;
+                return len;
+            }
+
+            public int available() {
+                return remain;
+            }
+
+            private boolean prepare() {
+                if (remain <= 0) {
+                    return false;
+                }
+                if (current == null || !current.hasRemaining()) {
+                    current = page(pages[index++]);
+                    current.limit(current.position() + Math.min(pageSize, remain));
+                }
+                return true;
+            }
+        };
+    }
+
+    private ByteBuffer page(int page) {
+        // duplicate出独立的position/limit，支持并发读写不同的page
+        ByteBuffer buffer = chunks[page / pagesPerChunk].duplicate();
+        int position = (page % pagesPerChunk) * pageSize;
+        buffer.limit(position + pageSize);
+        buffer.position(position);
+        return buffer;
+    }
+
+    public long getCapacity() {
+        return (long) pageCount * pageSize;
+    }
+
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return (long) (pageCount - freeCount) * pageSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 已实际申请的堆外内存大小
+     */
+    public long getAllocatedBytes() {
+        lock.lock();
+        try {
+            long allocated = 0;
+            for (ByteBuffer chunk : chunks) {
+                if (chunk != null) {
+                    allocated += chunk.capacity();
+                }
+            }
+            return allocated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+}
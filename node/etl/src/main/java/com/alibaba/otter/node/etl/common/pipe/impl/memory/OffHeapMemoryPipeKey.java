@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.common.pipe.impl.memory;
+
+/**
+ * 基于堆外内存的pipekey实现，用于区分数据存放的pipe
+ *
+ * @author jianghang
+ */
+public class OffHeapMemoryPipeKey extends MemoryPipeKey {
+
+    private static final long serialVersionUID = 4716309285742510366L;
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.common.pipe.impl.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.alibaba.otter.node.etl.common.pipe.Pipe;
+import com.alibaba.otter.node.etl.common.pipe.PipeDataType;
+import com.alibaba.otter.node.etl.common.pipe.exception.PipeException;
+import com.alibaba.otter.node.etl.common.pipe.impl.ColumnarRowBatchCodec;
+import com.alibaba.otter.shared.common.utils.thread.NamedThreadFactory;
+import com.alibaba.otter.shared.etl.model.DbBatch;
+import com.alibaba.otter.shared.etl.model.FileBatch;
+
+/**
+ * <pre>
+ * 基于堆外内存的memory pipe实现
+ *
+ * 1. rowBatch按列式格式编码后存放在固定容量的堆外内存中，不再依赖软引用，也不会增加old区的压力
+ * 2. 容量不足时put会阻塞等待(背压)，等待期间会主动清理已过期的数据
+ * 3. 后台定时清理过期数据，rollback后即使没有新的put，过期的堆外内存和堆内batch也能及时释放
+ * 4. 超过等待时间或者单个batch超过总容量时，退化为堆内存储，保证数据不丢失
+ * </pre>
+ *
+ * @author jianghang
+ */
+public class OffHeapRowDataMemoryPipe implements Pipe<DbBatch, MemoryPipeKey>, InitializingBean, DisposableBean {
+
+    private static final Logger             logger        = LoggerFactory.getLogger(OffHeapRowDataMemoryPipe.class);
+    private static final long               WAIT_INTERVAL = 100L;                                                   // 背压等待时检查过期数据的间隔
+    private static ScheduledExecutorService cleaner       = Executors.newScheduledThreadPool(1,
+                                                                  new NamedThreadFactory("MemoryPipe-Cleaner"));
+    private Long                            timeout       = 60 * 1000L;                                             // 数据过期时间
+    private long                            period        = 5 * 1000L;                                              // 后台清理过期数据的间隔
+    private long                            capacity      = 256 * 1024 * 1024L;                                     // 堆外内存容量
+    private int                             pageSize      = 64 * 1024;
+    private long                            putTimeout    = 10 * 1000L;                                             // 容量不足时最多等待的时间
+    private OffHeapArena                    arena;
+    private Map<MemoryPipeKey, Entry>       entries       = new ConcurrentHashMap<MemoryPipeKey, Entry>();
+    private AtomicLong                      payloadBytes  = new AtomicLong(0);
+    private AtomicLong                      evictCount    = new AtomicLong(0);
+    private AtomicLong                      overflowCount = new AtomicLong(0);
+    private AtomicLong                      blockCount    = new AtomicLong(0);
+    private ScheduledFuture<?>              cleanFuture;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        arena = new OffHeapArena(capacity, pageSize);
+        // 启动一下清理任务
+        cleanFuture = cleaner.scheduleWithFixedDelay(new Runnable() {
+
+            public void run() {
+                try {
+                    evictExpired();
+                } catch (Throwable e) {
+                    logger.error("evict_expired_error", e);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (cleanFuture != null) {
+            cleanFuture.cancel(false);
+        }
+
+        for (MemoryPipeKey key : entries.keySet()) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                release(entry);
+            }
+        }
+    }
+
+    @Override
+    public MemoryPipeKey put(DbBatch data) throws PipeException {
+        MemoryPipeKey key = new OffHeapMemoryPipeKey();
+        key.setIdentity(data.getRowBatch().getIdentity());
+        key.setDataType(PipeDataType.DB_BATCH);
+
+        Entry entry = new Entry();
+        entry.fileBatch = data.getFileBatch();
+        entry.root = data.getRoot();
+        byte[] bytes;
+        try {
+            bytes = ColumnarRowBatchCodec.encode(data.getRowBatch());
+        } catch (IOException e) {
+            throw new PipeException("encode_error", e);
+        }
+
+        int[] pages = allocate(bytes.length);
+        if (pages == null) {
+            // 堆外内存不足，退化为堆内存储
+            overflowCount.incrementAndGet();
+            logger.warn("off-heap memory pipe is full, use heap for batch {} , size : {} , {}", new Object[] {
+                    key.getIdentity(), bytes.length, statistics() });
+            entry.dbBatch = data;
+        } else {
+            arena.write(pages, bytes, bytes.length);
+            entry.pages = pages;
+            entry.length = bytes.length;
+            payloadBytes.addAndGet(bytes.length);
+        }
+
+        entry.time = System.currentTimeMillis();
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            release(old);
+        }
+        return key;
+    }
+
+    @Override
+    public DbBatch get(MemoryPipeKey key) throws PipeException {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            if (isExpired(entry, System.currentTimeMillis())) {
+                evictCount.incrementAndGet();
+                return null;
+            }
+
+            if (entry.dbBatch != null) {
+                return entry.dbBatch;
+            }
+
+            DbBatch dbBatch = new DbBatch();
+            dbBatch.setRowBatch(ColumnarRowBatchCodec.decode(arena.read(entry.pages, entry.length)));
+            dbBatch.setFileBatch(entry.fileBatch);
+            dbBatch.setRoot(entry.root);
+            return dbBatch;
+        } catch (IOException e) {
+            throw new PipeException("decode_error", e);
+        } finally {
+            release(entry);
+        }
+    }
+
+    private int[] allocate(int length) {
+        long deadline = System.currentTimeMillis() + putTimeout;
+        boolean blocked = false;
+        try {
+            while (true) {
+                evictExpired();
+                long remain = deadline - System.currentTimeMillis();
+                int[] pages = arena.allocate(length, Math.max(0, Math.min(remain, WAIT_INTERVAL)), TimeUnit.MILLISECONDS);
+                if (pages != null || remain <= 0 || length > arena.getCapacity()) {
+                    return pages;
+                }
+
+                if (!blocked) {
+                    blocked = true;
+                    blockCount.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PipeException("interrupted", e);
+        }
+    }
+
+    /**
+     * 清理已过期的数据，比如rollback后不会有后续节点来获取
+     */
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<MemoryPipeKey, Entry> item : entries.entrySet()) {
+            Entry entry = item.getValue();
+            if (isExpired(entry, now) && entries.remove(item.getKey(), entry)) {
+                evictCount.incrementAndGet();
+                release(entry);
+            }
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.time > timeout;
+    }
+
+    private void release(Entry entry) {
+        if (entry.pages != null) {
+            arena.free(entry.pages);
+            payloadBytes.addAndGet(-entry.length);
+            entry.pages = null;
+        }
+        entry.dbBatch = null;
+    }
+
+    public String statistics() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("capacity=").append(arena.getCapacity());
+        builder.append(", allocated=").append(arena.getAllocatedBytes());
+        builder.append(", used=").append(arena.getUsedBytes());
+        builder.append(", payload=").append(payloadBytes.get());
+        builder.append(", entries=").append(entries.size());
+        builder.append(", evict=").append(evictCount.get());
+        builder.append(", overflow=").append(overflowCount.get());
+        builder.append(", block=").append(blockCount.get());
+        return builder.toString();
+    }
+
+    private static class Entry {
+
+        private int[]     pages;
+        private int       length;
+        private DbBatch   dbBatch;  // 堆外内存不足时的堆内存储
+        private FileBatch fileBatch; // 附件只包含文件描述，直接保存在堆内
+        private File      root;
+        private long      time;
+    }
+
+    // ============== setter / getter ===============
+
+    public long getUsedBytes() {
+        return arena.getUsedBytes();
+    }
+
+    public long getPayloadBytes() {
+        return payloadBytes.get();
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public void setTimeout(Long timeout) {
+        this.timeout = timeout;
+    }
+
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public void setPutTimeout(long putTimeout) {
+        this.putTimeout = putTimeout;
+    }
+
+    public void setPeriod(long period) {
+        this.period = period;
+    }
+
+}
@@ -58,6 +58,10 @@ public abstract class AbstractRpcPipe<T, KEY extends RpcPipeKey> implements Pipe
         }
 
         public RpcPipeKey key;
+        public boolean    columnar = false; // 请求方是否支持列式格式，老版本的请求方默认为false
+        public double[]   rpcCosts;         // 请求方测量的rpc拉取耗时模型，用于发送方自适应选择pipe
+        public double[]   httpCosts;        // 请求方测量的http拉取耗时模型
+        public Long       nid;              // 请求方节点，发送方按请求方区分耗时模型
 
         public RpcPipeKey getKey() {
             return key;
@@ -67,6 +71,68 @@ public abstract class AbstractRpcPipe<T, KEY extends RpcPipeKey> implements Pipe
             this.key = key;
         }
 
+        public boolean isColumnar() {
+            return columnar;
+        }
+
+        public void setColumnar(boolean columnar) {
+            this.columnar = columnar;
+        }
+
+        public double[] getRpcCosts() {
+            return rpcCosts;
+        }
+
+        public void setRpcCosts(double[] rpcCosts) {
+            this.rpcCosts = rpcCosts;
+        }
+
+        public double[] getHttpCosts() {
+            return httpCosts;
+        }
+
+        public void setHttpCosts(double[] httpCosts) {
+            this.httpCosts = httpCosts;
+        }
+
+        public Long getNid() {
+            return nid;
+        }
+
+        public void setNid(Long nid) {
+            this.nid = nid;
+        }
+
+    }
+
+    // rpc push操作事件，发送端主动推送数据到接收端
+    public static class RpcPushEvent extends Event {
+
+        private static final long serialVersionUID = -3652396480393461842L;
+
+        public RpcPushEvent(EventType eventType){
+            super(eventType);
+        }
+
+        public RpcPipeKey      key;
+        public ColumnarDbBatch data;
+
+        public RpcPipeKey getKey() {
+            return key;
+        }
+
+        public void setKey(RpcPipeKey key) {
+            this.key = key;
+        }
+
+        public ColumnarDbBatch getData() {
+            return data;
+        }
+
+        public void setData(ColumnarDbBatch data) {
+            this.data = data;
+        }
+
     }
 
     // ============== setter / getter ===============
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.common.pipe.impl.rpc;
+
+import java.io.File;
+import java.io.Serializable;
+
+import com.alibaba.otter.shared.etl.model.FileBatch;
+
+/**
+ * rpc pipe传输的列式dbBatch，rowBatch部分为ColumnarRowBatchCodec编码后的字节
+ *
+ * @author jianghang
+ */
+public class ColumnarDbBatch implements Serializable {
+
+    private static final long serialVersionUID = 3291862431465802251L;
+    private byte[]            rowBatch;                               // 列式编码后的rowBatch
+    private FileBatch         fileBatch;
+    private File              root;
+
+    public byte[] getRowBatch() {
+        return rowBatch;
+    }
+
+    public void setRowBatch(byte[] rowBatch) {
+        this.rowBatch = rowBatch;
+    }
+
+    public FileBatch getFileBatch() {
+        return fileBatch;
+    }
+
+    public void setFileBatch(FileBatch fileBatch) {
+        this.fileBatch = fileBatch;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public void setRoot(File root) {
+        this.root = root;
+    }
+
+}
@@ -16,35 +16,101 @@
 
 package com.alibaba.otter.node.etl.common.pipe.impl.rpc;
 
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+
 import com.alibaba.otter.node.common.communication.NodeCommmunicationClient;
 import com.alibaba.otter.node.common.config.ConfigClientService;
+import com.alibaba.otter.node.etl.OtterConstants;
 import com.alibaba.otter.node.etl.common.pipe.PipeDataType;
 import com.alibaba.otter.node.etl.common.pipe.exception.PipeException;
+import com.alibaba.otter.node.etl.common.pipe.impl.AdaptivePipeChooser;
+import com.alibaba.otter.node.etl.common.pipe.impl.ColumnarRowBatchCodec;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+import com.alibaba.otter.shared.common.utils.thread.NamedThreadFactory;
 import com.alibaba.otter.shared.communication.core.CommunicationRegistry;
 import com.alibaba.otter.shared.communication.core.model.EventType;
 import com.alibaba.otter.shared.etl.model.DbBatch;
+import com.alibaba.otter.shared.etl.model.Identity;
+import com.alibaba.otter.shared.etl.model.RowBatch;
+import com.google.common.base.Function;
+import com.google.common.collect.OtterMigrateMap;
 
 /**
  * 基于rpc调用实现rowData的数据传递
  * 
+ * <pre>
+ * 开启useRpcPushPipe后，put完成后立即异步推送数据到目标节点，目标节点get时优先从本地的推送缓存中获取
+ * 1. 每个目标节点同时推送的批次数受pushConcurrency限制，超过后不推送
+ * 2. 目标节点的推送缓存按字节数限制容量，容量不足时拒绝推送
+ * 3. 未推送/推送失败/被拒绝的数据仍然保留在本地cache中，目标节点按原有方式拉取
+ * </pre>
+ * 
  * @author jianghang 2011-10-18 下午02:56:47
  * @version 4.0.0
  */
-public class RowDataRpcPipe extends AbstractRpcPipe<DbBatch, RpcPipeKey> {
+public class RowDataRpcPipe extends AbstractRpcPipe<DbBatch, RpcPipeKey> implements DisposableBean {
 
+    private static final Logger      logger                   = LoggerFactory.getLogger(RowDataRpcPipe.class);
+    private static final String      WORKER_NAME              = "RowDataRpcPush";
+    private static final int         DEFAULT_POOL_SIZE        = 5;
+    private static final int         DEFAULT_PUSH_CONCURRENCY = 2;
+    private static final long        DEFAULT_INBOX_CAPACITY   = 64 * 1024 * 1024L;
     private ConfigClientService      configClientService;
     private NodeCommmunicationClient nodeCommmunicationClient;
+    private AdaptivePipeChooser      adaptivePipeChooser;
+    private int                      poolSize                 = DEFAULT_POOL_SIZE;
+    private int                      pushConcurrency          = DEFAULT_PUSH_CONCURRENCY;                      // 每个目标节点同时推送的最大批次数
+    private long                     inboxCapacity            = DEFAULT_INBOX_CAPACITY;                        // 接收推送数据的最大字节数
+    private ExecutorService          executor;
+    private Map<Long, Semaphore>     permits;
+    private RpcPushInbox             inbox;
 
     /**
      * 基于rowData rpc的eventType
      */
     public static enum RowDataRpc implements EventType {
-        get
+        get, push, costs
     }
 
     public RowDataRpcPipe(){
         // 注册一下事件处理
         CommunicationRegistry.regist(RowDataRpc.get, this);
+        CommunicationRegistry.regist(RowDataRpc.push, this);
+        CommunicationRegistry.regist(RowDataRpc.costs, this);
+    }
+
+    public void afterPropertiesSet() throws Exception {
+        super.afterPropertiesSet();
+        inbox = new RpcPushInbox(inboxCapacity, timeout);
+        permits = OtterMigrateMap.makeComputingMap(new Function<Long, Semaphore>() {
+
+            public Semaphore apply(Long nid) {
+                return new Semaphore(pushConcurrency);
+            }
+        });
+        executor = new ThreadPoolExecutor(poolSize,
+            poolSize,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue(poolSize * 4),
+            new NamedThreadFactory(WORKER_NAME),
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public void destroy() throws Exception {
+        executor.shutdownNow();
     }
 
     @Override
@@ -57,11 +123,42 @@ public class RowDataRpcPipe extends AbstractRpcPipe<DbBatch, RpcPipeKey> {
         return key;
     }
 
+    /**
+     * 存储数据，开启push模式时同时异步推送到目标节点
+     */
+    public RpcPipeKey put(DbBatch data, Long nid) throws PipeException {
+        RpcPipeKey key = put(data);
+        Pipeline pipeline = configClientService.findPipeline(key.getIdentity().getPipelineId());
+        if (pipeline.getParameters().getUseRpcPushPipe()) {
+            push(key, data, nid);
+        }
+        return key;
+    }
+
     @Override
     public DbBatch get(RpcPipeKey key) throws PipeException {
+        // 优先查找一下已推送到本地的数据
+        ColumnarDbBatch pushed = inbox.take(key);
+        if (pushed != null) {
+            return decode(pushed);
+        }
+
         RpcEvent event = new RpcEvent(RowDataRpc.get);
         event.setKey(key);
-        return (DbBatch) nodeCommmunicationClient.call(key.getNid(), event);
+        // 和http pipe一致，开启列式格式后才要求提供方返回列式编码的数据
+        Pipeline pipeline = configClientService.findPipeline(key.getIdentity().getPipelineId());
+        event.setColumnar(pipeline.getParameters().getUseColumnarBatch());
+        if (adaptivePipeChooser != null && key.getIdentity() != null) {
+            // 顺带回传本端测量的拉取耗时
+            fillCosts(event, key.getIdentity().getPipelineId(), key.getNid());
+        }
+        Object result = nodeCommmunicationClient.call(key.getNid(), event);
+        if (result instanceof ColumnarDbBatch) {
+            return decode((ColumnarDbBatch) result);
+        } else {
+            // 老版本的提供方直接返回dbBatch
+            return (DbBatch) result;
+        }
     }
 
     /**
@@ -70,9 +167,127 @@ public class RowDataRpcPipe extends AbstractRpcPipe<DbBatch, RpcPipeKey> {
      * @return
      */
     @SuppressWarnings("unused")
-    private DbBatch onGet(RpcEvent event) {
-        // 不建议使用remove，rpc调用容易有retry请求，导致第二次拿到的数据为null
-        return cache.remove(event.getKey());
+    private Object onGet(RpcEvent event) {
+        // 接收端只会拉取一次，拉取后直接移除。推送的数据只有在接收端保存成功后才会从cache中移除，接收端取不到推送数据时仍能拉取到
+        DbBatch dbBatch = cache.remove(event.getKey());
+        onCosts(event);
+        if (dbBatch == null || !event.isColumnar()) {
+            return dbBatch;
+        }
+
+        return encode(dbBatch);
+    }
+
+    /**
+     * 处理接收端回传的拉取耗时，老版本的请求方没有nid，无法区分接收端，直接忽略
+     */
+    private Object onCosts(RpcEvent event) {
+        if (adaptivePipeChooser != null && event.getNid() != null && event.getKey().getIdentity() != null) {
+            adaptivePipeChooser.mergeCosts(event.getKey().getIdentity().getPipelineId(),
+                event.getNid(),
+                event.getRpcCosts(),
+                event.getHttpCosts());
+        }
+        return null;
+    }
+
+    /**
+     * 通过http拉取数据后异步回传本端测量的拉取耗时，http方式没有rpc请求可以顺带回传
+     */
+    public void feedbackCosts(final Identity identity, final Long nid) {
+        if (adaptivePipeChooser == null || nid == null) {
+            return;
+        }
+
+        final RpcEvent event = new RpcEvent(RowDataRpc.costs);
+        RpcPipeKey key = new RpcPipeKey();
+        key.setIdentity(identity);
+        key.setNid(nid);
+        event.setKey(key);
+        fillCosts(event, identity.getPipelineId(), nid);
+        try {
+            executor.execute(new Runnable() {
+
+                public void run() {
+                    try {
+                        nodeCommmunicationClient.call(nid, event);
+                    } catch (Throwable e) {
+                        logger.warn("feedback costs to node[" + nid + "] failed", e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池繁忙，等待下一次回传
+        }
+    }
+
+    /**
+     * 处理rpc推送事件，返回true代表数据已保存在本地；返回false代表容量不足或者已经被拉取过，发送端需要保留数据
+     */
+    @SuppressWarnings("unused")
+    private Object onPush(RpcPushEvent event) {
+        return inbox.offer(event.getKey(), event.getData());
+    }
+
+    private void push(final RpcPipeKey key, final DbBatch data, final Long nid) {
+        final Semaphore semaphore = permits.get(nid);
+        if (!semaphore.tryAcquire()) {
+            return; // 推送中的批次过多，由目标节点按需拉取
+        }
+
+        try {
+            executor.execute(new Runnable() {
+
+                public void run() {
+                    try {
+                        MDC.put(OtterConstants.splitPipelineLogFileKey,
+                            String.valueOf(key.getIdentity().getPipelineId()));
+                        RpcPushEvent event = new RpcPushEvent(RowDataRpc.push);
+                        event.setKey(key);
+                        event.setData(encode(data));
+                        Object result = nodeCommmunicationClient.call(nid, event);
+                        if (Boolean.TRUE.equals(result)) {
+                            cache.remove(key); // 目标节点已保存，不再需要保留
+                        }
+                    } catch (Throwable e) {
+                        // 老版本的目标节点不支持push，或者网络异常，保留数据等待拉取
+                        logger.warn("push " + key + " to node[" + nid + "] failed, wait for pull", e);
+                    } finally {
+                        semaphore.release();
+                        MDC.remove(OtterConstants.splitPipelineLogFileKey);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            semaphore.release();
+        }
+    }
+
+    private ColumnarDbBatch encode(DbBatch dbBatch) {
+        ColumnarDbBatch columnarDbBatch = new ColumnarDbBatch();
+        try {
+            columnarDbBatch.setRowBatch(ColumnarRowBatchCodec.encode(dbBatch.getRowBatch()));
+        } catch (IOException e) {
+            throw new PipeException("serial_error", e);
+        }
+        columnarDbBatch.setFileBatch(dbBatch.getFileBatch());
+        columnarDbBatch.setRoot(dbBatch.getRoot());
+        return columnarDbBatch;
+    }
+
+    private DbBatch decode(ColumnarDbBatch columnarDbBatch) {
+        try {
+            RowBatch rowBatch = ColumnarRowBatchCodec.decode(columnarDbBatch.getRowBatch());
+            return new DbBatch(rowBatch, columnarDbBatch.getFileBatch(), columnarDbBatch.getRoot());
+        } catch (IOException e) {
+            throw new PipeException("deserial_error", e);
+        }
+    }
+
+    private void fillCosts(RpcEvent event, Long pipelineId, Long nid) {
+        event.setNid(getNid());
+        event.setRpcCosts(adaptivePipeChooser.getCosts(pipelineId, nid, true));
+        event.setHttpCosts(adaptivePipeChooser.getCosts(pipelineId, nid, false));
     }
 
     private Long getNid() {
@@ -89,4 +304,20 @@ public class RowDataRpcPipe extends AbstractRpcPipe<DbBatch, RpcPipeKey> {
         this.nodeCommmunicationClient = nodeCommmunicationClient;
     }
 
+    public void setAdaptivePipeChooser(AdaptivePipeChooser adaptivePipeChooser) {
+        this.adaptivePipeChooser = adaptivePipeChooser;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public void setPushConcurrency(int pushConcurrency) {
+        this.pushConcurrency = pushConcurrency;
+    }
+
+    public void setInboxCapacity(long inboxCapacity) {
+        this.inboxCapacity = inboxCapacity;
+    }
+
 }
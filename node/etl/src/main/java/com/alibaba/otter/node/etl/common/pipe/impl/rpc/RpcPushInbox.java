@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.common.pipe.impl.rpc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * rpc pipe接收端的推送数据缓存
+ * 
+ * <pre>
+ * 1. 按照推送数据的字节数限制容量，超过容量拒绝推送，发送端保留数据等待接收端按需拉取
+ * 2. 已经被拉取过的key会记录一段时间，拒绝之后迟到的推送，避免占用容量。接收端已经改为拉取，发送端需要继续保留数据
+ * 3. 超过timeout未被取走的数据直接丢弃，和发送端cache的过期时间保持一致
+ * </pre>
+ * 
+ * @author jianghang
+ */
+public class RpcPushInbox {
+
+    private static final Object     PRESENT      = new Object();
+    private static final int        MAX_CONSUMED = 1000;                                                   // 记录最近取走的key数量
+    private final long              capacity;                                                              // 最大字节数
+    private final long              timeout;
+    private long                    size         = 0;
+    private Map<RpcPipeKey, Item>   items        = new LinkedHashMap<RpcPipeKey, Item>();
+    private Map<RpcPipeKey, Object> consumed     = new LRULinkedHashMap<RpcPipeKey, Object>(MAX_CONSUMED);
+
+    public RpcPushInbox(long capacity, long timeout){
+        this.capacity = capacity;
+        this.timeout = timeout;
+    }
+
+    /**
+     * 接收一个推送的数据，只有数据已保存在本地时才返回true，发送端才可以移除数据。返回false代表容量不足或者已经被拉取过
+     */
+    public synchronized boolean offer(RpcPipeKey key, ColumnarDbBatch data) {
+        long now = System.currentTimeMillis();
+        expire(now);
+        if (consumed.containsKey(key)) {
+            return false; // 已经被拉取过，接收端会从发送端拉取，发送端需要保留数据
+        }
+
+        if (items.containsKey(key)) {
+            return true; // 重复推送，数据已经保存
+        }
+
+        long length = sizeOf(data);
+        if (size + length > capacity) {
+            return false;
+        }
+
+        items.put(key, new Item(data, length, now));
+        size += length;
+        return true;
+    }
+
+    /**
+     * 取走推送的数据，不存在返回null
+     */
+    public synchronized ColumnarDbBatch take(RpcPipeKey key) {
+        consumed.put(key, PRESENT);
+        Item item = items.remove(key);
+        if (item == null) {
+            return null;
+        }
+
+        size -= item.size;
+        return item.data;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    private void expire(long now) {
+        Iterator<Item> iter = items.values().iterator();
+        while (iter.hasNext()) {
+            Item item = iter.next();
+            if (now - item.time < timeout) {
+                break; // 按推送顺序有序
+            }
+
+            iter.remove();
+            size -= item.size;
+        }
+    }
+
+    private long sizeOf(ColumnarDbBatch data) {
+        return data.getRowBatch() == null ? 0 : data.getRowBatch().length;
+    }
+
+    private static class LRULinkedHashMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 8302747853372127744L;
+        private final int         maxCapacity;
+
+        public LRULinkedHashMap(int maxCapacity){
+            this.maxCapacity = maxCapacity;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxCapacity;
+        }
+    }
+
+    private static class Item {
+
+        private final ColumnarDbBatch data;
+        private final long            size;
+        private final long            time;
+
+        public Item(ColumnarDbBatch data, long size, long time){
+            this.data = data;
+            this.size = size;
+            this.time = time;
+        }
+    }
+}
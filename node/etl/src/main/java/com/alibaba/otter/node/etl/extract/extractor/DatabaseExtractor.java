@@ -20,9 +20,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -73,6 +75,8 @@ import com.alibaba.otter.shared.etl.model.EventData;
  *  2. 当其中的一次并行查询出现异常，会立即中断之前的并行查询请求，同时忽略后续的查询直接退出(在出错时快速响应)
  *  3. 编写{@linkplain DatabaseExtractWorker}代码时需注意，在适合的地方响应Thread.currentThread().isInterrupted(),在dbcp连接池和driver代码中是有支持
  *  4. 反查数据库，只会反查update=true的字段，按需反查，因为通过反查之后字段都会变为update=true，不必要的字段会进行数据同步 (modify by ljh at 2012-11-04)
+ *  5. 开启批量反查后，同一张表的记录会按batchSize合并为一条sql进行反查 {@linkplain DatabaseBatchExtractWorker}，减少数据库交互次数
+ *  6. 未开启批量反查时，同一张表的记录会按taskSize合并为一个任务依次反查 {@linkplain DatabaseExtractTask}，减少任务提交的开销
  * </pre>
  * 
  * @author jianghang 2012-4-18 下午04:53:15
@@ -84,10 +88,21 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
     private static final String WORKER_NAME_FORMAT = "pipelineId = %s , pipelineName = %s , " + WORKER_NAME;
     private static final Logger logger             = LoggerFactory.getLogger(DatabaseExtractor.class);
     private static final int    DEFAULT_POOL_SIZE  = 5;
+    private static final int    DEFAULT_BATCH_SIZE = 100;
+    private static final int    DEFAULT_TASK_SIZE  = 10;
     private static final int    retryTimes         = 3;
+    private static final String SEP                = SystemUtils.LINE_SEPARATOR;
+    // 反查失败时输出的数据格式，所有worker共用
+    private static final String EVENT_DATA_FORMAT  = "-----------------" + SEP + "- PairId: {0} , TableId: {1} " + SEP
+                                                     + "-----------------" + SEP + "---START" + SEP + "---Pks" + SEP
+                                                     + "{2}" + SEP + "---Sql" + SEP + "{3}" + SEP + "---END" + SEP;
     private int                 poolSize           = DEFAULT_POOL_SIZE;
+    private int                 batchSize          = DEFAULT_BATCH_SIZE;
+    private int                 taskSize           = DEFAULT_TASK_SIZE;
     private ExecutorService     executor;
 
+    private static final EventColumnIndexComparable INDEX_COMPARATOR = new EventColumnIndexComparable();
+
     @Override
     public void extract(DbBatch dbBatch) throws ExtractException {
         Assert.notNull(dbBatch);
@@ -96,6 +111,7 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
         Pipeline pipeline = getPipeline(dbBatch.getRowBatch().getIdentity().getPipelineId());
         boolean mustDb = pipeline.getParameters().getSyncConsistency().isMedia();
         boolean isRow = pipeline.getParameters().getSyncMode().isRow();// 如果是行记录是必须进行数据库反查
+        boolean useBatch = pipeline.getParameters().getUseBatchExtract();// 是否按表进行批量反查
         // 读取一次配置
         adjustPoolSize(pipeline.getParameters().getExtractPoolSize()); // 调整下线程池，Extractor会被池化处理
         ExecutorCompletionService completionService = new ExecutorCompletionService(executor);
@@ -103,15 +119,19 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
         // 进行并发提交
         ExtractException exception = null;
         // 每个表进行处理
-        List<DataItem> items = new ArrayList<DataItem>();
         List<Future> futures = new ArrayList<Future>();
+        Map<List<Object>, List<DataItem>> batchItems = new LinkedHashMap<List<Object>, List<DataItem>>();
         List<EventData> eventDatas = dbBatch.getRowBatch().getDatas();
-        for (EventData eventData : eventDatas) {
+        // 只为需要反查的记录构造DataItem，按下标存放，便于最后一次遍历完成过滤
+        DataItem[] items = new DataItem[eventDatas.size()];
+        // 单条反查时按表合并为一个任务，记录数较少时减小合并的数量，保证并行度
+        int tableTaskSize = Math.max(1, Math.min(taskSize, eventDatas.size() / (poolSize + 1)));
+        for (int i = 0; i < eventDatas.size(); i++) {
+            EventData eventData = eventDatas.get(i);
             if (eventData.getEventType().isDdl()) {
                 continue;
             }
 
-            DataItem item = new DataItem(eventData);
             // 针对row模式，需要去检查一下当前是否已经包含row记录的所有字段，如果发现字段不足，则执行一次数据库查询
             boolean flag = mustDb
                            || (eventData.getSyncConsistency() != null && eventData.getSyncConsistency().isMedia());
@@ -132,24 +152,30 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
             }
 
             if (flag && (eventData.getEventType().isInsert() || eventData.getEventType().isUpdate())) {// 判断是否需要反查
-                Future future = completionService.submit(new DatabaseExtractWorker(pipeline, item), null); // 提交进行并行查询
-                if (future.isDone()) {
-                    // 立即判断一次，因为使用了CallerRun可能当场跑出结果，针对有异常时快速响应，而不是等跑完所有的才抛异常
-                    try {
-                        future.get();
-                    } catch (InterruptedException e) {
-                        cancel(futures);// 取消完之后立马退出
-                        throw new ExtractException(e);
-                    } catch (ExecutionException e) {
-                        cancel(futures); // 取消完之后立马退出
-                        throw new ExtractException(e);
-                    }
+                DataItem item = new DataItem(eventData);
+                items[i] = item;
+                // 按表进行归类，攒够一批后再提交
+                int size = useBatch ? batchSize : tableTaskSize;
+                List<Object> tableKey = Arrays.<Object> asList(eventData.getTableId(),
+                    eventData.getSchemaName(),
+                    eventData.getTableName());
+                List<DataItem> tableItems = batchItems.get(tableKey);
+                if (tableItems == null) {
+                    tableItems = new ArrayList<DataItem>(size);
+                    batchItems.put(tableKey, tableItems);
                 }
 
-                futures.add(future);// 记录一下添加的任务
+                tableItems.add(item);
+                if (tableItems.size() >= size) {
+                    submit(completionService, buildWorker(pipeline, tableItems, useBatch), futures); // 提交进行并行查询
+                    batchItems.remove(tableKey);
+                }
             }
+        }
 
-            items.add(item);// 按顺序添加
+        // 提交剩余不足一批的记录
+        for (List<DataItem> tableItems : batchItems.values()) {
+            submit(completionService, buildWorker(pipeline, tableItems, useBatch), futures);
         }
 
         // 开始处理结果
@@ -175,14 +201,58 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
             throw exception;
         } else {
             // 全部成功分支, 构造返回结果也要保证原始的顺序
-            for (int i = 0; i < items.size(); i++) {
-                DataItem item = items.get(i);
-                if (item.filter) { // 忽略需要被过滤的数据，比如数据库反查时记录已经不存在
-                    eventDatas.remove(item.getEventData());
-                }
+            compact(eventDatas, items);
+        }
+
+    }
+
+    /**
+     * 一次遍历移除需要被过滤的数据，比如数据库反查时记录已经不存在，保留的数据顺序不变
+     */
+    private void compact(List<EventData> eventDatas, DataItem[] items) {
+        int size = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] != null && items[i].isFilter()) {
+                continue;
+            }
+
+            if (size != i) {
+                eventDatas.set(size, eventDatas.get(i));
+            }
+            size++;
+        }
+
+        if (size < items.length) {
+            eventDatas.subList(size, items.length).clear();
+        }
+    }
+
+    private Runnable buildWorker(Pipeline pipeline, List<DataItem> tableItems, boolean useBatch) {
+        if (useBatch) {
+            return new DatabaseBatchExtractWorker(pipeline, tableItems);
+        } else if (tableItems.size() == 1) {
+            return new DatabaseExtractWorker(pipeline, tableItems.get(0));
+        } else {
+            return new DatabaseExtractTask(pipeline, tableItems);
+        }
+    }
+
+    private void submit(ExecutorCompletionService completionService, Runnable worker, List<Future> futures) {
+        Future future = completionService.submit(worker, null); // 提交进行并行查询
+        if (future.isDone()) {
+            // 立即判断一次，因为使用了CallerRun可能当场跑出结果，针对有异常时快速响应，而不是等跑完所有的才抛异常
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                cancel(futures);// 取消完之后立马退出
+                throw new ExtractException(e);
+            } catch (ExecutionException e) {
+                cancel(futures); // 取消完之后立马退出
+                throw new ExtractException(e);
             }
         }
 
+        futures.add(future);// 记录一下添加的任务
     }
 
     private boolean checkNeedDbForRowMode(Pipeline pipeline, EventData eventData) {
@@ -270,23 +340,13 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
     class DatabaseExtractWorker implements Runnable {
 
         private final int    event_default_capacity = 1024;                      // 预设值StringBuilder，减少扩容影响
-        private String       eventData_format       = null;
-        private final String SEP                    = SystemUtils.LINE_SEPARATOR;
 
         private Pipeline     pipeline;
         private DataItem     item;
         private EventData    eventData;
-        {
-            eventData_format = "-----------------" + SEP;
-            eventData_format += "- PairId: {0} , TableId: {1} " + SEP;
-            eventData_format += "-----------------" + SEP;
-            eventData_format += "---START" + SEP;
-            eventData_format += "---Pks" + SEP;
-            eventData_format += "{2}" + SEP;
-            eventData_format += "---Sql" + SEP;
-            eventData_format += "{3}" + SEP;
-            eventData_format += "---END" + SEP;
-        }
+        private DbDialect    dbDialect;
+        private TableData    keyTableData;
+        private TableData    columnTableData;
 
         public DatabaseExtractWorker(Pipeline pipeline, DataItem item){
             this.pipeline = pipeline;
@@ -298,112 +358,116 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
             try {
                 MDC.put(OtterConstants.splitPipelineLogFileKey, String.valueOf(pipeline.getId()));
                 Thread.currentThread().setName(String.format(WORKER_NAME_FORMAT, pipeline.getId(), pipeline.getName()));
-                // 获取数据表信息
-                DataMedia dataMedia = ConfigHelper.findDataMedia(pipeline, eventData.getTableId());
-                DbDialect dbDialect = dbDialectFactory.getDbDialect(pipeline.getId(),
-                    (DbMediaSource) dataMedia.getSource());
-                Table table = dbDialect.findTable(eventData.getSchemaName(), eventData.getTableName());
-                TableData keyTableData = buildTableData(table, eventData.getKeys());
-
-                // oracle类型特殊处理下
-                if (dbDialect instanceof OracleDialect) {
-                    keyTableData.columnTypes = getOraclePkTypes(table, keyTableData.columnNames);
-                }
+                extract();
+            } catch (InterruptedException e) {
+                // ignore
+            } finally {
+                Thread.currentThread().setName(WORKER_NAME);
+                MDC.remove(OtterConstants.splitPipelineLogFileKey);
+            }
+        }
 
-                boolean needAll = pipeline.getParameters().getSyncMode().isRow()
-                                  || (eventData.getSyncMode() != null && eventData.getSyncMode().isRow());
-
-                // 增加一种case, 针对oracle erosa有时侯结果记录只有主键，没有变更字段，需要做一次反查，获取所有字段
-                needAll |= CollectionUtils.isEmpty(eventData.getUpdatedColumns())
-                           && dataMedia.getSource().getType().isOracle();
-
-                List<DataMediaPair> mediaParis = ConfigHelper.findDataMediaPairByMediaId(pipeline, dataMedia.getId());
-                List<String> viewColumnNames = buildMaxColumnsFromColumnPairs(mediaParis, eventData.getKeys());
-
-                // TODO 后续版本测试下
-                // if (needAll) {
-                // boolean needDb = checkNeedDbForRowMode(table,
-                // viewColumnNames, eventData);
-                // if (needAll && !needDb) {// 不需要进行反查
-                // item.setFilter(false);
-                // return;
-                // }
-                // }
-
-                // modified by ljh at 2012-11-04
-                // 反查数据时只反查带update=true标识的数据，因为update=false的记录可能只是进行filter需要用到的数据，不需要反查
-                TableData columnTableData = buildTableData(table,
-                    eventData.getUpdatedColumns(),
-                    needAll,
-                    viewColumnNames);
-
-                if (columnTableData.columnNames.length == 0) {
-                    // 全主键，不需要进行反查
-                } else {
-                    List<String> newColumnValues = select(dbDialect,
-                        eventData.getSchemaName(),
-                        eventData.getTableName(),
-                        keyTableData,
-                        columnTableData);
-
-                    if (newColumnValues == null) {
-                        // miss from db
-                        // 设置为filter=true，可能存在丢数据的风险.
-                        // 比如针对源库发生主备切换，otter反查的是备库，查询不到对应的记录
-                        // item.setFilter(true);
-
-                        // 针对需要自定义反查数据库的，允许忽略
-                        // a. 自由门触发的数据，不存在时可以忽略
-                        // b. 回环补救算法触发的数据，不存在时可以忽略
-                        boolean needFilter = eventData.isRemedy() || pipeline.getParameters().getSkipNoRow();
-                        item.setFilter(needFilter);
-
-                        // 判断主键是否有变更，如果变更了，就原样返回item
-                        int index = 0;
-                        for (EventColumn oldKey : eventData.getOldKeys()) {
-                            if (!oldKey.equals(eventData.getKeys().get(index))) {
-                                item.setFilter(false);
-                                break;
-                            }
-                        }
-                    } else {
-                        // 构造反查的返回结果
-                        List<EventColumn> newEventColumns = new ArrayList<EventColumn>();
-                        for (int i = 0; i < newColumnValues.size(); i++) {
-                            EventColumn column = new EventColumn();
-                            column.setIndex(columnTableData.indexs[i]);
-                            column.setColumnName(columnTableData.columnNames[i]);
-                            column.setColumnType(columnTableData.columnTypes[i]);
-                            column.setNull(newColumnValues.get(i) == null);
-                            column.setColumnValue(newColumnValues.get(i));
-                            column.setUpdate(true);
-                            newEventColumns.add(column);
-                        }
+        void extract() throws InterruptedException {
+            prepare();
+            if (columnTableData.columnNames.length == 0) {
+                // 全主键，不需要进行反查
+            } else {
+                fill(select());
+            }
+        }
 
-                        // 处理下columns中不在反查字段内的字段列表
-                        for (EventColumn column : eventData.getColumns()) {
-                            boolean override = false;
-                            for (EventColumn newEventColumn : newEventColumns) {
-                                if (StringUtils.equalsIgnoreCase(newEventColumn.getColumnName(), column.getColumnName())) {
-                                    override = true;
-                                    break;
-                                }
-                            }
+        /**
+         * 准备反查需要的表结构信息，包括主键和需要反查的字段
+         */
+        void prepare() {
+            // 获取数据表信息
+            DataMedia dataMedia = ConfigHelper.findDataMedia(pipeline, eventData.getTableId());
+            dbDialect = dbDialectFactory.getDbDialect(pipeline.getId(), (DbMediaSource) dataMedia.getSource());
+            Table table = dbDialect.findTable(eventData.getSchemaName(), eventData.getTableName());
+            keyTableData = buildTableData(table, eventData.getKeys());
+
+            // oracle类型特殊处理下
+            if (dbDialect instanceof OracleDialect) {
+                keyTableData.columnTypes = getOraclePkTypes(table, keyTableData.columnNames);
+            }
 
-                            if (!override) {// 针对newcolumns不存在的记录进行添加
-                                newEventColumns.add(column);
-                            }
-                        }
+            boolean needAll = pipeline.getParameters().getSyncMode().isRow()
+                              || (eventData.getSyncMode() != null && eventData.getSyncMode().isRow());
+
+            // 增加一种case, 针对oracle erosa有时侯结果记录只有主键，没有变更字段，需要做一次反查，获取所有字段
+            needAll |= CollectionUtils.isEmpty(eventData.getUpdatedColumns())
+                       && dataMedia.getSource().getType().isOracle();
+
+            List<DataMediaPair> mediaParis = ConfigHelper.findDataMediaPairByMediaId(pipeline, dataMedia.getId());
+            List<String> viewColumnNames = buildMaxColumnsFromColumnPairs(mediaParis, eventData.getKeys());
+
+            // TODO 后续版本测试下
+            // if (needAll) {
+            // boolean needDb = checkNeedDbForRowMode(table,
+            // viewColumnNames, eventData);
+            // if (needAll && !needDb) {// 不需要进行反查
+            // item.setFilter(false);
+            // return;
+            // }
+            // }
+
+            // modified by ljh at 2012-11-04
+            // 反查数据时只反查带update=true标识的数据，因为update=false的记录可能只是进行filter需要用到的数据，不需要反查
+            columnTableData = buildTableData(table, eventData.getUpdatedColumns(), needAll, viewColumnNames);
+        }
 
-                        Collections.sort(newEventColumns, new EventColumnIndexComparable()); // 重新排个序
-                        eventData.setColumns(newEventColumns);
+        /**
+         * 根据反查的结果更新eventData，newColumnValues为null代表数据库中不存在该记录
+         */
+        void fill(List<String> newColumnValues) {
+            if (newColumnValues == null) {
+                // miss from db
+                // 设置为filter=true，可能存在丢数据的风险.
+                // 比如针对源库发生主备切换，otter反查的是备库，查询不到对应的记录
+                // item.setFilter(true);
+
+                // 针对需要自定义反查数据库的，允许忽略
+                // a. 自由门触发的数据，不存在时可以忽略
+                // b. 回环补救算法触发的数据，不存在时可以忽略
+                boolean needFilter = eventData.isRemedy() || pipeline.getParameters().getSkipNoRow();
+                item.setFilter(needFilter);
+
+                // 判断主键是否有变更，如果变更了，就原样返回item
+                int index = 0;
+                for (EventColumn oldKey : eventData.getOldKeys()) {
+                    if (!oldKey.equals(eventData.getKeys().get(index))) {
+                        item.setFilter(false);
+                        break;
                     }
                 }
-            } catch (InterruptedException e) {
-                // ignore
-            } finally {
-                Thread.currentThread().setName(WORKER_NAME);
-                MDC.remove(OtterConstants.splitPipelineLogFileKey);
+            } else {
+                // 构造反查的返回结果
+                List<EventColumn> newEventColumns = new ArrayList<EventColumn>(newColumnValues.size()
+                                                                               + eventData.getColumns().size());
+                for (int i = 0; i < newColumnValues.size(); i++) {
+                    EventColumn column = new EventColumn();
+                    column.setIndex(columnTableData.indexs[i]);
+                    column.setColumnName(columnTableData.columnNames[i]);
+                    column.setColumnType(columnTableData.columnTypes[i]);
+                    column.setNull(newColumnValues.get(i) == null);
+                    column.setColumnValue(newColumnValues.get(i));
+                    column.setUpdate(true);
+                    newEventColumns.add(column);
+                }
+
+                // 处理下columns中不在反查字段内的字段列表
+                Set<String> newColumnNames = new HashSet<String>(newEventColumns.size() * 2);
+                for (EventColumn newEventColumn : newEventColumns) {
+                    newColumnNames.add(StringUtils.lowerCase(newEventColumn.getColumnName()));
+                }
+                for (EventColumn column : eventData.getColumns()) {
+                    if (!newColumnNames.contains(StringUtils.lowerCase(column.getColumnName()))) {// 针对newcolumns不存在的记录进行添加
+                        newEventColumns.add(column);
+                    }
+                }
+
+                Collections.sort(newEventColumns, INDEX_COMPARATOR); // 重新排个序
+                eventData.setColumns(newEventColumns);
             }
         }
 
@@ -438,8 +502,9 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
             return new ArrayList<String>(allColumns);
         }
 
-        private List<String> select(DbDialect dbDialect, String schemaName, String tableName, TableData keyTableData,
-                                    TableData columnTableData) throws InterruptedException {
+        List<String> select() throws InterruptedException {
+            String schemaName = eventData.getSchemaName();
+            String tableName = eventData.getTableName();
             String selectSql = dbDialect.getSqlTemplate().getSelectSql(schemaName,
                 tableName,
                 keyTableData.columnNames,
@@ -630,7 +695,7 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
         }
 
         private String dumpEventData(EventData eventData, String selectSql) {
-            return MessageFormat.format(eventData_format,
+            return MessageFormat.format(EVENT_DATA_FORMAT,
                 eventData.getPairId(),
                 eventData.getTableId(),
                 dumpEventColumn(eventData.getKeys()),
@@ -652,6 +717,166 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
 
     }
 
+    /**
+     * 单条反查的合并处理单元，同一张表的多条记录在一个任务内依次反查，减少任务提交和线程切换的开销
+     */
+    class DatabaseExtractTask implements Runnable {
+
+        private Pipeline       pipeline;
+        private List<DataItem> items;
+
+        public DatabaseExtractTask(Pipeline pipeline, List<DataItem> items){
+            this.pipeline = pipeline;
+            this.items = items;
+        }
+
+        public void run() {
+            try {
+                MDC.put(OtterConstants.splitPipelineLogFileKey, String.valueOf(pipeline.getId()));
+                Thread.currentThread().setName(String.format(WORKER_NAME_FORMAT, pipeline.getId(), pipeline.getName()));
+                for (DataItem item : items) {
+                    new DatabaseExtractWorker(pipeline, item).extract();
+                }
+            } catch (InterruptedException e) {
+                // ignore
+            } finally {
+                Thread.currentThread().setName(WORKER_NAME);
+                MDC.remove(OtterConstants.splitPipelineLogFileKey);
+            }
+        }
+    }
+
+    /**
+     * 批量反查数据异步处理单元，针对同一张表的多条记录，按主键合并为一条sql进行反查
+     * 
+     * <pre>
+     * 说明：
+     *  1. 反查字段不同的记录会拆分为多组，每组最多batchSize条记录
+     *  2. 批量结果中未匹配到的记录(比如主键字符大小写不一致)，会退化为单条反查，保证和原有逻辑一致
+     *  3. 批量反查出现异常时，同样退化为单条反查
+     * </pre>
+     */
+    class DatabaseBatchExtractWorker implements Runnable {
+
+        private Pipeline       pipeline;
+        private List<DataItem> items;
+
+        public DatabaseBatchExtractWorker(Pipeline pipeline, List<DataItem> items){
+            this.pipeline = pipeline;
+            this.items = items;
+        }
+
+        public void run() {
+            try {
+                MDC.put(OtterConstants.splitPipelineLogFileKey, String.valueOf(pipeline.getId()));
+                Thread.currentThread().setName(String.format(WORKER_NAME_FORMAT, pipeline.getId(), pipeline.getName()));
+                // 按照主键和反查字段进行分组
+                Map<List<String>, List<DatabaseExtractWorker>> groups = new LinkedHashMap<List<String>, List<DatabaseExtractWorker>>();
+                for (DataItem item : items) {
+                    DatabaseExtractWorker worker = new DatabaseExtractWorker(pipeline, item);
+                    worker.prepare();
+                    if (worker.columnTableData.columnNames.length == 0) {
+                        continue; // 全主键，不需要进行反查
+                    }
+
+                    if (worker.keyTableData.columnNames.length == 0) {
+                        worker.fill(worker.select());// 没有主键，走单条反查
+                        continue;
+                    }
+
+                    List<String> groupKey = new ArrayList<String>();
+                    groupKey.addAll(Arrays.asList(worker.keyTableData.columnNames));
+                    groupKey.add(null); // 分隔主键和反查字段
+                    groupKey.addAll(Arrays.asList(worker.columnTableData.columnNames));
+                    List<DatabaseExtractWorker> group = groups.get(groupKey);
+                    if (group == null) {
+                        group = new ArrayList<DatabaseExtractWorker>();
+                        groups.put(groupKey, group);
+                    }
+                    group.add(worker);
+                }
+
+                for (List<DatabaseExtractWorker> group : groups.values()) {
+                    for (int i = 0; i < group.size(); i += batchSize) {
+                        List<DatabaseExtractWorker> workers = group.subList(i, Math.min(i + batchSize, group.size()));
+                        Map<List<String>, List<String>> rows = select(workers);
+                        for (DatabaseExtractWorker worker : workers) {
+                            List<String> newColumnValues = (rows == null) ? null : rows.get(buildKey(worker.eventData.getKeys()));
+                            if (newColumnValues == null) {
+                                // 批量反查未命中，退化为单条反查，由单条反查决定是否过滤
+                                newColumnValues = worker.select();
+                            }
+                            worker.fill(newColumnValues);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // ignore
+            } finally {
+                Thread.currentThread().setName(WORKER_NAME);
+                MDC.remove(OtterConstants.splitPipelineLogFileKey);
+            }
+        }
+
+        /**
+         * 执行一次批量反查，返回主键值和反查字段值的映射，出现异常时返回null
+         */
+        private Map<List<String>, List<String>> select(List<DatabaseExtractWorker> workers)
+                                                                                            throws InterruptedException {
+            DatabaseExtractWorker first = workers.get(0);
+            TableData keyTableData = first.keyTableData;
+            TableData columnTableData = first.columnTableData;
+            int keySize = keyTableData.columnNames.length;
+            String selectSql = first.dbDialect.getSqlTemplate().getBatchSelectSql(first.eventData.getSchemaName(),
+                first.eventData.getTableName(),
+                keyTableData.columnNames,
+                columnTableData.columnNames,
+                workers.size());
+
+            Object[] args = new Object[keySize * workers.size()];
+            int[] argTypes = new int[keySize * workers.size()];
+            for (int i = 0; i < workers.size(); i++) {
+                System.arraycopy(workers.get(i).keyTableData.columnValues, 0, args, i * keySize, keySize);
+                System.arraycopy(workers.get(i).keyTableData.columnTypes, 0, argTypes, i * keySize, keySize);
+            }
+
+            int[] resultTypes = new int[keySize + columnTableData.columnTypes.length];
+            System.arraycopy(keyTableData.columnTypes, 0, resultTypes, 0, keySize);
+            System.arraycopy(columnTableData.columnTypes, 0, resultTypes, keySize, columnTableData.columnTypes.length);
+
+            for (int i = 0; i < retryTimes; i++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException(); // 退出
+                }
+
+                try {
+                    List<List<String>> result = first.dbDialect.getJdbcTemplate().query(selectSql,
+                        args,
+                        argTypes,
+                        new RowDataMapper(resultTypes));
+                    Map<List<String>, List<String>> rows = new HashMap<List<String>, List<String>>(result.size() * 2);
+                    for (List<String> row : result) {
+                        rows.put(row.subList(0, keySize), row.subList(keySize, row.size()));
+                    }
+                    return rows;
+                } catch (Exception e) {
+                    logger.warn("batch retry [" + (i + 1) + "] failed", e);
+                }
+            }
+
+            logger.warn("batch extract failed , fallback to single extract , sql : {}", selectSql);
+            return null;
+        }
+
+        private List<String> buildKey(List<EventColumn> keys) {
+            List<String> key = new ArrayList<String>(keys.size());
+            for (EventColumn column : keys) {
+                key.add(column.getColumnValue());
+            }
+            return key;
+        }
+    }
+
     /**
      * 数据库处理对象
      */
@@ -694,4 +919,12 @@ public class DatabaseExtractor extends AbstractExtractor<DbBatch> implements Ini
         this.poolSize = poolSize;
     }
 
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setTaskSize(int taskSize) {
+        this.taskSize = taskSize;
+    }
+
 }
@@ -25,12 +25,15 @@ import com.alibaba.otter.node.etl.common.jmx.StageAggregation.AggregationItem;
 import com.alibaba.otter.node.etl.common.pipe.PipeKey;
 import com.alibaba.otter.node.etl.common.task.GlobalTask;
 import com.alibaba.otter.node.etl.extract.SetlFuture;
+import com.alibaba.otter.node.etl.load.exception.LoadException;
 import com.alibaba.otter.node.etl.load.loader.LoadContext;
 import com.alibaba.otter.node.etl.load.loader.OtterLoaderFactory;
 import com.alibaba.otter.node.etl.load.loader.db.context.DbLoadContext;
 import com.alibaba.otter.node.etl.load.loader.interceptor.LoadInterceptor;
+import com.alibaba.otter.node.etl.load.loader.weight.ContinuousLoadController;
 import com.alibaba.otter.shared.arbitrate.model.EtlEventData;
 import com.alibaba.otter.shared.common.model.config.enums.StageType;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
 import com.alibaba.otter.shared.etl.model.DbBatch;
 
 /**
@@ -41,8 +44,9 @@ import com.alibaba.otter.shared.etl.model.DbBatch;
  */
 public class LoadTask extends GlobalTask {
 
-    private OtterLoaderFactory otterLoaderFactory;
-    private LoadInterceptor    dbLoadInterceptor;
+    private OtterLoaderFactory       otterLoaderFactory;
+    private LoadInterceptor          dbLoadInterceptor;
+    private ContinuousLoadController continuousLoadController = new ContinuousLoadController();
 
     public LoadTask(Long pipelineId){
         super(pipelineId);
@@ -53,6 +57,13 @@ public class LoadTask extends GlobalTask {
         while (running) {
             try {
                 final EtlEventData etlEventData = arbitrateEventService.loadEvent().await(pipelineId);
+                // 关闭开关后，还需要等待已经交叠执行的批次按顺序完成
+                Pipeline pipeline = configClientService.findPipeline(pipelineId);
+                final boolean continuous = pipeline.getParameters().getUseContinuousLoad()
+                                           || continuousLoadController.isRunning();
+                if (continuous) {
+                    continuousLoadController.start(etlEventData.getProcessId());
+                }
                 Runnable task = new Runnable() {
 
                     public void run() {
@@ -67,6 +78,7 @@ public class LoadTask extends GlobalTask {
                         String currentName = Thread.currentThread().getName();
                         Thread.currentThread().setName(createTaskName(pipelineId, "LoadWorker"));
                         List<LoadContext> processedContexts = null;
+                        boolean success = false;
                         try {
                             // 后续可判断同步数据是否为rowData
                             List<PipeKey> keys = (List<PipeKey>) etlEventData.getDesc();
@@ -82,7 +94,11 @@ public class LoadTask extends GlobalTask {
                             otterLoaderFactory.setStartTime(dbBatch.getRowBatch().getIdentity(),
                                                             etlEventData.getStartTime());
 
-                            processedContexts = otterLoaderFactory.load(dbBatch);
+                            if (continuous) {
+                                processedContexts = otterLoaderFactory.load(dbBatch, continuousLoadController);
+                            } else {
+                                processedContexts = otterLoaderFactory.load(dbBatch);
+                            }
 
                             if (profiling) {
                                 Long profilingEndTime = System.currentTimeMillis();
@@ -90,8 +106,14 @@ public class LoadTask extends GlobalTask {
                                                                StageType.LOAD,
                                                                new AggregationItem(profilingStartTime, profilingEndTime));
                             }
+                            // 交叠执行时，需要等待前面的批次都single后才能single，保证位点按顺序提交
+                            if (continuous && !continuousLoadController.awaitTurn(etlEventData.getProcessId())) {
+                                throw new LoadException(String.format("[%s] processId[%s] is aborted by previous failed load",
+                                                                      pipelineId, etlEventData.getProcessId()));
+                            }
                             // 处理完成后通知single已完成
                             arbitrateEventService.loadEvent().single(etlEventData);
+                            success = true;
                         } catch (Throwable e) {
                             if (!isInterrupt(e)) {
                                 logger.error(String.format("[%s] loadWork executor is error! data:%s", pipelineId,
@@ -123,10 +145,15 @@ public class LoadTask extends GlobalTask {
                             // pipelineId), ie);
                             // }
 
-                            if (!isInterrupt(e)) {
+                            // 前面的批次失败时已经发送过rollback信号
+                            if (!isInterrupt(e)
+                                && !(continuous && continuousLoadController.isAborted(etlEventData.getProcessId()))) {
                                 sendRollbackTermin(pipelineId, e);
                             }
                         } finally {
+                            if (continuous) {
+                                continuousLoadController.finish(etlEventData.getProcessId(), success);
+                            }
                             Thread.currentThread().setName(currentName);
                             MDC.remove(OtterConstants.splitPipelineLogFileKey);
                         }
@@ -27,6 +27,7 @@ import com.alibaba.otter.node.common.statistics.StatisticsClientService;
 import com.alibaba.otter.node.etl.load.loader.LoadStatsTracker.LoadCounter;
 import com.alibaba.otter.node.etl.load.loader.LoadStatsTracker.LoadThroughput;
 import com.alibaba.otter.node.etl.load.loader.db.DataBatchLoader;
+import com.alibaba.otter.node.etl.load.loader.weight.ContinuousLoadController;
 import com.alibaba.otter.shared.common.model.statistics.table.TableStat;
 import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputStat;
 import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputType;
@@ -46,8 +47,15 @@ public class OtterLoaderFactory {
     private StatisticsClientService statisticsClientService;
 
     public List<LoadContext> load(DbBatch dbBatch) {
+        return load(dbBatch, null);
+    }
+
+    /**
+     * 连续批次交叠load，continuousController为空时和普通的load一致
+     */
+    public List<LoadContext> load(DbBatch dbBatch, ContinuousLoadController continuousController) {
         try {
-            return dataBatchLoader.load(dbBatch);
+            return dataBatchLoader.load(dbBatch, continuousController);
         } finally {
             try {
                 sendStat(dbBatch.getRowBatch().getIdentity());
@@ -18,8 +18,12 @@ package com.alibaba.otter.node.etl.load.loader.db;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
@@ -42,10 +46,13 @@ import com.alibaba.otter.node.etl.load.loader.OtterLoader;
 import com.alibaba.otter.node.etl.load.loader.db.context.DbLoadContext;
 import com.alibaba.otter.node.etl.load.loader.db.context.FileLoadContext;
 import com.alibaba.otter.node.etl.load.loader.interceptor.LoadInterceptor;
+import com.alibaba.otter.node.etl.load.loader.weight.ContinuousLoadController;
+import com.alibaba.otter.node.etl.load.loader.weight.ContinuousLoadController.LoadSlot;
 import com.alibaba.otter.node.etl.load.loader.weight.WeightController;
 import com.alibaba.otter.shared.common.model.config.ConfigHelper;
 import com.alibaba.otter.shared.common.model.config.data.DataMedia;
 import com.alibaba.otter.shared.common.model.config.data.DataMediaSource;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
 import com.alibaba.otter.shared.etl.model.DbBatch;
 import com.alibaba.otter.shared.etl.model.EventData;
 import com.alibaba.otter.shared.etl.model.FileBatch;
@@ -69,6 +76,13 @@ public class DataBatchLoader implements OtterLoader<DbBatch, List<LoadContext>>,
     private LoadInterceptor     dbInterceptor;
 
     public List<LoadContext> load(DbBatch data) {
+        return load(data, null);
+    }
+
+    /**
+     * continuousController不为空时，每个目标数据源作为一个load单元，和前后批次中不冲突的load单元交叠执行
+     */
+    public List<LoadContext> load(DbBatch data, ContinuousLoadController continuousController) {
         final RowBatch rowBatch = data.getRowBatch();
         final FileBatch fileBatch = data.getFileBatch();
         boolean existFileBatch = (rowBatch != null && !CollectionUtils.isEmpty(fileBatch.getFiles()) && data.getRoot() != null);
@@ -85,23 +99,32 @@ public class DataBatchLoader implements OtterLoader<DbBatch, List<LoadContext>>,
             count += 1;
         }
 
-        WeightController controller = new WeightController(count);
         List<Future> futures = new ArrayList<Future>();
         ExecutorCompletionService completionService = new ExecutorCompletionService(executorService);
+        LoadException exception = null;
+        if (continuousController == null) {
+            WeightController controller = new WeightController(count);
+            if (existFileBatch) {
+                submitFileBatch(futures, completionService, fileBatch, data.getRoot(), controller, null, null);
+            }
 
-        if (existFileBatch) {
-            submitFileBatch(futures, completionService, fileBatch, data.getRoot(), controller);
-        }
-
-        if (existRowBatch) {
-            submitRowBatch(futures, completionService, rowBatchs, controller);
+            if (existRowBatch) {
+                submitRowBatch(futures, completionService, rowBatchs, controller);
+            }
+        } else {
+            try {
+                submitContinuous(futures, completionService, data, existFileBatch, rowBatchs, continuousController);
+            } catch (InterruptedException e) {
+                exception = new LoadException(e);
+            } catch (LoadException e) {
+                exception = e;
+            }
         }
 
         // 先获取一下异步处理的结果，记录一下出错的index
         List<LoadContext> processedContexts = new ArrayList<LoadContext>();
         int index = 0;
-        LoadException exception = null;
-        while (index < futures.size()) {
+        while (exception == null && index < futures.size()) {
             try {
                 Future future = completionService.take();// 它也可能被打断
                 future.get();
@@ -117,7 +140,7 @@ public class DataBatchLoader implements OtterLoader<DbBatch, List<LoadContext>>,
         }
 
         // 任何一个线程返回，出现了异常，就退出整个调度
-        if (index < futures.size()) {// 小于代表有错误，需要对未完成的记录进行cancel操作，对已完成的结果进行收集，做重复录入过滤记录
+        if (exception != null) {// 小于代表有错误，需要对未完成的记录进行cancel操作，对已完成的结果进行收集，做重复录入过滤记录
             for (int errorIndex = 0; errorIndex < futures.size(); errorIndex++) {
                 Future future = futures.get(errorIndex);
                 if (future.isDone()) {
@@ -163,8 +186,80 @@ public class DataBatchLoader implements OtterLoader<DbBatch, List<LoadContext>>,
         }
     }
 
+    /**
+     * 每个目标数据源作为一个load单元，记录涉及的表，等待前面批次中冲突的单元完成后再提交
+     * 
+     * <pre>
+     * 1. 一个数据源只对应一个load单元，并发度仍然受pipeline的loadPoolSize控制，不会因为表的数量放大
+     * 2. 批次内只有一个weight时，各个单元之间没有顺序要求，每个单元使用独立的WeightController，互不等待
+     * 3. 批次内存在多个weight或者文件时，所有单元共用一个WeightController，保证批次内的weight顺序
+     * 4. ddl所在的数据源作为一个独占单元执行
+     * </pre>
+     */
+    private void submitContinuous(List<Future> futures, ExecutorCompletionService completionService, DbBatch data,
+                                  boolean existFileBatch, List<RowBatch> rowBatchs,
+                                  ContinuousLoadController continuousController) throws InterruptedException {
+        Identity identity = data.getRowBatch().getIdentity();
+        Pipeline pipeline = configClientService.findPipeline(identity.getPipelineId());
+        List<LoadSlot> slots = new ArrayList<LoadSlot>();
+        Map<LoadSlot, RowBatch> slotBatchs = new HashMap<LoadSlot, RowBatch>();
+        Set<Long> weights = new HashSet<Long>();
+        LoadSlot fileSlot = null;
+        if (existFileBatch) {
+            fileSlot = new LoadSlot(identity.getProcessId());
+            slots.add(fileSlot);
+        }
+
+        if (rowBatchs != null) {
+            for (RowBatch rowBatch : rowBatchs) {
+                if (rowBatch.getDatas().get(0).getEventType().isDdl()) {
+                    LoadSlot slot = new LoadSlot(identity.getProcessId());
+                    slots.add(slot);
+                    slotBatchs.put(slot, rowBatch);
+                    continue;
+                }
+
+                Set<String> tables = new HashSet<String>();
+                long minWeight = Long.MAX_VALUE;
+                long maxWeight = Long.MIN_VALUE;
+                for (EventData eventData : rowBatch.getDatas()) {
+                    long weight = ConfigHelper.findDataMediaPair(pipeline, eventData.getPairId()).getPushWeight();
+                    tables.add((eventData.getSchemaName() + "." + eventData.getTableName()).toLowerCase());
+                    minWeight = Math.min(minWeight, weight);
+                    maxWeight = Math.max(maxWeight, weight);
+                    weights.add(weight);
+                }
+
+                LoadSlot slot = new LoadSlot(identity.getProcessId(), tables, minWeight, maxWeight);
+                slots.add(slot);
+                slotBatchs.put(slot, rowBatch);
+            }
+        }
+
+        WeightController shared = null;
+        if (existFileBatch || weights.size() > 1) {
+            shared = new WeightController(slots.size());
+        }
+
+        continuousController.register(identity.getProcessId(), slots);
+        List<LoadSlot> pendings = new LinkedList<LoadSlot>(slots);
+        while (!pendings.isEmpty()) {
+            LoadSlot slot = continuousController.await(pendings);
+            pendings.remove(slot);
+            WeightController controller = (shared != null ? shared : new WeightController(1));
+            if (slot == fileSlot) {
+                submitFileBatch(futures, completionService, data.getFileBatch(), data.getRoot(), controller,
+                                continuousController, slot);
+            } else {
+                submitRowBatch(futures, completionService, slotBatchs.get(slot), controller, continuousController,
+                               slot);
+            }
+        }
+    }
+
     private void submitFileBatch(List<Future> futures, ExecutorCompletionService completionService,
-                                 final FileBatch fileBatch, final File rootDir, final WeightController controller) {
+                                 final FileBatch fileBatch, final File rootDir, final WeightController controller,
+                                 final ContinuousLoadController continuousController, final LoadSlot slot) {
         futures.add(completionService.submit(new Callable<FileLoadContext>() {
 
             public FileLoadContext call() throws Exception {
@@ -176,6 +271,9 @@ public class DataBatchLoader implements OtterLoader<DbBatch, List<LoadContext>>,
                                                                                          FileLoadAction.class);
                     return fileLoadAction.load(fileBatch, rootDir, controller);
                 } finally {
+                    if (slot != null) {
+                        continuousController.release(slot);
+                    }
                     MDC.remove(OtterConstants.splitPipelineLogFileKey);
                 }
             }
@@ -186,22 +284,31 @@ public class DataBatchLoader implements OtterLoader<DbBatch, List<LoadContext>>,
                                 final List<RowBatch> rowBatchs, final WeightController controller) {
         for (final RowBatch rowBatch : rowBatchs) {
             // 提交多个并行加载通道
-            futures.add(completionService.submit(new Callable<DbLoadContext>() {
+            submitRowBatch(futures, completionService, rowBatch, controller, null, null);
+        }
+    }
 
-                public DbLoadContext call() throws Exception {
-                    try {
-                        MDC.put(OtterConstants.splitPipelineLogFileKey,
-                                String.valueOf(rowBatch.getIdentity().getPipelineId()));
-                        // dbLoadAction是一个pool池化对象
-                        DbLoadAction dbLoadAction = (DbLoadAction) beanFactory.getBean("dbLoadAction",
-                                                                                       DbLoadAction.class);
-                        return dbLoadAction.load(rowBatch, controller);
-                    } finally {
-                        MDC.remove(OtterConstants.splitPipelineLogFileKey);
+    private void submitRowBatch(List<Future> futures, ExecutorCompletionService completionService,
+                                final RowBatch rowBatch, final WeightController controller,
+                                final ContinuousLoadController continuousController, final LoadSlot slot) {
+        futures.add(completionService.submit(new Callable<DbLoadContext>() {
+
+            public DbLoadContext call() throws Exception {
+                try {
+                    MDC.put(OtterConstants.splitPipelineLogFileKey,
+                            String.valueOf(rowBatch.getIdentity().getPipelineId()));
+                    // dbLoadAction是一个pool池化对象
+                    DbLoadAction dbLoadAction = (DbLoadAction) beanFactory.getBean("dbLoadAction",
+                                                                                   DbLoadAction.class);
+                    return dbLoadAction.load(rowBatch, controller);
+                } finally {
+                    if (slot != null) {// 当前数据源的数据已处理完成，后续批次可以开始处理这些表
+                        continuousController.release(slot);
                     }
+                    MDC.remove(OtterConstants.splitPipelineLogFileKey);
                 }
-            }));
-        }
+            }
+        }));
     }
 
     /**
@@ -23,10 +23,14 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -58,6 +62,7 @@ import com.alibaba.otter.node.common.config.ConfigClientService;
 import com.alibaba.otter.node.etl.common.db.dialect.DbDialect;
 import com.alibaba.otter.node.etl.common.db.dialect.DbDialectFactory;
 import com.alibaba.otter.node.etl.common.db.dialect.mysql.MysqlDialect;
+import com.alibaba.otter.node.etl.common.db.dialect.mysql.MysqlSqlTemplate;
 import com.alibaba.otter.node.etl.common.db.utils.SqlUtils;
 import com.alibaba.otter.node.etl.load.exception.LoadException;
 import com.alibaba.otter.node.etl.load.loader.LoadStatsTracker;
@@ -102,7 +107,12 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
     private ConfigClientService configClientService;
     private int                 batchSize          = 50;
     private boolean             useBatch           = true;
+    private boolean             useMultiValues     = false;
+    private boolean             useDependencyLoad  = false;
+    private boolean             useAdaptiveLoad    = false;
+    private int                 multiValuesMaxSize = 1024 * 1024;                                           // 单条多值sql的数据量上限(byte)
     private LoadStatsTracker    loadStatsTracker;
+    private TableLoadLimiter    tableLoadLimiter;
 
     /**
      * 返回结果为已处理成功的记录
@@ -233,19 +243,24 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
         // 优先处理delete,可以利用batch优化
         List<List<EventData>> batchDatas = new ArrayList<List<EventData>>();
         for (TableLoadData tableData : loadData.getTables()) {
-            if (useBatch) {
-                // 优先执行delete语句，针对uniqe更新，一般会进行delete + insert的处理模式，避免并发更新
-                batchDatas.addAll(split(tableData.getDeleteDatas()));
-            } else {
-                // 如果不可以执行batch，则按照单条数据进行并行提交
-                // 优先执行delete语句，针对uniqe更新，一般会进行delete + insert的处理模式，避免并发更新
-                for (EventData data : tableData.getDeleteDatas()) {
-                    batchDatas.add(Arrays.asList(data));
-                }
+            // 优先执行delete语句，针对uniqe更新，一般会进行delete + insert的处理模式，避免并发更新
+            batchDatas.addAll(buildBatchDatas(tableData.getDeleteDatas()));
+        }
+
+        boolean dryRun = context.getPipeline().getParameters().isDryRun();
+        if (useDependencyLoad && !dryRun) {
+            // 不等待delete全部完成，和insert/update一起按照主键依赖关系进行调度
+            for (TableLoadData tableData : loadData.getTables()) {
+                batchDatas.addAll(buildBatchDatas(tableData.getInsertDatas()));
+                batchDatas.addAll(buildBatchDatas(tableData.getUpadateDatas()));
             }
+
+            doDependency(context, batchDatas);
+            batchDatas.clear();
+            return;
         }
 
-        if (context.getPipeline().getParameters().isDryRun()) {
+        if (dryRun) {
             doDryRun(context, batchDatas, true);
         } else {
             doTwoPhase(context, batchDatas, true);
@@ -254,22 +269,12 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
 
         // 处理下insert/update
         for (TableLoadData tableData : loadData.getTables()) {
-            if (useBatch) {
-                // 执行insert + update语句
-                batchDatas.addAll(split(tableData.getInsertDatas()));
-                batchDatas.addAll(split(tableData.getUpadateDatas()));// 每条记录分为一组，并行加载
-            } else {
-                // 执行insert + update语句
-                for (EventData data : tableData.getInsertDatas()) {
-                    batchDatas.add(Arrays.asList(data));
-                }
-                for (EventData data : tableData.getUpadateDatas()) {
-                    batchDatas.add(Arrays.asList(data));
-                }
-            }
+            // 执行insert + update语句
+            batchDatas.addAll(buildBatchDatas(tableData.getInsertDatas()));
+            batchDatas.addAll(buildBatchDatas(tableData.getUpadateDatas()));
         }
 
-        if (context.getPipeline().getParameters().isDryRun()) {
+        if (dryRun) {
             doDryRun(context, batchDatas, true);
         } else {
             doTwoPhase(context, batchDatas, true);
@@ -277,6 +282,19 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
         batchDatas.clear();
     }
 
+    private List<List<EventData>> buildBatchDatas(List<EventData> datas) {
+        if (useBatch) {
+            return split(datas);
+        } else {
+            // 如果不可以执行batch，则按照单条数据进行并行提交
+            List<List<EventData>> result = new ArrayList<List<EventData>>();
+            for (EventData data : datas) {
+                result.add(Arrays.asList(data));
+            }
+            return result;
+        }
+    }
+
     /**
      * 将对应的数据按照sql相同进行batch组合
      */
@@ -388,10 +406,85 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
         }
     }
 
+    /**
+     * 基于主键依赖关系进行并行执行，出错后转为串行执行
+     * 
+     * <pre>
+     * 1. totalRows的顺序即为执行顺序的约束，后面的批次如果和前面的批次存在相同的主键(包括变更前的主键)，需要等待前面的批次执行完成
+     *    insert/update需要等待同表的delete全部完成，保证唯一索引的delete + insert顺序，具体见{@link DbLoadDependency}
+     * 2. 没有依赖的批次直接并行执行，不再需要等待所有表的delete执行完成后才执行insert/update
+     * 3. 出现异常后等待正在执行的批次结束，然后按照原有的方式串行执行所有数据
+     * </pre>
+     */
+    private void doDependency(DbLoadContext context, List<List<EventData>> totalRows) {
+        List<List<EventData>> units = new ArrayList<List<EventData>>();
+        for (List<EventData> rows : totalRows) {
+            if (!CollectionUtils.isEmpty(rows)) {
+                units.add(rows);// 过滤空记录
+            }
+        }
+
+        // 构建依赖关系
+        int size = units.size();
+        DbLoadDependency dependency = new DbLoadDependency(units);
+
+        ExecutorCompletionService<Exception> completionService = new ExecutorCompletionService<Exception>(executor);
+        Map<Future<Exception>, Integer> runnings = new HashMap<Future<Exception>, Integer>();
+        for (int i = 0; i < size; i++) {
+            if (dependency.getDepend(i) == 0) {
+                runnings.put(completionService.submit(new DbLoadWorker(context, units.get(i), true)), i);
+            }
+        }
+
+        boolean partFailed = false;
+        while (!runnings.isEmpty()) {
+            Future<Exception> result = null;
+            try {
+                result = completionService.take();
+            } catch (InterruptedException e) {
+                for (Future<Exception> running : runnings.keySet()) {
+                    running.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new LoadException(e);
+            }
+
+            int index = runnings.remove(result);
+            Exception ex = null;
+            try {
+                ex = result.get();
+                for (EventData data : units.get(index)) {
+                    interceptor.after(context, data);// 通知加载完成
+                }
+            } catch (Exception e) {
+                ex = e;
+            }
+
+            if (ex != null) {
+                logger.warn("##load phase one failed!", ex);
+                partFailed = true;
+            } else if (!partFailed) {
+                // 触发依赖当前批次的后续批次
+                for (int next : dependency.release(index)) {
+                    runnings.put(completionService.submit(new DbLoadWorker(context, units.get(next), true)), next);
+                }
+            }
+        }
+
+        if (true == partFailed) {
+            doPhaseTwo(context, units);
+        }
+    }
+
     /**
      * 首先进行并行执行，出错后转为串行执行
      */
     private void doTwoPhase(DbLoadContext context, List<List<EventData>> totalRows, boolean canBatch) {
+        if (useAdaptiveLoad && tableLoadLimiter != null) {
+            doAdaptive(context, totalRows, canBatch);
+            return;
+        }
+
         // 预处理下数据
         List<Future<Exception>> results = new ArrayList<Future<Exception>>();
         for (List<EventData> rows : totalRows) {
@@ -426,55 +519,165 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
             // logger.error("##load phase one failed but failedDatas is empty!");
             // return;
             // }
+            doPhaseTwo(context, totalRows);
+        }
+
+    }
 
-            // 尝试的内容换成phase one跑的所有数据，避免因failed datas计算错误而导致丢数据
-            List<EventData> retryEventDatas = new ArrayList<EventData>();
-            for (List<EventData> rows : totalRows) {
-                retryEventDatas.addAll(rows);
+    /**
+     * 按目标表进行并发控制的并行执行，每张表的并发数由{@linkplain TableLoadLimiter}根据执行耗时和死锁重试情况自适应调整
+     * 
+     * <pre>
+     * 1. 同一张表的批次按顺序提交，并发数不超过该表当前的limit，慢表/锁冲突严重的表不会占满整个线程池
+     * 2. 每张表至少保证有一个批次在执行，避免多个DbLoadAction共享limit时出现饿死
+     * 3. 出现异常后不再提交新的批次，等待正在执行的批次结束，然后按照原有的方式串行执行所有数据
+     * </pre>
+     */
+    private void doAdaptive(DbLoadContext context, List<List<EventData>> totalRows, boolean canBatch) {
+        Long pipelineId = context.getIdentity().getPipelineId();
+        List<List<EventData>> units = new ArrayList<List<EventData>>();
+        Map<String, TableUnits> tables = new LinkedHashMap<String, TableUnits>();
+        for (List<EventData> rows : totalRows) {
+            if (CollectionUtils.isEmpty(rows)) {
+                continue; // 过滤空记录
             }
 
-            context.getFailedDatas().clear(); // 清理failed data数据
+            EventData data = rows.get(0); // 同一个批次的sql相同，一定是同一张表
+            String tableName = data.getSchemaName() + "." + data.getTableName();
+            TableUnits table = tables.get(tableName);
+            if (table == null) {
+                table = new TableUnits(tableLoadLimiter.getLimit(pipelineId, tableName));
+                tables.put(tableName, table);
+            }
+            table.pendings.add(units.size());
+            units.add(rows);
+        }
 
-            // 可能为null，manager老版本数据序列化传输时，因为数据库中没有skipLoadException变量配置
-            Boolean skipLoadException = context.getPipeline().getParameters().getSkipLoadException();
-            if (skipLoadException != null && skipLoadException) {// 如果设置为允许跳过单条异常，则一条条执行数据load，准确过滤掉出错的记录，并进行日志记录
-                for (EventData retryEventData : retryEventDatas) {
-                    DbLoadWorker worker = new DbLoadWorker(context, Arrays.asList(retryEventData), false);// 强制设置batch为false
-                    try {
-                        Exception ex = worker.call();
-                        if (ex != null) {
-                            // do skip
-                            logger.warn("skip exception for data : {} , caused by {}",
-                                retryEventData,
-                                ExceptionUtils.getFullStackTrace(ex));
-                        }
-                    } catch (Exception ex) {
-                        // do skip
-                        logger.warn("skip exception for data : {} , caused by {}",
-                            retryEventData,
-                            ExceptionUtils.getFullStackTrace(ex));
-                    }
+        ExecutorCompletionService<Exception> completionService = new ExecutorCompletionService<Exception>(executor);
+        Map<Future<Exception>, RunningUnit> runnings = new HashMap<Future<Exception>, RunningUnit>();
+        dispatch(context, units, tables, completionService, runnings, canBatch);
+        boolean partFailed = false;
+        while (!runnings.isEmpty()) {
+            Future<Exception> result = null;
+            try {
+                result = completionService.take();
+            } catch (InterruptedException e) {
+                for (Future<Exception> running : runnings.keySet()) {
+                    running.cancel(true);
                 }
-            } else {
-                // 直接一批进行处理，减少线程调度
-                DbLoadWorker worker = new DbLoadWorker(context, retryEventDatas, false);// 强制设置batch为false
+                Thread.currentThread().interrupt();
+                throw new LoadException(e);
+            }
+
+            RunningUnit unit = runnings.remove(result);
+            List<EventData> rows = units.get(unit.index);
+            Exception ex = null;
+            try {
+                ex = result.get();
+                for (EventData data : rows) {
+                    interceptor.after(context, data);// 通知加载完成
+                }
+            } catch (Exception e) {
+                ex = e;
+            }
+
+            // 按单条记录的耗时进行评估，不同批次的记录数可能不一样
+            // 只统计worker实际执行的时间，不包含线程池排队及interceptor的耗时，避免其他表占满线程池时被误判为变慢
+            long latency = unit.worker.getExecuteTime() / rows.size();
+            unit.table.running--;
+            unit.table.limit.release(latency, ex != null || unit.worker.getRetryTimes() > 0, poolSize);
+            if (ex != null) {
+                logger.warn("##load phase one failed!", ex);
+                partFailed = true;
+            }
+
+            if (!partFailed) {
+                dispatch(context, units, tables, completionService, runnings, canBatch);
+            }
+        }
+
+        if (true == partFailed) {
+            doPhaseTwo(context, units);
+        }
+    }
+
+    // 在各表的并发限制内提交等待中的批次
+    private void dispatch(DbLoadContext context, List<List<EventData>> units, Map<String, TableUnits> tables,
+                          ExecutorCompletionService<Exception> completionService,
+                          Map<Future<Exception>, RunningUnit> runnings, boolean canBatch) {
+        Iterator<TableUnits> iter = tables.values().iterator();
+        while (iter.hasNext()) {
+            TableUnits table = iter.next();
+            while (!table.pendings.isEmpty()) {
+                if (table.running == 0) {
+                    table.limit.acquire(poolSize);
+                } else if (!table.limit.tryAcquire(poolSize)) {
+                    break;
+                }
+
+                int index = table.pendings.poll();
+                DbLoadWorker worker = new DbLoadWorker(context, units.get(index), canBatch);
+                RunningUnit unit = new RunningUnit(index, table, worker);
+                table.running++;
+                runnings.put(completionService.submit(worker), unit);
+            }
+
+            if (table.pendings.isEmpty()) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * 串行执行所有的数据
+     */
+    private void doPhaseTwo(DbLoadContext context, List<List<EventData>> totalRows) {
+        // 尝试的内容换成phase one跑的所有数据，避免因failed datas计算错误而导致丢数据
+        List<EventData> retryEventDatas = new ArrayList<EventData>();
+        for (List<EventData> rows : totalRows) {
+            retryEventDatas.addAll(rows);
+        }
+
+        context.getFailedDatas().clear(); // 清理failed data数据
+
+        // 可能为null，manager老版本数据序列化传输时，因为数据库中没有skipLoadException变量配置
+        Boolean skipLoadException = context.getPipeline().getParameters().getSkipLoadException();
+        if (skipLoadException != null && skipLoadException) {// 如果设置为允许跳过单条异常，则一条条执行数据load，准确过滤掉出错的记录，并进行日志记录
+            for (EventData retryEventData : retryEventDatas) {
+                DbLoadWorker worker = new DbLoadWorker(context, Arrays.asList(retryEventData), false);// 强制设置batch为false
                 try {
                     Exception ex = worker.call();
                     if (ex != null) {
-                        throw ex; // 自己抛自己接
+                        // do skip
+                        logger.warn("skip exception for data : {} , caused by {}",
+                            retryEventData,
+                            ExceptionUtils.getFullStackTrace(ex));
                     }
                 } catch (Exception ex) {
-                    logger.error("##load phase two failed!", ex);
-                    throw new LoadException(ex);
+                    // do skip
+                    logger.warn("skip exception for data : {} , caused by {}",
+                        retryEventData,
+                        ExceptionUtils.getFullStackTrace(ex));
                 }
             }
-
-            // 清理failed data数据
-            for (EventData data : retryEventDatas) {
-                interceptor.after(context, data);// 通知加载完成
+        } else {
+            // 直接一批进行处理，减少线程调度
+            DbLoadWorker worker = new DbLoadWorker(context, retryEventDatas, false);// 强制设置batch为false
+            try {
+                Exception ex = worker.call();
+                if (ex != null) {
+                    throw ex; // 自己抛自己接
+                }
+            } catch (Exception ex) {
+                logger.error("##load phase two failed!", ex);
+                throw new LoadException(ex);
             }
         }
 
+        // 清理failed data数据
+        for (EventData data : retryEventDatas) {
+            interceptor.after(context, data);// 通知加载完成
+        }
     }
 
     // 调整一下线程池
@@ -494,6 +697,9 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
     private void adjustConfig(DbLoadContext context) {
         Pipeline pipeline = context.getPipeline();
         this.useBatch = pipeline.getParameters().isUseBatch();
+        this.useMultiValues = pipeline.getParameters().getUseMultiValues();
+        this.useDependencyLoad = pipeline.getParameters().getUseDependencyLoad();
+        this.useAdaptiveLoad = pipeline.getParameters().getUseAdaptiveLoad();
     }
 
     public void afterPropertiesSet() throws Exception {
@@ -514,6 +720,32 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
         SUCCESS, ERROR, RETRY
     }
 
+    // 同一张表等待执行的批次
+    static class TableUnits {
+
+        private TableLoadLimiter.TableLimit limit;
+        private LinkedList<Integer>         pendings = new LinkedList<Integer>();
+        private int                         running  = 0;
+
+        public TableUnits(TableLoadLimiter.TableLimit limit){
+            this.limit = limit;
+        }
+    }
+
+    // 正在执行的批次
+    static class RunningUnit {
+
+        private int          index;
+        private TableUnits   table;
+        private DbLoadWorker worker;
+
+        public RunningUnit(int index, TableUnits table, DbLoadWorker worker){
+            this.index = index;
+            this.table = table;
+            this.worker = worker;
+        }
+    }
+
     class DbLoadWorker implements Callable<Exception> {
 
         private DbLoadContext   context;
@@ -524,6 +756,8 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
         private List<EventData> allProcesedDatas = new ArrayList<EventData>();
         private List<EventData> processedDatas   = new ArrayList<EventData>();
         private List<EventData> failedDatas      = new ArrayList<EventData>();
+        private int             retryTimes       = 0;                             // 死锁重试的总次数
+        private volatile long   executeTime      = 0;                             // 实际执行的耗时(ns)，不包含排队时间
 
         public DbLoadWorker(DbLoadContext context, List<EventData> datas, boolean canBatch){
             this.context = context;
@@ -538,12 +772,14 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
         }
 
         public Exception call() throws Exception {
+            long start = System.nanoTime();
             try {
                 Thread.currentThread().setName(String.format(WORKER_NAME_FORMAT,
                     context.getPipeline().getId(),
                     context.getPipeline().getName()));
                 return doCall();
             } finally {
+                executeTime = System.nanoTime() - start;
                 Thread.currentThread().setName(WORKER_NAME);
             }
         }
@@ -588,6 +824,12 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
                                         processedDatas.clear();
                                         interceptor.transactionBegin(context, splitDatas, dbDialect);
                                         JdbcTemplate template = dbDialect.getJdbcTemplate();
+                                        if (useMultiValues && splitDatas.size() > 1 && canMultiValues(splitDatas)) {
+                                            int[] affects = doMultiValues(template, lobCreator, splitDatas);
+                                            interceptor.transactionEnd(context, splitDatas, dbDialect);
+                                            return affects;
+                                        }
+
                                         int[] affects = template.batchUpdate(sql, new BatchPreparedStatementSetter() {
 
                                             public void setValues(PreparedStatement ps, int idx) throws SQLException {
@@ -673,6 +915,7 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
                         break; // do next eventData
                     } else if (ExecuteResult.RETRY == exeResult) {
                         retryCount = retryCount + 1;// 计数一次
+                        retryTimes++;
                         // 出现异常，理论上当前的批次都会失败
                         processedDatas.clear();
                         failedDatas.clear();
@@ -710,8 +953,109 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
             return null;
         }
 
+        public int getRetryTimes() {
+            return retryTimes;
+        }
+
+        public long getExecuteTime() {
+            return executeTime;
+        }
+
+        /**
+         * 判断是否可以合并为一条多值的merge sql，只针对mysql的insert/行模式update(无主键变更)生成的merge sql
+         */
+        private boolean canMultiValues(List<EventData> rows) {
+            EventData data = rows.get(0);// 同一个batch的sql相同，只取第一条即可
+            if (data.getHint() != null || dbDialect.isDRDS() || !(dbDialect.getSqlTemplate() instanceof MysqlSqlTemplate)) {
+                return false;
+            }
+
+            String[] keyNames = buildColumnNames(data.getKeys());
+            String[] columnNames = null;
+            if (data.getEventType().isInsert()) {
+                columnNames = buildColumnNames(data.getColumns());
+            } else if (data.getEventType().isUpdate() && CollectionUtils.isEmpty(data.getOldKeys())) {
+                columnNames = buildColumnNames(data.getUpdatedColumns());
+            } else {
+                return false;
+            }
+
+            String schemaName = (data.isWithoutSchema() ? null : data.getSchemaName());
+            String mergeSql = dbDialect.getSqlTemplate().getMergeSql(schemaName,
+                data.getTableName(),
+                keyNames,
+                columnNames,
+                new String[] {},
+                true,
+                null);
+            // sqlTemplate构造sql时用了String.intern()，可以直接使用==判断是否为merge sql
+            return mergeSql == data.getSql();
+        }
+
+        /**
+         * 按照batchSize和multiValuesMaxSize切分，每一批执行一条多值的merge sql
+         */
+        private int[] doMultiValues(JdbcTemplate template, final LobCreator lobCreator, List<EventData> rows) {
+            EventData first = rows.get(0);
+            String schemaName = (first.isWithoutSchema() ? null : first.getSchemaName());
+            String[] keyNames = buildColumnNames(first.getKeys());
+            String[] columnNames = buildColumnNames(first.getEventType().isInsert() ? first.getColumns() : first.getUpdatedColumns());
+            MysqlSqlTemplate sqlTemplate = (MysqlSqlTemplate) dbDialect.getSqlTemplate();
+
+            int[] affects = new int[rows.size()];
+            int start = 0;
+            while (start < rows.size()) {
+                int end = start;
+                long size = 0;
+                while (end < rows.size() && (end == start || size + rows.get(end).getSize() <= multiValuesMaxSize)) {
+                    size += rows.get(end).getSize();
+                    end++;
+                }
+
+                final List<EventData> multiDatas = rows.subList(start, end);
+                String sql = sqlTemplate.getMultiValuesMergeSql(schemaName,
+                    first.getTableName(),
+                    keyNames,
+                    columnNames,
+                    true,
+                    null,
+                    multiDatas.size());
+                template.update(sql, new PreparedStatementSetter() {
+
+                    public void setValues(PreparedStatement ps) throws SQLException {
+                        int offset = 0;
+                        for (EventData data : multiDatas) {
+                            offset += doPreparedStatement(ps, dbDialect, lobCreator, data, offset);
+                        }
+                    }
+                });
+
+                // 多值sql无法区分每一行的影响记录数，统一视为成功
+                Arrays.fill(affects, start, end, Statement.SUCCESS_NO_INFO);
+                start = end;
+            }
+
+            return affects;
+        }
+
+        private String[] buildColumnNames(List<EventColumn> columns) {
+            String[] result = new String[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                result[i] = columns.get(i).getColumnName();
+            }
+            return result;
+        }
+
         private void doPreparedStatement(PreparedStatement ps, DbDialect dbDialect, LobCreator lobCreator,
                                          EventData data) throws SQLException {
+            doPreparedStatement(ps, dbDialect, lobCreator, data, 0);
+        }
+
+        /**
+         * 从offset之后开始设置参数，返回设置的参数个数
+         */
+        private int doPreparedStatement(PreparedStatement ps, DbDialect dbDialect, LobCreator lobCreator,
+                                        EventData data, int offset) throws SQLException {
             EventType type = data.getEventType();
             // 注意insert/update语句对应的字段数序都是将主键排在后面
             List<EventColumn> columns = new ArrayList<EventColumn>();
@@ -742,7 +1086,7 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
             }
 
             for (int i = 0; i < columns.size(); i++) {
-                int paramIndex = i + 1;
+                int paramIndex = offset + i + 1;
                 EventColumn column = columns.get(i);
                 int sqlType = column.getColumnType();
 
@@ -816,6 +1160,8 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
                     throw ex;
                 }
             }
+
+            return columns.size();
         }
 
         private void processStat(EventData data, int affect, boolean batch) {
@@ -905,8 +1251,16 @@ public class DbLoadAction implements InitializingBean, DisposableBean {
         this.loadStatsTracker = loadStatsTracker;
     }
 
+    public void setTableLoadLimiter(TableLoadLimiter tableLoadLimiter) {
+        this.tableLoadLimiter = tableLoadLimiter;
+    }
+
     public void setUseBatch(boolean useBatch) {
         this.useBatch = useBatch;
     }
 
+    public void setMultiValuesMaxSize(int multiValuesMaxSize) {
+        this.multiValuesMaxSize = multiValuesMaxSize;
+    }
+
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.load.loader.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.alibaba.otter.node.etl.load.loader.db.DbLoadMerger.RowKey;
+import com.alibaba.otter.shared.etl.model.EventData;
+
+/**
+ * 批次之间的依赖关系，用于按照依赖关系并行调度load批次
+ * 
+ * <pre>
+ * 1. 批次的先后顺序即为执行顺序的约束
+ * 2. 后面的批次如果和前面的批次存在相同的主键(包括变更前的主键)，需要等待前面的批次执行完成
+ * 3. insert/update批次需要等待同一张表前面所有的delete批次执行完成，避免unique等二级唯一索引出现冲突
+ *    (比如delete pk=1,u=A 后 insert pk=2,u=A，主键不同但是唯一索引相同)
+ * </pre>
+ * 
+ * @author jianghang
+ */
+public class DbLoadDependency {
+
+    private int[]               depends;                                          // 每个批次依赖的未完成批次数
+    private List<List<Integer>> nexts;                                            // 每个批次完成后需要触发的后续批次
+
+    public DbLoadDependency(List<List<EventData>> units){
+        int size = units.size();
+        depends = new int[size];
+        nexts = new ArrayList<List<Integer>>(size);
+        Map<RowKey, Integer> lastUnits = new HashMap<RowKey, Integer>();
+        Map<String, List<Integer>> deleteUnits = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < size; i++) {
+            nexts.add(new ArrayList<Integer>());
+            Set<Integer> prevs = new HashSet<Integer>();
+            Set<String> tables = new HashSet<String>();
+            for (EventData data : units.get(i)) {
+                addDepend(prevs, i, lastUnits.put(new RowKey(data.getTableId(),
+                    data.getSchemaName(),
+                    data.getTableName(),
+                    data.getKeys()), i));
+                if (data.getOldKeys() != null && !data.getOldKeys().isEmpty()) {
+                    addDepend(prevs, i, lastUnits.put(new RowKey(data.getTableId(),
+                        data.getSchemaName(),
+                        data.getTableName(),
+                        data.getOldKeys()), i));
+                }
+
+                String table = data.getSchemaName() + "." + data.getTableName();
+                if (!tables.add(table)) {
+                    continue; // 同一个批次的同一张表只需要处理一次
+                }
+
+                List<Integer> deletes = deleteUnits.get(table);
+                if (data.getEventType().isDelete()) {
+                    if (deletes == null) {
+                        deletes = new ArrayList<Integer>();
+                        deleteUnits.put(table, deletes);
+                    }
+                    deletes.add(i);
+                } else if (deletes != null) {
+                    // 唯一索引可能和前面的delete冲突，需要等待同表的delete全部完成
+                    for (Integer prev : deletes) {
+                        addDepend(prevs, i, prev);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addDepend(Set<Integer> prevs, int current, Integer prev) {
+        if (prev != null && prev != current && prevs.add(prev)) {
+            nexts.get(prev).add(current);
+            depends[current]++;
+        }
+    }
+
+    /**
+     * 当前还需要等待的批次数，为0时可以直接执行
+     */
+    public int getDepend(int index) {
+        return depends[index];
+    }
+
+    /**
+     * 批次完成后释放依赖，返回可以执行的后续批次
+     */
+    public List<Integer> release(int index) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int next : nexts.get(index)) {
+            if (--depends[next] == 0) {
+                result.add(next);
+            }
+        }
+        return result;
+    }
+
+    public List<Integer> getNexts(int index) {
+        return nexts.get(index);
+    }
+
+}
@@ -19,7 +19,6 @@ package com.alibaba.otter.node.etl.load.loader.db;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -60,7 +59,7 @@ public class DbLoadMerger {
      * @return
      */
     public static List<EventData> merge(List<EventData> eventDatas) {
-        Map<RowKey, EventData> result = new LinkedHashMap<RowKey, EventData>();
+        Map<RowKey, EventData> result = new RowKeyMap<EventData>(eventDatas.size());
         for (EventData eventData : eventDatas) {
             merge(eventData, result);
         }
@@ -88,10 +87,10 @@ public class DbLoadMerger {
         // insert无主键变更的处理
         RowKey rowKey = new RowKey(eventData.getTableId(), eventData.getSchemaName(), eventData.getTableName(),
                                    eventData.getKeys());
-        if (!result.containsKey(rowKey)) {
+        EventData oldEventData = result.get(rowKey);
+        if (oldEventData == null) {
             result.put(rowKey, eventData);
         } else {
-            EventData oldEventData = result.get(rowKey);
             eventData.setSize(oldEventData.getSize() + eventData.getSize());
             // 如果上一条变更是delete的，就直接用insert替换
             if (oldEventData.getEventType() == EventType.DELETE) {
@@ -117,10 +116,10 @@ public class DbLoadMerger {
             // 需要解决(1->2 , 2->3)级联主键变更的问题
             RowKey oldKey = new RowKey(eventData.getTableId(), eventData.getSchemaName(), eventData.getTableName(),
                                        eventData.getOldKeys());
-            if (!result.containsKey(oldKey)) {// 不需要级联
+            EventData oldEventData = result.get(oldKey);
+            if (oldEventData == null) {// 不需要级联
                 result.put(rowKey, eventData);
             } else {
-                EventData oldEventData = result.get(oldKey);
                 eventData.setSize(oldEventData.getSize() + eventData.getSize());
                 // 如果上一条变更是insert的，就把这一条的eventType改成insert，并且把上一条存在而这一条不存在的字段值拷贝到这一条中
                 if (oldEventData.getEventType() == EventType.INSERT) {
@@ -143,10 +142,10 @@ public class DbLoadMerger {
                 }
             }
         } else {
-            if (!result.containsKey(rowKey)) {// 没有主键变更
+            EventData oldEventData = result.get(rowKey);
+            if (oldEventData == null) {// 没有主键变更
                 result.put(rowKey, eventData);
             } else {
-                EventData oldEventData = result.get(rowKey);
                 // 如果上一条变更是insert的，就把这一条的eventType改成insert，并且把上一条存在而这一条不存在的字段值拷贝到这一条中
                 if (oldEventData.getEventType() == EventType.INSERT) {
                     eventData.setEventType(EventType.INSERT);
@@ -173,10 +172,10 @@ public class DbLoadMerger {
         // 只保留pks，把columns去掉. 以后针对数据仓库可以开放delete columns记录
         RowKey rowKey = new RowKey(eventData.getTableId(), eventData.getSchemaName(), eventData.getTableName(),
                                    eventData.getKeys());
-        if (!result.containsKey(rowKey)) {
+        EventData oldEventData = result.get(rowKey);
+        if (oldEventData == null) {
             result.put(rowKey, eventData);
         } else {
-            EventData oldEventData = result.get(rowKey);
             eventData.setSize(oldEventData.getSize() + eventData.getSize());
             if (!CollectionUtils.isEmpty(oldEventData.getOldKeys())) {// 存在主键变更
                 // insert/update -> delete记录组合时，delete的对应的pk为上一条记录的pk
@@ -238,7 +237,9 @@ public class DbLoadMerger {
 
     public static class RowKey implements Serializable {
 
-        private static final long serialVersionUID = -7369951798499581038L;
+        private static final long serialVersionUID  = -7369951798499581038L;
+        private static final long FINGERPRINT_SEED  = 0xcbf29ce484222325L;
+        private static final long FINGERPRINT_PRIME = 0x100000001b3L;
         private Long              tableId;
         private String            schemaName;                              // tableId代表统配符时，需要指定schemaName
         private String            tableName;                               // tableId代表统配符时，需要指定tableName
@@ -255,6 +256,46 @@ public class DbLoadMerger {
 
         private List<EventColumn> keys = new ArrayList<EventColumn>();
 
+        /**
+         * 计算64位指纹，和equals保持一致(equals相等指纹一定相等)，计算过程不产生临时对象
+         */
+        public long fingerprint() {
+            long h = FINGERPRINT_SEED;
+            h = mix(h, tableId == null ? 0L : tableId.longValue());
+            h = mix(h, schemaName == null ? 0 : schemaName.hashCode());
+            h = mix(h, tableName == null ? 0 : tableName.hashCode());
+            if (keys != null) {
+                for (int i = 0; i < keys.size(); i++) {
+                    EventColumn column = keys.get(i);
+                    if (column == null) {
+                        h = mix(h, 0L);
+                        continue;
+                    }
+
+                    h = mix(h, column.getColumnName() == null ? 0 : column.getColumnName().hashCode());
+                    h = mix(h, ((long) column.getColumnType() << 32) | (column.getIndex() & 0xFFFFFFFFL));
+                    h = mix(h, (column.isKey() ? 1 : 0) | (column.isNull() ? 2 : 0) | (column.isUpdate() ? 4 : 0));
+                    if (!column.isNull()) { // null值equals比较时一定一致，不参与计算
+                        String value = column.getColumnValue();
+                        if (value != null) {
+                            // 主键值直接按字符计算64位hash，减少单主键场景下的冲突
+                            long vh = FINGERPRINT_SEED;
+                            for (int j = 0; j < value.length(); j++) {
+                                vh = (vh ^ value.charAt(j)) * FINGERPRINT_PRIME;
+                            }
+                            h = mix(h, vh);
+                        }
+                    }
+                }
+            }
+            return h;
+        }
+
+        private static long mix(long h, long value) {
+            h = (h ^ value) * FINGERPRINT_PRIME;
+            return h ^ (h >>> 29);
+        }
+
         public List<EventColumn> getKeys() {
             return keys;
         }
@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.load.loader.db;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.alibaba.otter.node.etl.load.loader.db.DbLoadMerger.RowKey;
+
+/**
+ * <pre>
+ * DbLoadMerger专用的合并map，语义等同于LinkedHashMap(插入顺序):
+ * 1. 每个RowKey先计算一个64位的指纹，只有指纹相同时才会走RowKey.equals做完整比较
+ * 2. 数据按插入顺序存放在连续数组中(指纹/key/value)，索引为int[]开放地址+线性探测，避免每个节点一个Entry对象
+ * 3. put已存在的key保持原有顺序，remove后再put追加到末尾，和LinkedHashMap保持一致
+ *
+ * 非线程安全，只用于单批次的merge
+ * </pre>
+ *
+ * @author jianghang
+ */
+public class RowKeyMap<V> extends AbstractMap<RowKey, V> {
+
+    private static final int   DEFAULT_CAPACITY = 16;
+    private static final int   FREE             = 0;
+    private static final int   REMOVED          = -1;
+
+    private long[]             fingerprints;            // 按插入顺序存放的指纹
+    private RowKey[]           keys;                    // 按插入顺序存放的key，删除后置为null
+    private Object[]           values;
+    private int[]              index;                   // 开放地址索引，存放slot+1
+    private int                count;                   // 已使用的slot数(包含已删除)
+    private int                size;                    // 有效记录数
+    private int                modCount;
+    private transient Set<Map.Entry<RowKey, V>> entrySet;
+    private transient Collection<V>             valueCollection;
+
+    public RowKeyMap(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RowKeyMap(int expectedSize){
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < expectedSize) {
+            capacity <<= 1;
+        }
+
+        init(capacity);
+    }
+
+    private void init(int capacity) {
+        fingerprints = new long[capacity];
+        keys = new RowKey[capacity];
+        values = new Object[capacity];
+        index = new int[capacity << 1]; // 负载因子控制在0.5以内
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(Object key) {
+        return (key instanceof RowKey) && findSlot((RowKey) key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (!(key instanceof RowKey)) {
+            return null;
+        }
+
+        int slot = findSlot((RowKey) key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(RowKey key, V value) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+
+        long fingerprint = key.fingerprint();
+        int pos = findIndex(key, fingerprint);
+        if (pos >= 0) {
+            int slot = index[pos] - 1;
+            V old = (V) values[slot];
+            values[slot] = value;
+            return old;
+        }
+
+        if (count == keys.length) {
+            rehash();
+        }
+
+        int slot = count++;
+        fingerprints[slot] = fingerprint;
+        keys[slot] = key;
+        values[slot] = value;
+        insertIndex(fingerprint, slot);
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if (!(key instanceof RowKey)) {
+            return null;
+        }
+
+        int pos = findIndex((RowKey) key, ((RowKey) key).fingerprint());
+        if (pos < 0) {
+            return null;
+        }
+
+        int slot = index[pos] - 1;
+        V old = (V) values[slot];
+        index[pos] = REMOVED;
+        removeSlot(slot);
+        return old;
+    }
+
+    public void clear() {
+        for (int i = 0; i < count; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+
+        for (int i = 0; i < index.length; i++) {
+            index[i] = FREE;
+        }
+
+        count = 0;
+        size = 0;
+        modCount++;
+    }
+
+    public Set<Map.Entry<RowKey, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<RowKey, V>>() {
+
+                public Iterator<Map.Entry<RowKey, V>> iterator() {
+                    return new SlotIterator<Map.Entry<RowKey, V>>() {
+
+                        protected Map.Entry<RowKey, V> get(int slot) {
+                            return new SlotEntry(slot);
+                        }
+                    };
+                }
+
+                public int size() {
+                    return size;
+                }
+
+                public void clear() {
+                    RowKeyMap.this.clear();
+                }
+            };
+        }
+
+        return entrySet;
+    }
+
+    public Collection<V> values() {
+        if (valueCollection == null) {
+            valueCollection = new AbstractCollection<V>() {
+
+                public Iterator<V> iterator() {
+                    return new SlotIterator<V>() {
+
+                        @SuppressWarnings("unchecked")
+                        protected V get(int slot) {
+                            return (V) values[slot];
+                        }
+                    };
+                }
+
+                public int size() {
+                    return size;
+                }
+
+                public void clear() {
+                    RowKeyMap.this.clear();
+                }
+            };
+        }
+
+        return valueCollection;
+    }
+
+    // ========================= helper method ==================
+
+    private int findSlot(RowKey key) {
+        int pos = findIndex(key, key.fingerprint());
+        return pos < 0 ? -1 : index[pos] - 1;
+    }
+
+    /**
+     * 返回key在index中的位置，不存在返回-1
+     */
+    private int findIndex(RowKey key, long fingerprint) {
+        int mask = index.length - 1;
+        int pos = mix(fingerprint) & mask;
+        int entry;
+        while ((entry = index[pos]) != FREE) {
+            if (entry != REMOVED) {
+                int slot = entry - 1;
+                // 指纹一致时才做完整比较
+                if (fingerprints[slot] == fingerprint && key.equals(keys[slot])) {
+                    return pos;
+                }
+            }
+
+            pos = (pos + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private void insertIndex(long fingerprint, int slot) {
+        int mask = index.length - 1;
+        int pos = mix(fingerprint) & mask;
+        while (index[pos] > FREE) {
+            pos = (pos + 1) & mask;
+        }
+
+        index[pos] = slot + 1;
+    }
+
+    private void removeSlot(int slot) {
+        keys[slot] = null;
+        values[slot] = null;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * slot用满时进行整理，删除的记录较多时原地压缩，否则扩容一倍
+     */
+    private void rehash() {
+        long[] oldFingerprints = fingerprints;
+        RowKey[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldCount = count;
+
+        int capacity = keys.length;
+        if (size >= (capacity >> 1)) {
+            capacity <<= 1;
+        }
+
+        init(capacity);
+        count = 0;
+        for (int i = 0; i < oldCount; i++) {
+            if (oldKeys[i] != null) {
+                fingerprints[count] = oldFingerprints[i];
+                keys[count] = oldKeys[i];
+                values[count] = oldValues[i];
+                insertIndex(oldFingerprints[i], count);
+                count++;
+            }
+        }
+    }
+
+    private static int mix(long fingerprint) {
+        long h = fingerprint ^ (fingerprint >>> 32);
+        h ^= (h >>> 16);
+        return (int) h;
+    }
+
+    private abstract class SlotIterator<E> implements Iterator<E> {
+
+        private int next = advance(0);
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= count) {
+                throw new NoSuchElementException();
+            }
+
+            last = next;
+            next = advance(next + 1);
+            return get(last);
+        }
+
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            RowKeyMap.this.remove(keys[last]);
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        private int advance(int slot) {
+            while (slot < count && keys[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+
+        protected abstract E get(int slot);
+    }
+
+    private class SlotEntry implements Map.Entry<RowKey, V> {
+
+        private final int    slot;
+        private final RowKey key;
+
+        public SlotEntry(int slot){
+            this.slot = slot;
+            this.key = keys[slot];
+        }
+
+        public RowKey getKey() {
+            return key;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            return keys[slot] == key ? (V) values[slot] : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            if (keys[slot] != key) {
+                throw new IllegalStateException("entry is removed");
+            }
+
+            V old = (V) values[slot];
+            values[slot] = value;
+            return old;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object value = getValue();
+            return key.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        public int hashCode() {
+            Object value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
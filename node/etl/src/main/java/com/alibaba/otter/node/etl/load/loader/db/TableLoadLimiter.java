@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.load.loader.db;
+
+import java.util.Map;
+
+import com.google.common.base.Function;
+import com.google.common.collect.OtterMigrateMap;
+
+/**
+ * 按目标表的load并发控制，根据执行耗时以及死锁/重试情况动态调整每张表的并发数
+ * 
+ * <pre>
+ * 算法：类似TCP的AIMD + Vegas
+ * 1. 每张表记录单条记录的最小执行耗时作为基准，执行耗时超过基准的tolerance倍时认为出现了排队(比如锁等待)，并发数减1
+ * 2. 出现死锁重试或者执行异常时，并发数减半
+ * 3. 其余情况每完成一次并发数增加1/limit，最大不超过load线程池大小
+ * 4. 基准耗时每次采样都会缓慢上浮，避免偶发的一次极小值导致长时间误判
+ * 
+ * 按pipelineId + 表名维护，同一个pipeline的多个DbLoadAction共享
+ * </pre>
+ * 
+ * @author jianghang
+ */
+public class TableLoadLimiter {
+
+    private static final double                DEFAULT_TOLERANCE = 2.0;
+    private double                             tolerance         = DEFAULT_TOLERANCE;
+    private Map<Long, Map<String, TableLimit>> limits;
+
+    public TableLoadLimiter(){
+        limits = OtterMigrateMap.makeComputingMap(new Function<Long, Map<String, TableLimit>>() {
+
+            public Map<String, TableLimit> apply(Long pipelineId) {
+                return OtterMigrateMap.makeComputingMap(new Function<String, TableLimit>() {
+
+                    public TableLimit apply(String tableName) {
+                        return new TableLimit(tableName);
+                    }
+                });
+            }
+        });
+    }
+
+    public TableLimit getLimit(Long pipelineId, String tableName) {
+        return limits.get(pipelineId).get(tableName);
+    }
+
+    public void destory(Long pipelineId) {
+        limits.remove(pipelineId);
+    }
+
+    public String statistics(Long pipelineId) {
+        StringBuilder builder = new StringBuilder();
+        for (TableLimit limit : limits.get(pipelineId).values()) {
+            builder.append(limit.toString()).append("\n");
+        }
+        return builder.toString();
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * 单张表的并发控制
+     */
+    public class TableLimit {
+
+        private final String tableName;
+        private double       limit        = 0;              // 当前允许的并发数，0代表还未初始化
+        private int          inflight     = 0;              // 正在执行的批次数
+        private long         minLatency   = Long.MAX_VALUE; // 单条记录的最小执行耗时(ns)
+        private long         successCount = 0;
+        private long         congestCount = 0;
+
+        TableLimit(String tableName){
+            this.tableName = tableName;
+        }
+
+        /**
+         * 当前并发数未超过limit时占用一个并发
+         */
+        public synchronized boolean tryAcquire(int maxLimit) {
+            init(maxLimit);
+            if (inflight < Math.min((int) limit, maxLimit)) {
+                inflight++;
+                return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * 强制占用一个并发，保证每张表至少有一个批次可以执行
+         */
+        public synchronized void acquire(int maxLimit) {
+            init(maxLimit);
+            inflight++;
+        }
+
+        /**
+         * 释放并发，并根据本次执行的结果调整limit
+         * 
+         * @param latency 单条记录的平均执行耗时(ns)
+         * @param congested 是否出现了死锁重试或者执行异常
+         */
+        public synchronized void release(long latency, boolean congested, int maxLimit) {
+            inflight--;
+            if (congested) {
+                congestCount++;
+                limit = Math.max(1, limit / 2);
+                return;
+            }
+
+            successCount++;
+            if (minLatency == Long.MAX_VALUE) {
+                minLatency = latency;
+            } else {
+                minLatency = Math.min(latency, minLatency + (minLatency >> 6)); // 基准每次上浮1/64
+            }
+            if (latency > minLatency * tolerance) {
+                limit = Math.max(1, limit - 1); // 出现排队，缓慢回退
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+
+        private void init(int maxLimit) {
+            if (limit == 0) {
+                limit = Math.max(1, maxLimit / 2); // 从一半的线程数开始
+            }
+        }
+
+        public synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        public synchronized String toString() {
+            return String.format("%s[limit=%.2f, inflight=%d, minLatency=%dus, success=%d, congest=%d]",
+                tableName,
+                limit,
+                inflight,
+                minLatency == Long.MAX_VALUE ? 0 : minLatency / 1000,
+                successCount,
+                congestCount);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.load.loader.weight;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.alibaba.otter.node.etl.load.exception.LoadException;
+
+/**
+ * 连续批次load的顺序控制器，每个pipeline的load对应一个
+ * 
+ * <pre>
+ * 场景：
+ *   开启useContinuousLoad后，仲裁器会将连续完成transform的processId依次分配给load，后一个批次不需要等待前一个批次完全结束就可以开始load
+ * 
+ * 实现：
+ * 1. 每个批次按目标数据源拆分为多个{@linkplain LoadSlot}，一个数据源仍然只占用一个load单元，不超出pipeline的loadPoolSize
+ *    前面的批次都登记完成后才允许登记，保证冲突判断时能看到所有前面批次的slot
+ * 2. 一个slot只需要等待前面批次中和它冲突的slot完成：存在相同的表，或者更小的weight，ddl/文件类的slot和所有的slot都冲突
+ * 3. single必须严格按processId顺序进行，前面的批次出现异常后，后续已分配的批次全部放弃，等待rollback后重新同步
+ * </pre>
+ * 
+ * @author jianghang
+ */
+public class ContinuousLoadController {
+
+    private ReentrantLock   lock       = new ReentrantLock();
+    private Condition       condition  = lock.newCondition();
+    private SortedSet<Long> processIds = new TreeSet<Long>();       // 已分配给load且未结束的processId
+    private SortedSet<Long> registered = new TreeSet<Long>();       // 已完成slot登记的processId
+    private SortedSet<Long> aborted    = new TreeSet<Long>();       // 因为前面的批次失败而放弃的processId
+    private List<LoadSlot>  slots      = new LinkedList<LoadSlot>(); // 未完成的slot，按processId有序
+
+    /**
+     * 记录一个分配给load的processId，需要按照仲裁器分配的顺序调用
+     */
+    public void start(Long processId) {
+        lock.lock();
+        try {
+            processIds.add(processId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 是否还有未结束的批次
+     */
+    public boolean isRunning() {
+        lock.lock();
+        try {
+            return !processIds.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 登记批次的所有slot，需要等待前面的批次都完成登记
+     */
+    public void register(Long processId, List<LoadSlot> batchSlots) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                checkAborted(processId);
+                if (registered.containsAll(processIds.headSet(processId))) {
+                    break;
+                }
+                condition.await();
+            }
+
+            registered.add(processId);
+            slots.addAll(batchSlots);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待pendings中任意一个slot可以执行，返回可以执行的slot
+     */
+    public LoadSlot await(List<LoadSlot> pendings) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                for (LoadSlot pending : pendings) {
+                    checkAborted(pending.getProcessId());
+                    if (!isBlocked(pending)) {
+                        return pending;
+                    }
+                }
+                condition.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * slot执行完成，通知后续批次中等待的slot
+     */
+    public void release(LoadSlot slot) {
+        lock.lock();
+        try {
+            if (slots.remove(slot)) {
+                condition.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待前面的批次都结束，返回false代表前面的批次出现了异常，当前批次不能进行single
+     */
+    public boolean awaitTurn(Long processId) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!aborted.contains(processId) && !processIds.isEmpty() && processIds.first() < processId) {
+                condition.await();
+            }
+
+            return !aborted.contains(processId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isAborted(Long processId) {
+        lock.lock();
+        try {
+            return aborted.contains(processId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 批次结束，不论成功与否都需要调用。失败时放弃后续所有已分配的批次
+     */
+    public void finish(Long processId, boolean success) {
+        lock.lock();
+        try {
+            processIds.remove(processId);
+            registered.remove(processId);
+            aborted.remove(processId);
+            Iterator<LoadSlot> iter = slots.iterator();
+            while (iter.hasNext()) {
+                if (iter.next().getProcessId().equals(processId)) {
+                    iter.remove(); // 可能存在被cancel未执行的slot
+                }
+            }
+
+            if (!success) {
+                aborted.addAll(processIds.tailSet(processId));
+            }
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isBlocked(LoadSlot pending) {
+        for (LoadSlot slot : slots) {
+            if (slot.getProcessId() >= pending.getProcessId()) {
+                break; // slots按processId有序，只需要判断前面的批次
+            }
+
+            if (slot.isConflict(pending)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void checkAborted(Long processId) {
+        if (aborted.contains(processId)) {
+            throw new LoadException(String.format("processId[%s] is aborted by previous failed load", processId));
+        }
+    }
+
+    /**
+     * 批次内的一个load单元，对应一个目标数据源的数据，记录涉及的表和weight范围，ddl和文件为独占的单元
+     */
+    public static class LoadSlot {
+
+        private final Long        processId;
+        private final Set<String> tables;
+        private final long        minWeight;
+        private final long        maxWeight;
+        private final boolean     exclusive;
+
+        public LoadSlot(Long processId){
+            this(processId, Collections.<String> emptySet(), Long.MAX_VALUE, Long.MAX_VALUE, true);
+        }
+
+        public LoadSlot(Long processId, String table, long weight){
+            this(processId, Collections.singleton(table), weight, weight, false);
+        }
+
+        public LoadSlot(Long processId, Set<String> tables, long minWeight, long maxWeight){
+            this(processId, tables, minWeight, maxWeight, false);
+        }
+
+        private LoadSlot(Long processId, Set<String> tables, long minWeight, long maxWeight, boolean exclusive){
+            this.processId = processId;
+            this.tables = tables;
+            this.minWeight = minWeight;
+            this.maxWeight = maxWeight;
+            this.exclusive = exclusive;
+        }
+
+        /**
+         * 判断后面批次的slot是否需要等待当前slot完成
+         */
+        public boolean isConflict(LoadSlot next) {
+            if (exclusive || next.exclusive) {
+                return true;
+            }
+
+            // 批次内更小weight的数据需要先完成，跨批次同样需要保证
+            return minWeight < next.maxWeight || !Collections.disjoint(tables, next.tables);
+        }
+
+        public Long getProcessId() {
+            return processId;
+        }
+
+        public Set<String> getTables() {
+            return tables;
+        }
+
+        public long getMinWeight() {
+            return minWeight;
+        }
+
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        public boolean isExclusive() {
+            return exclusive;
+        }
+
+        public String toString() {
+            return exclusive ? processId + ":exclusive" : processId + ":" + tables + ":" + minWeight + "-" + maxWeight;
+        }
+    }
+}
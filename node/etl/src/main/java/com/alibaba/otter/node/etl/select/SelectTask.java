@@ -16,12 +16,14 @@
 
 package com.alibaba.otter.node.etl.select;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
 
@@ -72,6 +74,7 @@ import com.alibaba.otter.shared.etl.model.RowBatch;
  * c. ProcessTermin接受到termin信号
  *    i. 会严格按照发出去的batchId/processId进行对比，发现不匹配，发起rollback操作.
  *    ii. 会根据terminType判断这一批数据是否处理成功，如果发现不成功，发起rollback操作
+ *    iii. 如果后续batch的termin信号已经到达，成功的batch会先暂存，连续的多个batch合并为一次ack提交给canal
  *
  * 2. 异常调度流程
  * 假如并行度为3
@@ -107,6 +110,13 @@ public class SelectTask extends GlobalTask {
      */
     private BlockingQueue<BatchTermin> batchBuffer = new LinkedBlockingQueue<BatchTermin>(50);
     private boolean needCheck = false;
+    /**
+     * 已确认成功但还未提交给canal的batch，只在ProcessTermin线程中访问
+     */
+    private List<Long> pendingAcks = new ArrayList<Long>();
+    private static final int MAX_BATCH_ACK = 16; // 一次最多合并ack的batch数
+    private static final long TERMIN_TIMEOUT = 30 * 1000L; // 等待匹配termin信号的超时时间
+    private static final long TERMIN_QUIET_TIME = 3 * 1000L; // 异常后termin信号持续多久没有变化，认为都已ready
     /**
      * 非常轻量的一个阻塞式实现，调用成本低
      */
@@ -264,7 +274,7 @@ public class SelectTask extends GlobalTask {
 
                 if (canStartSelector.state() == false) { // 是否出现异常
                     // 回滚在出现异常的瞬间，拿出来的数据，因为otterSelector.selector()会循环，可能出现了rollback，其还未感知到
-                    rollback(gotMessage.getId());
+                    rollbackSelected();
                     continue;
                 }
 
@@ -390,6 +400,7 @@ public class SelectTask extends GlobalTask {
                             arbitrateEventService.terminEvent().exhaust(pipelineId);
 
                             batchBuffer.clear();// 清空上一次的待处理的batch记录，因为所有的batch都会被rollback掉
+                            pendingAcks.clear();
 
                             // 开始处理新的termin数据
                             while (running) {
@@ -418,30 +429,38 @@ public class SelectTask extends GlobalTask {
                                 }
 
                                 logger.info("end process termin : {}  result : {}", batch.toString(), lastStatus);
+                                if (!isNextTerminReady()) {
+                                    // 下一个batch还需要等待，先提交已经确认的batch
+                                    flushAck();
+                                }
                             }
                         } catch (CanalException e) {// 捕获可处理的异常，进行retry,基本可自行恢复
                             logger.info(String.format("[%s] ProcessTermin has an error! retry...", pipelineId), e);
+                            flushAckQuietly();
                             notifyRollback();
                         } catch (SelectException e) {// 捕获可处理的异常，进行retry,基本可自行恢复
                             logger.info(String.format("[%s] ProcessTermin has an error! retry...", pipelineId), e);
+                            flushAckQuietly();
                             notifyRollback();
                         } catch (Throwable e) {
                             if (isInterrupt(e)) {
                                 logger.info(String.format("[%s] ProcessTermin is interrupted!", pipelineId), e);
-                                return;
+                                return; // 退出前在finally中提交已确认成功的batch
                             } else {
                                 logger.error(String.format("[%s] ProcessTermin is error!", pipelineId), e);
+                                flushAckQuietly();
                                 notifyRollback();
                                 sendRollbackTermin(pipelineId, e);
                             }
                         }
 
                         try {
-                            Thread.sleep(30000); // sleep 30，等待termin信号都ready
+                            waitTerminReady(); // 等待termin信号都ready
                         } catch (InterruptedException e) {
                         }
                     }
                 } finally {
+                    flushAckQuietly(); // 中断或关闭时，已确认成功的batch也需要提交，避免重复同步
                     Thread.currentThread().setName(currentName);
                     MDC.remove(OtterConstants.splitPipelineLogFileKey);
                 }
@@ -451,29 +470,49 @@ public class SelectTask extends GlobalTask {
     }
 
     private boolean processTermin(boolean lastStatus, Long batchId, Long processId) throws InterruptedException {
-        int retry = 0;
+        long deadline = System.currentTimeMillis() + TERMIN_TIMEOUT;
         SelectException exception = null;
-        TerminEventData terminData = null;
-        while (retry++ < 30) {
-            // 因为存在网络因素，而且在Load进行termin处理时，因为是异步处理，有一定的概率会出现termin不按顺序过来
-            terminData = arbitrateEventService.terminEvent().await(pipelineId);
+        // 因为存在网络因素，而且在Load进行termin处理时，因为是异步处理，有一定的概率会出现termin不按顺序过来
+        TerminEventData terminData = arbitrateEventService.terminEvent().await(pipelineId);
+        while (true) {
             Long terminBatchId = terminData.getBatchId();
             Long terminProcessId = terminData.getProcessId();
 
+            if (terminBatchId != null && batchId != -1L && terminBatchId < batchId) {
+                // batchId是递增的，更小的batchId说明是已经被处理过的batch，比如rollback之后才完成的process，直接丢弃
+                logger.warn("discard expired termin : {} , SelectTask batchId = {}", terminData.toString(), batchId);
+                arbitrateEventService.terminEvent().ack(terminData);
+                terminData = arbitrateEventService.terminEvent().await(pipelineId);
+                continue;
+            }
+
             if (terminBatchId == null && processId != -1L && !processId.equals(terminProcessId)) {
                 // 针对manager发起rollback，terminBatchId可能为null，需要特殊处理下
                 exception = new SelectException("unmatched processId, SelectTask batchId = " + batchId
                         + " processId = " + processId + " and Termin Event: "
                         + terminData.toString());
-                Thread.sleep(1000); // sleep 1秒，等新的数据包
             } else if (terminBatchId != null && batchId != -1L && !batchId.equals(terminBatchId)) {
                 exception = new SelectException("unmatched terminId, SelectTask batchId = " + batchId + " processId = "
                         + processId + " and Termin Event: " + terminData.toString());
-                Thread.sleep(1000); // sleep 1秒，等新的数据包
             } else {
                 exception = null; // batchId/processId对上了，退出
                 break;
             }
+
+            long remain = deadline - System.currentTimeMillis();
+            if (remain <= 0) {
+                break;
+            }
+
+            // 等待新的termin信号到达后立即重新匹配，不再固定sleep
+            TerminEventData next = arbitrateEventService.terminEvent().await(pipelineId,
+                terminProcessId,
+                remain,
+                TimeUnit.MILLISECONDS);
+            if (next == null) {
+                break; // 超时
+            }
+            terminData = next;
         }
 
         if (exception != null) {
@@ -503,15 +542,87 @@ public class SelectTask extends GlobalTask {
         return status;
     }
 
+    /**
+     * ProcessTermin线程发起的rollback
+     */
     private void rollback(Long batchId) {
+        flushAck(); // 先提交之前已经确认成功的batch
         notifyRollback();
         // otterSelector.rollback(batchId);
         otterSelector.rollback();// 一旦出错，rollback所有的mark，避免拿出后面的数据进行同步
     }
 
+    /**
+     * ProcessSelect线程发现rollback已经开始后，回滚刚拿出来的数据，不访问pendingAcks，也不改变canStartSelector状态。
+     * canStartSelector为false时ProcessTermin已经提交完pendingAcks，rollback不会丢失已确认的batch
+     */
+    private void rollbackSelected() {
+        otterSelector.rollback();
+    }
+
     private void ack(Long batchId) {
-        canStartSelector.set(true);
-        otterSelector.ack(batchId);
+        pendingAcks.add(batchId);
+        if (pendingAcks.size() >= MAX_BATCH_ACK) {
+            flushAck();
+        }
+    }
+
+    /**
+     * 将暂存的batch一次性提交给canal，只在ProcessTermin线程中调用
+     */
+    private void flushAck() {
+        if (pendingAcks.isEmpty()) {
+            return;
+        }
+
+        Long[] batchIds = pendingAcks.toArray(new Long[pendingAcks.size()]);
+        pendingAcks.clear();// 先清空，ack失败后剩余的batch会随rollback重新处理
+        if (batchIds.length == 1) {
+            otterSelector.ack(batchIds[0]);
+        } else {
+            otterSelector.ack(batchIds);
+        }
+    }
+
+    private void flushAckQuietly() {
+        try {
+            flushAck();
+        } catch (Throwable e) {
+            logger.warn(String.format("[%s] ack batch failed!", pipelineId), e);
+        }
+    }
+
+    /**
+     * 下一个batch是否可以立即处理，可以的话继续暂存ack，合并提交
+     */
+    private boolean isNextTerminReady() {
+        BatchTermin next = batchBuffer.peek();
+        if (next == null) {
+            return false;
+        }
+
+        return !next.isNeedWait() || arbitrateEventService.terminEvent().size(pipelineId) > 0;
+    }
+
+    /**
+     * 异常后等待在途的process都返回termin信号，termin数量持续一段时间没有变化即认为都已ready，最多等待30秒
+     */
+    private void waitTerminReady() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TERMIN_TIMEOUT;
+        int lastSize = arbitrateEventService.terminEvent().size(pipelineId);
+        while (running) {
+            long remain = Math.min(TERMIN_QUIET_TIME, deadline - System.currentTimeMillis());
+            if (remain <= 0) {
+                return;
+            }
+
+            // 阻塞等待termin数量变化，quiet time内没有变化则返回
+            int size = arbitrateEventService.terminEvent().size(pipelineId, lastSize, remain, TimeUnit.MILLISECONDS);
+            if (size == lastSize) {
+                return;
+            }
+            lastSize = size;
+        }
     }
 
     private void notifyRollback() {
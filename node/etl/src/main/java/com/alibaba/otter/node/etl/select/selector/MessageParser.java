@@ -17,7 +17,6 @@
 package com.alibaba.otter.node.etl.select.selector;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
@@ -72,6 +71,8 @@ public class MessageParser {
     private static final String compatibleMarkInfoColumn       = "client_info";
     private static final String compatibleMarkIdentifierColumn = "client_identifier";
 
+    private static final EventColumnIndexComparable INDEX_COMPARATOR = new EventColumnIndexComparable();
+
     /**
      * 将对应canal送出来的Entry对象解析为otter使用的内部对象
      * 
@@ -83,15 +84,18 @@ public class MessageParser {
      * </pre>
      */
     public List<EventData> parse(Long pipelineId, List<Entry> datas) throws SelectException {
-        List<EventData> eventDatas = new ArrayList<EventData>();
+        List<EventData> eventDatas = new ArrayList<EventData>(datas.size());
         Pipeline pipeline = configClientService.findPipeline(pipelineId);
         List<Entry> transactionDataBuffer = new ArrayList<Entry>();
         // hz为主站点，us->hz的数据，需要回环同步会us。并且需要开启回环补救算法
         PipelineParameter pipelineParameter = pipeline.getParameters();
         boolean enableLoopbackRemedy = pipelineParameter.isEnableRemedy() && pipelineParameter.isHome()
                                        && pipelineParameter.getRemedyAlgorithm().isLoopback();
+        String systemMarkTable = pipelineParameter.getSystemMarkTable();
         boolean isLoopback = false;
         boolean needLoopback = false; // 判断是否属于需要loopback处理的类型，只处理正常otter同步产生的回环数据，因为会有业务方手工屏蔽同步的接口，避免回环
+        // 每批数据只计算一次，避免每条记录都遍历一次pair
+        boolean needAllColumns = pipelineParameter.getSyncMode().isRow() || checkNeedAllColumns(pipeline);
 
         long now = new Date().getTime();
         try {
@@ -103,75 +107,36 @@ public class MessageParser {
                     case ROWDATA:
                         String tableName = entry.getHeader().getTableName();
                         // 判断是否是回环表retl_mark
-                        boolean isMarkTable = tableName.equalsIgnoreCase(pipeline.getParameters().getSystemMarkTable());
-                        if (isMarkTable) {
-                            RowChange rowChange = RowChange.parseFrom(entry.getStoreValue());
-                            if (!rowChange.getIsDdl()) {
-                                int loopback = 0;
-                                if (rowChange.getRowDatasCount() > 0) {
-                                    loopback = checkLoopback(pipeline, rowChange.getRowDatas(0));
-                                }
-                                if (loopback == 2) {
-                                    needLoopback |= true; // 只处理正常同步产生的回环数据
-                                }
-
-                                isLoopback |= loopback > 0;
-                            }
-                        }
-
+                        boolean isMarkTable = tableName.equalsIgnoreCase(systemMarkTable);
                         // 检查下otter3.0的回环表，对应的schmea会比较随意，所以不做比较
-                        boolean isCompatibleLoopback = tableName.equalsIgnoreCase(compatibleMarkTable);
-
-                        if (isCompatibleLoopback) {
+                        boolean isCompatibleLoopback = !isMarkTable && tableName.equalsIgnoreCase(compatibleMarkTable);
+                        if (isMarkTable || isCompatibleLoopback) {
+                            // 回环表只在这里解析一次，不会进入transactionDataBuffer
                             RowChange rowChange = RowChange.parseFrom(entry.getStoreValue());
                             if (!rowChange.getIsDdl()) {
                                 int loopback = 0;
                                 if (rowChange.getRowDatasCount() > 0) {
-                                    loopback = checkCompatibleLoopback(pipeline, rowChange.getRowDatas(0));
+                                    if (isMarkTable) {
+                                        loopback = checkLoopback(pipeline, rowChange.getRowDatas(0));
+                                    } else {
+                                        loopback = checkCompatibleLoopback(pipeline, rowChange.getRowDatas(0));
+                                    }
                                 }
                                 if (loopback == 2) {
                                     needLoopback |= true; // 只处理正常同步产生的回环数据
                                 }
+
                                 isLoopback |= loopback > 0;
                             }
-                        }
-
-                        if ((!isLoopback || (enableLoopbackRemedy && needLoopback)) && !isMarkTable
-                            && !isCompatibleLoopback) {
+                        } else if (!isLoopback || (enableLoopbackRemedy && needLoopback)) {
+                            // 先只记录entry，等事务结束确认不是回环数据后再解析
                             transactionDataBuffer.add(entry);
                         }
                         break;
                     case TRANSACTIONEND:
                         if (!isLoopback || (enableLoopbackRemedy && needLoopback)) {
                             // 添加数据解析
-                            for (Entry bufferEntry : transactionDataBuffer) {
-                                List<EventData> parseDatas = internParse(pipeline, bufferEntry);
-                                if (CollectionUtils.isEmpty(parseDatas)) {// 可能为空，针对ddl返回时就为null
-                                    continue;
-                                }
-
-                                // 初步计算一下事件大小
-                                long totalSize = bufferEntry.getHeader().getEventLength();
-                                long eachSize = totalSize / parseDatas.size();
-                                for (EventData eventData : parseDatas) {
-                                    if (eventData == null) {
-                                        continue;
-                                    }
-
-                                    eventData.setSize(eachSize);// 记录一下大小
-                                    if (needLoopback) {// 针对需要回环同步的
-                                        // 如果延迟超过指定的阀值，则设置为需要反查db
-                                        if (now - eventData.getExecuteTime() > 1000 * pipeline.getParameters()
-                                            .getRemedyDelayThresoldForMedia()) {
-                                            eventData.setSyncConsistency(SyncConsistency.MEDIA);
-                                        } else {
-                                            eventData.setSyncConsistency(SyncConsistency.BASE);
-                                        }
-                                        eventData.setRemedy(true);
-                                    }
-                                    eventDatas.add(eventData);
-                                }
-                            }
+                            internParse(pipeline, transactionDataBuffer, needAllColumns, needLoopback, true, now, eventDatas);
                         }
 
                         isLoopback = false;
@@ -186,33 +151,7 @@ public class MessageParser {
             // 添加最后一次的数据，可能没有TRANSACTIONEND
             if (!isLoopback || (enableLoopbackRemedy && needLoopback)) {
                 // 添加数据解析
-                for (Entry bufferEntry : transactionDataBuffer) {
-                    List<EventData> parseDatas = internParse(pipeline, bufferEntry);
-                    if (CollectionUtils.isEmpty(parseDatas)) {// 可能为空，针对ddl返回时就为null
-                        continue;
-                    }
-
-                    // 初步计算一下事件大小
-                    long totalSize = bufferEntry.getHeader().getEventLength();
-                    long eachSize = totalSize / parseDatas.size();
-                    for (EventData eventData : parseDatas) {
-                        if (eventData == null) {
-                            continue;
-                        }
-
-                        eventData.setSize(eachSize);// 记录一下大小
-                        if (needLoopback) {// 针对需要回环同步的
-                            // 如果延迟超过指定的阀值，则设置为需要反查db
-                            if (now - eventData.getExecuteTime() > 1000 * pipeline.getParameters()
-                                .getRemedyDelayThresoldForMedia()) {
-                                eventData.setSyncConsistency(SyncConsistency.MEDIA);
-                            } else {
-                                eventData.setSyncConsistency(SyncConsistency.BASE);
-                            }
-                        }
-                        eventDatas.add(eventData);
-                    }
-                }
+                internParse(pipeline, transactionDataBuffer, needAllColumns, needLoopback, false, now, eventDatas);
             }
         } catch (Exception e) {
             throw new SelectException(e);
@@ -221,6 +160,42 @@ public class MessageParser {
         return eventDatas;
     }
 
+    /**
+     * 解析一个事务内缓存的entry，结果直接追加到eventDatas中，不再为每个entry构造中间结果
+     */
+    private void internParse(Pipeline pipeline, List<Entry> entrys, boolean needAllColumns, boolean needLoopback,
+                             boolean remedy, long now, List<EventData> eventDatas) {
+        for (Entry bufferEntry : entrys) {
+            int start = eventDatas.size();
+            internParse(pipeline, bufferEntry, needAllColumns, eventDatas);
+            int count = eventDatas.size() - start;
+            if (count == 0) {// 可能为空，针对ddl返回时就为空
+                continue;
+            }
+
+            // 初步计算一下事件大小
+            long totalSize = bufferEntry.getHeader().getEventLength();
+            long eachSize = totalSize / count;
+            for (int i = start; i < eventDatas.size(); i++) {
+                EventData eventData = eventDatas.get(i);
+                eventData.setSize(eachSize);// 记录一下大小
+                if (needLoopback) {// 针对需要回环同步的
+                    // 如果延迟超过指定的阀值，则设置为需要反查db
+                    if (now - eventData.getExecuteTime() > 1000 * pipeline.getParameters()
+                        .getRemedyDelayThresoldForMedia()) {
+                        eventData.setSyncConsistency(SyncConsistency.MEDIA);
+                    } else {
+                        eventData.setSyncConsistency(SyncConsistency.BASE);
+                    }
+
+                    if (remedy) {
+                        eventData.setRemedy(true);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * <pre>
      * the table def: 
@@ -322,7 +297,23 @@ public class MessageParser {
         return null;
     }
 
-    private List<EventData> internParse(Pipeline pipeline, Entry entry) {
+    private void internParse(Pipeline pipeline, Entry entry, boolean needAllColumns, List<EventData> eventDatas) {
+        String schemaName = entry.getHeader().getSchemaName();
+        String tableName = entry.getHeader().getTableName();
+        boolean isSystemSchema = StringUtils.equalsIgnoreCase(pipeline.getParameters().getSystemSchema(), schemaName);
+        // 心跳表数据直接忽略，不需要解析storeValue
+        if (isSystemSchema && StringUtils.equalsIgnoreCase(pipeline.getParameters().getSystemDualTable(), tableName)) {
+            return;
+        }
+
+        // header中已经带了eventType，query事件以及系统表的ddl直接忽略，不需要解析storeValue
+        if (entry.getHeader().hasEventType()) {
+            EventType headerEventType = EventType.valueOf(entry.getHeader().getEventType().name());
+            if (headerEventType.isQuery() || (isSystemSchema && headerEventType.isDdl())) {
+                return;
+            }
+        }
+
         RowChange rowChange = null;
         try {
             rowChange = RowChange.parseFrom(entry.getStoreValue());
@@ -331,29 +322,22 @@ public class MessageParser {
         }
 
         if (rowChange == null) {
-            return null;
+            return;
         }
 
-        String schemaName = entry.getHeader().getSchemaName();
-        String tableName = entry.getHeader().getTableName();
         EventType eventType = EventType.valueOf(rowChange.getEventType().name());
 
         // 处理下DDL操作
         if (eventType.isQuery()) {
             // 直接忽略query事件
-            return null;
+            return;
         }
 
         // 首先判断是否为系统表
-        if (StringUtils.equalsIgnoreCase(pipeline.getParameters().getSystemSchema(), schemaName)) {
+        if (isSystemSchema) {
             // do noting
             if (eventType.isDdl()) {
-                return null;
-            }
-
-            if (StringUtils.equalsIgnoreCase(pipeline.getParameters().getSystemDualTable(), tableName)) {
-                // 心跳表数据直接忽略
-                return null;
+                return;
             }
         } else {
             if (eventType.isDdl()) {
@@ -366,9 +350,10 @@ public class MessageParser {
                     schemaName,
                     tableName,
                     notExistReturnNull);
-                // 如果EventType是CREATE/ALTER，需要reload
+                // 如果EventType是CREATE/ALTER/RENAME/DROP，需要reload
                 // DataMediaInfo;并且把CREATE/ALTER类型的事件丢弃掉.
-                if (dataMedia != null && (eventType.isCreate() || eventType.isAlter() || eventType.isRename())) {
+                if (dataMedia != null
+                    && (eventType.isCreate() || eventType.isAlter() || eventType.isRename() || eventType.isErase())) {
                     DbDialect dbDialect = dbDialectFactory.getDbDialect(pipeline.getId(),
                         (DbMediaSource) dataMedia.getSource());
                     dbDialect.reloadTable(schemaName, tableName);// 更新下meta信息
@@ -385,22 +370,81 @@ public class MessageParser {
                     eventData.setSql(rowChange.getSql());
                     eventData.setDdlSchemaName(rowChange.getDdlSchemaName());
                     eventData.setTableId(dataMedia.getId());
-                    return Arrays.asList(eventData);
-                } else {
-                    return null;
+                    eventDatas.add(eventData);
                 }
+                return;
             }
         }
 
-        List<EventData> eventDatas = new ArrayList<EventData>();
-        for (RowData rowData : rowChange.getRowDatasList()) {
-            EventData eventData = internParse(pipeline, entry, rowChange, rowData);
-            if (eventData != null) {
-                eventDatas.add(eventData);
-            }
+        // 同一个entry下的所有rowData都属于同一张表，table meta只需要查询一次
+        Long tableId = null;
+        TableInfoHolder tableHolder = null;
+        if (!isSystemSchema) {
+            DataMediaPair dataMediaPair = ConfigHelper.findDataMediaPairBySourceName(pipeline, schemaName, tableName);
+            tableId = dataMediaPair.getSource().getId();
+            tableHolder = buildTableHolder(pipeline, schemaName, tableName, dataMediaPair);
         }
 
-        return eventDatas;
+        for (int i = 0; i < rowChange.getRowDatasCount(); i++) {
+            eventDatas.add(internParse(pipeline,
+                entry,
+                eventType,
+                tableId,
+                tableHolder,
+                rowChange.getRowDatas(i),
+                needAllColumns));
+        }
+    }
+
+    private TableInfoHolder buildTableHolder(Pipeline pipeline, String schemaName, String tableName,
+                                             DataMediaPair dataMediaPair) {
+        boolean useTableTransform = pipeline.getParameters().getUseTableTransform();
+        DataMedia dataMedia = dataMediaPair.getSource();
+        // 获取目标表
+        DataMedia targetDataMedia = dataMediaPair.getTarget();
+        if (!useTableTransform && !dataMedia.getSource().getType().isOracle()) {
+            return null;
+        }
+
+        // oracle需要反查一次meta
+        // 如果设置了需要进行table meta转化，则反查一下table信息
+        // 比如oracle erosa解析时可能使用了非物理主键，需要直接使用，信任erosa的信息
+        DbDialect dbDialect = dbDialectFactory.getDbDialect(pipeline.getId(), (DbMediaSource) dataMedia.getSource());
+        Table table = dbDialect.findTable(schemaName, tableName);// 查询一下meta信息
+        if (table == null) {
+            logger.warn("find table[{}.{}] is null , may be drop table.", schemaName, tableName);
+        }
+        // 获取一下目标库的拆分字段,设置源表为主键
+        // 首先要求源和目标的库名表名是一致的
+        DataMediaSource targetSource = targetDataMedia.getSource();
+        if (targetSource instanceof DbMediaSource
+            && StringUtils.containsIgnoreCase(((DbMediaSource) targetSource).getUrl(), "drds")) {
+            // 优先判断是否为drds
+            DbDialect targetDbDialect = dbDialectFactory.getDbDialect(pipeline.getId(),
+                (DbMediaSource) targetDataMedia.getSource());
+            if (targetDbDialect.isDRDS()) {
+                String targetSchemaName = buildName(schemaName,
+                    dataMedia.getNamespaceMode(),
+                    targetDataMedia.getNamespaceMode());
+                String targetTableName = buildName(schemaName, dataMedia.getNameMode(), targetDataMedia.getNameMode());
+                String shardColumns = targetDbDialect.getShardColumns(targetSchemaName, targetTableName);
+                if (StringUtils.isNotEmpty(shardColumns)) {
+                    String columns[] = StringUtils.split(shardColumns, ',');
+                    for (String key : columns) {
+                        org.apache.ddlutils.model.Column col = table.findColumn(key, false);
+                        if (col != null) {
+                            col.setPrimaryKey(true);
+                        } else {
+                            logger.warn(String.format("shardColumn %s in table[%s.%s] is not found",
+                                key,
+                                schemaName,
+                                tableName));
+                        }
+                    }
+                }
+            }
+        }
+        return new TableInfoHolder(dbDialect, table, useTableTransform);
     }
 
     /**
@@ -414,71 +458,14 @@ public class MessageParser {
      * <i>delete:从beforeColumns中获取所有的变更数据<br>
      * <i>update:在beforeColumns中存放变更前的所有数据,在afterColumns中存放变更后的所有数据<br>
      */
-    private EventData internParse(Pipeline pipeline, Entry entry, RowChange rowChange, RowData rowData) {
+    private EventData internParse(Pipeline pipeline, Entry entry, EventType eventType, Long tableId,
+                                  TableInfoHolder tableHolder, RowData rowData, boolean needAllColumns) {
         EventData eventData = new EventData();
         eventData.setTableName(entry.getHeader().getTableName());
         eventData.setSchemaName(entry.getHeader().getSchemaName());
-        eventData.setEventType(EventType.valueOf(rowChange.getEventType().name()));
+        eventData.setEventType(eventType);
         eventData.setExecuteTime(entry.getHeader().getExecuteTime());
-        EventType eventType = eventData.getEventType();
-        TableInfoHolder tableHolder = null;
-
-        if (!StringUtils.equalsIgnoreCase(pipeline.getParameters().getSystemSchema(), eventData.getSchemaName())) {
-            boolean useTableTransform = pipeline.getParameters().getUseTableTransform();
-            Table table = null;
-            DataMediaPair dataMediaPair = ConfigHelper.findDataMediaPairBySourceName(pipeline,
-                eventData.getSchemaName(),
-                eventData.getTableName());
-            DataMedia dataMedia = dataMediaPair.getSource();
-            eventData.setTableId(dataMedia.getId());
-            // 获取目标表
-            DataMedia targetDataMedia = dataMediaPair.getTarget();
-            if (useTableTransform || dataMedia.getSource().getType().isOracle()) {// oracle需要反查一次meta
-                // 如果设置了需要进行table meta转化，则反查一下table信息
-                // 比如oracle erosa解析时可能使用了非物理主键，需要直接使用，信任erosa的信息
-                DbDialect dbDialect = dbDialectFactory.getDbDialect(pipeline.getId(),
-                    (DbMediaSource) dataMedia.getSource());
-                table = dbDialect.findTable(eventData.getSchemaName(), eventData.getTableName());// 查询一下meta信息
-                if (table == null) {
-                    logger.warn("find table[{}.{}] is null , may be drop table.",
-                        eventData.getSchemaName(),
-                        eventData.getTableName());
-                }
-                // 获取一下目标库的拆分字段,设置源表为主键
-                // 首先要求源和目标的库名表名是一致的
-                DataMediaSource targetSource = targetDataMedia.getSource();
-                if (targetSource instanceof DbMediaSource
-                    && StringUtils.containsIgnoreCase(((DbMediaSource) targetSource).getUrl(), "drds")) {
-                    // 优先判断是否为drds
-                    DbDialect targetDbDialect = dbDialectFactory.getDbDialect(pipeline.getId(),
-                        (DbMediaSource) targetDataMedia.getSource());
-                    if (targetDbDialect.isDRDS()) {
-                        String schemaName = buildName(eventData.getSchemaName(),
-                            dataMedia.getNamespaceMode(),
-                            targetDataMedia.getNamespaceMode());
-                        String tableName = buildName(eventData.getSchemaName(),
-                            dataMedia.getNameMode(),
-                            targetDataMedia.getNameMode());
-                        String shardColumns = targetDbDialect.getShardColumns(schemaName, tableName);
-                        if (StringUtils.isNotEmpty(shardColumns)) {
-                            String columns[] = StringUtils.split(shardColumns, ',');
-                            for (String key : columns) {
-                                org.apache.ddlutils.model.Column col = table.findColumn(key, false);
-                                if (col != null) {
-                                    col.setPrimaryKey(true);
-                                } else {
-                                    logger.warn(String.format("shardColumn %s in table[%s.%s] is not found",
-                                        key,
-                                        eventData.getSchemaName(),
-                                        eventData.getTableName()));
-                                }
-                            }
-                        }
-                    }
-                }
-                tableHolder = new TableInfoHolder(dbDialect, table, useTableTransform);
-            }
-        }
+        eventData.setTableId(tableId);
 
         List<Column> beforeColumns = rowData.getBeforeColumnsList();
         List<Column> afterColumns = rowData.getAfterColumnsList();
@@ -486,34 +473,34 @@ public class MessageParser {
 
         // 判断一下是否需要all columns
         boolean isRowMode = pipeline.getParameters().getSyncMode().isRow(); // 如果是rowMode模式，所有字段都需要标记为updated
-        boolean needAllColumns = isRowMode || checkNeedAllColumns(pipeline);
 
         // 变更后的主键
-        Map<String, EventColumn> keyColumns = new LinkedHashMap<String, EventColumn>();
+        List<EventColumn> keys = null;
         // 变更前的主键
-        Map<String, EventColumn> oldKeyColumns = new LinkedHashMap<String, EventColumn>();
+        List<EventColumn> oldKeys = null;
         // 有变化的非主键
-        Map<String, EventColumn> notKeyColumns = new LinkedHashMap<String, EventColumn>();
-
-        if (eventType.isInsert()) {
-            for (Column column : afterColumns) {
-                if (isKey(tableHolder, tableName, column)) {
-                    keyColumns.put(column.getName(), copyEventColumn(column, true, tableHolder));
-                } else {
-                    // mysql 有效
-                    notKeyColumns.put(column.getName(), copyEventColumn(column, true, tableHolder));
-                }
-            }
-        } else if (eventType.isDelete()) {
-            for (Column column : beforeColumns) {
+        List<EventColumn> columns = null;
+
+        if (eventType.isInsert() || eventType.isDelete()) {
+            // insert从after中获取，delete从before中获取，字段不会重复，直接放入结果列表
+            List<Column> changeColumns = eventType.isInsert() ? afterColumns : beforeColumns;
+            keys = new ArrayList<EventColumn>(2);
+            columns = new ArrayList<EventColumn>(changeColumns.size());
+            for (Column column : changeColumns) {
                 if (isKey(tableHolder, tableName, column)) {
-                    keyColumns.put(column.getName(), copyEventColumn(column, true, tableHolder));
+                    keys.add(copyEventColumn(column, true, tableHolder));
                 } else {
                     // mysql 有效
-                    notKeyColumns.put(column.getName(), copyEventColumn(column, true, tableHolder));
+                    columns.add(copyEventColumn(column, true, tableHolder));
                 }
             }
         } else if (eventType.isUpdate()) {
+            // 变更后的主键
+            Map<String, EventColumn> keyColumns = new LinkedHashMap<String, EventColumn>();
+            // 变更前的主键
+            Map<String, EventColumn> oldKeyColumns = new LinkedHashMap<String, EventColumn>();
+            // 有变化的非主键
+            Map<String, EventColumn> notKeyColumns = new LinkedHashMap<String, EventColumn>();
             // 获取变更前的主键.
             for (Column column : beforeColumns) {
                 if (isKey(tableHolder, tableName, column)) {
@@ -550,43 +537,23 @@ public class MessageParser {
             if (entry.getHeader().getSourceType() == CanalEntry.Type.ORACLE) { // 针对oracle进行特殊处理
                 checkUpdateKeyColumns(oldKeyColumns, keyColumns);
             }
-        }
 
-        List<EventColumn> keys = new ArrayList<EventColumn>(keyColumns.values());
-        List<EventColumn> oldKeys = new ArrayList<EventColumn>(oldKeyColumns.values());
-        List<EventColumn> columns = new ArrayList<EventColumn>(notKeyColumns.values());
+            keys = new ArrayList<EventColumn>(keyColumns.values());
+            oldKeys = new ArrayList<EventColumn>(oldKeyColumns.values());
+            columns = new ArrayList<EventColumn>(notKeyColumns.values());
+        }
 
-        Collections.sort(keys, new EventColumnIndexComparable());
-        Collections.sort(oldKeys, new EventColumnIndexComparable());
-        Collections.sort(columns, new EventColumnIndexComparable());
-        if (!keyColumns.isEmpty()) {
+        if (keys != null && !keys.isEmpty()) {
+            Collections.sort(keys, INDEX_COMPARATOR);
+            Collections.sort(columns, INDEX_COMPARATOR);
             eventData.setKeys(keys);
-            if (eventData.getEventType().isUpdate() && !oldKeys.equals(keys)) { // update类型，如果存在主键不同,则记录下old
-                                                                                // keys为变更前的主键
-                eventData.setOldKeys(oldKeys);
+            if (oldKeys != null) {
+                Collections.sort(oldKeys, INDEX_COMPARATOR);
+                if (!oldKeys.equals(keys)) { // update类型，如果存在主键不同,则记录下old keys为变更前的主键
+                    eventData.setOldKeys(oldKeys);
+                }
             }
             eventData.setColumns(columns);
-            // } else if (CanalEntry.Type.MYSQL ==
-            // entry.getHeader().getSourceType()) {
-            // // 只支持mysql无主键同步
-            // if (eventType.isUpdate()) {
-            // List<EventColumn> oldColumns = new ArrayList<EventColumn>();
-            // List<EventColumn> newColumns = new ArrayList<EventColumn>();
-            // for (Column column : beforeColumns) {
-            // oldColumns.add(copyEventColumn(column, true, tableHolder));
-            // }
-            //
-            // for (Column column : afterColumns) {
-            // newColumns.add(copyEventColumn(column, true, tableHolder));
-            // }
-            // Collections.sort(oldColumns, new EventColumnIndexComparable());
-            // Collections.sort(newColumns, new EventColumnIndexComparable());
-            // eventData.setOldKeys(oldColumns);// 做为老主键
-            // eventData.setKeys(newColumns);// 做为新主键，需要保证新老主键字段数量一致
-            // } else {
-            // // 针对无主键，等同为所有都是主键进行处理
-            // eventData.setKeys(columns);
-            // }
         } else {
             throw new SelectException("this rowdata has no pks , entry: " + entry.toString() + " and rowData: "
                                       + rowData);
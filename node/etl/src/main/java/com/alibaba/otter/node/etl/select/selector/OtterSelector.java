@@ -65,6 +65,11 @@ public interface OtterSelector<T> {
      */
     public void ack(Long batchId);
 
+    /**
+     * 反馈多批连续的数据处理完成，按batchId从小到大的顺序提交
+     */
+    public void ack(Long[] batchIds);
+
     /**
      * 返回最后一次entry数据的时间戳
      */
@@ -330,6 +330,14 @@ public class CanalEmbedSelector implements OtterSelector {
         canalServer.ack(clientIdentity, batchId);
     }
 
+    @Override
+    public void ack(Long[] batchIds) {
+        // canal要求batch必须按顺序ack，一次调用内依次提交
+        for (Long batchId : batchIds) {
+            canalServer.ack(clientIdentity, batchId);
+        }
+    }
+
     @Override
     public List<Long> unAckBatchs() {
         return canalServer.listBatchIds(clientIdentity);
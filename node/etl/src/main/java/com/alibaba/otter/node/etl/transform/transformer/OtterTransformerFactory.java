@@ -16,9 +16,21 @@
 
 package com.alibaba.otter.node.etl.transform.transformer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 
 import com.alibaba.otter.node.common.config.ConfigClientService;
 import com.alibaba.otter.node.etl.transform.exception.TransformException;
@@ -27,6 +39,7 @@ import com.alibaba.otter.shared.common.model.config.data.DataMedia;
 import com.alibaba.otter.shared.common.model.config.data.DataMediaPair;
 import com.alibaba.otter.shared.common.model.config.data.db.DbDataMedia;
 import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+import com.alibaba.otter.shared.common.utils.thread.NamedThreadFactory;
 import com.alibaba.otter.shared.etl.model.BatchObject;
 import com.alibaba.otter.shared.etl.model.EventData;
 import com.alibaba.otter.shared.etl.model.FileBatch;
@@ -37,14 +50,23 @@ import com.alibaba.otter.shared.etl.model.RowBatch;
 /**
  * 数据对象转化工厂
  * 
+ * <pre>
+ * 开启useParallelTransform后，RowBatch会按tableId拆分为多个分区，分区之间并行转化，分区内保持原有顺序，
+ * 最后按原始记录的顺序合并结果，和串行转化的输出保持一致
+ * </pre>
+ * 
  * @author jianghang 2011-10-27 下午06:29:02
  * @version 4.0.0
  */
-public class OtterTransformerFactory {
+public class OtterTransformerFactory implements InitializingBean, DisposableBean {
 
+    private static final String WORKER_NAME       = "OtterTransformer";
+    private static final int    DEFAULT_POOL_SIZE = 5;
     private ConfigClientService configClientService;
     private RowDataTransformer  rowDataTransformer;
     private FileDataTransformer fileDataTransformer;
+    private int                 poolSize          = DEFAULT_POOL_SIZE;
+    private ExecutorService     executor;
 
     /**
      * 将一种源数据进行转化，最后得到的结果会根据DataMediaPair中定义的目标对象生成不同的数据对象 <br/>
@@ -61,27 +83,20 @@ public class OtterTransformerFactory {
         // 初始化默认值
         result.put(EventData.class, initBatchObject(identity, EventData.class));
 
-        for (EventData eventData : rowBatch.getDatas()) {
-            // 处理eventData
-            Long tableId = eventData.getTableId();
-            Pipeline pipeline = configClientService.findPipeline(identity.getPipelineId());
-            // 针对每个同步数据，可能会存在多路复制的情况
-            List<DataMediaPair> dataMediaPairs = ConfigHelper.findDataMediaPairByMediaId(pipeline, tableId);
-            for (DataMediaPair pair : dataMediaPairs) {
-                if (!pair.getSource().getId().equals(tableId)) { // 过滤tableID不为源的同步
-                    continue;
-                }
+        Pipeline pipeline = configClientService.findPipeline(identity.getPipelineId());
+        if (pipeline.getParameters().getUseParallelTransform()) {
+            List<List<Integer>> partitions = partition(rowBatch.getDatas());
+            if (partitions.size() > 1) {
+                parallelTransform(identity, pipeline, rowBatch.getDatas(), partitions, result);
+                return result;
+            }
+        }
 
-                OtterTransformer translate = lookup(pair.getSource(), pair.getTarget());
-                // 进行转化
-                Object item = translate.transform(eventData, new OtterTransformerContext(identity, pair, pipeline));
-                if (item == null) {
-                    continue;
-                }
+        for (EventData eventData : rowBatch.getDatas()) {
+            for (Object item : transform(identity, pipeline, eventData)) {
                 // 合并结果
                 merge(identity, result, item);
             }
-
         }
 
         return result;
@@ -125,6 +140,103 @@ public class OtterTransformerFactory {
     // =============================== helper method
     // ============================
 
+    // 按tableId拆分，记录每个分区内数据在batch中的下标
+    private List<List<Integer>> partition(List<EventData> eventDatas) {
+        Map<Long, List<Integer>> partitions = new LinkedHashMap<Long, List<Integer>>();
+        for (int i = 0; i < eventDatas.size(); i++) {
+            Long tableId = eventDatas.get(i).getTableId();
+            List<Integer> indexes = partitions.get(tableId);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>();
+                partitions.put(tableId, indexes);
+            }
+            indexes.add(i);
+        }
+
+        return new ArrayList<List<Integer>>(partitions.values());
+    }
+
+    private void parallelTransform(final Identity identity, final Pipeline pipeline,
+                                   final List<EventData> eventDatas, List<List<Integer>> partitions,
+                                   Map<Class, BatchObject> result) {
+        // 每条数据的转化结果，按下标存放，最后按原始顺序合并
+        final Object[][] items = new Object[eventDatas.size()][];
+        List<Future> futures = new ArrayList<Future>(partitions.size());
+        try {
+            for (final List<Integer> indexes : partitions) {
+                futures.add(executor.submit(new Callable() {
+
+                    public Object call() throws Exception {
+                        for (Integer index : indexes) {
+                            if (Thread.currentThread().isInterrupted()) {
+                                return null;
+                            }
+
+                            items[index] = transform(identity, pipeline, eventDatas.get(index));
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransformException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TransformException) {
+                throw (TransformException) e.getCause();
+            }
+            throw new TransformException(e.getCause());
+        } finally {
+            cancel(futures);
+        }
+
+        for (Object[] eventItems : items) {
+            if (eventItems == null) {
+                continue;
+            }
+
+            for (Object item : eventItems) {
+                // 合并结果
+                merge(identity, result, item);
+            }
+        }
+    }
+
+    // 转化单条数据，针对多路复制的情况可能会有多个结果
+    private Object[] transform(Identity identity, Pipeline pipeline, EventData eventData) {
+        Long tableId = eventData.getTableId();
+        List<Object> result = new ArrayList<Object>(1);
+        // 针对每个同步数据，可能会存在多路复制的情况
+        List<DataMediaPair> dataMediaPairs = ConfigHelper.findDataMediaPairByMediaId(pipeline, tableId);
+        for (DataMediaPair pair : dataMediaPairs) {
+            if (!pair.getSource().getId().equals(tableId)) { // 过滤tableID不为源的同步
+                continue;
+            }
+
+            OtterTransformer translate = lookup(pair.getSource(), pair.getTarget());
+            // 进行转化
+            Object item = translate.transform(eventData, new OtterTransformerContext(identity, pair, pipeline));
+            if (item != null) {
+                result.add(item);
+            }
+        }
+
+        return result.toArray();
+    }
+
+    // 取消一下当前正在执行的异步任务
+    private void cancel(List<Future> futures) {
+        for (Future future : futures) {
+            if (!future.isDone()) {
+                future.cancel(true);
+            }
+        }
+    }
+
     // 将生成的item对象合并到结果对象中
     private synchronized void merge(Identity identity, Map<Class, BatchObject> data, Object item) {
         Class clazz = item.getClass();
@@ -178,6 +290,20 @@ public class OtterTransformerFactory {
         return result;
     }
 
+    public void afterPropertiesSet() throws Exception {
+        executor = new ThreadPoolExecutor(poolSize,
+            poolSize,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue(poolSize * 4),
+            new NamedThreadFactory(WORKER_NAME),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public void destroy() throws Exception {
+        executor.shutdownNow();
+    }
+
     // ==================== setter / getter ==================
 
     public void setConfigClientService(ConfigClientService configClientService) {
@@ -192,4 +318,8 @@ public class OtterTransformerFactory {
         this.fileDataTransformer = fileDataTransformer;
     }
 
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.transform.transformer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ddlutils.model.Column;
+import org.apache.ddlutils.model.Table;
+import org.springframework.util.CollectionUtils;
+
+import com.alibaba.otter.node.etl.transform.exception.TransformException;
+import com.alibaba.otter.shared.common.model.config.ConfigHelper;
+import com.alibaba.otter.shared.common.model.config.data.ColumnPair;
+import com.alibaba.otter.shared.common.model.config.data.DataMedia.ModeValue;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaPair;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+/**
+ * <pre>
+ * DataMediaPair对应的转化计划，pair配置不变的情况下只需要计算一次
+ *
+ * 1. 字段名映射：manager配置的columnPairs预先构建为 源字段名 -> 目标字段名
+ * 2. 库表名映射：multi模式下源和目标的对应关系，按名字缓存
+ * 3. 目标表字段索引：按表名缓存，以Table对象作为版本，DbDialect重新加载table meta后自动重建
+ * </pre>
+ *
+ * @author jianghang
+ */
+class RowDataTransformPlan {
+
+    private final DataMediaPair              pair;
+    private final boolean                    translateColumnName;                                             // 是否需要进行字段名映射
+    private final Map<String, ColumnMapping> columnMappings = new HashMap<String, ColumnMapping>();
+    private final String                     columnMappingDesc;
+    private Map<String, String>              schemaNames    = new ConcurrentHashMap<String, String>();
+    private Map<String, String>              tableNames     = new ConcurrentHashMap<String, String>();
+    private Map<List<String>, TablePlan>     tablePlans     = new ConcurrentHashMap<List<String>, TablePlan>();
+
+    public RowDataTransformPlan(DataMediaPair pair){
+        this.pair = pair;
+        this.translateColumnName = !pair.getColumnPairMode().isExclude()
+                                   && !CollectionUtils.isEmpty(pair.getColumnPairs());
+
+        Multimap<String, String> translateColumnNames = HashMultimap.create();
+        if (pair.getColumnPairMode().isInclude()) { // 只针对正向匹配进行名字映射，exclude不做处理
+            for (ColumnPair columnPair : pair.getColumnPairs()) {
+                translateColumnNames.put(columnPair.getSourceColumn().getName(), columnPair.getTargetColumn().getName());
+            }
+        }
+
+        // 保持和HashMultimap一致的遍历顺序，一个源字段对应多个目标字段时，同一条数据内依次使用
+        int slot = 0;
+        for (String sourceName : translateColumnNames.keySet()) {
+            Collection<String> targetNames = translateColumnNames.get(sourceName);
+            columnMappings.put(sourceName, new ColumnMapping(slot++, targetNames.toArray(new String[targetNames.size()])));
+        }
+        this.columnMappingDesc = translateColumnNames.toString();
+    }
+
+    /**
+     * 每条数据处理时需要的字段名使用记录，不需要字段名映射时返回null
+     */
+    public int[] newColumnUsage() {
+        return translateColumnName ? new int[columnMappings.size()] : null;
+    }
+
+    /**
+     * 根据名字在manager配置的映射关系，转化为目标的字段名字
+     */
+    public String translateColumnName(String srcColumnName, int[] usage) {
+        if (!translateColumnName) {
+            return srcColumnName; // 默认同名
+        }
+
+        ColumnMapping mapping = columnMappings.get(srcColumnName);
+        if (mapping == null || usage[mapping.slot] >= mapping.targetNames.length) {
+            throw new TransformException(srcColumnName + " is not found in column pairs: " + columnMappingDesc);
+        }
+
+        return mapping.targetNames[usage[mapping.slot]];
+    }
+
+    /**
+     * 字段转化成功后记录一下，避免同一条数据内重复转换
+     */
+    public void consumeColumnName(String srcColumnName, int[] usage) {
+        if (usage == null) {
+            return;
+        }
+
+        ColumnMapping mapping = columnMappings.get(srcColumnName);
+        if (mapping != null) {
+            usage[mapping.slot]++;
+        }
+    }
+
+    public String buildSchemaName(String name) {
+        return buildName(schemaNames, name, pair.getSource().getNamespaceMode(), pair.getTarget().getNamespaceMode());
+    }
+
+    public String buildTableName(String name) {
+        return buildName(tableNames, name, pair.getSource().getNameMode(), pair.getTarget().getNameMode());
+    }
+
+    private String buildName(Map<String, String> cache, String name, ModeValue sourceModeValue,
+                             ModeValue targetModeValue) {
+        if (targetModeValue.getMode().isWildCard()) {
+            return name; // 通配符，认为源和目标一定是一致的
+        } else if (targetModeValue.getMode().isMulti()) {
+            String result = name == null ? null : cache.get(name);
+            if (result == null) {
+                int index = ConfigHelper.indexIgnoreCase(sourceModeValue.getMultiValue(), name);
+                if (index == -1) {
+                    throw new TransformException("can not found namespace or name in media:"
+                                                 + sourceModeValue.toString());
+                }
+
+                result = targetModeValue.getMultiValue().get(index);
+                cache.put(name, result);
+            }
+            return result;
+        } else {
+            return targetModeValue.getSingleValue();
+        }
+    }
+
+    /**
+     * 获取目标表对应的字段索引，table发生变化(比如被重新加载)后重建
+     */
+    public TablePlan getTablePlan(String schemaName, String tableName, Table table) {
+        List<String> key = Arrays.asList(schemaName, tableName);
+        TablePlan tablePlan = tablePlans.get(key);
+        if (tablePlan == null || tablePlan.getTable() != table) {
+            tablePlan = new TablePlan(table);
+            tablePlans.put(key, tablePlan);
+        }
+
+        return tablePlan;
+    }
+
+    private static class ColumnMapping {
+
+        private final int      slot;
+        private final String[] targetNames;
+
+        public ColumnMapping(int slot, String[] targetNames){
+            this.slot = slot;
+            this.targetNames = targetNames;
+        }
+    }
+
+    /**
+     * 目标表的字段索引
+     */
+    static class TablePlan {
+
+        private final Table               table;
+        private final Map<String, Column> columns = new HashMap<String, Column>();
+
+        public TablePlan(Table table){
+            this.table = table;
+            for (Column column : table.getColumns()) {
+                // 和遍历查找保持一致，忽略大小写后同名的字段以第一个为准
+                String name = column.getName().toLowerCase();
+                if (!columns.containsKey(name)) {
+                    columns.put(name, column);
+                }
+            }
+        }
+
+        public Table getTable() {
+            return table;
+        }
+
+        /**
+         * 忽略大小写查找字段
+         */
+        public Column getColumn(String columnName) {
+            return columns.get(columnName.toLowerCase());
+        }
+    }
+}
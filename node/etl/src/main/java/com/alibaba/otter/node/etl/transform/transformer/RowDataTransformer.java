@@ -17,8 +17,8 @@
 package com.alibaba.otter.node.etl.transform.transformer;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.ddlutils.model.Column;
@@ -29,17 +29,16 @@ import com.alibaba.otter.node.etl.common.db.dialect.DbDialect;
 import com.alibaba.otter.node.etl.common.db.dialect.DbDialectFactory;
 import com.alibaba.otter.node.etl.common.db.utils.DdlUtils;
 import com.alibaba.otter.node.etl.transform.exception.TransformException;
-import com.alibaba.otter.shared.common.model.config.ConfigHelper;
-import com.alibaba.otter.shared.common.model.config.data.ColumnPair;
+import com.alibaba.otter.node.etl.transform.transformer.RowDataTransformPlan.TablePlan;
 import com.alibaba.otter.shared.common.model.config.data.DataMedia;
-import com.alibaba.otter.shared.common.model.config.data.DataMedia.ModeValue;
 import com.alibaba.otter.shared.common.model.config.data.DataMediaPair;
 import com.alibaba.otter.shared.common.model.config.data.db.DbMediaSource;
 import com.alibaba.otter.shared.etl.model.EventColumn;
 import com.alibaba.otter.shared.etl.model.EventData;
 import com.alibaba.otter.shared.etl.model.EventType;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.base.Function;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.OtterMigrateMap;
 
 /**
  * RowData -> RowData数据的转换
@@ -49,16 +48,28 @@ import com.google.common.collect.Multimap;
  */
 public class RowDataTransformer extends AbstractOtterTransformer<EventData, EventData> {
 
-    private DbDialectFactory dbDialectFactory;
+    private DbDialectFactory                       dbDialectFactory;
+    private Map<DataMediaPair, RowDataTransformPlan> plans; // pair对应的转化计划，配置刷新后pair对象会被替换
+
+    public RowDataTransformer(){
+        plans = OtterMigrateMap.makeSoftValueComputingMap(new MapMaker().weakKeys(),
+            new Function<DataMediaPair, RowDataTransformPlan>() {
+
+                public RowDataTransformPlan apply(DataMediaPair pair) {
+                    return new RowDataTransformPlan(pair);
+                }
+            });
+    }
 
     public EventData transform(EventData data, OtterTransformerContext context) {
         EventData result = new EventData();
+        RowDataTransformPlan plan = plans.get(context.getDataMediaPair());
         // 处理Table转化
         DataMedia dataMedia = context.getDataMediaPair().getTarget();
         result.setPairId(context.getDataMediaPair().getId());
         result.setTableId(dataMedia.getId());
         // 需要特殊处理下multi场景
-        buildName(data, result, context.getDataMediaPair());
+        buildName(data, result, plan);
         result.setEventType(data.getEventType());
         result.setExecuteTime(data.getExecuteTime());
         result.setSyncConsistency(data.getSyncConsistency());
@@ -93,13 +104,8 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
             }
         }
 
-        Multimap<String, String> translateColumnNames = HashMultimap.create();
-        if (context.getDataMediaPair().getColumnPairMode().isInclude()) { // 只针对正向匹配进行名字映射，exclude不做处理
-            List<ColumnPair> columnPairs = context.getDataMediaPair().getColumnPairs();
-            for (ColumnPair columnPair : columnPairs) {
-                translateColumnNames.put(columnPair.getSourceColumn().getName(), columnPair.getTargetColumn().getName());
-            }
-        }
+        // 字段名映射直接使用转化计划中预先构建的结果，这里只记录本条数据的使用情况
+        int[] columnUsage = plan.newColumnUsage();
         // 准备一下table meta
         DataMediaPair dataMediaPair = context.getDataMediaPair();
         boolean useTableTransform = context.getPipeline().getParameters().getUseTableTransform();
@@ -112,21 +118,28 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
                 (DbMediaSource) dataMedia.getSource());
 
             Table table = dbDialect.findTable(result.getSchemaName(), result.getTableName());
-            tableHolder = new TableInfoHolder(table, useTableTransform, enableCompatibleMissColumn);
+            TablePlan tablePlan = plan.getTablePlan(result.getSchemaName(), result.getTableName(), table);
+            tableHolder = new TableInfoHolder(result.getSchemaName(),
+                result.getTableName(),
+                tablePlan,
+                useTableTransform,
+                enableCompatibleMissColumn);
         }
 
         // 处理column转化
         List<EventColumn> otherColumns = translateColumns(result,
             data.getColumns(),
             context.getDataMediaPair(),
-            translateColumnNames,
+            plan,
+            columnUsage,
             tableHolder);
         translatePkColumn(result,
             data.getKeys(),
             data.getOldKeys(),
             otherColumns,
             context.getDataMediaPair(),
-            translateColumnNames,
+            plan,
+            columnUsage,
             tableHolder);
 
         result.setColumns(otherColumns);
@@ -143,39 +156,18 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
      * 3. 源:offer[1-128] , 目：offer[1-128]
      * 4. 源:offer , 目：offer[1-128] 不支持，会报错
      */
-    private void buildName(EventData data, EventData result, DataMediaPair pair) {
-        DataMedia targetDataMedia = pair.getTarget();
-        DataMedia sourceDataMedia = pair.getSource();
-        String schemaName = buildName(data.getSchemaName(),
-            sourceDataMedia.getNamespaceMode(),
-            targetDataMedia.getNamespaceMode());
-        String tableName = buildName(data.getTableName(), sourceDataMedia.getNameMode(), targetDataMedia.getNameMode());
-        result.setSchemaName(schemaName);
-        result.setTableName(tableName);
-    }
-
-    private String buildName(String name, ModeValue sourceModeValue, ModeValue targetModeValue) {
-        if (targetModeValue.getMode().isWildCard()) {
-            return name; // 通配符，认为源和目标一定是一致的
-        } else if (targetModeValue.getMode().isMulti()) {
-            int index = ConfigHelper.indexIgnoreCase(sourceModeValue.getMultiValue(), name);
-            if (index == -1) {
-                throw new TransformException("can not found namespace or name in media:" + sourceModeValue.toString());
-            }
-
-            return targetModeValue.getMultiValue().get(index);
-        } else {
-            return targetModeValue.getSingleValue();
-        }
+    private void buildName(EventData data, EventData result, RowDataTransformPlan plan) {
+        result.setSchemaName(plan.buildSchemaName(data.getSchemaName()));
+        result.setTableName(plan.buildTableName(data.getTableName()));
     }
 
     // 处理字段映射
     private List<EventColumn> translateColumns(EventData data, List<EventColumn> columns, DataMediaPair dataMediaPair,
-                                               Multimap<String, String> translateColumnNames,
+                                               RowDataTransformPlan plan, int[] columnUsage,
                                                TableInfoHolder tableHolder) {
-        List<EventColumn> tcolumns = new ArrayList<EventColumn>();
+        List<EventColumn> tcolumns = new ArrayList<EventColumn>(columns.size());
         for (EventColumn scolumn : columns) {
-            EventColumn tcolumn = translateColumn(data, scolumn, tableHolder, dataMediaPair, translateColumnNames);
+            EventColumn tcolumn = translateColumn(data, scolumn, tableHolder, dataMediaPair, plan, columnUsage);
             if (tcolumn != null) {
                 tcolumns.add(tcolumn);
             }
@@ -184,12 +176,12 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
     }
 
     private void translatePkColumn(EventData data, List<EventColumn> pks, List<EventColumn> oldPks,
-                                   List<EventColumn> columns, DataMediaPair dataMediaPair,
-                                   Multimap<String, String> translateColumnNames, TableInfoHolder tableHolder) {
+                                   List<EventColumn> columns, DataMediaPair dataMediaPair, RowDataTransformPlan plan,
+                                   int[] columnUsage, TableInfoHolder tableHolder) {
         if (CollectionUtils.isEmpty(oldPks)) { // 如果不存在主键变更
-            List<EventColumn> tpks = new ArrayList<EventColumn>();
+            List<EventColumn> tpks = new ArrayList<EventColumn>(pks.size());
             for (EventColumn scolumn : pks) {
-                EventColumn tcolumn = translateColumn(data, scolumn, tableHolder, dataMediaPair, translateColumnNames);
+                EventColumn tcolumn = translateColumn(data, scolumn, tableHolder, dataMediaPair, plan, columnUsage);
                 if (tcolumn != null) {
                     tpks.add(tcolumn);
                 }
@@ -205,7 +197,7 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
                 EventColumn newPk = pks.get(i);
                 EventColumn oldPk = oldPks.get(i);
                 // 转化new pk
-                EventColumn tnewPk = translateColumn(data, newPk, tableHolder, dataMediaPair, translateColumnNames);
+                EventColumn tnewPk = translateColumn(data, newPk, tableHolder, dataMediaPair, plan, columnUsage);
                 if (tnewPk != null) {
                     tnewPks.add(tnewPk);
                     // 转化old pk，这里不能再用translateColumnNames了，因为转化new
@@ -242,7 +234,7 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
     }
 
     private EventColumn translateColumn(EventData data, EventColumn scolumn, TableInfoHolder tableHolder,
-                                        DataMediaPair dataMediaPair, Multimap<String, String> translateColumnNames) {
+                                        DataMediaPair dataMediaPair, RowDataTransformPlan plan, int[] columnUsage) {
         EventType type = data.getEventType();
         EventColumn tcolumn = new EventColumn();
         tcolumn.setNull(scolumn.getColumnValue() == null);
@@ -250,7 +242,7 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
         tcolumn.setIndex(scolumn.getIndex());
         tcolumn.setUpdate(scolumn.isUpdate());
 
-        String columnName = translateColumnName(scolumn.getColumnName(), dataMediaPair, translateColumnNames);
+        String columnName = plan.translateColumnName(scolumn.getColumnName(), columnUsage);
         if (StringUtils.isBlank(columnName)) {
             throw new TransformException("can't translate column name:" + scolumn.getColumnName() + "in pair:"
                                          + dataMediaPair.toString());
@@ -277,7 +269,7 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
                 canColumnsNotExist &= !scolumn.isKey(); // 主键不允许不存在
             }
 
-            Column matchDbColumn = getMatchColumn(tableHolder.getTable().getColumns(), tcolumn.getColumnName());
+            Column matchDbColumn = tableHolder.getTablePlan().getColumn(tcolumn.getColumnName());
             // 匹配字段为空，可能源库发生过DDL操作，目标库重新载入一下meta信息
             if (matchDbColumn == null) { // 尝试reload一下table meta
                 // 获取目标库的表信息
@@ -287,10 +279,14 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
                 if (StringUtils.isEmpty(schemaName)) {
                     schemaName = tableHolder.getTable().getCatalog();
                 }
-                Table table = dbDialect.findTable(schemaName, tableHolder.getTable().getName(), false); // 强制反查一次，并放入cache
-
-                tableHolder.setTable(table);
-                matchDbColumn = getMatchColumn(tableHolder.getTable().getColumns(), tcolumn.getColumnName());
+                String tableName = tableHolder.getTable().getName();
+                Table table = dbDialect.findTable(schemaName, tableName, false); // 强制反查一次，并放入cache
+
+                // 和正常路径保持同一个key(目标库表名)，避免reload后的plan被放到错误的key下反复重建
+                tableHolder.setTablePlan(plan.getTablePlan(tableHolder.getSchemaName(),
+                    tableHolder.getTableName(),
+                    table));
+                matchDbColumn = tableHolder.getTablePlan().getColumn(tcolumn.getColumnName());
                 if (matchDbColumn == null) {
                     if (canColumnsNotExist) {
                         return null;
@@ -319,7 +315,7 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
         // mysql编码转化已经在驱动层面上完成
         tcolumn.setColumnValue(scolumn.getColumnValue());
         // }
-        translateColumnNames.remove(scolumn.getColumnName(), columnName);// 删除映射关系，避免下次重复转换
+        plan.consumeColumnName(scolumn.getColumnName(), columnUsage);// 记录映射关系已使用，避免下次重复转换
         return tcolumn;
     }
 
@@ -345,37 +341,6 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
         return tcolumn;
     }
 
-    // ============ helper method ============
-
-    /**
-     * 根据名字在manager配置的映射关系，转化为目标的字段名字
-     */
-    private String translateColumnName(String srcColumnName, DataMediaPair dataMediaPair,
-                                       Multimap<String, String> translateDict) {
-        if (dataMediaPair.getColumnPairMode().isExclude() || CollectionUtils.isEmpty(dataMediaPair.getColumnPairs())) {
-            return srcColumnName; // 默认同名
-        }
-
-        Collection<String> tColumnNames = translateDict.get(srcColumnName);
-        if (CollectionUtils.isEmpty(tColumnNames)) {
-            throw new TransformException(srcColumnName + " is not found in column pairs: " + translateDict.toString());
-        }
-        String columnName = tColumnNames.iterator().next();
-
-        return columnName;
-    }
-
-    private Column getMatchColumn(Column[] columns, String columnName) {
-        // 目标库字段的类型确定
-        for (Column column : columns) {
-            if (column.getName().equalsIgnoreCase(columnName)) {
-                return column;
-            }
-        }
-
-        return null;
-    }
-
     // =============== setter / getter =============
 
     public void setDbDialectFactory(DbDialectFactory dbDialectFactory) {
@@ -390,22 +355,39 @@ public class RowDataTransformer extends AbstractOtterTransformer<EventData, Even
      */
     static class TableInfoHolder {
 
-        private Table   table;
-        private boolean useTableTransform          = true;
-        private boolean enableCompatibleMissColumn = true;
+        private final String schemaName;                       // 目标库名，即tablePlan的缓存key
+        private final String tableName;                        // 目标表名
+        private TablePlan    tablePlan;
+        private boolean      useTableTransform          = true;
+        private boolean      enableCompatibleMissColumn = true;
 
-        public TableInfoHolder(Table table, boolean useTableTransform, boolean enableCompatibleMissColumn){
+        public TableInfoHolder(String schemaName, String tableName, TablePlan tablePlan, boolean useTableTransform,
+                               boolean enableCompatibleMissColumn){
+            this.schemaName = schemaName;
+            this.tableName = tableName;
             this.useTableTransform = useTableTransform;
             this.enableCompatibleMissColumn = enableCompatibleMissColumn;
-            this.table = table;
+            this.tablePlan = tablePlan;
+        }
+
+        public String getSchemaName() {
+            return schemaName;
+        }
+
+        public String getTableName() {
+            return tableName;
         }
 
         public Table getTable() {
-            return table;
+            return tablePlan.getTable();
+        }
+
+        public TablePlan getTablePlan() {
+            return tablePlan;
         }
 
-        public void setTable(Table table) {
-            this.table = table;
+        public void setTablePlan(TablePlan tablePlan) {
+            this.tablePlan = tablePlan;
         }
 
         public boolean isUseTableTransform() {
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.common.datasource.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.etl.BaseOtterTest;
+import com.alibaba.otter.shared.common.model.statistics.datasource.DataSourceStat;
+
+public class SharedDataSourceTest extends BaseOtterTest {
+
+    private ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterClass
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void test_quota_timeout() throws Exception {
+        MockDataSource dataSource = new MockDataSource(2, 200);
+        SharedDataSource shared = new SharedDataSource("jdbc:mock", "otter", dataSource);
+        PipelineDataSource pipeline1 = shared.attach(1L);
+        shared.attach(2L);
+
+        // 连接池还有余量时，可以超出份额
+        Connection c1 = pipeline1.getConnection();
+        Connection c2 = pipeline1.getConnection();
+        want.number(dataSource.active.get()).isEqualTo(2);
+
+        // 连接池用满后，超出份额的pipeline需要等待直到超时
+        long start = System.currentTimeMillis();
+        try {
+            pipeline1.getConnection();
+            want.fail();
+        } catch (SQLException e) {
+            want.number(System.currentTimeMillis() - start).isGreaterEqual(150L);
+        }
+        want.number(dataSource.active.get()).isEqualTo(2);
+
+        c1.close();
+        c2.close();
+        want.number(dataSource.active.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_below_quota() throws Exception {
+        MockDataSource dataSource = new MockDataSource(2, 200);
+        SharedDataSource shared = new SharedDataSource("jdbc:mock", "otter", dataSource);
+        PipelineDataSource pipeline1 = shared.attach(1L);
+        PipelineDataSource pipeline2 = shared.attach(2L);
+
+        Connection c1 = pipeline1.getConnection();
+        Connection c2 = pipeline1.getConnection();
+
+        // 未超出份额的pipeline仍然可以进入dbcp排队，不受份额阻塞
+        Connection c3 = pipeline2.getConnection();
+        want.number(dataSource.borrowed.get()).isEqualTo(3);
+
+        List<DataSourceStat> stats = shared.stats();
+        want.collection(stats).sizeEq(2);
+        for (DataSourceStat stat : stats) {
+            want.number(stat.getQuota()).isEqualTo(1);
+            if (stat.getPipelineId().equals(1L)) {
+                want.number(stat.getPipelineActive()).isEqualTo(2);
+                want.number(stat.getBorrowCount()).isEqualTo(2L);
+            } else {
+                want.number(stat.getPipelineActive()).isEqualTo(1);
+                want.number(stat.getBorrowCount()).isEqualTo(1L);
+            }
+        }
+
+        c1.close();
+        c2.close();
+        c3.close();
+    }
+
+    @Test
+    public void test_release() throws Exception {
+        MockDataSource dataSource = new MockDataSource(2, 0);// 无限等待
+        SharedDataSource shared = new SharedDataSource("jdbc:mock", "otter", dataSource);
+        final PipelineDataSource pipeline1 = shared.attach(1L);
+        shared.attach(2L);
+
+        Connection c1 = pipeline1.getConnection();
+        Connection c2 = pipeline1.getConnection();
+        Future<Connection> future = executor.submit(new Callable<Connection>() {
+
+            public Connection call() throws Exception {
+                return pipeline1.getConnection();
+            }
+        });
+
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            want.fail();
+        } catch (TimeoutException e) {
+            // 用满后被阻塞
+        }
+
+        // 归还连接后唤醒等待的pipeline，多次close只归还一次
+        c1.close();
+        c1.close();
+        Connection c3 = future.get(1, TimeUnit.SECONDS);
+        want.number(dataSource.active.get()).isEqualTo(2);
+
+        List<DataSourceStat> stats = shared.stats();
+        for (DataSourceStat stat : stats) {
+            if (stat.getPipelineId().equals(1L)) {
+                want.number(stat.getPipelineActive()).isEqualTo(2);
+                want.number(stat.getWaitCount()).isEqualTo(1L);
+            }
+        }
+
+        c2.close();
+        c3.close();
+        want.number(dataSource.active.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_detach() throws Exception {
+        MockDataSource dataSource = new MockDataSource(2, 0);// 无限等待
+        SharedDataSource shared = new SharedDataSource("jdbc:mock", "otter", dataSource);
+        final PipelineDataSource pipeline1 = shared.attach(1L);
+        PipelineDataSource pipeline2 = shared.attach(2L);
+
+        Connection c1 = pipeline1.getConnection();
+        Connection c2 = pipeline2.getConnection();
+        Future<Connection> future = executor.submit(new Callable<Connection>() {
+
+            public Connection call() throws Exception {
+                return pipeline1.getConnection();
+            }
+        });
+
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            want.fail();
+        } catch (TimeoutException e) {
+            // 用满后被阻塞
+        }
+
+        // pipeline2释放引用后份额提升，pipeline1不再受份额阻塞，直接进入dbcp排队
+        c2.close();
+        want.bool(shared.detach(pipeline2)).is(false);
+        Connection c3 = future.get(1, TimeUnit.SECONDS);
+        want.number(shared.stats().get(0).getQuota()).isEqualTo(2);
+
+        c1.close();
+        c3.close();
+        want.bool(shared.detach(pipeline1)).is(true);
+    }
+
+    /**
+     * 模拟dbcp连接池，只记录借出的连接数
+     */
+    static class MockDataSource extends BasicDataSource {
+
+        private AtomicInteger active   = new AtomicInteger(0);
+        private AtomicInteger borrowed = new AtomicInteger(0);
+
+        public MockDataSource(int maxActive, long maxWait){
+            setMaxActive(maxActive);
+            setMaxWait(maxWait);
+        }
+
+        public Connection getConnection() throws SQLException {
+            active.incrementAndGet();
+            borrowed.incrementAndGet();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class[] { Connection.class },
+                new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("close".equals(method.getName())) {
+                            active.decrementAndGet();
+                        }
+                        return null;
+                    }
+                });
+        }
+
+        public synchronized int getNumActive() {
+            return active.get();
+        }
+    }
+}
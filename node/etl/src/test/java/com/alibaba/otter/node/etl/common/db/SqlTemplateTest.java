@@ -75,4 +75,32 @@ public class SqlTemplateTest extends BaseDbTest {
         want.bool(sql1 == sql2);
     }
 
+    @Test
+    public void test_batch_select() {
+        SqlTemplate sqlTemplate = new MysqlSqlTemplate();
+        String sql = sqlTemplate.getBatchSelectSql(SCHEMA_NAME, TABLE_NAME, new String[] { "id" }, new String[] {
+                "alias_name", "amount" }, 3);
+        want.string(sql).isEqualTo("select `id` , `alias_name` , `amount` from `srf`.`columns` where `id` in (? , ? , ?)");
+
+        sql = sqlTemplate.getBatchSelectSql(SCHEMA_NAME, TABLE_NAME, pkColumns, new String[] { "amount" }, 2);
+        want.string(sql).isEqualTo("select `id` , `name` , `amount` from `srf`.`columns` where ( `id` = ? and `name` = ? ) or ( `id` = ? and `name` = ? )");
+
+        sqlTemplate = new OracleSqlTemplate();
+        sql = sqlTemplate.getBatchSelectSql(SCHEMA_NAME, TABLE_NAME, new String[] { "id" }, new String[] { "amount" }, 2);
+        want.string(sql).isEqualTo("select id , amount from srf.columns where id in (? , ?)");
+    }
+
+    @Test
+    public void test_mysql_multi_values() {
+        MysqlSqlTemplate sqlTemplate = new MysqlSqlTemplate();
+        String[] pks = { "id" };
+        String[] cols = { "name", "amount" };
+        String single = sqlTemplate.getMergeSql(SCHEMA_NAME, TABLE_NAME, pks, cols, null, true, null);
+        want.string(single).isEqualTo("insert into `srf`.`columns`(`name` , `amount` , `id`) values (? , ? , ?) on duplicate key update `name`=values(`name`) , `amount`=values(`amount`) , `id`=values(`id`)");
+        want.string(sqlTemplate.getMultiValuesMergeSql(SCHEMA_NAME, TABLE_NAME, pks, cols, true, null, 1)).isEqualTo(single);
+
+        String multi = sqlTemplate.getMultiValuesMergeSql(SCHEMA_NAME, TABLE_NAME, pks, cols, true, null, 2);
+        want.string(multi).isEqualTo("insert into `srf`.`columns`(`name` , `amount` , `id`) values (? , ? , ?) , (? , ? , ?) on duplicate key update `name`=values(`name`) , `amount`=values(`amount`) , `id`=values(`id`)");
+    }
+
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.common.db;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ddlutils.model.Table;
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.etl.BaseOtterTest;
+import com.alibaba.otter.node.etl.common.db.dialect.TableMetaCache;
+import com.google.common.base.Function;
+
+/**
+ * @author jianghang
+ */
+public class TableMetaCacheTest extends BaseOtterTest {
+
+    @Test
+    public void test_lru() {
+        final AtomicInteger loads = new AtomicInteger(0);
+        TableMetaCache cache = new TableMetaCache(new Function<List<String>, Table>() {
+
+            public Table apply(List<String> names) {
+                loads.incrementAndGet();
+                return buildTable(names.get(1));
+            }
+        }, 2);
+
+        Table t1 = cache.get("test", "t1");
+        want.bool(t1 == cache.get("test", "t1")).is(true);
+        cache.get("test", "t2");
+        cache.get("test", "t1");// t1变为最近访问
+        cache.get("test", "t3");// 淘汰t2
+        want.number(cache.size()).isEqualTo(2);
+        want.number(cache.getEvictionCount()).isEqualTo(1);
+        want.number(loads.get()).isEqualTo(3);
+
+        cache.get("test", "t2");
+        want.number(loads.get()).isEqualTo(4);
+        want.number(cache.getHitCount()).isEqualTo(2);
+        want.number(cache.getMissCount()).isEqualTo(4);
+
+        cache.invalidate("test", "t2");
+        cache.get("test", "t2");
+        want.number(loads.get()).isEqualTo(5);
+
+        cache.invalidateSchema("TEST");
+        want.number(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_version() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch invalidated = new CountDownLatch(1);
+        final TableMetaCache cache = new TableMetaCache(new Function<List<String>, Table>() {
+
+            public Table apply(List<String> names) {
+                if ("slow".equals(names.get(1))) {
+                    loading.countDown();
+                    try {
+                        invalidated.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return buildTable(names.get(1));
+            }
+        }, 100);
+
+        Thread thread = new Thread(new Runnable() {
+
+            public void run() {
+                cache.get("test", "slow");
+            }
+        });
+        thread.start();
+
+        // 加载期间发生ddl，加载结果不能进入缓存
+        loading.await();
+        cache.invalidate("test", "slow");
+        invalidated.countDown();
+        thread.join();
+        want.number(cache.size()).isEqualTo(0);
+
+        // 预加载不覆盖已有数据，版本过期后放弃写入
+        long version = cache.getVersion();
+        Table t1 = cache.get("test", "t1");
+        want.bool(cache.preload("test", buildTable("t1"), version)).is(false);
+        want.bool(cache.get("test", "t1") == t1).is(true);
+        want.bool(cache.preload("test", buildTable("t2"), version)).is(true);
+        cache.invalidate("test", "t3");
+        want.bool(cache.preload("test", buildTable("t4"), version)).is(false);
+    }
+
+    private Table buildTable(String name) {
+        Table table = new Table();
+        table.setName(name);
+        return table;
+    }
+}
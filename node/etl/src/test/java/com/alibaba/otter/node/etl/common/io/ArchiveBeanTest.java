@@ -21,7 +21,11 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FilenameUtils;
 
 import org.testng.annotations.Test;
 
@@ -29,6 +33,7 @@ import com.alibaba.otter.node.etl.BaseOtterTest;
 import com.alibaba.otter.node.etl.common.pipe.impl.http.archive.ArchiveBean;
 import com.alibaba.otter.node.etl.common.pipe.impl.http.archive.ArchiveRetriverCallback;
 import com.alibaba.otter.shared.common.utils.NioUtils;
+import com.alibaba.otter.shared.etl.model.EventType;
 import com.alibaba.otter.shared.etl.model.FileData;
 
 /**
@@ -105,4 +110,73 @@ public class ArchiveBeanTest extends BaseOtterTest {
         }
     }
 
+    @Test
+    public void test_streaming() {
+        File[] files = new File[5];
+        byte[][] datas = new byte[5][];
+        String[] names = { "a.txt", "b.txt", "c.jpg", "d.png", "e.txt" };
+
+        List<FileData> fileDatas = new ArrayList<FileData>();
+        File archiveFile = new File(tmp, "streaming_pack.zip");
+        File unpack = new File(tmp, "streaming_unpack");
+
+        ArchiveBean archiveBean = new ArchiveBean();
+        try {
+            archiveBean.afterPropertiesSet();
+        } catch (Exception e1) {
+            want.fail();
+        }
+        archiveBean.setUseStreamingPack(true);
+        archiveBean.setStreamingBlockSize(4 * 1024);// 部分数据块超过阀值，会写入临时文件
+
+        Random random = new Random();
+        try {
+            for (int i = 0; i < files.length; i++) {
+                files[i] = new File(tmp, "streaming_" + names[i]);
+                datas[i] = new byte[(i + 1) * 2 * 1024];
+                if (files[i].getName().endsWith(".txt")) {
+                    Arrays.fill(datas[i], (byte) ('a' + i));
+                } else {
+                    random.nextBytes(datas[i]);
+                }
+                NioUtils.write(datas[i], files[i]);
+
+                FileData fileData = new FileData();
+                fileData.setPath(files[i].getPath());
+                fileData.setEventType(EventType.INSERT);
+                fileDatas.add(fileData);
+            }
+
+            boolean exist = archiveBean.pack(archiveFile, fileDatas, new ArchiveRetriverCallback<FileData>() {
+
+                public InputStream retrive(FileData source) {
+                    try {
+                        return new FileInputStream(new File(source.getPath()));
+                    } catch (FileNotFoundException e) {
+                        want.fail();
+                    }
+                    return null;
+                }
+            });
+            want.bool(exist).is(true);
+
+            // 开始解压，内容需要和原始文件一致
+            List<File> result = archiveBean.unpack(archiveFile, unpack);
+            want.number(result.size()).isEqualTo(files.length);
+            for (int i = 0; i < files.length; i++) {
+                String path = files[i].getPath();
+                File file = new File(unpack, FilenameUtils.getPath(path) + FilenameUtils.getName(path));
+                want.bool(Arrays.equals(datas[i], NioUtils.read(file))).is(true);
+            }
+        } catch (Exception e) {
+            want.fail();
+        } finally {
+            for (int i = 0; i < files.length; i++) {
+                NioUtils.delete(files[i]);
+            }
+            NioUtils.delete(archiveFile);
+            NioUtils.delete(unpack);
+        }
+    }
+
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.common.pipe;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.etl.BaseOtterTest;
+import com.alibaba.otter.node.etl.common.pipe.impl.AdaptivePipeChooser;
+import com.alibaba.otter.shared.common.model.statistics.pipe.PipeChooseStat;
+
+public class AdaptivePipeChooserTest extends BaseOtterTest {
+
+    @Test
+    public void test_threshold() {
+        AdaptivePipeChooser chooser = new AdaptivePipeChooser();
+        chooser.setRpcMaxSize(4096);
+        chooser.setProbeInterval(1000);
+
+        // 样本不足时按固定阀值选择
+        want.bool(chooser.chooseRpc(1L, 2L, 100, 1024)).is(true);
+        want.bool(chooser.chooseRpc(1L, 2L, 2048, 1024)).is(false);
+        // 超过rpc上限，始终选择http
+        want.bool(chooser.chooseRpc(1L, 2L, 8192, 1024)).is(false);
+    }
+
+    @Test
+    public void test_adaptive() {
+        AdaptivePipeChooser receiver = new AdaptivePipeChooser();
+        Long pipelineId = 1L;
+        Long senderNid = 1L;
+        Long receiverNid = 2L;
+        // rpc: 1ms + 1ms/KB , http: 50ms + 0.1ms/KB
+        for (int i = 1; i <= 5; i++) {
+            long size = i * 10 * 1024L;
+            receiver.recordGet(pipelineId, senderNid, true, size, 1 + size / 1024);
+            receiver.recordGet(pipelineId, senderNid, false, size, 50 + size / 10240);
+        }
+
+        // 接收端的get模型回传给发送端
+        AdaptivePipeChooser sender = new AdaptivePipeChooser();
+        sender.mergeCosts(pipelineId,
+            receiverNid,
+            receiver.getCosts(pipelineId, senderNid, true),
+            receiver.getCosts(pipelineId, senderNid, false));
+        want.bool(sender.chooseRpc(pipelineId, receiverNid, 10 * 1024L, 1024)).is(true);
+        want.bool(sender.chooseRpc(pipelineId, receiverNid, 1024 * 1024L, 1024)).is(false);
+    }
+
+    @Test
+    public void test_per_node() {
+        AdaptivePipeChooser sender = new AdaptivePipeChooser();
+        Long pipelineId = 1L;
+        // 负载均衡到两个load节点，node2的rpc很快，node3的rpc很慢
+        AdaptivePipeChooser receiver = new AdaptivePipeChooser();
+        for (int i = 1; i <= 5; i++) {
+            long size = i * 10 * 1024L;
+            receiver.recordGet(pipelineId, 2L, true, size, 1 + size / 10240);
+            receiver.recordGet(pipelineId, 2L, false, size, 50 + size / 10240);
+            receiver.recordGet(pipelineId, 3L, true, size, 100 + size / 1024);
+            receiver.recordGet(pipelineId, 3L, false, size, 50 + size / 10240);
+        }
+        sender.mergeCosts(pipelineId, 2L, receiver.getCosts(pipelineId, 2L, true), receiver.getCosts(pipelineId, 2L, false));
+        sender.mergeCosts(pipelineId, 3L, receiver.getCosts(pipelineId, 3L, true), receiver.getCosts(pipelineId, 3L, false));
+
+        // 不同接收节点的模型互不覆盖
+        want.bool(sender.chooseRpc(pipelineId, 2L, 100 * 1024L, 1024)).is(true);
+        want.bool(sender.chooseRpc(pipelineId, 3L, 100 * 1024L, 1024)).is(false);
+    }
+
+    @Test
+    public void test_stats() {
+        AdaptivePipeChooser chooser = new AdaptivePipeChooser();
+        chooser.setProbeInterval(2);
+        for (int i = 0; i < 4; i++) {
+            chooser.chooseRpc(1L, 2L, 2048, 1024);
+        }
+        chooser.chooseRpc(1L, 3L, 100, 1024);
+
+        List<PipeChooseStat> stats = chooser.stats();
+        want.collection(stats).sizeEq(2);
+        for (PipeChooseStat stat : stats) {
+            want.number(stat.getPipelineId()).isEqualTo(1L);
+            if (stat.getTargetNid().equals(2L)) {
+                // rpc缺少样本，每2个batch探测一次rpc
+                want.number(stat.getRpcCount()).isEqualTo(2L);
+                want.number(stat.getHttpCount()).isEqualTo(2L);
+                want.number(stat.getProbeCount()).isEqualTo(2L);
+            } else {
+                want.number(stat.getRpcCount()).isEqualTo(1L);
+                want.number(stat.getHttpCount()).isEqualTo(0L);
+            }
+        }
+
+        // 只上报统计周期内的增量，没有新数据时不再上报
+        want.collection(chooser.stats()).sizeEq(0);
+        chooser.chooseRpc(1L, 2L, 100, 1024);
+        want.collection(chooser.stats()).sizeEq(1);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.common.pipe;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.etl.BaseOtterTest;
+import com.alibaba.otter.node.etl.common.pipe.impl.ColumnarRowBatchCodec;
+import com.alibaba.otter.shared.common.model.config.channel.ChannelParameter.SyncConsistency;
+import com.alibaba.otter.shared.common.model.config.channel.ChannelParameter.SyncMode;
+import com.alibaba.otter.shared.etl.model.EventColumn;
+import com.alibaba.otter.shared.etl.model.EventData;
+import com.alibaba.otter.shared.etl.model.EventType;
+import com.alibaba.otter.shared.etl.model.Identity;
+import com.alibaba.otter.shared.etl.model.RowBatch;
+
+public class ColumnarRowBatchCodecTest extends BaseOtterTest {
+
+    @Test
+    public void test_simple() throws IOException {
+        RowBatch source = new RowBatch();
+        Identity identity = new Identity();
+        identity.setChannelId(100L);
+        identity.setPipelineId(101L);
+        identity.setProcessId(102L);
+        source.setIdentity(identity);
+
+        for (int i = 0; i < 100; i++) {
+            EventData data = new EventData();
+            data.setPairId(1L);
+            data.setTableId(i < 50 ? 10L : 11L);
+            data.setSchemaName("test");
+            data.setTableName(i < 50 ? "test_a" : "test_b");
+            data.setEventType(i % 3 == 0 ? EventType.INSERT : (i % 3 == 1 ? EventType.UPDATE : EventType.DELETE));
+            data.setExecuteTime(1400000000000L + i * 7);
+            data.setSize(100 + i);
+            data.setSyncMode(SyncMode.ROW);
+            data.setSyncConsistency(i % 2 == 0 ? SyncConsistency.BASE : null);
+            data.setRemedy(i % 5 == 0);
+            data.getKeys().add(makeColumn("id", Types.BIGINT, 0, String.valueOf(i * 1000 - 30), true, false));
+            if (data.getEventType().isUpdate() && i % 4 == 1) {
+                data.getOldKeys().add(makeColumn("id", Types.BIGINT, 0, String.valueOf(-i), true, false));
+            }
+            data.getColumns().add(makeColumn("name", Types.VARCHAR, 1, "名字" + i, false, i % 7 == 0));
+            // 非规范整数需要按字符串处理
+            data.getColumns().add(makeColumn("code", Types.VARCHAR, 2, i % 10 == 0 ? "007" : String.valueOf(i),
+                false,
+                false));
+            if (i % 2 == 0) {
+                data.getColumns().add(makeColumn("gmt_modified", Types.TIMESTAMP, 3, "2014-01-01 00:00:00", false,
+                    false));
+            }
+            source.merge(data);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ColumnarRowBatchCodec.encode(source, output);
+        output.write(1); // 追加数据，确认解码只读取rowBatch部分
+        ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+        RowBatch target = ColumnarRowBatchCodec.decode(input);
+        want.number(input.read()).isEqualTo(1);
+
+        want.bool(source.getIdentity().equals(target.getIdentity())).is(true);
+        want.number(target.getDatas().size()).isEqualTo(source.getDatas().size());
+        for (int i = 0; i < source.getDatas().size(); i++) {
+            EventData expected = source.getDatas().get(i);
+            EventData actual = target.getDatas().get(i);
+            want.number(actual.getPairId()).isEqualTo(expected.getPairId());
+            want.number(actual.getTableId()).isEqualTo(expected.getTableId());
+            want.string(actual.getSchemaName()).isEqualTo(expected.getSchemaName());
+            want.string(actual.getTableName()).isEqualTo(expected.getTableName());
+            want.bool(actual.getEventType() == expected.getEventType()).is(true);
+            want.number(actual.getExecuteTime()).isEqualTo(expected.getExecuteTime());
+            want.number(actual.getSize()).isEqualTo(expected.getSize());
+            want.bool(actual.getSyncMode() == expected.getSyncMode()).is(true);
+            want.bool(actual.getSyncConsistency() == expected.getSyncConsistency()).is(true);
+            want.bool(actual.isRemedy()).is(expected.isRemedy());
+            want.bool(actual.getKeys().equals(expected.getKeys())).is(true);
+            want.bool(actual.getOldKeys().equals(expected.getOldKeys())).is(true);
+            want.bool(actual.getColumns().equals(expected.getColumns())).is(true);
+        }
+    }
+
+    private EventColumn makeColumn(String name, int type, int index, String value, boolean isKey, boolean isNull) {
+        EventColumn column = new EventColumn();
+        column.setColumnName(name);
+        column.setColumnType(type);
+        column.setIndex(index);
+        column.setKey(isKey);
+        column.setNull(isNull);
+        column.setColumnValue(isNull ? null : value);
+        column.setUpdate(!isNull);
+        return column;
+    }
+}
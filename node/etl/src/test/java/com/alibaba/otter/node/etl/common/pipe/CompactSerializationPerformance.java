@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.common.pipe;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.alibaba.otter.node.etl.common.pipe.impl.ColumnarRowBatchCodec;
+import com.alibaba.otter.node.etl.common.pipe.impl.rpc.ColumnarDbBatch;
+import com.alibaba.otter.node.etl.common.pipe.impl.rpc.RpcPipeKey;
+import com.alibaba.otter.shared.arbitrate.impl.communication.StageSingleEventCodec;
+import com.alibaba.otter.shared.arbitrate.model.EtlEventData;
+import com.alibaba.otter.shared.common.model.config.enums.StageType;
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputStat;
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputType;
+import com.alibaba.otter.shared.communication.core.model.Event;
+import com.alibaba.otter.shared.communication.core.serialize.CompactEvent;
+import com.alibaba.otter.shared.communication.core.serialize.CompactSerializer;
+import com.alibaba.otter.shared.communication.model.arbitrate.ArbitrateEventType;
+import com.alibaba.otter.shared.communication.model.arbitrate.StageSingleEvent;
+import com.alibaba.otter.shared.communication.model.statistics.ThroughputStatEvent;
+import com.alibaba.otter.shared.etl.model.DbBatch;
+import com.alibaba.otter.shared.etl.model.EventColumn;
+import com.alibaba.otter.shared.etl.model.EventData;
+import com.alibaba.otter.shared.etl.model.EventType;
+import com.alibaba.otter.shared.etl.model.Identity;
+import com.alibaba.otter.shared.etl.model.RowBatch;
+
+/**
+ * 对比java序列化和compact紧凑编码的数据大小及编解码耗时
+ *
+ * <pre>
+ * jvm args :
+ * -server -Xmx1g -Xms1g
+ *
+ * 运行方式: main方法直接运行，compact的结果为经过包装后再进行一次java序列化的数据，即dubbo实际传输的内容
+ * DbBatch对比的是java序列化原始对象和rpc pipe实际传输的列式ColumnarDbBatch
+ * </pre>
+ */
+public class CompactSerializationPerformance {
+
+    private static final int ROWS   = 1000;
+    private static final int STATS  = 100;
+    private static final int LOOPS  = 2000;
+    private static final int ROUNDS = 5;
+    private static final int WARMUP = 2;
+
+    public static void main(String args[]) throws Exception {
+        CompactSerializer.register(StageSingleEventCodec.ID, StageSingleEvent.class, new StageSingleEventCodec());
+
+        run("ThroughputStatEvent", new EventCase(makeThroughputStatEvent()), LOOPS);
+        run("StageSingleEvent", new EventCase(makeStageSingleEvent()), LOOPS);
+        run("DbBatch", new DbBatchCase(makeDbBatch()), LOOPS / 20);
+    }
+
+    private static void run(String name, Case testCase, int loops) throws Exception {
+        long javaEncode = 0, javaDecode = 0, compactEncode = 0, compactDecode = 0;
+        int javaSize = 0, compactSize = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long encode = 0, decode = 0;
+            for (int i = 0; i < loops; i++) {
+                long start = System.nanoTime();
+                byte[] data = serialize(testCase.object);
+                long end = System.nanoTime();
+                deserialize(data);
+                decode += System.nanoTime() - end;
+                encode += end - start;
+                javaSize = data.length;
+            }
+            if (round >= WARMUP) {
+                javaEncode += encode;
+                javaDecode += decode;
+            }
+
+            encode = 0;
+            decode = 0;
+            for (int i = 0; i < loops; i++) {
+                long start = System.nanoTime();
+                byte[] data = serialize(testCase.encode());
+                long end = System.nanoTime();
+                testCase.decode(deserialize(data));
+                decode += System.nanoTime() - end;
+                encode += end - start;
+                compactSize = data.length;
+            }
+            if (round >= WARMUP) {
+                compactEncode += encode;
+                compactDecode += decode;
+            }
+        }
+
+        long count = (long) loops * (ROUNDS - WARMUP);
+        System.out.printf("%-20s java : %8d bytes , encode %6d us , decode %6d us | compact : %8d bytes , encode %6d us , decode %6d us\n",
+            name,
+            javaSize,
+            javaEncode / count / 1000,
+            javaDecode / count / 1000,
+            compactSize,
+            compactEncode / count / 1000,
+            compactDecode / count / 1000);
+    }
+
+    private static byte[] serialize(Object object) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(output);
+        out.writeObject(object);
+        out.close();
+        return output.toByteArray();
+    }
+
+    private static Object deserialize(byte[] data) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static abstract class Case {
+
+        protected Object object;
+
+        public Case(Object object){
+            this.object = object;
+        }
+
+        public abstract Object encode() throws Exception;
+
+        public abstract Object decode(Object data) throws Exception;
+    }
+
+    /**
+     * 通讯事件，和DefaultCommunicationClientImpl协商成功后的处理保持一致
+     */
+    private static class EventCase extends Case {
+
+        private Map<Integer, Integer> codecs = CompactSerializer.getCodecs();
+
+        public EventCase(Event event){
+            super(event);
+        }
+
+        public Object encode() {
+            return CompactSerializer.wrap((Event) object, codecs);
+        }
+
+        public Object decode(Object data) {
+            return CompactSerializer.unwrap((CompactEvent) data);
+        }
+    }
+
+    /**
+     * DbBatch，和RowDataRpcPipe的列式传输保持一致
+     */
+    private static class DbBatchCase extends Case {
+
+        public DbBatchCase(DbBatch dbBatch){
+            super(dbBatch);
+        }
+
+        public Object encode() throws Exception {
+            ColumnarDbBatch batch = new ColumnarDbBatch();
+            batch.setRowBatch(ColumnarRowBatchCodec.encode(((DbBatch) object).getRowBatch()));
+            return batch;
+        }
+
+        public Object decode(Object data) throws Exception {
+            DbBatch dbBatch = new DbBatch();
+            dbBatch.setRowBatch(ColumnarRowBatchCodec.decode(((ColumnarDbBatch) data).getRowBatch()));
+            return dbBatch;
+        }
+    }
+
+    private static ThroughputStatEvent makeThroughputStatEvent() {
+        List<ThroughputStat> stats = new ArrayList<ThroughputStat>();
+        for (int i = 0; i < STATS; i++) {
+            ThroughputStat stat = new ThroughputStat();
+            stat.setPipelineId(1L);
+            stat.setType(ThroughputType.ROW);
+            stat.setNumber(1000L + i);
+            stat.setSize(1024L * i);
+            stat.setStartTime(new Date());
+            stat.setEndTime(new Date());
+            stats.add(stat);
+        }
+
+        ThroughputStatEvent event = new ThroughputStatEvent();
+        event.setStats(stats);
+        return event;
+    }
+
+    private static StageSingleEvent makeStageSingleEvent() {
+        EtlEventData data = new EtlEventData();
+        data.setPipelineId(1L);
+        data.setProcessId(1000L);
+        data.setStartTime(System.currentTimeMillis());
+        data.setEndTime(System.currentTimeMillis());
+        data.setFirstTime(System.currentTimeMillis());
+        data.setBatchId(2000L);
+        data.setNumber(1000L);
+        data.setSize(1024 * 1024L);
+        data.setCurrNid(1L);
+        data.setNextNid(2L);
+        List<PipeKey> keys = new ArrayList<PipeKey>();
+        keys.add(makeKey());
+        data.setDesc(keys);
+
+        StageSingleEvent event = new StageSingleEvent(ArbitrateEventType.stageSingle);
+        event.setPipelineId(1L);
+        event.setStage(StageType.TRANSFORM);
+        event.setData(data);
+        return event;
+    }
+
+    private static DbBatch makeDbBatch() {
+        RowBatch rowBatch = new RowBatch();
+        rowBatch.setIdentity(makeKey().getIdentity());
+        for (int i = 0; i < ROWS; i++) {
+            EventData data = new EventData();
+            data.setPairId(1L);
+            data.setTableId(1L);
+            data.setSchemaName("test");
+            data.setTableName("offer");
+            data.setEventType(EventType.UPDATE);
+            data.setExecuteTime(System.currentTimeMillis());
+            data.getKeys().add(makeColumn("id", Types.BIGINT, 0, String.valueOf(i), true));
+            for (int j = 1; j < 10; j++) {
+                data.getColumns().add(makeColumn("col_" + j, Types.VARCHAR, j, "value_" + i + "_" + j, false));
+            }
+            rowBatch.merge(data);
+        }
+
+        DbBatch dbBatch = new DbBatch();
+        dbBatch.setRowBatch(rowBatch);
+        return dbBatch;
+    }
+
+    private static RpcPipeKey makeKey() {
+        Identity identity = new Identity();
+        identity.setChannelId(1L);
+        identity.setPipelineId(1L);
+        identity.setProcessId(1000L);
+        RpcPipeKey key = new RpcPipeKey();
+        key.setIdentity(identity);
+        key.setNid(1L);
+        key.setTime(System.currentTimeMillis());
+        key.setDataType(PipeDataType.DB_BATCH);
+        return key;
+    }
+
+    private static EventColumn makeColumn(String name, int type, int index, String value, boolean isKey) {
+        EventColumn column = new EventColumn();
+        column.setColumnName(name);
+        column.setColumnType(type);
+        column.setIndex(index);
+        column.setKey(isKey);
+        column.setColumnValue(value);
+        column.setUpdate(true);
+        return column;
+    }
+}
@@ -16,12 +16,18 @@
 
 package com.alibaba.otter.node.etl.common.pipe;
 
+import java.sql.Types;
+
 import org.testng.annotations.Test;
 
 import com.alibaba.otter.node.etl.common.pipe.impl.memory.MemoryPipeKey;
+import com.alibaba.otter.node.etl.common.pipe.impl.memory.OffHeapRowDataMemoryPipe;
 import com.alibaba.otter.node.etl.common.pipe.impl.memory.RowDataMemoryPipe;
 import com.alibaba.otter.node.etl.BaseOtterTest;
 import com.alibaba.otter.shared.etl.model.DbBatch;
+import com.alibaba.otter.shared.etl.model.EventColumn;
+import com.alibaba.otter.shared.etl.model.EventData;
+import com.alibaba.otter.shared.etl.model.EventType;
 import com.alibaba.otter.shared.etl.model.Identity;
 import com.alibaba.otter.shared.etl.model.RowBatch;
 
@@ -82,4 +88,101 @@ public class MemoryPipeTest extends BaseOtterTest {
         DbBatch target = pipe.get(key);
         want.bool(target == null).is(true);// 返回结果为空
     }
+
+    @Test
+    public void test_offheap() throws Exception {
+        OffHeapRowDataMemoryPipe pipe = new OffHeapRowDataMemoryPipe();
+        pipe.setCapacity(1024 * 1024L);
+        pipe.setPageSize(1024);
+        pipe.afterPropertiesSet();
+
+        DbBatch source = new DbBatch();
+        RowBatch rowBatch = new RowBatch();
+        Identity identity = new Identity();
+        identity.setChannelId(100L);
+        identity.setPipelineId(100L);
+        identity.setProcessId(100L);
+        rowBatch.setIdentity(identity);
+        for (int i = 0; i < 100; i++) {
+            EventData data = new EventData();
+            data.setTableId(1L);
+            data.setSchemaName("test");
+            data.setTableName("test");
+            data.setEventType(EventType.INSERT);
+            data.setExecuteTime(i);
+            EventColumn column = new EventColumn();
+            column.setColumnName("id");
+            column.setColumnType(Types.BIGINT);
+            column.setColumnValue(String.valueOf(i));
+            column.setKey(true);
+            data.getKeys().add(column);
+            rowBatch.merge(data);
+        }
+        source.setRowBatch(rowBatch);
+
+        MemoryPipeKey key = pipe.put(source);
+        want.bool(pipe.getUsedBytes() > 0).is(true);
+        DbBatch target = pipe.get(key);
+        want.bool(source == target).is(false);// 重新解码的对象
+        want.bool(target.getRowBatch().getIdentity().equals(identity)).is(true);
+        want.number(target.getRowBatch().getDatas().size()).isEqualTo(100);
+        want.bool(target.getRowBatch().getDatas().get(99).getKeys().equals(source.getRowBatch().getDatas().get(99).getKeys())).is(true);
+        want.number(pipe.getUsedBytes()).isEqualTo(0L);// 取出后释放
+        want.bool(pipe.get(key) == null).is(true);
+    }
+
+    @Test
+    public void test_offheap_timeout() throws Exception {
+        OffHeapRowDataMemoryPipe pipe = new OffHeapRowDataMemoryPipe();
+        pipe.setTimeout(1 * 1000L);// 1s后超时
+        pipe.setCapacity(1024 * 1024L);
+        pipe.afterPropertiesSet();
+
+        DbBatch source = new DbBatch();
+        RowBatch rowBatch = new RowBatch();
+        Identity identity = new Identity();
+        identity.setChannelId(100L);
+        identity.setPipelineId(100L);
+        identity.setProcessId(100L);
+        rowBatch.setIdentity(identity);
+        source.setRowBatch(rowBatch);
+
+        MemoryPipeKey key = pipe.put(source);
+        Thread.sleep(1500L);
+        pipe.put(source);// put时清理过期数据
+        want.bool(pipe.get(key) == null).is(true);// 返回结果为空
+    }
+
+    @Test
+    public void test_offheap_clean() throws Exception {
+        OffHeapRowDataMemoryPipe pipe = new OffHeapRowDataMemoryPipe();
+        pipe.setTimeout(1 * 1000L);// 1s后超时
+        pipe.setPeriod(100L);
+        pipe.setCapacity(1024 * 1024L);
+        pipe.afterPropertiesSet();
+
+        DbBatch source = new DbBatch();
+        RowBatch rowBatch = new RowBatch();
+        Identity identity = new Identity();
+        identity.setChannelId(100L);
+        identity.setPipelineId(100L);
+        identity.setProcessId(100L);
+        rowBatch.setIdentity(identity);
+        EventData data = new EventData();
+        data.setTableId(1L);
+        data.setSchemaName("test");
+        data.setTableName("test");
+        data.setEventType(EventType.INSERT);
+        rowBatch.merge(data);
+        source.setRowBatch(rowBatch);
+
+        // 模拟rollback，数据放入后不再有put/get
+        MemoryPipeKey key = pipe.put(source);
+        want.bool(pipe.getPayloadBytes() > 0).is(true);
+        Thread.sleep(1500L);
+        want.number(pipe.getPayloadBytes()).isEqualTo(0L);// 后台任务清理过期数据
+        want.number(pipe.getUsedBytes()).isEqualTo(0L);
+        want.bool(pipe.get(key) == null).is(true);
+        pipe.destroy();
+    }
 }
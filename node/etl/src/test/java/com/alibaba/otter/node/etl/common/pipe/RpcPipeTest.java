@@ -16,16 +16,25 @@
 
 package com.alibaba.otter.node.etl.common.pipe;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
 import mockit.Mock;
 import mockit.Mockit;
 
 import org.testng.annotations.Test;
 
 import com.alibaba.otter.node.common.communication.NodeCommmunicationClient;
+import com.alibaba.otter.node.common.config.ConfigClientService;
 import com.alibaba.otter.node.etl.BaseOtterTest;
 import com.alibaba.otter.node.etl.TestUtils;
+import com.alibaba.otter.node.etl.common.pipe.impl.rpc.ColumnarDbBatch;
 import com.alibaba.otter.node.etl.common.pipe.impl.rpc.RowDataRpcPipe;
 import com.alibaba.otter.node.etl.common.pipe.impl.rpc.RpcPipeKey;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
 import com.alibaba.otter.shared.communication.core.model.Event;
 import com.alibaba.otter.shared.etl.model.DbBatch;
 import com.alibaba.otter.shared.etl.model.Identity;
@@ -45,6 +54,7 @@ public class RpcPipeTest extends BaseOtterTest {
         source.setRowBatch(rowBatch);
 
         final RowDataRpcPipe pipe = new RowDataRpcPipe();
+        pipe.setConfigClientService(buildConfigClientService(false));
         try {
             pipe.afterPropertiesSet();
         } catch (Exception e) {
@@ -79,6 +89,57 @@ public class RpcPipeTest extends BaseOtterTest {
         want.bool(source.getRowBatch().getIdentity().equals(target.getRowBatch().getIdentity())).is(true);// identify相等
     }
 
+    @Test
+    public void test_columnar() {
+        final DbBatch source = new DbBatch();
+        RowBatch rowBatch = new RowBatch();
+        Identity identity = new Identity();
+        identity.setChannelId(100L);
+        identity.setPipelineId(100L);
+        identity.setProcessId(100L);
+        rowBatch.setIdentity(identity);
+        source.setRowBatch(rowBatch);
+
+        final RowDataRpcPipe pipe = new RowDataRpcPipe();
+        pipe.setConfigClientService(buildConfigClientService(true));
+        try {
+            pipe.afterPropertiesSet();
+        } catch (Exception e) {
+            want.fail();
+        }
+        final List<Object> results = new ArrayList<Object>();
+        Mockit.setUpMock(NodeCommmunicationClient.class, new Object() {
+
+            @Mock
+            public Object call(Long nid, final Event event) {
+                try {
+                    Object result = TestUtils.invokeMethod(pipe, "onGet", event);
+                    results.add(result);
+                    return result;
+                } catch (Exception e) {
+                    want.fail();
+                }
+
+                return null;
+            }
+
+        });
+
+        Mockit.setUpMock(RowDataRpcPipe.class, new Object() {
+
+            @Mock
+            private Long getNid() {
+                return 1L;
+            }
+
+        });
+        pipe.setNodeCommmunicationClient(new NodeCommmunicationClient());
+        RpcPipeKey key = pipe.put(source);
+        DbBatch target = pipe.get(key);
+        want.bool(results.get(0) instanceof ColumnarDbBatch).is(true);// 开启列式格式后按列式编码传输
+        want.bool(source.getRowBatch().getIdentity().equals(target.getRowBatch().getIdentity())).is(true);// identify相等
+    }
+
     @Test
     public void test_timeout() {
 
@@ -92,6 +153,7 @@ public class RpcPipeTest extends BaseOtterTest {
         source.setRowBatch(rowBatch);
 
         final RowDataRpcPipe pipe = new RowDataRpcPipe();
+        pipe.setConfigClientService(buildConfigClientService(false));
         pipe.setTimeout(1 * 1000L);// 1s后超时
         try {
             pipe.afterPropertiesSet();
@@ -132,4 +194,21 @@ public class RpcPipeTest extends BaseOtterTest {
         DbBatch target = pipe.get(key);
         want.bool(target == null).is(true);// 返回结果为空
     }
+
+    private ConfigClientService buildConfigClientService(boolean columnar) {
+        final Pipeline pipeline = new Pipeline();
+        pipeline.setId(100L);
+        pipeline.getParameters().setUseColumnarBatch(columnar);
+        return (ConfigClientService) Proxy.newProxyInstance(ConfigClientService.class.getClassLoader(),
+            new Class[] { ConfigClientService.class },
+            new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("findPipeline".equals(method.getName())) {
+                        return pipeline;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.common.pipe;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.etl.BaseOtterTest;
+import com.alibaba.otter.node.etl.common.pipe.impl.rpc.ColumnarDbBatch;
+import com.alibaba.otter.node.etl.common.pipe.impl.rpc.RpcPipeKey;
+import com.alibaba.otter.node.etl.common.pipe.impl.rpc.RpcPushInbox;
+import com.alibaba.otter.shared.etl.model.Identity;
+
+public class RpcPushInboxTest extends BaseOtterTest {
+
+    @Test
+    public void test_capacity() {
+        RpcPushInbox inbox = new RpcPushInbox(100, 60 * 1000L);
+        RpcPipeKey first = buildKey(1L);
+        RpcPipeKey second = buildKey(2L);
+        want.bool(inbox.offer(first, buildData(80))).is(true);
+        // 容量不足时拒绝推送
+        want.bool(inbox.offer(second, buildData(80))).is(false);
+        want.number(inbox.size()).isEqualTo(80L);
+
+        want.bool(inbox.take(first) != null).is(true);
+        want.number(inbox.size()).isEqualTo(0L);
+        want.bool(inbox.offer(second, buildData(80))).is(true);
+        want.bool(inbox.take(second) != null).is(true);
+    }
+
+    @Test
+    public void test_consumed() {
+        RpcPushInbox inbox = new RpcPushInbox(100, 60 * 1000L);
+        RpcPipeKey key = buildKey(1L);
+        // 已经拉取过的数据，迟到的推送直接拒绝
+        want.bool(inbox.take(key) == null).is(true);
+        want.bool(inbox.offer(key, buildData(10))).is(false);
+        want.number(inbox.size()).isEqualTo(0L);
+        want.bool(inbox.take(key) == null).is(true);
+    }
+
+    @Test
+    public void test_take_before_offer() {
+        RpcPushInbox inbox = new RpcPushInbox(100, 60 * 1000L);
+        RpcPipeKey key = buildKey(1L);
+        // 模拟发送端的cache，只有接收端保存成功后才移除
+        Map<RpcPipeKey, ColumnarDbBatch> cache = new HashMap<RpcPipeKey, ColumnarDbBatch>();
+        ColumnarDbBatch data = buildData(10);
+        cache.put(key, data);
+
+        // 接收端先get，推送还未到达，改为拉取
+        want.bool(inbox.take(key) == null).is(true);
+        // 推送迟到，被拒绝后发送端保留数据
+        if (inbox.offer(key, data)) {
+            cache.remove(key);
+        }
+        // 接收端的拉取仍然可以拿到数据
+        want.bool(cache.remove(key) == data).is(true);
+    }
+
+    @Test
+    public void test_duplicate() {
+        RpcPushInbox inbox = new RpcPushInbox(100, 60 * 1000L);
+        RpcPipeKey key = buildKey(1L);
+        // 重复推送，数据已经保存，只占用一份容量
+        want.bool(inbox.offer(key, buildData(10))).is(true);
+        want.bool(inbox.offer(key, buildData(10))).is(true);
+        want.number(inbox.size()).isEqualTo(10L);
+        want.bool(inbox.take(key) != null).is(true);
+    }
+
+    @Test
+    public void test_timeout() throws InterruptedException {
+        RpcPushInbox inbox = new RpcPushInbox(100, 100L);
+        RpcPipeKey first = buildKey(1L);
+        want.bool(inbox.offer(first, buildData(80))).is(true);
+        Thread.sleep(200L);
+        // 过期的数据被丢弃，释放容量
+        want.bool(inbox.offer(buildKey(2L), buildData(80))).is(true);
+        want.bool(inbox.take(first) == null).is(true);
+        want.number(inbox.size()).isEqualTo(80L);
+    }
+
+    private RpcPipeKey buildKey(Long processId) {
+        Identity identity = new Identity();
+        identity.setChannelId(100L);
+        identity.setPipelineId(100L);
+        identity.setProcessId(processId);
+        RpcPipeKey key = new RpcPipeKey();
+        key.setIdentity(identity);
+        key.setNid(1L);
+        return key;
+    }
+
+    private ColumnarDbBatch buildData(int size) {
+        ColumnarDbBatch data = new ColumnarDbBatch();
+        data.setRowBatch(new byte[size]);
+        return data;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.extract;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ddlutils.model.Column;
+import org.apache.ddlutils.model.Table;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.alibaba.otter.node.common.config.ConfigClientService;
+import com.alibaba.otter.node.etl.common.db.dialect.DbDialect;
+import com.alibaba.otter.node.etl.common.db.dialect.DbDialectFactory;
+import com.alibaba.otter.node.etl.common.db.dialect.mysql.MysqlSqlTemplate;
+import com.alibaba.otter.node.etl.extract.extractor.DatabaseExtractor;
+import com.alibaba.otter.shared.common.model.config.channel.ChannelParameter.SyncConsistency;
+import com.alibaba.otter.shared.common.model.config.channel.ChannelParameter.SyncMode;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaPair;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaType;
+import com.alibaba.otter.shared.common.model.config.data.db.DbDataMedia;
+import com.alibaba.otter.shared.common.model.config.data.db.DbMediaSource;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+import com.alibaba.otter.shared.etl.model.DbBatch;
+import com.alibaba.otter.shared.etl.model.EventColumn;
+import com.alibaba.otter.shared.etl.model.EventData;
+import com.alibaba.otter.shared.etl.model.EventType;
+import com.alibaba.otter.shared.etl.model.Identity;
+import com.alibaba.otter.shared.etl.model.RowBatch;
+
+/**
+ * 大批量数据下DatabaseExtractor的反查开销
+ *
+ * <pre>
+ * jvm args :
+ * -server -Xmx1g -Xms1g -Xmn512m
+ *
+ * 运行方式: main方法直接运行，每批50000条update记录，SyncConsistency为MEDIA，所有记录都需要反查，
+ * 其中一半的记录反查时数据库已不存在(开启skipNoRow后会被过滤)，数据库查询通过JdbcTemplate直接返回，不依赖真实数据库
+ * 反查不到记录时每条都会打印warn日志，运行时建议将DatabaseExtractor的日志级别调整为error
+ * </pre>
+ */
+public class DatabaseExtractorPerformance {
+
+    private static final int COLUMNS = 10;
+    private static final int ROWS    = 50000;
+    private static final int ROUNDS  = 10;
+    private static final int WARMUP  = 3;
+
+    public static void main(String args[]) throws Exception {
+        final Table table = new Table();
+        table.setName("offer");
+        for (int i = 0; i < COLUMNS; i++) {
+            Column column = new Column();
+            column.setName("col_" + i);
+            column.setTypeCode(i == 0 ? Types.BIGINT : Types.VARCHAR);
+            column.setPrimaryKey(i == 0);
+            table.addColumn(column);
+        }
+
+        final List<String> row = new ArrayList<String>();
+        for (int i = 1; i < COLUMNS; i++) {
+            row.add("value_" + i);
+        }
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+
+            public List query(String sql, Object[] args, int[] argTypes, RowMapper rowMapper) {
+                // 偶数主键模拟数据库中已经被删除的记录
+                if (Long.valueOf(args[0].toString()) % 2 == 0) {
+                    return Collections.emptyList();
+                }
+                return Arrays.asList(new ArrayList<String>(row));
+            }
+        };
+        final MysqlSqlTemplate sqlTemplate = new MysqlSqlTemplate();
+        final DbDialect dbDialect = (DbDialect) Proxy.newProxyInstance(DbDialect.class.getClassLoader(),
+            new Class[] { DbDialect.class },
+            new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("findTable".equals(method.getName())) {
+                        return table;
+                    } else if ("getSqlTemplate".equals(method.getName())) {
+                        return sqlTemplate;
+                    } else if ("getJdbcTemplate".equals(method.getName())) {
+                        return jdbcTemplate;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+        final Pipeline pipeline = new Pipeline();
+        pipeline.setId(1L);
+        pipeline.getParameters().setSyncMode(SyncMode.FIELD);
+        pipeline.getParameters().setSyncConsistency(SyncConsistency.MEDIA);
+        pipeline.getParameters().setSkipNoRow(true);
+        pipeline.getParameters().setExtractPoolSize(5);
+        DataMediaPair pair = new DataMediaPair();
+        pair.setId(1L);
+        pair.setPipelineId(1L);
+        pair.setSource(buildMedia(1L));
+        pair.setTarget(buildMedia(2L));
+        List<DataMediaPair> pairs = new ArrayList<DataMediaPair>();
+        pairs.add(pair);
+        pipeline.setPairs(pairs);
+
+        DatabaseExtractor extractor = new DatabaseExtractor();
+        extractor.setConfigClientService((ConfigClientService) Proxy.newProxyInstance(ConfigClientService.class.getClassLoader(),
+            new Class[] { ConfigClientService.class },
+            new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("findPipeline".equals(method.getName())) {
+                        return pipeline;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            }));
+        extractor.setDbDialectFactory(new DbDialectFactory() {
+
+            public DbDialect getDbDialect(Long pipelineId, DbMediaSource source) {
+                return dbDialect;
+            }
+        });
+        extractor.afterPropertiesSet();
+
+        long cost = 0;
+        long remain = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            DbBatch dbBatch = makeDbBatch();
+            long start = System.nanoTime();
+            extractor.extract(dbBatch);
+            long end = System.nanoTime();
+            if (i >= WARMUP) {
+                cost += end - start;
+                remain += dbBatch.getRowBatch().getDatas().size();
+            }
+        }
+        extractor.destroy();
+
+        long avg = cost / (ROUNDS - WARMUP);
+        System.out.printf("extract %d rows , remain %d rows , cost : %d ms , %d rows/s\n",
+            ROWS,
+            remain / (ROUNDS - WARMUP),
+            avg / 1000000,
+            ROWS * 1000000000L / avg);
+    }
+
+    private static DbDataMedia buildMedia(Long id) {
+        DbMediaSource source = new DbMediaSource();
+        source.setId(id);
+        source.setType(DataMediaType.MYSQL);
+        DbDataMedia dataMedia = new DbDataMedia();
+        dataMedia.setId(id);
+        dataMedia.setNamespace("test");
+        dataMedia.setName("offer");
+        dataMedia.setSource(source);
+        return dataMedia;
+    }
+
+    private static DbBatch makeDbBatch() {
+        Identity identity = new Identity();
+        identity.setChannelId(1L);
+        identity.setPipelineId(1L);
+        identity.setProcessId(1L);
+        RowBatch rowBatch = new RowBatch();
+        rowBatch.setIdentity(identity);
+        for (int i = 0; i < ROWS; i++) {
+            EventData data = new EventData();
+            data.setPairId(1L);
+            data.setTableId(1L);
+            data.setSchemaName("test");
+            data.setTableName("offer");
+            data.setEventType(EventType.UPDATE);
+            data.setExecuteTime(System.currentTimeMillis());
+            for (int j = 0; j < COLUMNS; j++) {
+                EventColumn column = new EventColumn();
+                column.setColumnName("col_" + j);
+                column.setColumnType(j == 0 ? Types.BIGINT : Types.VARCHAR);
+                column.setColumnValue(j == 0 ? String.valueOf(i) : "old_" + j);
+                column.setIndex(j);
+                column.setKey(j == 0);
+                column.setUpdate(true);
+                if (j == 0) {
+                    data.getKeys().add(column);
+                } else {
+                    data.getColumns().add(column);
+                }
+            }
+            rowBatch.merge(data);
+        }
+
+        DbBatch dbBatch = new DbBatch();
+        dbBatch.setRowBatch(rowBatch);
+        return dbBatch;
+    }
+}
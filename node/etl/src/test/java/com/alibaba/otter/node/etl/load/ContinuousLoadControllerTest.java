@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.load;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.etl.BaseOtterTest;
+import com.alibaba.otter.node.etl.load.exception.LoadException;
+import com.alibaba.otter.node.etl.load.loader.weight.ContinuousLoadController;
+import com.alibaba.otter.node.etl.load.loader.weight.ContinuousLoadController.LoadSlot;
+
+public class ContinuousLoadControllerTest extends BaseOtterTest {
+
+    @Test
+    public void test_overlap() throws InterruptedException {
+        ContinuousLoadController controller = new ContinuousLoadController();
+        controller.start(1L);
+        controller.start(2L);
+
+        LoadSlot slow = new LoadSlot(1L, "test.a", 5);
+        LoadSlot fast = new LoadSlot(1L, "test.b", 5);
+        controller.register(1L, Arrays.asList(slow, fast));
+
+        LoadSlot next = new LoadSlot(2L, "test.b", 5);
+        LoadSlot free = new LoadSlot(2L, "test.c", 5);
+        controller.register(2L, Arrays.asList(next, free));
+
+        // 不冲突的表可以直接执行，相同的表需要等待前一个批次完成
+        List<LoadSlot> pendings = Arrays.asList(next, free);
+        want.bool(controller.await(pendings) == free).is(true);
+        controller.release(fast);
+        want.bool(controller.await(pendings) == next).is(true);
+
+        // slow表未完成，后一个批次也已经可以执行，但single需要按顺序
+        controller.release(next);
+        controller.release(free);
+        controller.release(slow);
+        want.bool(controller.awaitTurn(1L)).is(true);
+        controller.finish(1L, true);
+        want.bool(controller.awaitTurn(2L)).is(true);
+        controller.finish(2L, true);
+        want.bool(controller.isRunning()).is(false);
+    }
+
+    @Test
+    public void test_weight() throws InterruptedException {
+        ContinuousLoadController controller = new ContinuousLoadController();
+        controller.start(1L);
+        controller.start(2L);
+
+        LoadSlot low = new LoadSlot(1L, "test.a", 1);
+        controller.register(1L, Arrays.asList(low));
+        LoadSlot high = new LoadSlot(2L, "test.b", 2);
+        LoadSlot same = new LoadSlot(2L, "test.c", 1);
+        controller.register(2L, Arrays.asList(high, same));
+
+        // 前一个批次中更小weight的数据需要先完成
+        want.bool(controller.await(Arrays.asList(high, same)) == same).is(true);
+        controller.release(low);
+        want.bool(controller.await(Arrays.asList(high)) == high).is(true);
+
+        LoadSlot ddl = new LoadSlot(3L);
+        controller.start(3L);
+        controller.register(3L, Arrays.asList(ddl));
+        want.bool(low.isConflict(ddl)).is(true);
+        want.bool(ddl.isConflict(same)).is(true);
+    }
+
+    @Test
+    public void test_datasource_slot() throws InterruptedException {
+        ContinuousLoadController controller = new ContinuousLoadController();
+        controller.start(1L);
+        controller.start(2L);
+
+        // 一个数据源一个slot，包含多张表
+        LoadSlot first = new LoadSlot(1L, new HashSet<String>(Arrays.asList("test.a", "test.b")), 5, 5);
+        controller.register(1L, Arrays.asList(first));
+        LoadSlot shared = new LoadSlot(2L, new HashSet<String>(Arrays.asList("test.b", "test.c")), 5, 5);
+        LoadSlot free = new LoadSlot(2L, new HashSet<String>(Arrays.asList("test.c", "test.d")), 5, 5);
+        controller.register(2L, Arrays.asList(shared, free));
+
+        // 存在任意一张相同的表就需要等待
+        want.bool(controller.await(Arrays.asList(shared, free)) == free).is(true);
+        controller.release(first);
+        want.bool(controller.await(Arrays.asList(shared)) == shared).is(true);
+
+        // 前一个slot中存在更小的weight需要等待
+        LoadSlot lower = new LoadSlot(1L, new HashSet<String>(Arrays.asList("test.a")), 1, 3);
+        LoadSlot higher = new LoadSlot(1L, new HashSet<String>(Arrays.asList("test.a")), 2, 3);
+        LoadSlot next = new LoadSlot(2L, "test.x", 2);
+        want.bool(lower.isConflict(next)).is(true);
+        want.bool(higher.isConflict(next)).is(false);
+    }
+
+    @Test
+    public void test_abort() throws InterruptedException {
+        ContinuousLoadController controller = new ContinuousLoadController();
+        controller.start(1L);
+        controller.start(2L);
+        controller.start(3L);
+
+        // 批次1未登记前，批次2需要等待
+        final ContinuousLoadController current = controller;
+        Thread thread = new Thread() {
+
+            public void run() {
+                try {
+                    current.register(2L, Arrays.asList(new LoadSlot(2L, "test.a", 5)));
+                    want.fail();
+                } catch (LoadException e) {
+                    // 批次1失败后被放弃
+                } catch (InterruptedException e) {
+                    want.fail();
+                }
+            }
+        };
+        thread.start();
+        Thread.sleep(100);
+        want.bool(thread.isAlive()).is(true);
+
+        controller.finish(1L, false);
+        thread.join(1000);
+        want.bool(thread.isAlive()).is(false);
+        want.bool(controller.isAborted(2L)).is(true);
+        want.bool(controller.awaitTurn(3L)).is(false);
+
+        controller.finish(2L, false);
+        controller.finish(3L, false);
+        want.bool(controller.isRunning()).is(false);
+
+        // rollback后新分配的批次不受影响
+        controller.start(4L);
+        want.bool(controller.awaitTurn(4L)).is(true);
+        controller.finish(4L, true);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.load;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.etl.BaseOtterTest;
+import com.alibaba.otter.node.etl.load.loader.db.DbLoadDependency;
+import com.alibaba.otter.shared.etl.model.EventColumn;
+import com.alibaba.otter.shared.etl.model.EventData;
+import com.alibaba.otter.shared.etl.model.EventType;
+
+public class DbLoadDependencyTest extends BaseOtterTest {
+
+    @Test
+    public void test_same_key() {
+        List<List<EventData>> units = new ArrayList<List<EventData>>();
+        units.add(Arrays.asList(makeEventData(EventType.INSERT, "offer", 1L)));
+        units.add(Arrays.asList(makeEventData(EventType.INSERT, "offer", 2L)));
+        units.add(Arrays.asList(makeEventData(EventType.UPDATE, "offer", 1L)));
+
+        DbLoadDependency dependency = new DbLoadDependency(units);
+        want.number(dependency.getDepend(0)).isEqualTo(0);
+        want.number(dependency.getDepend(1)).isEqualTo(0);
+        want.number(dependency.getDepend(2)).isEqualTo(1);
+
+        want.collection(dependency.release(1)).sizeEq(0);
+        want.collection(dependency.release(0)).reflectionEq(Arrays.asList(2));
+    }
+
+    @Test
+    public void test_delete_before_insert() {
+        // delete pk=1 和 insert pk=2 主键不同，但可能存在相同的唯一索引值，insert需要等待同表的delete完成
+        List<List<EventData>> units = new ArrayList<List<EventData>>();
+        units.add(Arrays.asList(makeEventData(EventType.DELETE, "offer", 1L)));
+        units.add(Arrays.asList(makeEventData(EventType.DELETE, "offer", 3L)));
+        units.add(Arrays.asList(makeEventData(EventType.DELETE, "member", 1L)));
+        units.add(Arrays.asList(makeEventData(EventType.INSERT, "offer", 2L)));
+        units.add(Arrays.asList(makeEventData(EventType.UPDATE, "offer", 4L)));
+        units.add(Arrays.asList(makeEventData(EventType.INSERT, "company", 1L)));
+
+        DbLoadDependency dependency = new DbLoadDependency(units);
+        want.number(dependency.getDepend(0)).isEqualTo(0);
+        want.number(dependency.getDepend(1)).isEqualTo(0);
+        want.number(dependency.getDepend(2)).isEqualTo(0);
+        want.number(dependency.getDepend(3)).isEqualTo(2);
+        want.number(dependency.getDepend(4)).isEqualTo(2);
+        want.number(dependency.getDepend(5)).isEqualTo(0); // 不同表不受影响
+
+        // 其他表的delete完成不会触发
+        want.collection(dependency.release(2)).sizeEq(0);
+        want.collection(dependency.release(0)).sizeEq(0);
+        want.collection(dependency.release(1)).reflectionEq(Arrays.asList(3, 4));
+    }
+
+    private EventData makeEventData(EventType eventType, String tableName, Long id) {
+        EventData eventData = new EventData();
+        eventData.setTableId(1L);
+        eventData.setSchemaName("test");
+        eventData.setTableName(tableName);
+        eventData.setEventType(eventType);
+
+        EventColumn key = new EventColumn();
+        key.setColumnName("id");
+        key.setColumnType(Types.BIGINT);
+        key.setColumnValue(String.valueOf(id));
+        key.setKey(true);
+        key.setNull(false);
+        key.setIndex(0);
+        eventData.setKeys(Arrays.asList(key));
+        return eventData;
+    }
+}
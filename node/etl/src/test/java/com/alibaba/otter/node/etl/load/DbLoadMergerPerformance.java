@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.load;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.alibaba.otter.node.etl.load.loader.db.DbLoadMerger;
+import com.alibaba.otter.node.etl.load.loader.db.DbLoadMerger.RowKey;
+import com.alibaba.otter.node.etl.load.loader.db.RowKeyMap;
+import com.alibaba.otter.shared.etl.model.EventColumn;
+import com.alibaba.otter.shared.etl.model.EventData;
+import com.alibaba.otter.shared.etl.model.EventType;
+
+/**
+ * 对比DbLoadMerger使用LinkedHashMap和RowKeyMap的合并性能
+ *
+ * <pre>
+ * jvm args :
+ * -server -Xmx2g -Xms2g -Xmn512m -XX:+UseConcMarkSweepGC -verbose:gc
+ *
+ * 运行方式: main方法直接运行，每轮重新构造数据(merge会修改EventData)，前几轮作为预热
+ * </pre>
+ */
+public class DbLoadMergerPerformance {
+
+    private static final int    ROWS    = 200000;
+    private static final int    KEYS    = 50000;
+    private static final int    ROUNDS  = 10;
+    private static final int    WARMUP  = 3;
+    private static final String SCHEMA  = "test";
+    private static final String TABLE   = "test";
+
+    public static void main(String args[]) throws Exception {
+        long hashCost = 0;
+        long rowKeyCost = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            List<EventData> datas = makeEventDatas(i);
+            long start = System.nanoTime();
+            int hashSize = merge(datas, new LinkedHashMap<RowKey, EventData>(datas.size()));
+            long end = System.nanoTime();
+            if (i >= WARMUP) {
+                hashCost += end - start;
+            }
+
+            datas = makeEventDatas(i);
+            start = System.nanoTime();
+            int rowKeySize = merge(datas, new RowKeyMap<EventData>(datas.size()));
+            end = System.nanoTime();
+            if (i >= WARMUP) {
+                rowKeyCost += end - start;
+            }
+
+            if (hashSize != rowKeySize) {
+                throw new IllegalStateException("merge result not equal : " + hashSize + " , " + rowKeySize);
+            }
+        }
+
+        int rounds = ROUNDS - WARMUP;
+        System.out.printf("%s cost : %d ms\n", "LinkedHashMap", hashCost / rounds / 1000000);
+        System.out.printf("%s cost : %d ms\n", "RowKeyMap", rowKeyCost / rounds / 1000000);
+    }
+
+    private static int merge(List<EventData> datas, Map<RowKey, EventData> result) {
+        for (EventData data : datas) {
+            DbLoadMerger.merge(data, result);
+        }
+        return result.size();
+    }
+
+    private static List<EventData> makeEventDatas(long seed) {
+        Random random = new Random(seed);
+        List<EventData> datas = new ArrayList<EventData>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            EventData data = new EventData();
+            int type = random.nextInt(10);
+            data.setEventType(type < 3 ? EventType.INSERT : (type < 9 ? EventType.UPDATE : EventType.DELETE));
+            data.setSchemaName(SCHEMA);
+            data.setTableName(TABLE);
+            data.setTableId(1L);
+
+            List<EventColumn> keys = new ArrayList<EventColumn>();
+            keys.add(makeEventColumn("id", 0, String.valueOf(random.nextInt(KEYS)), true));
+            keys.add(makeEventColumn("gmt_create", 1, String.valueOf(1400000000000L + random.nextInt(KEYS)), true));
+            data.setKeys(keys);
+
+            List<EventColumn> columns = new ArrayList<EventColumn>();
+            if (data.getEventType() != EventType.DELETE) {
+                columns.add(makeEventColumn("name", 2, "name" + i, false));
+                columns.add(makeEventColumn("password", 3, "password" + i, false));
+            }
+            data.setColumns(columns);
+            datas.add(data);
+        }
+
+        return datas;
+    }
+
+    private static EventColumn makeEventColumn(String name, int index, String value, boolean key) {
+        EventColumn column = new EventColumn();
+        column.setColumnName(name);
+        column.setColumnType(12);
+        column.setIndex(index);
+        column.setColumnValue(value);
+        column.setKey(key);
+        return column;
+    }
+}
@@ -17,9 +17,11 @@
 package com.alibaba.otter.node.etl.load;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 
 import junit.framework.Assert;
 
@@ -28,6 +30,7 @@ import org.testng.annotations.Test;
 import com.alibaba.otter.node.etl.BaseDbTest;
 import com.alibaba.otter.node.etl.load.loader.db.DbLoadMerger;
 import com.alibaba.otter.node.etl.load.loader.db.DbLoadMerger.RowKey;
+import com.alibaba.otter.node.etl.load.loader.db.RowKeyMap;
 import com.alibaba.otter.shared.etl.model.EventColumn;
 import com.alibaba.otter.shared.etl.model.EventData;
 import com.alibaba.otter.shared.etl.model.EventType;
@@ -277,6 +280,31 @@ public class DbLoadMergerTest extends BaseDbTest {
         }
     }
 
+    /**
+     * 测试RowKeyMap和LinkedHashMap的行为一致，包括删除后重新插入的顺序
+     */
+    @Test
+    public void testRowKeyMapOrder() {
+        Map<RowKey, EventData> expected = new LinkedHashMap<RowKey, EventData>();
+        Map<RowKey, EventData> actual = new RowKeyMap<EventData>();
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            List<EventColumn> keys = new ArrayList<EventColumn>();
+            keys.add(makeEventColumn(KEY_NAME, String.valueOf(random.nextInt(500)), true));
+            RowKey rowKey = new RowKey(TABLE_ID, SCHEMA_NAME, TABLE_NAME, keys);
+            if (random.nextInt(4) == 0) {
+                Assert.assertEquals(expected.remove(rowKey), actual.remove(rowKey));
+            } else {
+                EventData eventData = makeInsertEventData();
+                Assert.assertEquals(expected.put(rowKey, eventData), actual.put(rowKey, eventData));
+            }
+            Assert.assertEquals(expected.size(), actual.size());
+        }
+
+        Assert.assertEquals(new ArrayList<RowKey>(expected.keySet()), new ArrayList<RowKey>(actual.keySet()));
+        Assert.assertEquals(new ArrayList<EventData>(expected.values()), new ArrayList<EventData>(actual.values()));
+    }
+
     private EventData makeInsertEventData() {
         EventData eventData = new EventData();
         eventData.setEventType(EventType.INSERT);
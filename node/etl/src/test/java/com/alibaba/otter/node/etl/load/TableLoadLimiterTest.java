@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.load;
+
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.etl.BaseOtterTest;
+import com.alibaba.otter.node.etl.load.loader.db.TableLoadLimiter;
+import com.alibaba.otter.node.etl.load.loader.db.TableLoadLimiter.TableLimit;
+
+public class TableLoadLimiterTest extends BaseOtterTest {
+
+    private static final int MAX_LIMIT = 8;
+
+    @Test
+    public void test_increase() {
+        TableLoadLimiter limiter = new TableLoadLimiter();
+        TableLimit limit = limiter.getLimit(1L, "test.offer");
+        want.bool(limit.tryAcquire(MAX_LIMIT)).is(true);
+        want.number(limit.getLimit()).isEqualTo(MAX_LIMIT / 2);
+
+        // 耗时稳定，并发数逐步增加，但不会超过最大值
+        limit.release(1000, false, MAX_LIMIT);
+        for (int i = 0; i < 100; i++) {
+            want.bool(limit.tryAcquire(MAX_LIMIT)).is(true);
+            limit.release(1000, false, MAX_LIMIT);
+        }
+        want.number(limit.getLimit()).isEqualTo(MAX_LIMIT);
+
+        for (int i = 0; i < MAX_LIMIT; i++) {
+            want.bool(limit.tryAcquire(MAX_LIMIT)).is(true);
+        }
+        want.bool(limit.tryAcquire(MAX_LIMIT)).is(false);
+    }
+
+    @Test
+    public void test_decrease() {
+        TableLoadLimiter limiter = new TableLoadLimiter();
+        TableLimit limit = limiter.getLimit(1L, "test.offer");
+        limit.tryAcquire(MAX_LIMIT);
+        limit.release(1000, false, MAX_LIMIT);
+        int current = limit.getLimit();
+
+        // 出现死锁重试，并发数减半
+        limit.tryAcquire(MAX_LIMIT);
+        limit.release(1000, true, MAX_LIMIT);
+        want.number(limit.getLimit()).isEqualTo(current / 2);
+
+        // 耗时明显上升，并发数减1
+        current = limit.getLimit();
+        limit.tryAcquire(MAX_LIMIT);
+        limit.release(10000, false, MAX_LIMIT);
+        want.number(limit.getLimit()).isEqualTo(current - 1);
+
+        // 最小为1
+        for (int i = 0; i < 10; i++) {
+            limit.acquire(MAX_LIMIT);
+            limit.release(1000, true, MAX_LIMIT);
+        }
+        want.number(limit.getLimit()).isEqualTo(1);
+        want.bool(limit.tryAcquire(MAX_LIMIT)).is(true);
+        want.bool(limit.tryAcquire(MAX_LIMIT)).is(false);
+    }
+
+    @Test
+    public void test_isolation() {
+        TableLoadLimiter limiter = new TableLoadLimiter();
+        TableLimit hot = limiter.getLimit(1L, "test.hot");
+        TableLimit slow = limiter.getLimit(1L, "test.slow");
+        hot.tryAcquire(MAX_LIMIT);
+        hot.release(1000, false, MAX_LIMIT);
+        for (int i = 0; i < 3; i++) {
+            slow.acquire(MAX_LIMIT);
+            slow.release(1000, true, MAX_LIMIT);
+        }
+
+        want.number(slow.getLimit()).isEqualTo(1);
+        want.number(hot.getLimit()).isEqualTo(MAX_LIMIT / 2);
+        want.bool(limiter.getLimit(1L, "test.hot") == hot).is(true);
+
+        limiter.destory(1L);
+        want.bool(limiter.getLimit(1L, "test.hot") == hot).is(false);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.select;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.node.common.config.ConfigClientService;
+import com.alibaba.otter.node.etl.select.selector.MessageParser;
+import com.alibaba.otter.shared.common.model.config.channel.ChannelParameter.SyncMode;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaPair;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaType;
+import com.alibaba.otter.shared.common.model.config.data.db.DbDataMedia;
+import com.alibaba.otter.shared.common.model.config.data.db.DbMediaSource;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+import com.alibaba.otter.shared.etl.model.EventData;
+
+/**
+ * MessageParser的解析性能
+ *
+ * <pre>
+ * jvm args :
+ * -server -Xmx1g -Xms1g -Xmn512m
+ *
+ * 运行方式: main方法直接运行，按canal的输出构造事务数据，源表为offer[1-128]分表，每个事务包含多条update记录，
+ * 同时混入心跳表和query事件，统计每秒解析的记录数以及每条记录的平均内存分配
+ * </pre>
+ */
+public class MessageParserPerformance {
+
+    private static final int COLUMNS      = 50;
+    private static final int TRANSACTIONS = 2000;
+    private static final int ENTRYS       = 10;  // 每个事务内的entry数
+    private static final int ROWS         = 10;  // 每个entry内的记录数
+    private static final int ROUNDS       = 10;
+    private static final int WARMUP       = 3;
+
+    public static void main(String args[]) throws Exception {
+        final Pipeline pipeline = new Pipeline();
+        pipeline.setId(1L);
+        pipeline.getParameters().setSystemSchema("retl");
+        pipeline.getParameters().setSystemMarkTable("retl_mark");
+        pipeline.getParameters().setSystemDualTable("xdual");
+        pipeline.getParameters().setEnableRemedy(false);
+        pipeline.getParameters().setSyncMode(SyncMode.FIELD);
+        DataMediaPair pair = new DataMediaPair();
+        pair.setId(1L);
+        pair.setPipelineId(1L);
+        pair.setSource(buildMedia(1L, "offer[1-128]"));
+        pair.setTarget(buildMedia(2L, "offer[1-128]"));
+        List<DataMediaPair> pairs = new ArrayList<DataMediaPair>();
+        pairs.add(pair);
+        pipeline.setPairs(pairs);
+
+        MessageParser parser = new MessageParser();
+        parser.setConfigClientService((ConfigClientService) Proxy.newProxyInstance(ConfigClientService.class.getClassLoader(),
+            new Class[] { ConfigClientService.class },
+            new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("findPipeline".equals(method.getName())) {
+                        return pipeline;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            }));
+
+        List<Entry> entrys = makeEntrys();
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        boolean allocationSupported = threadMXBean instanceof com.sun.management.ThreadMXBean;
+        long cost = 0;
+        long allocated = 0;
+        long rows = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long startBytes = allocatedBytes(threadMXBean, allocationSupported);
+            long start = System.nanoTime();
+            List<EventData> eventDatas = parser.parse(pipeline.getId(), entrys);
+            long end = System.nanoTime();
+            long endBytes = allocatedBytes(threadMXBean, allocationSupported);
+            if (i >= WARMUP) {
+                cost += end - start;
+                allocated += endBytes - startBytes;
+                rows += eventDatas.size();
+            }
+        }
+
+        System.out.printf("parse %d rows * %d columns cost : %d ms , %d rows/s , %d bytes/row\n",
+            rows / (ROUNDS - WARMUP),
+            COLUMNS,
+            cost / (ROUNDS - WARMUP) / 1000000,
+            rows * 1000000000L / cost,
+            allocated / rows);
+    }
+
+    private static long allocatedBytes(ThreadMXBean threadMXBean, boolean allocationSupported) {
+        if (!allocationSupported) {
+            return 0;
+        }
+
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread()
+            .getId());
+    }
+
+    private static DbDataMedia buildMedia(Long id, String name) {
+        DbMediaSource source = new DbMediaSource();
+        source.setId(id);
+        source.setType(DataMediaType.MYSQL);
+        DbDataMedia dataMedia = new DbDataMedia();
+        dataMedia.setId(id);
+        dataMedia.setNamespace("test");
+        dataMedia.setName(name);
+        dataMedia.setSource(source);
+        return dataMedia;
+    }
+
+    private static List<Entry> makeEntrys() {
+        List<Entry> entrys = new ArrayList<Entry>();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            entrys.add(buildEntry(EntryType.TRANSACTIONBEGIN, "", "", CanalEntry.EventType.QUERY, null));
+            for (int j = 0; j < ENTRYS; j++) {
+                RowChange.Builder rowChangeBuilder = RowChange.newBuilder();
+                rowChangeBuilder.setEventType(CanalEntry.EventType.UPDATE);
+                for (int k = 0; k < ROWS; k++) {
+                    rowChangeBuilder.addRowDatas(buildRowData(i * ENTRYS * ROWS + j * ROWS + k));
+                }
+                entrys.add(buildEntry(EntryType.ROWDATA,
+                    "test",
+                    "offer" + (j % 128 + 1),
+                    CanalEntry.EventType.UPDATE,
+                    rowChangeBuilder.build()));
+            }
+
+            // 混入心跳表以及query事件
+            RowChange.Builder dualBuilder = RowChange.newBuilder();
+            dualBuilder.setEventType(CanalEntry.EventType.UPDATE);
+            dualBuilder.addRowDatas(buildRowData(i));
+            entrys.add(buildEntry(EntryType.ROWDATA, "retl", "xdual", CanalEntry.EventType.UPDATE, dualBuilder.build()));
+            RowChange.Builder queryBuilder = RowChange.newBuilder();
+            queryBuilder.setEventType(CanalEntry.EventType.QUERY);
+            queryBuilder.setIsDdl(false);
+            queryBuilder.setSql("insert into test.offer1 values(1)");
+            entrys.add(buildEntry(EntryType.ROWDATA, "test", "offer1", CanalEntry.EventType.QUERY, queryBuilder.build()));
+            entrys.add(buildEntry(EntryType.TRANSACTIONEND, "", "", CanalEntry.EventType.QUERY, null));
+        }
+        return entrys;
+    }
+
+    private static Entry buildEntry(EntryType entryType, String schemaName, String tableName,
+                                    CanalEntry.EventType eventType, RowChange rowChange) {
+        Header.Builder headerBuilder = Header.newBuilder();
+        headerBuilder.setEventLength(1000L);
+        headerBuilder.setExecuteTime(System.currentTimeMillis());
+        headerBuilder.setLogfileName("mysql-bin.000001");
+        headerBuilder.setLogfileOffset(1000L);
+        headerBuilder.setSourceType(CanalEntry.Type.MYSQL);
+        headerBuilder.setSchemaName(schemaName);
+        headerBuilder.setTableName(tableName);
+        headerBuilder.setEventType(eventType);
+
+        Entry.Builder entryBuilder = Entry.newBuilder();
+        entryBuilder.setHeader(headerBuilder.build());
+        entryBuilder.setEntryType(entryType);
+        if (rowChange != null) {
+            entryBuilder.setStoreValue(rowChange.toByteString());
+        }
+        return entryBuilder.build();
+    }
+
+    private static RowData buildRowData(int id) {
+        RowData.Builder rowDataBuilder = RowData.newBuilder();
+        for (int i = 0; i < COLUMNS; i++) {
+            rowDataBuilder.addBeforeColumns(buildColumn(i, String.valueOf(id), false));
+            rowDataBuilder.addAfterColumns(buildColumn(i, String.valueOf(id + 1), i % 5 == 0));
+        }
+        return rowDataBuilder.build();
+    }
+
+    private static Column buildColumn(int index, String value, boolean updated) {
+        Column.Builder columnBuilder = Column.newBuilder();
+        columnBuilder.setIndex(index);
+        columnBuilder.setName("col_" + index);
+        columnBuilder.setIsKey(index == 0);
+        columnBuilder.setIsNull(false);
+        columnBuilder.setSqlType(Types.VARCHAR);
+        columnBuilder.setMysqlType("varchar(32)");
+        columnBuilder.setValue(index == 0 ? "1" : value);
+        columnBuilder.setUpdated(updated);
+        return columnBuilder.build();
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.select;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.etl.BaseOtterTest;
+import com.alibaba.otter.node.etl.TestUtils;
+import com.alibaba.otter.node.etl.select.selector.Message;
+import com.alibaba.otter.node.etl.select.selector.OtterSelector;
+import com.alibaba.otter.shared.arbitrate.ArbitrateEventService;
+import com.alibaba.otter.shared.arbitrate.impl.setl.ExtractArbitrateEvent;
+import com.alibaba.otter.shared.arbitrate.impl.setl.LoadArbitrateEvent;
+import com.alibaba.otter.shared.arbitrate.impl.setl.MainStemArbitrateEvent;
+import com.alibaba.otter.shared.arbitrate.impl.setl.SelectArbitrateEvent;
+import com.alibaba.otter.shared.arbitrate.impl.setl.TerminArbitrateEvent;
+import com.alibaba.otter.shared.arbitrate.impl.setl.ToolArbitrateEvent;
+import com.alibaba.otter.shared.arbitrate.impl.setl.TransformArbitrateEvent;
+import com.alibaba.otter.shared.arbitrate.model.TerminEventData;
+import com.alibaba.otter.shared.common.utils.lock.BooleanMutex;
+
+public class SelectTaskTest extends BaseOtterTest {
+
+    private SelectTask     selectTask;
+    private RecordSelector selector;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        selectTask = new SelectTask(1L);
+        selector = new RecordSelector();
+        TestUtils.setField(selectTask, "otterSelector", selector);
+    }
+
+    @Test
+    public void test_batch_ack() throws Exception {
+        // 达到合并上限后一次性提交
+        for (long i = 1; i <= 16; i++) {
+            TestUtils.invokeMethod(selectTask, "ack", i);
+        }
+        want.number(selector.events.size()).isEqualTo(1);
+        want.string(selector.events.get(0)).isEqualTo("ack:" + range(1, 16));
+        want.number(pendingAcks().size()).isEqualTo(0);
+
+        TestUtils.invokeMethod(selectTask, "ack", 17L);
+        TestUtils.invokeMethod(selectTask, "ack", 18L);
+        want.number(selector.events.size()).isEqualTo(1);
+        TestUtils.invokeMethod(selectTask, "flushAck");
+        want.string(selector.events.get(1)).isEqualTo("ack:" + range(17, 18));
+
+        // 只有一个batch时走单个ack，没有待提交的batch时不调用canal
+        TestUtils.invokeMethod(selectTask, "ack", 19L);
+        TestUtils.invokeMethod(selectTask, "flushAck");
+        TestUtils.invokeMethod(selectTask, "flushAck");
+        want.number(selector.events.size()).isEqualTo(3);
+        want.string(selector.events.get(2)).isEqualTo("ack:19");
+
+        // 提交ack不能打开selector的开关
+        want.bool(canStartSelector().state()).is(false);
+    }
+
+    @Test
+    public void test_rollback_interleave() throws Exception {
+        canStartSelector().set(true);
+        TestUtils.invokeMethod(selectTask, "ack", 1L);
+        TestUtils.invokeMethod(selectTask, "ack", 2L);
+
+        // ProcessTermin发起rollback，先提交已确认的batch，再关闭selector的开关
+        TestUtils.invokeMethod(selectTask, "rollback", 3L);
+        want.collection(selector.events).reflectionEq(Arrays.asList("ack:" + range(1, 2), "rollback"));
+        want.bool(canStartSelector().state()).is(false);
+
+        // ProcessSelect在rollback过程中拿到了数据，只回滚selector，不能提交ack也不能打开开关
+        TestUtils.invokeMethod(selectTask, "ack", 4L);
+        FutureTask<Object> future = new FutureTask<Object>(new Callable<Object>() {
+
+            public Object call() throws Exception {
+                return TestUtils.invokeMethod(selectTask, "rollbackSelected");
+            }
+        });
+        new Thread(future).start();
+        future.get();
+        want.collection(selector.events).reflectionEq(Arrays.asList("ack:" + range(1, 2), "rollback", "rollback"));
+        want.number(pendingAcks().size()).isEqualTo(1);
+        want.bool(canStartSelector().state()).is(false);
+    }
+
+    @Test
+    public void test_wait_termin_ready() throws Exception {
+        // termin数量依次变化为1,2，之后保持不变
+        final RecordTerminEvent terminEvent = new RecordTerminEvent(0, 1, 2, 2);
+        TestUtils.setField(selectTask, "arbitrateEventService", new TerminEventService(terminEvent));
+
+        long start = System.currentTimeMillis();
+        TestUtils.invokeMethod(selectTask, "waitTerminReady");
+        want.number(System.currentTimeMillis() - start).isLessThan(1000L);
+        want.collection(terminEvent.lastSizes).reflectionEq(Arrays.asList(0, 1, 2));
+        for (Long timeout : terminEvent.timeouts) {
+            want.number(timeout).isGreaterThan(0L).isLessEqual(3000L);
+        }
+    }
+
+    private String range(long start, long end) {
+        List<Long> batchIds = new ArrayList<Long>();
+        for (long i = start; i <= end; i++) {
+            batchIds.add(i);
+        }
+        return batchIds.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> pendingAcks() {
+        return (List<Long>) TestUtils.getField(selectTask, "pendingAcks");
+    }
+
+    private BooleanMutex canStartSelector() {
+        return (BooleanMutex) TestUtils.getField(selectTask, "canStartSelector");
+    }
+
+    /**
+     * 记录ack/rollback调用顺序的selector
+     */
+    static class RecordSelector implements OtterSelector<Object> {
+
+        private List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+        public void start() {
+        }
+
+        public boolean isStart() {
+            return true;
+        }
+
+        public void stop() {
+        }
+
+        public Message<Object> selector() throws InterruptedException {
+            return null;
+        }
+
+        public List<Long> unAckBatchs() {
+            return new ArrayList<Long>();
+        }
+
+        public void rollback(Long batchId) {
+            events.add("rollback:" + batchId);
+        }
+
+        public void rollback() {
+            events.add("rollback");
+        }
+
+        public void ack(Long batchId) {
+            events.add("ack:" + batchId);
+        }
+
+        public void ack(Long[] batchIds) {
+            events.add("ack:" + Arrays.asList(batchIds));
+        }
+
+        public Long lastEntryTime() {
+            return 0L;
+        }
+    }
+
+    /**
+     * 按顺序返回预设的termin数量，并记录等待参数
+     */
+    static class RecordTerminEvent implements TerminArbitrateEvent {
+
+        private int[]      sizes;
+        private int        index;
+        private List<Integer> lastSizes = new ArrayList<Integer>();
+        private List<Long> timeouts  = new ArrayList<Long>();
+
+        public RecordTerminEvent(int... sizes){
+            this.sizes = sizes;
+        }
+
+        public TerminEventData await(Long pipelineId) throws InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        public TerminEventData await(Long pipelineId, Long lastProcessId, long timeout, TimeUnit unit)
+                                                                                                       throws InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        public void exhaust(Long pipelineId) {
+        }
+
+        public void ack(TerminEventData data) {
+        }
+
+        public int size(Long pipelineId) {
+            return sizes[index++];
+        }
+
+        public int size(Long pipelineId, int lastSize, long timeout, TimeUnit unit) throws InterruptedException {
+            lastSizes.add(lastSize);
+            timeouts.add(unit.toMillis(timeout));
+            return sizes[index++];
+        }
+
+        public void single(TerminEventData data) {
+        }
+    }
+
+    static class TerminEventService implements ArbitrateEventService {
+
+        private TerminArbitrateEvent terminEvent;
+
+        public TerminEventService(TerminArbitrateEvent terminEvent){
+            this.terminEvent = terminEvent;
+        }
+
+        public MainStemArbitrateEvent mainStemEvent() {
+            return null;
+        }
+
+        public SelectArbitrateEvent selectEvent() {
+            return null;
+        }
+
+        public ExtractArbitrateEvent extractEvent() {
+            return null;
+        }
+
+        public TransformArbitrateEvent transformEvent() {
+            return null;
+        }
+
+        public LoadArbitrateEvent loadEvent() {
+            return null;
+        }
+
+        public TerminArbitrateEvent terminEvent() {
+            return terminEvent;
+        }
+
+        public ToolArbitrateEvent toolEvent() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.node.etl.transform;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.node.common.config.ConfigClientService;
+import com.alibaba.otter.node.etl.BaseOtterTest;
+import com.alibaba.otter.node.etl.transform.exception.TransformException;
+import com.alibaba.otter.node.etl.transform.transformer.OtterTransformerContext;
+import com.alibaba.otter.node.etl.transform.transformer.OtterTransformerFactory;
+import com.alibaba.otter.node.etl.transform.transformer.RowDataTransformer;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaPair;
+import com.alibaba.otter.shared.common.model.config.data.db.DbDataMedia;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+import com.alibaba.otter.shared.common.model.config.pipeline.PipelineParameter;
+import com.alibaba.otter.shared.etl.model.BatchObject;
+import com.alibaba.otter.shared.etl.model.EventData;
+import com.alibaba.otter.shared.etl.model.EventType;
+import com.alibaba.otter.shared.etl.model.Identity;
+import com.alibaba.otter.shared.etl.model.RowBatch;
+
+public class OtterTransformerFactoryTest extends BaseOtterTest {
+
+    private Pipeline                pipeline;
+    private RecordTransformer       transformer;
+    private OtterTransformerFactory factory;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        // 表1同时复制到101/102，表2/3各自复制到一个目标
+        pipeline = new Pipeline();
+        pipeline.setId(100L);
+        pipeline.setParameters(new PipelineParameter());
+        List<DataMediaPair> pairs = new ArrayList<DataMediaPair>();
+        pairs.add(buildPair(1L, 1L, 101L));
+        pairs.add(buildPair(2L, 1L, 102L));
+        pairs.add(buildPair(3L, 2L, 201L));
+        pairs.add(buildPair(4L, 3L, 301L));
+        pipeline.setPairs(pairs);
+
+        transformer = new RecordTransformer();
+        factory = new OtterTransformerFactory();
+        factory.setConfigClientService(buildConfigClientService(pipeline));
+        factory.setRowDataTransformer(transformer);
+        factory.afterPropertiesSet();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        factory.destroy();
+    }
+
+    @Test
+    public void test_parallel_same_as_serial() {
+        // 多张表交叉出现，包含一对多的复制
+        RowBatch rowBatch = buildRowBatch(new long[] { 1, 2, 1, 3, 2, 2, 1, 3, 1, 2 });
+
+        pipeline.getParameters().setUseParallelTransform(false);
+        List<String> serial = toString(factory.transform(rowBatch));
+        want.number(transformer.threads.size()).isEqualTo(1);
+        want.bool(transformer.threads.contains(Thread.currentThread().getName())).is(true);
+
+        transformer.threads.clear();
+        pipeline.getParameters().setUseParallelTransform(true);
+        List<String> parallel = toString(factory.transform(rowBatch));
+        want.bool(transformer.threads.contains(Thread.currentThread().getName())).is(false);
+
+        // 表1的4条记录各产生2条结果
+        want.number(serial.size()).isEqualTo(14);
+        want.collection(parallel).reflectionEq(serial);
+        want.string(serial.get(0)).isEqualTo("101:0");
+        want.string(serial.get(1)).isEqualTo("102:0");
+        want.string(serial.get(2)).isEqualTo("201:1");
+    }
+
+    @Test
+    public void test_parallel_single_table() {
+        // 只有一张表时不拆分，直接串行处理
+        RowBatch rowBatch = buildRowBatch(new long[] { 2, 2, 2 });
+        pipeline.getParameters().setUseParallelTransform(true);
+        List<String> result = toString(factory.transform(rowBatch));
+        want.collection(result).reflectionEq(toList("201:0", "201:1", "201:2"));
+        want.bool(transformer.threads.contains(Thread.currentThread().getName())).is(true);
+    }
+
+    @Test
+    public void test_parallel_failure() throws Exception {
+        // 表2转化失败，表3的分区较慢，失败后需要被取消
+        long[] tableIds = new long[41];
+        tableIds[0] = 2;
+        for (int i = 1; i < tableIds.length; i++) {
+            tableIds[i] = 3;
+        }
+        transformer.failTableId = 2L;
+        transformer.delay = 50L;
+        pipeline.getParameters().setUseParallelTransform(true);
+
+        long start = System.currentTimeMillis();
+        try {
+            factory.transform(buildRowBatch(tableIds));
+            want.fail();
+        } catch (TransformException e) {
+            want.string(e.getMessage()).contains("table 2 failed");
+        }
+        want.number(System.currentTimeMillis() - start).isLessThan(1000L);
+
+        // 取消后剩余的分区不再继续转化
+        Thread.sleep(200L);
+        int count = transformer.count.get();
+        Thread.sleep(200L);
+        want.number(transformer.count.get()).isEqualTo(count);
+        want.number(count).isLessThan(tableIds.length - 1);
+    }
+
+    private RowBatch buildRowBatch(long[] tableIds) {
+        Identity identity = new Identity();
+        identity.setChannelId(100L);
+        identity.setPipelineId(100L);
+        identity.setProcessId(100L);
+
+        RowBatch rowBatch = new RowBatch();
+        rowBatch.setIdentity(identity);
+        for (int i = 0; i < tableIds.length; i++) {
+            EventData eventData = new EventData();
+            eventData.setTableId(tableIds[i]);
+            eventData.setSchemaName("srf");
+            eventData.setTableName("t" + tableIds[i]);
+            eventData.setEventType(EventType.INSERT);
+            eventData.setExecuteTime(i); // 记录原始的顺序
+            rowBatch.merge(eventData);
+        }
+        return rowBatch;
+    }
+
+    private List<String> toString(Map<Class, BatchObject> batchs) {
+        List<String> result = new ArrayList<String>();
+        for (EventData data : ((RowBatch) batchs.get(EventData.class)).getDatas()) {
+            result.add(data.getTableId() + ":" + data.getExecuteTime());
+        }
+        return result;
+    }
+
+    private List<String> toList(String... values) {
+        List<String> result = new ArrayList<String>();
+        for (String value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    private DataMediaPair buildPair(Long pairId, Long sourceId, Long targetId) {
+        DataMediaPair pair = new DataMediaPair();
+        pair.setId(pairId);
+        pair.setPipelineId(pipeline.getId());
+        pair.setPullWeight(1L);
+        pair.setPushWeight(1L);
+        pair.setSource(buildMedia(sourceId));
+        pair.setTarget(buildMedia(targetId));
+        return pair;
+    }
+
+    private DbDataMedia buildMedia(Long id) {
+        DbDataMedia media = new DbDataMedia();
+        media.setId(id);
+        media.setNamespace("srf");
+        media.setName("t" + id);
+        return media;
+    }
+
+    private ConfigClientService buildConfigClientService(final Pipeline pipeline) {
+        return (ConfigClientService) Proxy.newProxyInstance(ConfigClientService.class.getClassLoader(),
+            new Class[] { ConfigClientService.class },
+            new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("findPipeline".equals(method.getName())) {
+                        return pipeline;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    /**
+     * 将数据复制到pair的目标表上，记录转化所在的线程
+     */
+    static class RecordTransformer extends RowDataTransformer {
+
+        private Long          failTableId;
+        private long          delay;
+        private AtomicInteger count   = new AtomicInteger(0);
+        private Set<String>   threads = Collections.synchronizedSet(new HashSet<String>());
+
+        public EventData transform(EventData data, OtterTransformerContext context) {
+            threads.add(Thread.currentThread().getName());
+            if (failTableId != null && failTableId.equals(data.getTableId())) {
+                throw new TransformException("table " + failTableId + " failed");
+            }
+
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+
+            count.incrementAndGet();
+            EventData result = data.clone();
+            result.setTableId(context.getDataMediaPair().getTarget().getId());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.node.etl.transform;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ddlutils.model.Column;
+import org.apache.ddlutils.model.Table;
+
+import com.alibaba.otter.node.etl.common.db.dialect.DbDialect;
+import com.alibaba.otter.node.etl.common.db.dialect.DbDialectFactory;
+import com.alibaba.otter.node.etl.transform.transformer.OtterTransformerContext;
+import com.alibaba.otter.node.etl.transform.transformer.RowDataTransformer;
+import com.alibaba.otter.shared.common.model.config.data.ColumnPair;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaPair;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaType;
+import com.alibaba.otter.shared.common.model.config.data.db.DbDataMedia;
+import com.alibaba.otter.shared.common.model.config.data.db.DbMediaSource;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+import com.alibaba.otter.shared.etl.model.EventColumn;
+import com.alibaba.otter.shared.etl.model.EventData;
+import com.alibaba.otter.shared.etl.model.EventType;
+import com.alibaba.otter.shared.etl.model.Identity;
+
+/**
+ * 宽表场景下RowDataTransformer的转化性能
+ *
+ * <pre>
+ * jvm args :
+ * -server -Xmx1g -Xms1g -Xmn512m
+ *
+ * 运行方式: main方法直接运行，源表为offer[1-128]分表，配置全部字段的columnPairs映射，并开启目标表的字段类型转化
+ * 目标库的table meta通过DbDialect代理直接返回，不依赖真实数据库
+ * </pre>
+ */
+public class RowDataTransformerPerformance {
+
+    private static final int COLUMNS = 200;
+    private static final int ROWS    = 200000;
+    private static final int ROUNDS  = 10;
+    private static final int WARMUP  = 3;
+
+    public static void main(String args[]) throws Exception {
+        final Table table = new Table();
+        table.setName("offer");
+        for (int i = 0; i < COLUMNS; i++) {
+            Column column = new Column();
+            column.setName("T_COL_" + i);
+            column.setTypeCode(Types.VARCHAR);
+            column.setPrimaryKey(i == 0);
+            table.addColumn(column);
+        }
+
+        final DbDialect dbDialect = (DbDialect) Proxy.newProxyInstance(DbDialect.class.getClassLoader(),
+            new Class[] { DbDialect.class },
+            new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("findTable".equals(method.getName())) {
+                        return table;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+        RowDataTransformer transformer = new RowDataTransformer();
+        transformer.setDbDialectFactory(new DbDialectFactory() {
+
+            public DbDialect getDbDialect(Long pipelineId, DbMediaSource source) {
+                return dbDialect;
+            }
+        });
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.setId(1L);
+        pipeline.getParameters().setUseTableTransform(true);
+        DataMediaPair pair = new DataMediaPair();
+        pair.setId(1L);
+        pair.setPipelineId(1L);
+        pair.setSource(buildMedia(1L, "offer[1-128]"));
+        pair.setTarget(buildMedia(2L, "offer[1-128]"));
+        List<ColumnPair> columnPairs = new ArrayList<ColumnPair>();
+        for (int i = 0; i < COLUMNS; i++) {
+            columnPairs.add(new ColumnPair("col_" + i, "t_col_" + i));
+        }
+        pair.setColumnPairs(columnPairs);
+
+        Identity identity = new Identity();
+        identity.setChannelId(1L);
+        identity.setPipelineId(1L);
+        identity.setProcessId(1L);
+        OtterTransformerContext context = new OtterTransformerContext(identity, pair, pipeline);
+
+        List<EventData> datas = makeEventDatas();
+        long cost = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            for (EventData data : datas) {
+                transformer.transform(data, context);
+            }
+            long end = System.nanoTime();
+            if (i >= WARMUP) {
+                cost += end - start;
+            }
+        }
+
+        long avg = cost / (ROUNDS - WARMUP);
+        System.out.printf("transform %d rows * %d columns cost : %d ms , %d rows/s\n",
+            ROWS,
+            COLUMNS,
+            avg / 1000000,
+            ROWS * 1000000000L / avg);
+    }
+
+    private static DbDataMedia buildMedia(Long id, String name) {
+        DbMediaSource source = new DbMediaSource();
+        source.setId(id);
+        source.setType(DataMediaType.MYSQL);
+        DbDataMedia dataMedia = new DbDataMedia();
+        dataMedia.setId(id);
+        dataMedia.setNamespace("test");
+        dataMedia.setName(name);
+        dataMedia.setSource(source);
+        return dataMedia;
+    }
+
+    private static List<EventData> makeEventDatas() {
+        List<EventData> datas = new ArrayList<EventData>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            EventData data = new EventData();
+            data.setTableId(1L);
+            data.setSchemaName("test");
+            data.setTableName("offer" + (i % 128 + 1));
+            data.setEventType(EventType.UPDATE);
+            data.setExecuteTime(System.currentTimeMillis());
+            for (int j = 0; j < COLUMNS; j++) {
+                EventColumn column = new EventColumn();
+                column.setColumnName("col_" + j);
+                column.setColumnType(Types.VARCHAR);
+                column.setColumnValue(String.valueOf(i));
+                column.setIndex(j);
+                column.setKey(j == 0);
+                column.setUpdate(true);
+                if (j == 0) {
+                    data.getKeys().add(column);
+                } else {
+                    data.getColumns().add(column);
+                }
+            }
+            datas.add(data);
+        }
+        return datas;
+    }
+}
@@ -28,9 +28,12 @@ import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigUtils;
 import com.alibaba.otter.shared.common.model.config.node.Node;
 import com.alibaba.otter.shared.communication.core.CommunicationClient;
 import com.alibaba.otter.shared.communication.core.exception.CommunicationException;
-import com.alibaba.otter.shared.communication.core.impl.DefaultCommunicationClientImpl;
 import com.alibaba.otter.shared.communication.core.model.Callback;
 import com.alibaba.otter.shared.communication.core.model.Event;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 /**
  * 封装了基于communication通讯的工具
@@ -63,6 +66,13 @@ public class ArbitrateCommunicationClient {
         delegate.call(convertToAddress(nid), event, callback);
     }
 
+    /**
+     * 指定对应的Node节点，进行异步event调用，不占用调用线程
+     */
+    public ListenableFuture<Object> callAsync(Long nid, Event event) {
+        return delegate.callAsync(convertToAddress(nid), event);
+    }
+
     /**
      * 指定manager，进行event调用
      */
@@ -91,17 +101,54 @@ public class ArbitrateCommunicationClient {
      * </pre>
      */
     public void callManager(final Event event, final Callback callback) {
-        if (delegate instanceof DefaultCommunicationClientImpl) {
-            DefaultCommunicationClientImpl defaultClient = (DefaultCommunicationClientImpl) delegate;
-            defaultClient.submit(new Runnable() {
-
-                @Override
-                public void run() {
-                    Object result = callManager(event);
-                    callback.call(result);
-                }
-            });
+        Futures.addCallback(callManagerAsync(event), new FutureCallback<Object>() {
+
+            public void onSuccess(Object result) {
+                callback.call(result);
+            }
+
+            public void onFailure(Throwable e) {
+                // 和原先的异步调用保持一致，失败时不回调
+            }
+        });
+    }
+
+    /**
+     * 指定manager，进行异步event调用，失败后依次尝试manager的其他地址
+     */
+    public ListenableFuture<Object> callManagerAsync(final Event event) {
+        SettableFuture<Object> future = SettableFuture.create();
+        callManagerAsync(event, index, 0, future);
+        return future;
+    }
+
+    private void callManagerAsync(final Event event, final int start, final int offset,
+                                  final SettableFuture<Object> future) {
+        final int i = start + offset;
+        final String address = managerAddress.get(i % managerAddress.size());
+        ListenableFuture<Object> result = null;
+        try {
+            result = delegate.callAsync(address, event);
+        } catch (CommunicationException e) {
+            result = Futures.immediateFailedFuture(e);
         }
+
+        Futures.addCallback(result, new FutureCallback<Object>() {
+
+            public void onSuccess(Object value) {
+                index = i; // 更新一下上一次成功的地址
+                future.set(value);
+            }
+
+            public void onFailure(Throwable e) {
+                logger.warn("call manager [{}] event [{}] failed, maybe can try another manager.", address, event);
+                if (offset + 1 < managerAddress.size()) {
+                    callManagerAsync(event, start, offset + 1, future); // retry next address
+                } else {
+                    future.setException(e);
+                }
+            }
+        });
     }
 
     private String convertToAddress(Long nid) {
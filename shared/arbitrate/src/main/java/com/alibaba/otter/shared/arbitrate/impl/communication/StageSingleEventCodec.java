@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.arbitrate.impl.communication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import com.alibaba.otter.shared.arbitrate.model.EtlEventData;
+import com.alibaba.otter.shared.common.model.config.enums.StageType;
+import com.alibaba.otter.shared.communication.core.serialize.AbstractEventCodec;
+import com.alibaba.otter.shared.communication.model.arbitrate.ArbitrateEventType;
+import com.alibaba.otter.shared.communication.model.arbitrate.StageSingleEvent;
+
+/**
+ * rpc调度信号的紧凑编码，只处理data为{@linkplain EtlEventData}的事件，pipe描述信息和扩展属性仍然使用java序列化
+ *
+ * @author jianghang
+ */
+public class StageSingleEventCodec extends AbstractEventCodec<StageSingleEvent> {
+
+    public static final int ID = 2;
+
+    public int getVersion() {
+        return 1;
+    }
+
+    protected boolean write(DataOutputStream out, StageSingleEvent event) throws IOException {
+        if (event.getData() != null && event.getData().getClass() != EtlEventData.class) {
+            return false;
+        }
+
+        out.writeUTF(((ArbitrateEventType) event.getType()).name());
+        writeLong(out, event.getPipelineId());
+        writeString(out, event.getStage() == null ? null : event.getStage().name());
+        EtlEventData data = (EtlEventData) event.getData();
+        out.writeBoolean(data != null);
+        if (data != null) {
+            writeLong(out, data.getPipelineId());
+            writeLong(out, data.getProcessId());
+            writeLong(out, data.getStartTime());
+            writeLong(out, data.getEndTime());
+            writeLong(out, data.getFirstTime());
+            writeLong(out, data.getBatchId());
+            writeLong(out, data.getNumber());
+            writeLong(out, data.getSize());
+            writeLong(out, data.getCurrNid());
+            writeLong(out, data.getNextNid());
+            writeObject(out, data.getExts());
+            writeObject(out, data.getDesc());
+        }
+        return true;
+    }
+
+    protected StageSingleEvent read(DataInputStream in, int version) throws IOException {
+        StageSingleEvent event = new StageSingleEvent(ArbitrateEventType.valueOf(in.readUTF()));
+        event.setPipelineId(readLong(in));
+        String stage = readString(in);
+        event.setStage(stage == null ? null : StageType.valueOf(stage));
+        if (in.readBoolean()) {
+            EtlEventData data = new EtlEventData();
+            data.setPipelineId(readLong(in));
+            data.setProcessId(readLong(in));
+            data.setStartTime(readLong(in));
+            data.setEndTime(readLong(in));
+            data.setFirstTime(readLong(in));
+            data.setBatchId(readLong(in));
+            data.setNumber(readLong(in));
+            data.setSize(readLong(in));
+            data.setCurrNid(readLong(in));
+            data.setNextNid(readLong(in));
+            data.setExts((Map) readObject(in));
+            data.setDesc(readObject(in));
+            event.setData(data);
+        }
+        return event;
+    }
+}
@@ -16,18 +16,31 @@
 
 package com.alibaba.otter.shared.arbitrate.impl.setl;
 
+import java.util.concurrent.TimeUnit;
+
 import com.alibaba.otter.shared.arbitrate.model.TerminEventData;
 
 public interface TerminArbitrateEvent {
 
     public TerminEventData await(Long pipelineId) throws InterruptedException;
 
+    /**
+     * 等待下一个processId不为lastProcessId的termin信号，超时返回null
+     */
+    public TerminEventData await(Long pipelineId, Long lastProcessId, long timeout, TimeUnit unit)
+                                                                                                   throws InterruptedException;
+
     public void exhaust(Long pipelineId);
 
     public void ack(TerminEventData data);
 
     public int size(Long pipelineId);
 
+    /**
+     * 等待termin信号的总数不为lastSize，返回当前的总数，超时后返回的总数可能仍为lastSize
+     */
+    public int size(Long pipelineId, int lastSize, long timeout, TimeUnit unit) throws InterruptedException;
+
     public void single(final TerminEventData data);
 
 }
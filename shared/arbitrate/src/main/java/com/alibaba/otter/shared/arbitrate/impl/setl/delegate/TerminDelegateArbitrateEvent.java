@@ -17,6 +17,7 @@
 package com.alibaba.otter.shared.arbitrate.impl.setl.delegate;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import com.alibaba.otter.shared.arbitrate.impl.setl.TerminArbitrateEvent;
 import com.alibaba.otter.shared.arbitrate.model.TerminEventData;
@@ -36,6 +37,11 @@ public class TerminDelegateArbitrateEvent extends AbstractDelegateArbitrateEvent
         return delegate.get(chooseMode(pipelineId)).await(pipelineId);
     }
 
+    public TerminEventData await(Long pipelineId, Long lastProcessId, long timeout, TimeUnit unit)
+                                                                                                   throws InterruptedException {
+        return delegate.get(chooseMode(pipelineId)).await(pipelineId, lastProcessId, timeout, unit);
+    }
+
     public void single(TerminEventData data) {
         delegate.get(chooseMode(data.getPipelineId())).single(data);
     }
@@ -52,6 +58,10 @@ public class TerminDelegateArbitrateEvent extends AbstractDelegateArbitrateEvent
         return delegate.get(chooseMode(pipelineId)).size(pipelineId);
     }
 
+    public int size(Long pipelineId, int lastSize, long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.get(chooseMode(pipelineId)).size(pipelineId, lastSize, timeout, unit);
+    }
+
     public void setDelegate(Map<ArbitrateMode, TerminArbitrateEvent> delegate) {
         this.delegate = delegate;
     }
@@ -17,6 +17,7 @@
 package com.alibaba.otter.shared.arbitrate.impl.setl.fastrpc;
 
 import com.alibaba.otter.shared.arbitrate.impl.communication.ArbitrateCommunicationClient;
+import com.alibaba.otter.shared.arbitrate.impl.communication.StageSingleEventCodec;
 import org.springframework.util.Assert;
 
 import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigUtils;
@@ -24,6 +25,7 @@ import com.alibaba.otter.shared.arbitrate.impl.setl.ArbitrateFactory;
 import com.alibaba.otter.shared.arbitrate.model.EtlEventData;
 import com.alibaba.otter.shared.common.model.config.enums.StageType;
 import com.alibaba.otter.shared.communication.core.CommunicationRegistry;
+import com.alibaba.otter.shared.communication.core.serialize.CompactSerializer;
 import com.alibaba.otter.shared.communication.model.arbitrate.ArbitrateEventType;
 import com.alibaba.otter.shared.communication.model.arbitrate.StageSingleEvent;
 
@@ -39,6 +41,7 @@ public class FastRpcStageEventDispatcher {
 
     public FastRpcStageEventDispatcher(){
         CommunicationRegistry.regist(ArbitrateEventType.fastStageSingle, this);
+        CompactSerializer.register(StageSingleEventCodec.ID, StageSingleEvent.class, new StageSingleEventCodec());
     }
 
     /**
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.shared.arbitrate.impl.setl.helper;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@linkplain ReplyProcessQueue}的无锁实现，语义保持一致
+ *
+ * <pre>
+ * 1. 基于ConcurrentSkipListMap保存待处理的processId，保证processId小的优先被取出
+ * 2. 每个processId在states中记录为QUEUED/TAKEN，offer通过putIfAbsent原子判重，避免同一个processId被重复分配
+ * 3. TAKEN记录即为history，基于ConcurrentLinkedQueue按分配顺序淘汰
+ * 4. take通过Semaphore阻塞等待，offer/take之间不存在共享的锁
+ * 5. take先将processId原子的从QUEUED抢占为CLAIMED，只有抢占成功的线程才会回调listener，再出队
+ * </pre>
+ *
+ * @author jianghang
+ */
+public class ConcurrentReplyProcessQueue {
+
+    private static final Object                 QUEUED       = new Object();
+    private static final Object                 TAKEN        = new Object();
+    private static final Object                 CLAIMED      = new Object();                           // 已被某个take线程抢占，正在出队
+    private final int                           historySize;
+    private Map<Long, Object>                   states       = new ConcurrentHashMap<Long, Object>();
+    private Queue<Long>                         historyList  = new ConcurrentLinkedQueue<Long>();      // 分配顺序，用于淘汰history
+    private AtomicInteger                       historyCount = new AtomicInteger(0);
+    private ConcurrentSkipListMap<Long, Object> tables       = new ConcurrentSkipListMap<Long, Object>();
+    private Semaphore                           available    = new Semaphore(0);
+
+    public ConcurrentReplyProcessQueue(int historySize){
+        this.historySize = historySize;
+    }
+
+    public Long take() throws InterruptedException {
+        return take(null);
+    }
+
+    /**
+     * 获取最小的processId，listener只会被抢占成功的线程在processId出队之前回调
+     */
+    public Long take(TakeListener listener) throws InterruptedException {
+        while (true) {
+            available.acquire();
+            Long result = poll(listener);
+            if (result != null) {
+                return result;
+            }
+            // 对应的记录已被clear，继续等待
+        }
+    }
+
+    private Long poll(TakeListener listener) {
+        // 每个take都持有一个许可，除非被clear，队列中一定存在一个未被抢占的processId
+        while (!tables.isEmpty()) {
+            for (Long processId : tables.keySet()) {
+                if (!tables.replace(processId, QUEUED, CLAIMED)) {
+                    continue; // 已被其他线程抢占
+                }
+
+                if (listener != null) {
+                    listener.beforeTake(processId);
+                }
+
+                if (tables.remove(processId, CLAIMED)) {
+                    // 记录到history，QUEUED直接转为TAKEN，期间不会出现processId不存在的窗口
+                    if (states.put(processId, TAKEN) != null) {
+                        addHistory(processId);
+                        return processId;
+                    }
+                    // 已被clear，忽略
+                    states.remove(processId);
+                }
+
+                if (listener != null) {
+                    listener.afterMiss(processId);
+                }
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    public boolean offer(Long processId) {
+        if (states.putIfAbsent(processId, QUEUED) != null) {
+            return false;
+        }
+
+        tables.put(processId, QUEUED);
+        available.release();
+        return true;
+    }
+
+    public void clear() {
+        tables.clear();
+        states.clear();
+        historyList.clear();
+        historyCount.set(0);
+        available.drainPermits();
+    }
+
+    public boolean contains(Long processId) {
+        return states.containsKey(processId);
+    }
+
+    public Object[] toArray() {
+        return tables.keySet().toArray();
+    }
+
+    public int size() {
+        return tables.size();
+    }
+
+    /**
+     * 队列中最小的processId，包括已被抢占但还未出队的，队列为空时返回null
+     */
+    public Long first() {
+        Map.Entry<Long, Object> first = tables.firstEntry();
+        return first == null ? null : first.getKey();
+    }
+
+    /**
+     * 出队回调，用于在processId离开队列之前完成登记，避免出现processId既不在队列中也没有被登记的窗口
+     */
+    public static interface TakeListener {
+
+        void beforeTake(Long processId);
+
+        /**
+         * 抢占之后出队之前已被clear
+         */
+        void afterMiss(Long processId);
+    }
+
+    private void addHistory(Long processId) {
+        historyList.offer(processId);
+        // 超过容量后淘汰最早的记录
+        if (historyCount.incrementAndGet() > historySize) {
+            Long eldest = historyList.poll();
+            if (eldest != null) {
+                states.remove(eldest, TAKEN);
+                historyCount.decrementAndGet();
+            }
+        }
+    }
+}
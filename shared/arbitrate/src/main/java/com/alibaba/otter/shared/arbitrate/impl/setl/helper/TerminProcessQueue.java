@@ -17,6 +17,7 @@
 package com.alibaba.otter.shared.arbitrate.impl.setl.helper;
 
 import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -33,6 +34,7 @@ public class TerminProcessQueue {
     private LRULinkedHashMap<Long, Object> history;                             // 记录一下最近分配出去的processId，容量必须>当前并行度
     private ReentrantLock                  lock     = new ReentrantLock();
     private Condition                      notEmpty = lock.newCondition();
+    private Condition                      changed  = lock.newCondition();
 
     public TerminProcessQueue(){
         history = new LRULinkedHashMap<Long, Object>(100);
@@ -57,6 +59,30 @@ public class TerminProcessQueue {
         }
     }
 
+    /**
+     * 等待第一个数据节点发生变化，比如乱序到达了一个更小的processId，超时返回null
+     * 
+     * @param exclude 当前已获取过的第一个数据节点
+     * @return
+     * @throws InterruptedException
+     */
+    public Long peek(Long exclude, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.size() == 0 || queue.peek().equals(exclude)) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+
+            return queue.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public boolean offer(Long processId) {
         lock.lock();
         try {
@@ -64,11 +90,9 @@ public class TerminProcessQueue {
                 return false;
             }
 
-            int size = queue.size();
             queue.add(processId);
-            if (size == 0) {
-                notEmpty.signalAll();
-            }
+            notEmpty.signalAll(); // 每次新增都需要通知，peek(exclude)需要感知第一个数据节点的变化
+            changed.signalAll();
             return true;
         } finally {
             lock.unlock();
@@ -90,6 +114,7 @@ public class TerminProcessQueue {
             Long result = queue.poll();
             if (result != null) {// 添加到历史记录里，避免重复
                 history.put(result, PRESENT);
+                changed.signalAll();
             }
             return result != null;
         } finally {
@@ -102,6 +127,24 @@ public class TerminProcessQueue {
         try {
             queue.clear();
             history.clear();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待queue的大小不为lastSize，超时返回当前的大小
+     */
+    public int waitForSize(int lastSize, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.size() == lastSize && nanos > 0) {
+                nanos = changed.awaitNanos(nanos);
+            }
+
+            return queue.size();
         } finally {
             lock.unlock();
         }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.shared.arbitrate.impl.setl.memory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigUtils;
+import com.alibaba.otter.shared.arbitrate.impl.setl.ArbitrateFactory;
+import com.alibaba.otter.shared.arbitrate.impl.setl.ArbitrateLifeCycle;
+import com.alibaba.otter.shared.arbitrate.model.EtlEventData;
+import com.alibaba.otter.shared.arbitrate.model.TerminEventData;
+import com.alibaba.otter.shared.arbitrate.model.TerminEventData.TerminType;
+import com.alibaba.otter.shared.common.model.config.enums.StageType;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+
+/**
+ * memory仲裁器的processId调度接口，根据pipeline参数选择具体的实现
+ *
+ * @author jianghang
+ */
+public abstract class AbstractMemoryStageController extends ArbitrateLifeCycle {
+
+    private ReentrantLock terminLock    = new ReentrantLock();
+    private Condition     terminChanged = terminLock.newCondition();
+
+    public AbstractMemoryStageController(Long pipelineId){
+        super(pipelineId);
+    }
+
+    /**
+     * 获取pipeline对应的调度器，useConcurrentMemoryArbitrate开启时使用无锁实现
+     */
+    public static AbstractMemoryStageController getInstance(Long pipelineId) {
+        Pipeline pipeline = ArbitrateConfigUtils.getPipeline(pipelineId);
+        if (pipeline.getParameters().getUseConcurrentMemoryArbitrate()) {
+            return ArbitrateFactory.getInstance(pipelineId, ConcurrentMemoryStageController.class);
+        } else {
+            return ArbitrateFactory.getInstance(pipelineId, MemoryStageController.class);
+        }
+    }
+
+    public abstract Long waitForProcess(StageType stage) throws InterruptedException;
+
+    public abstract EtlEventData getLastData(Long processId);
+
+    public abstract void destory();
+
+    public abstract void clearProgress(Long processId);
+
+    /**
+     * 处理异常termin结束
+     */
+    public abstract void termin(TerminType type);
+
+    public abstract boolean single(StageType stage, EtlEventData etlEventData);
+
+    public abstract void offerTermin(TerminEventData data);
+
+    public abstract void ackTermin(TerminEventData data);
+
+    public abstract int sizeTermin();
+
+    public abstract TerminEventData waitTermin() throws InterruptedException;
+
+    /**
+     * 等待termin信号，超时返回null
+     */
+    public abstract TerminEventData waitTermin(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 等待termin信号的总数不为lastSize，超时返回当前的总数
+     */
+    public int waitTerminSize(int lastSize, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        terminLock.lockInterruptibly();
+        try {
+            int size = sizeTermin();
+            while (size == lastSize && nanos > 0) {
+                nanos = terminChanged.awaitNanos(nanos);
+                size = sizeTermin();
+            }
+
+            return size;
+        } finally {
+            terminLock.unlock();
+        }
+    }
+
+    /**
+     * termin队列变化后通知waitTerminSize的等待者，需要在队列操作完成之后调用
+     */
+    protected void notifyTerminChanged() {
+        terminLock.lock();
+        try {
+            terminChanged.signalAll();
+        } finally {
+            terminLock.unlock();
+        }
+    }
+
+    /**
+     * 是否允许连续批次的load交叠执行，开启后已完成transform的processId按顺序连续分配给load，由node端保证按顺序single
+     */
+    protected boolean isContinuousLoad() {
+        return ArbitrateConfigUtils.getPipeline(getPipelineId()).getParameters().getUseContinuousLoad();
+    }
+
+    /**
+     * 构建异常termin信号
+     */
+    protected TerminEventData buildTermin(TerminType type, Long processId, EtlEventData eventData) {
+        TerminEventData data = new TerminEventData();
+        data.setPipelineId(getPipelineId());
+        data.setType(type);
+        data.setCode("channel");
+        data.setDesc(type.toString());
+        data.setProcessId(processId);
+        if (eventData != null) {
+            data.setBatchId(eventData.getBatchId());
+            data.setCurrNid(eventData.getCurrNid());
+            data.setStartTime(eventData.getStartTime());
+            data.setEndTime(eventData.getEndTime());
+            data.setFirstTime(eventData.getFirstTime());
+            data.setNumber(eventData.getNumber());
+            data.setSize(eventData.getSize());
+            data.setExts(eventData.getExts());
+        }
+        return data;
+    }
+}
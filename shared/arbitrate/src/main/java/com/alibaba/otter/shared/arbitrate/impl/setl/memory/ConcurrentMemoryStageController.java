@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.shared.arbitrate.impl.setl.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigUtils;
+import com.alibaba.otter.shared.arbitrate.impl.setl.helper.ConcurrentReplyProcessQueue;
+import com.alibaba.otter.shared.arbitrate.impl.setl.helper.ConcurrentReplyProcessQueue.TakeListener;
+import com.alibaba.otter.shared.arbitrate.impl.setl.helper.StageProgress;
+import com.alibaba.otter.shared.arbitrate.model.EtlEventData;
+import com.alibaba.otter.shared.arbitrate.model.TerminEventData;
+import com.alibaba.otter.shared.arbitrate.model.TerminEventData.TerminType;
+import com.alibaba.otter.shared.common.model.config.enums.StageType;
+import com.google.common.base.Function;
+import com.google.common.collect.OtterMigrateMap;
+
+/**
+ * <pre>
+ * 无锁的processId调度实现，语义和{@linkplain MemoryStageController}保持一致
+ *
+ * 1. progress基于ConcurrentSkipListMap，最小的processId直接取firstEntry，不再需要排序
+ * 2. single中的"存在才更新"基于replace原子操作完成，各stage之间不再争用同一把锁
+ * 3. termin/initSelect以及load完成后分配新的processId使用锁进行互斥，保证processId按顺序进入select队列
+ * </pre>
+ *
+ * @author jianghang
+ */
+public class ConcurrentMemoryStageController extends AbstractMemoryStageController {
+
+    private AtomicLong                                  atomicMaxProcessId = new AtomicLong(0);
+    private Map<StageType, ConcurrentReplyProcessQueue> replys;
+    private ConcurrentSkipListMap<Long, StageProgress>  progress;
+    private BlockingQueue<TerminEventData>              termins;
+    private StageProgress                               nullProgress       = new StageProgress();
+    private ReentrantLock                               lock               = new ReentrantLock();
+
+    public ConcurrentMemoryStageController(Long pipelineId){
+        super(pipelineId);
+
+        replys = OtterMigrateMap.makeComputingMap(new Function<StageType, ConcurrentReplyProcessQueue>() {
+
+            public ConcurrentReplyProcessQueue apply(StageType input) {
+                int size = ArbitrateConfigUtils.getParallelism(getPipelineId()) * 10;
+                if (size < 100) {
+                    size = 100;
+                }
+                return new ConcurrentReplyProcessQueue(size);
+            }
+        });
+
+        progress = new ConcurrentSkipListMap<Long, StageProgress>();
+        termins = new LinkedBlockingQueue<TerminEventData>(20);
+    }
+
+    public Long waitForProcess(StageType stage) throws InterruptedException {
+        if (stage.isSelect() && !replys.containsKey(stage)) {
+            lock.lock();
+            try {
+                if (!replys.containsKey(stage)) {// double check，避免并发重复初始化
+                    initSelect();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        if (!stage.isSelect()) {
+            return replys.get(stage).take();
+        }
+
+        // select一旦分出processId，就需要在progress中记录一笔，用于判断谁是最小的一个processId
+        // 需要在processId出队之前就完成登记，否则出队到登记之间更大的processId可能被提前load
+        // 只有抢占到该processId的线程会回调listener，登记的记录不会被其他select线程删除
+        return replys.get(stage).take(new TakeListener() {
+
+            public void beforeTake(Long processId) {
+                progress.put(processId, nullProgress);
+            }
+
+            public void afterMiss(Long processId) {
+                if (progress.remove(processId, nullProgress)) {
+                    // 登记期间可能阻塞了load的计算，需要重新计算一次
+                    computeNextLoad();
+                }
+            }
+        });
+    }
+
+    public EtlEventData getLastData(Long processId) {
+        return progress.get(processId).getData();
+    }
+
+    public void destory() {
+        lock.lock();
+        try {
+            replys.clear();
+            progress.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clearProgress(Long processId) {
+        progress.remove(processId);
+    }
+
+    public void termin(TerminType type) {
+        lock.lock();
+        try {
+            // 构建termin信号，keySet本身有序
+            List<Long> processIds = new ArrayList<Long>(progress.keySet());
+            for (Long processId : processIds) {
+                StageProgress stageProgress = progress.remove(processId);
+                if (stageProgress == null) {// 并发被load完成
+                    continue;
+                }
+
+                offerTermin(buildTermin(type, processId, stageProgress.getData()));
+            }
+
+            // 重新初始化一下select调度
+            initSelect();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean single(StageType stage, EtlEventData etlEventData) {
+        boolean result = false;
+        Long processId = etlEventData.getProcessId();
+        switch (stage) {
+            case SELECT:
+                // 可能发生了rollback，对应的progress已经被废弃，replace只在存在时更新
+                if (progress.replace(processId, new StageProgress(stage, etlEventData)) != null) {
+                    replys.get(StageType.EXTRACT).offer(processId);
+                    result = true;
+                }
+                break;
+            case EXTRACT:
+                if (progress.replace(processId, new StageProgress(stage, etlEventData)) != null) {
+                    replys.get(StageType.TRANSFORM).offer(processId);
+                    result = true;
+                }
+                break;
+            case TRANSFORM:
+                if (progress.replace(processId, new StageProgress(stage, etlEventData)) != null) {
+                    result = true;
+                }
+                // 并不是立即触发，通知最小的一个process启动
+                computeNextLoad();
+                break;
+            case LOAD:
+                Object removed = progress.remove(processId);
+                // 并不是立即触发，通知下一个最小的一个process启动
+                computeNextLoad();
+                // 一个process完成了，自动添加下一个process
+                if (removed != null) {
+                    offerNextSelect();
+                    result = true;
+                }
+                break;
+            default:
+                break;
+        }
+
+        return result;
+    }
+
+    public void offerTermin(TerminEventData data) {
+        try {
+            termins.put(data);
+            notifyTerminChanged();
+        } catch (InterruptedException e) {
+            // ignore
+        }
+    }
+
+    public void ackTermin(TerminEventData data) {
+        // do nothing
+    }
+
+    public int sizeTermin() {
+        return termins.size();
+    }
+
+    public TerminEventData waitTermin() throws InterruptedException {
+        TerminEventData data = termins.take();
+        notifyTerminChanged();
+        return data;
+    }
+
+    public TerminEventData waitTermin(long timeout, TimeUnit unit) throws InterruptedException {
+        TerminEventData data = termins.poll(timeout, unit);
+        if (data != null) {
+            notifyTerminChanged();
+        }
+        return data;
+    }
+
+    private void initSelect() {
+        lock.lock();
+        try {
+            // 第一次/出现ROLLBACK/RESTART事件，删除了所有调度信号后，重新初始化一下select
+            ConcurrentReplyProcessQueue queue = replys.get(StageType.SELECT);
+            int parallelism = ArbitrateConfigUtils.getParallelism(getPipelineId());
+            while (parallelism-- > 0 && queue.size() <= parallelism) {
+                queue.offer(atomicMaxProcessId.incrementAndGet());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 分配下一个processId，递增和入队需要在锁内完成，避免并发load完成时更大的processId先入队被select取走
+     */
+    private void offerNextSelect() {
+        lock.lock();
+        try {
+            replys.get(StageType.SELECT).offer(atomicMaxProcessId.incrementAndGet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 计算下一个load的processId，progress的修改和读取都是原子的，最后一个修改progress的线程一定能看到最新的最小值
+     *
+     * <pre>
+     * select队列中被抢占的processId要等登记完成后才会出队，先读取select队列中最小的processId，再读取progress:
+     * 比它更小的processId要么已经在progress中，要么已经完成，只有小于它的processId才允许load
+     * </pre>
+     */
+    private void computeNextLoad() {
+        Long selecting = replys.get(StageType.SELECT).first();
+        if (isContinuousLoad()) {
+            // 从最小的processId开始，连续完成transform的都可以进行load，已分配过的processId会被reply queue自动忽略
+            for (Map.Entry<Long, StageProgress> entry : progress.entrySet()) {
+                if (!isLoadable(entry, selecting)) {
+                    break;
+                }
+                replys.get(StageType.LOAD).offer(entry.getKey());
+            }
+            return;
+        }
+
+        Map.Entry<Long, StageProgress> first = progress.firstEntry();
+        if (first != null && isLoadable(first, selecting)) {
+            replys.get(StageType.LOAD).offer(first.getKey());
+        }
+    }
+
+    private boolean isLoadable(Map.Entry<Long, StageProgress> entry, Long selecting) {
+        if (selecting != null && selecting < entry.getKey()) {
+            return false; // 更小的processId还在select队列中，等它完成transform时会重新计算
+        }
+        // stage可能为空，针对select未完成时，对应的值就为nullProgress
+        return entry.getValue().getStage() != null && entry.getValue().getStage().isTransform();
+    }
+
+}
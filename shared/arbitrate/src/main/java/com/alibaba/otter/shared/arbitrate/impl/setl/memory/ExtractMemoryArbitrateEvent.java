@@ -44,7 +44,7 @@ public class ExtractMemoryArbitrateEvent implements ExtractArbitrateEvent {
         PermitMonitor permitMonitor = ArbitrateFactory.getInstance(pipelineId, PermitMonitor.class);
         permitMonitor.waitForPermit();// 阻塞等待授权
 
-        MemoryStageController stageController = ArbitrateFactory.getInstance(pipelineId, MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(pipelineId);
         Long processId = stageController.waitForProcess(StageType.EXTRACT); // 符合条件的processId
 
         ChannelStatus status = permitMonitor.getChannelPermit();
@@ -64,8 +64,7 @@ public class ExtractMemoryArbitrateEvent implements ExtractArbitrateEvent {
 
     public void single(EtlEventData data) {
         Assert.notNull(data);
-        MemoryStageController stageController = ArbitrateFactory.getInstance(data.getPipelineId(),
-                                                                             MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(data.getPipelineId());
         stageController.single(StageType.EXTRACT, data);// 通知下一个节点
     }
 
@@ -49,7 +49,7 @@ public class LoadMemoryArbitrateEvent implements LoadArbitrateEvent {
         PermitMonitor permitMonitor = ArbitrateFactory.getInstance(pipelineId, PermitMonitor.class);
         permitMonitor.waitForPermit();// 阻塞等待授权
 
-        MemoryStageController stageController = ArbitrateFactory.getInstance(pipelineId, MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(pipelineId);
         Long processId = stageController.waitForProcess(StageType.LOAD); // 符合条件的processId
 
         ChannelStatus status = permitMonitor.getChannelPermit();
@@ -70,8 +70,7 @@ public class LoadMemoryArbitrateEvent implements LoadArbitrateEvent {
     public void single(EtlEventData data) {
         Assert.notNull(data);
         data.setEndTime(new Date().getTime());// 返回当前时间
-        MemoryStageController stageController = ArbitrateFactory.getInstance(data.getPipelineId(),
-                                                                             MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(data.getPipelineId());
         boolean result = stageController.single(StageType.LOAD, data);// 通知下一个节点
         if (result) {// 可能已经被rollback了，需要直接忽略
             // 调用Termin信号
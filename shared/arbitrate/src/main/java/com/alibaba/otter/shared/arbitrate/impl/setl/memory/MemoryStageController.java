@@ -22,12 +22,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.util.CollectionUtils;
 
 import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigUtils;
-import com.alibaba.otter.shared.arbitrate.impl.setl.ArbitrateLifeCycle;
 import com.alibaba.otter.shared.arbitrate.impl.setl.helper.ReplyProcessQueue;
 import com.alibaba.otter.shared.arbitrate.impl.setl.helper.StageProgress;
 import com.alibaba.otter.shared.arbitrate.model.EtlEventData;
@@ -39,10 +39,13 @@ import com.google.common.collect.MapMaker;
 import com.google.common.collect.OtterMigrateMap;
 
 /**
+ * 基于synchronized的processId调度实现
+ *
  * @author jianghang 2012-9-27 下午10:12:35
  * @version 4.1.0
+ * @see ConcurrentMemoryStageController
  */
-public class MemoryStageController extends ArbitrateLifeCycle {
+public class MemoryStageController extends AbstractMemoryStageController {
 
     private AtomicLong                        atomicMaxProcessId = new AtomicLong(0);
     private Map<StageType, ReplyProcessQueue> replys;
@@ -103,24 +106,7 @@ public class MemoryStageController extends ArbitrateLifeCycle {
         Collections.sort(processIds);// 做一下排序
         for (Long processId : processIds) {
             EtlEventData eventData = progress.get(processId).getData();
-
-            TerminEventData data = new TerminEventData();
-            data.setPipelineId(getPipelineId());
-            data.setType(type);
-            data.setCode("channel");
-            data.setDesc(type.toString());
-            data.setProcessId(processId);
-            if (eventData != null) {
-                data.setBatchId(eventData.getBatchId());
-                data.setCurrNid(eventData.getCurrNid());
-                data.setStartTime(eventData.getStartTime());
-                data.setEndTime(eventData.getEndTime());
-                data.setFirstTime(eventData.getFirstTime());
-                data.setNumber(eventData.getNumber());
-                data.setSize(eventData.getSize());
-                data.setExts(eventData.getExts());
-            }
-            offerTermin(data);
+            offerTermin(buildTermin(type, processId, eventData));
             progress.remove(processId);
         }
 
@@ -173,6 +159,7 @@ public class MemoryStageController extends ArbitrateLifeCycle {
     public void offerTermin(TerminEventData data) {
         try {
             termins.put(data);
+            notifyTerminChanged();
         } catch (InterruptedException e) {
             // ignore
         }
@@ -187,7 +174,17 @@ public class MemoryStageController extends ArbitrateLifeCycle {
     }
 
     public TerminEventData waitTermin() throws InterruptedException {
-        return termins.take();
+        TerminEventData data = termins.take();
+        notifyTerminChanged();
+        return data;
+    }
+
+    public TerminEventData waitTermin(long timeout, TimeUnit unit) throws InterruptedException {
+        TerminEventData data = termins.poll(timeout, unit);
+        if (data != null) {
+            notifyTerminChanged();
+        }
+        return data;
     }
 
     private synchronized void initSelect() {
@@ -205,12 +202,37 @@ public class MemoryStageController extends ArbitrateLifeCycle {
      * 计算下一个load的processId
      */
     private void computeNextLoad() {
+        if (isContinuousLoad()) {
+            for (Long processId : getTransformedProcessIds()) {
+                replys.get(StageType.LOAD).offer(processId); // 已分配过的processId会被reply queue自动忽略
+            }
+            return;
+        }
+
         Long processId = getMinTransformedProcessId();
         if (processId != null) {
             replys.get(StageType.LOAD).offer(processId);
         }
     }
 
+    /**
+     * 从最小的processId开始，获取连续完成transform的processId列表
+     */
+    private synchronized List<Long> getTransformedProcessIds() {
+        List<Long> processIds = new ArrayList<Long>(progress.keySet());
+        Collections.sort(processIds);
+        List<Long> result = new ArrayList<Long>();
+        for (Long processId : processIds) {
+            StageProgress stage = progress.get(processId);
+            if (stage == null || stage == nullProgress || !stage.getStage().isTransform()) {
+                break;
+            }
+            result.add(processId);
+        }
+
+        return result;
+    }
+
     /**
      * 获取最小一个符合条件的processId
      */
@@ -47,7 +47,7 @@ public class SelectMemoryArbitrateEvent implements SelectArbitrateEvent {
         PermitMonitor permitMonitor = ArbitrateFactory.getInstance(pipelineId, PermitMonitor.class);
         permitMonitor.waitForPermit();// 阻塞等待授权
 
-        MemoryStageController stageController = ArbitrateFactory.getInstance(pipelineId, MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(pipelineId);
         Long processId = stageController.waitForProcess(StageType.SELECT); // 符合条件的processId
 
         ChannelStatus status = permitMonitor.getChannelPermit();
@@ -74,8 +74,7 @@ public class SelectMemoryArbitrateEvent implements SelectArbitrateEvent {
 
     public void single(EtlEventData data) {
         Assert.notNull(data);
-        MemoryStageController stageController = ArbitrateFactory.getInstance(data.getPipelineId(),
-                                                                             MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(data.getPipelineId());
         stageController.single(StageType.SELECT, data);// 通知下一个节点
     }
 
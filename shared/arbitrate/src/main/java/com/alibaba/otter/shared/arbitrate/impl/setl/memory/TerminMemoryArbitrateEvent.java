@@ -16,6 +16,8 @@
 
 package com.alibaba.otter.shared.arbitrate.impl.setl.memory;
 
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
@@ -24,7 +26,6 @@ import com.alibaba.otter.shared.arbitrate.exception.ArbitrateException;
 import com.alibaba.otter.shared.arbitrate.impl.communication.ArbitrateCommunicationClient;
 import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigUtils;
 import com.alibaba.otter.shared.arbitrate.impl.manage.ChannelArbitrateEvent;
-import com.alibaba.otter.shared.arbitrate.impl.setl.ArbitrateFactory;
 import com.alibaba.otter.shared.arbitrate.impl.setl.TerminArbitrateEvent;
 import com.alibaba.otter.shared.arbitrate.impl.setl.zookeeper.termin.WarningTerminProcess;
 import com.alibaba.otter.shared.arbitrate.model.TerminEventData;
@@ -47,7 +48,7 @@ public class TerminMemoryArbitrateEvent implements TerminArbitrateEvent {
 
     public TerminEventData await(Long pipelineId) throws InterruptedException {
         Assert.notNull(pipelineId);
-        MemoryStageController stageController = ArbitrateFactory.getInstance(pipelineId, MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(pipelineId);
         TerminEventData eventData = stageController.waitTermin();
         if (logger.isDebugEnabled()) {
             logger.debug("## await pipeline[{}] processId[{}] is termin", pipelineId, eventData.getProcessId());
@@ -56,9 +57,17 @@ public class TerminMemoryArbitrateEvent implements TerminArbitrateEvent {
         return eventData;
     }
 
+    public TerminEventData await(Long pipelineId, Long lastProcessId, long timeout, TimeUnit unit)
+                                                                                                   throws InterruptedException {
+        Assert.notNull(pipelineId);
+        // 内存版本的termin信号获取后即出队，lastProcessId不会再次出现
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(pipelineId);
+        return stageController.waitTermin(timeout, unit);
+    }
+
     public void exhaust(Long pipelineId) {
         Assert.notNull(pipelineId);
-        MemoryStageController stageController = ArbitrateFactory.getInstance(pipelineId, MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(pipelineId);
         int size = stageController.sizeTermin();
         try {
             for (int i = 0; i < size; i++) {
@@ -73,8 +82,7 @@ public class TerminMemoryArbitrateEvent implements TerminArbitrateEvent {
     public void single(TerminEventData data) {
         // 正向处理
         final TerminType type = data.getType();
-        MemoryStageController stageController = ArbitrateFactory.getInstance(data.getPipelineId(),
-                                                                             MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(data.getPipelineId());
         if (type.isNormal()) {
             Assert.notNull(data.getProcessId());
             stageController.offerTermin(data);
@@ -112,16 +120,20 @@ public class TerminMemoryArbitrateEvent implements TerminArbitrateEvent {
     }
 
     public void ack(TerminEventData data) {
-        MemoryStageController stageController = ArbitrateFactory.getInstance(data.getPipelineId(),
-                                                                             MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(data.getPipelineId());
         stageController.ackTermin(data);
     }
 
     public int size(Long pipelineId) {
-        MemoryStageController stageController = ArbitrateFactory.getInstance(pipelineId, MemoryStageController.class);
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(pipelineId);
         return stageController.sizeTermin();
     }
 
+    public int size(Long pipelineId, int lastSize, long timeout, TimeUnit unit) throws InterruptedException {
+        AbstractMemoryStageController stageController = AbstractMemoryStageController.getInstance(pipelineId);
+        return stageController.waitTerminSize(lastSize, timeout, unit);
+    }
+
     // ================== setter / getter ===================
     public void setArbitrateCommunicationClient(ArbitrateCommunicationClient arbitrateCommunicationClient) {
         this.arbitrateCommunicationClient = arbitrateCommunicationClient;
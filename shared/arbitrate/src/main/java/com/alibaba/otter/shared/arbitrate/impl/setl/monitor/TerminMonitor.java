@@ -19,6 +19,7 @@ package com.alibaba.otter.shared.arbitrate.impl.setl.monitor;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.I0Itec.zkclient.IZkChildListener;
 import org.slf4j.Logger;
@@ -99,6 +100,17 @@ public class TerminMonitor extends ArbitrateLifeCycle implements Monitor {
         return processId;
     }
 
+    /**
+     * 阻塞获取processId不为exclude的termin事件，比如乱序到达的更小的processId，超时返回null
+     */
+    public Long waitForProcess(Long exclude, long timeout, TimeUnit unit) throws InterruptedException {
+        Long processId = waitProcessIds.peek(exclude, timeout, unit);
+        if (logger.isDebugEnabled()) {
+            logger.debug("## {} get termin id [{}] exclude [{}]", new Object[] { getPipelineId(), processId, exclude });
+        }
+        return processId;
+    }
+
     /**
      * @return 当前待处理的termin信号的总数
      */
@@ -106,6 +118,13 @@ public class TerminMonitor extends ArbitrateLifeCycle implements Monitor {
         return waitProcessIds.size();
     }
 
+    /**
+     * 等待待处理的termin信号总数不为lastSize，超时返回当前的总数
+     */
+    public int waitForSize(int lastSize, long timeout, TimeUnit unit) throws InterruptedException {
+        return waitProcessIds.waitForSize(lastSize, timeout, unit);
+    }
+
     /**
      * 提交termin的ack信息，物理移除termin
      */
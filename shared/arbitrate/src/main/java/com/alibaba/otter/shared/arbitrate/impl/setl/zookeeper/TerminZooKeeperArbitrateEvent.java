@@ -16,6 +16,8 @@
 
 package com.alibaba.otter.shared.arbitrate.impl.setl.zookeeper;
 
+import java.util.concurrent.TimeUnit;
+
 import com.alibaba.otter.shared.arbitrate.impl.communication.ArbitrateCommunicationClient;
 import org.I0Itec.zkclient.exception.ZkException;
 import org.I0Itec.zkclient.exception.ZkNoNodeException;
@@ -84,6 +86,30 @@ public class TerminZooKeeperArbitrateEvent implements TerminArbitrateEvent {
         }
     }
 
+    public TerminEventData await(Long pipelineId, Long lastProcessId, long timeout, TimeUnit unit)
+                                                                                                   throws InterruptedException {
+        Assert.notNull(pipelineId);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        TerminMonitor terminMonitor = ArbitrateFactory.getInstance(pipelineId, TerminMonitor.class);
+        // 等待termin队列的第一个节点发生变化，由zk的child变化事件唤醒
+        Long processId = terminMonitor.waitForProcess(lastProcessId, timeout, unit);
+        if (processId == null) {
+            return null;
+        }
+
+        String path = StagePathUtils.getTermin(pipelineId, processId);
+        try {
+            byte[] data = zookeeper.readData(path);
+            return JsonUtils.unmarshalFromByte(data, TerminEventData.class);
+        } catch (ZkNoNodeException e) {
+            logger.error("pipeline[{}] processId[{}] is process", pipelineId, processId);
+            terminMonitor.ack(processId);
+            return await(pipelineId, lastProcessId, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (ZkException e) {
+            throw new ArbitrateException("Termin_await", e);
+        }
+    }
+
     /**
      * 消耗掉所有的termin信号
      */
@@ -138,6 +164,16 @@ public class TerminZooKeeperArbitrateEvent implements TerminArbitrateEvent {
         return terminMonitor.size();
     }
 
+    /**
+     * 等待termin信号的总数发生变化，由zk的child变化事件唤醒
+     */
+    public int size(Long pipelineId, int lastSize, long timeout, TimeUnit unit) throws InterruptedException {
+        Assert.notNull(pipelineId);
+
+        TerminMonitor terminMonitor = ArbitrateFactory.getInstance(pipelineId, TerminMonitor.class);
+        return terminMonitor.waitForSize(lastSize, timeout, unit);
+    }
+
     /**
      * <pre>
      * 算法:
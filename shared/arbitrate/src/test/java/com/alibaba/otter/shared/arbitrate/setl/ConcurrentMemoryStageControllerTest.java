@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.arbitrate.setl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.shared.arbitrate.BaseOtterTest;
+import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfig;
+import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigRegistry;
+import com.alibaba.otter.shared.arbitrate.impl.setl.memory.ConcurrentMemoryStageController;
+import com.alibaba.otter.shared.arbitrate.model.EtlEventData;
+import com.alibaba.otter.shared.common.model.config.channel.Channel;
+import com.alibaba.otter.shared.common.model.config.enums.StageType;
+import com.alibaba.otter.shared.common.model.config.node.Node;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+
+/**
+ * @author jianghang
+ */
+public class ConcurrentMemoryStageControllerTest extends BaseOtterTest {
+
+    private static final Long PIPELINE_ID = 1L;
+    private static final int  PARALLELISM = 3;
+
+    @BeforeClass
+    public void init() {
+        ArbitrateConfigRegistry.regist(new ArbitrateConfig() {
+
+            public Node currentNode() {
+                return null;
+            }
+
+            public Node findNode(Long nid) {
+                return null;
+            }
+
+            public Channel findChannel(Long channelId) {
+                return null;
+            }
+
+            public Pipeline findPipeline(Long pipelineId) {
+                Pipeline pipeline = new Pipeline();
+                pipeline.setId(pipelineId);
+                pipeline.getParameters().setParallelism((long) PARALLELISM);
+                return pipeline;
+            }
+
+            public Channel findChannelByPipelineId(Long pipelineId) {
+                return null;
+            }
+
+            public Pipeline findOppositePipeline(Long pipelineId) {
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void test_load_order() throws Exception {
+        ConcurrentMemoryStageController controller = new ConcurrentMemoryStageController(PIPELINE_ID);
+        want.number(controller.waitForProcess(StageType.SELECT)).isEqualTo(1L);
+        want.number(controller.waitForProcess(StageType.SELECT)).isEqualTo(2L);
+
+        // processId=2先完成transform，但1还未完成，不能load
+        single(controller, StageType.SELECT, 2L);
+        want.number(controller.waitForProcess(StageType.EXTRACT)).isEqualTo(2L);
+        single(controller, StageType.EXTRACT, 2L);
+        want.number(controller.waitForProcess(StageType.TRANSFORM)).isEqualTo(2L);
+        single(controller, StageType.TRANSFORM, 2L);
+
+        single(controller, StageType.SELECT, 1L);
+        want.number(controller.waitForProcess(StageType.EXTRACT)).isEqualTo(1L);
+        single(controller, StageType.EXTRACT, 1L);
+        want.number(controller.waitForProcess(StageType.TRANSFORM)).isEqualTo(1L);
+        single(controller, StageType.TRANSFORM, 1L);
+
+        want.number(controller.waitForProcess(StageType.LOAD)).isEqualTo(1L);
+        want.bool(single(controller, StageType.LOAD, 1L)).is(true);
+        want.number(controller.waitForProcess(StageType.LOAD)).isEqualTo(2L);
+        want.bool(single(controller, StageType.LOAD, 2L)).is(true);
+
+        // load完成后按顺序补充新的processId
+        long next = controller.waitForProcess(StageType.SELECT);
+        want.number(controller.waitForProcess(StageType.SELECT)).isEqualTo(next + 1);
+        controller.destory();
+    }
+
+    @Test
+    public void test_concurrent_load_order() throws Exception {
+        final ConcurrentMemoryStageController controller = new ConcurrentMemoryStageController(PIPELINE_ID);
+        final long count = 5000;
+        final AtomicLong loaded = new AtomicLong(0);
+        final AtomicLong lastLoad = new AtomicLong(0);
+        final AtomicLong disorder = new AtomicLong(0);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final StageType stage : new StageType[] { StageType.SELECT, StageType.EXTRACT, StageType.TRANSFORM,
+                StageType.LOAD }) {
+            for (int i = 0; i < 4; i++) {
+                Thread thread = new Thread(new Runnable() {
+
+                    public void run() {
+                        try {
+                            while (true) {
+                                Long processId = controller.waitForProcess(stage);
+                                if (stage.isLoad()) {
+                                    // 下一个processId只有在当前的single之后才会分配给load，这里的记录顺序即为load的顺序
+                                    if (lastLoad.getAndSet(processId) >= processId) {
+                                        disorder.incrementAndGet();
+                                    }
+                                }
+                                if (single(controller, stage, processId) && stage.isLoad()) {
+                                    loaded.incrementAndGet();
+                                }
+                            }
+                        } catch (InterruptedException e) {
+                            // ignore
+                        }
+                    }
+                });
+                thread.setDaemon(true);
+                threads.add(thread);
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        long deadline = System.currentTimeMillis() + 30 * 1000L;
+        while (loaded.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join(1000);
+        }
+
+        want.number(loaded.get()).isGreaterEqual(count);
+        want.number(disorder.get()).isEqualTo(0L);
+        controller.destory();
+    }
+
+    private boolean single(ConcurrentMemoryStageController controller, StageType stage, Long processId) {
+        EtlEventData data = stage.isSelect() ? new EtlEventData() : controller.getLastData(processId);
+        data.setPipelineId(PIPELINE_ID);
+        data.setProcessId(processId);
+        return controller.single(stage, data);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.arbitrate.setl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.shared.arbitrate.BaseOtterTest;
+import com.alibaba.otter.shared.arbitrate.impl.setl.helper.ConcurrentReplyProcessQueue;
+import com.alibaba.otter.shared.arbitrate.impl.setl.helper.ConcurrentReplyProcessQueue.TakeListener;
+
+/**
+ * @author jianghang
+ */
+public class ConcurrentReplyProcessQueueTest extends BaseOtterTest {
+
+    @Test
+    public void test_order() throws Exception {
+        ConcurrentReplyProcessQueue queue = new ConcurrentReplyProcessQueue(10);
+        queue.offer(5L);
+        queue.offer(3L);
+        queue.offer(4L);
+        want.number(queue.size()).isEqualTo(3);
+
+        // 小的processId优先被取出
+        want.number(queue.take()).isEqualTo(3L);
+        want.number(queue.take()).isEqualTo(4L);
+        want.number(queue.take()).isEqualTo(5L);
+        want.number(queue.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_duplicate() throws Exception {
+        ConcurrentReplyProcessQueue queue = new ConcurrentReplyProcessQueue(2);
+        want.bool(queue.offer(1L)).is(true);
+        want.bool(queue.offer(1L)).is(false);
+        want.number(queue.take()).isEqualTo(1L);
+        // 已分配过的processId记录在history中，不会被重复分配
+        want.bool(queue.offer(1L)).is(false);
+
+        for (long i = 2; i <= 3; i++) {
+            queue.offer(i);
+            queue.take();
+        }
+        // 超过history容量后被淘汰
+        want.bool(queue.contains(1L)).is(false);
+        want.bool(queue.offer(1L)).is(true);
+    }
+
+    @Test
+    public void test_clear() throws Exception {
+        final ConcurrentReplyProcessQueue queue = new ConcurrentReplyProcessQueue(10);
+        final List<Long> misses = new ArrayList<Long>();
+        queue.offer(1L);
+        Long processId = queue.take(new TakeListener() {
+
+            public void beforeTake(Long processId) {
+                if (processId == 1L) {
+                    // 抢占之后出队之前被clear
+                    queue.clear();
+                    queue.offer(2L);
+                }
+            }
+
+            public void afterMiss(Long processId) {
+                misses.add(processId);
+            }
+        });
+
+        want.number(processId).isEqualTo(2L);
+        want.collection(misses).sizeEq(1);
+        want.number(misses.get(0)).isEqualTo(1L);
+    }
+
+    @Test
+    public void test_concurrent_take() throws Exception {
+        final int threads = 8;
+        final int count = 20000;
+        final ConcurrentReplyProcessQueue queue = new ConcurrentReplyProcessQueue(count);
+        final ConcurrentHashMap<Long, AtomicInteger> befores = new ConcurrentHashMap<Long, AtomicInteger>();
+        final ConcurrentHashMap<Long, AtomicInteger> takes = new ConcurrentHashMap<Long, AtomicInteger>();
+        final AtomicInteger misses = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(count);
+        final TakeListener listener = new TakeListener() {
+
+            public void beforeTake(Long processId) {
+                increment(befores, processId);
+            }
+
+            public void afterMiss(Long processId) {
+                misses.incrementAndGet();
+            }
+        };
+
+        List<Thread> takers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(new Runnable() {
+
+                public void run() {
+                    try {
+                        while (true) {
+                            increment(takes, queue.take(listener));
+                            latch.countDown();
+                        }
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            takers.add(thread);
+        }
+
+        for (long i = 1; i <= count; i++) {
+            queue.offer(i);
+        }
+
+        latch.await();
+        for (Thread thread : takers) {
+            thread.interrupt();
+        }
+
+        // 每个processId只被分配一次，并且只有取走它的线程回调了listener
+        want.number(takes.size()).isEqualTo(count);
+        want.number(befores.size()).isEqualTo(count);
+        for (long i = 1; i <= count; i++) {
+            want.number(takes.get(i).get()).isEqualTo(1);
+            want.number(befores.get(i).get()).isEqualTo(1);
+        }
+        want.number(misses.get()).isEqualTo(0);
+    }
+
+    private void increment(ConcurrentHashMap<Long, AtomicInteger> counts, Long processId) {
+        AtomicInteger count = counts.get(processId);
+        if (count == null) {
+            AtomicInteger newCount = new AtomicInteger(0);
+            count = counts.putIfAbsent(processId, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+}
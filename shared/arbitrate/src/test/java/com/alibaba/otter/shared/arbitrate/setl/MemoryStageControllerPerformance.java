@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.shared.arbitrate.setl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfig;
+import com.alibaba.otter.shared.arbitrate.impl.config.ArbitrateConfigRegistry;
+import com.alibaba.otter.shared.arbitrate.impl.setl.memory.AbstractMemoryStageController;
+import com.alibaba.otter.shared.arbitrate.impl.setl.memory.ConcurrentMemoryStageController;
+import com.alibaba.otter.shared.arbitrate.impl.setl.memory.MemoryStageController;
+import com.alibaba.otter.shared.arbitrate.model.EtlEventData;
+import com.alibaba.otter.shared.arbitrate.model.TerminEventData;
+import com.alibaba.otter.shared.arbitrate.model.TerminEventData.TerminType;
+import com.alibaba.otter.shared.common.model.config.channel.Channel;
+import com.alibaba.otter.shared.common.model.config.enums.StageType;
+import com.alibaba.otter.shared.common.model.config.node.Node;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+
+/**
+ * 对比MemoryStageController和ConcurrentMemoryStageController的调度吞吐量
+ *
+ * <pre>
+ * jvm args :
+ * -server -Xmx1g -Xms1g
+ *
+ * 运行方式: main方法直接运行，每个stage启动parallelism个线程，不做任何实际的数据处理，只测试s/e/t/l + termin的仲裁开销
+ * 同时统计load的乱序次数：MemoryStageController在select出队之后才登记progress，多个select线程时可能乱序，只做输出
+ * ConcurrentMemoryStageController在出队之前完成登记，出现乱序直接抛出异常
+ * </pre>
+ */
+public class MemoryStageControllerPerformance {
+
+    private static final Long PIPELINE_ID = 1L;
+    private static final int  PARALLELISM = 16;
+    private static final long DURATION    = 10 * 1000L;
+    private static final int  ROUNDS      = 3;
+
+    public static void main(String args[]) throws Exception {
+        ArbitrateConfigRegistry.regist(new ArbitrateConfig() {
+
+            public Node currentNode() {
+                return null;
+            }
+
+            public Node findNode(Long nid) {
+                return null;
+            }
+
+            public Channel findChannel(Long channelId) {
+                return null;
+            }
+
+            public Pipeline findPipeline(Long pipelineId) {
+                Pipeline pipeline = new Pipeline();
+                pipeline.setId(pipelineId);
+                pipeline.getParameters().setParallelism((long) PARALLELISM);
+                return pipeline;
+            }
+
+            public Channel findChannelByPipelineId(Long pipelineId) {
+                return null;
+            }
+
+            public Pipeline findOppositePipeline(Long pipelineId) {
+                return null;
+            }
+        });
+
+        for (int i = 0; i < ROUNDS; i++) {
+            long sync = run(new MemoryStageController(PIPELINE_ID));
+            long concurrent = run(new ConcurrentMemoryStageController(PIPELINE_ID));
+            System.out.println("round " + i + " , synchronized : " + sync * 1000 / DURATION + " process/s , concurrent : "
+                               + concurrent * 1000 / DURATION + " process/s");
+        }
+    }
+
+    private static long run(final AbstractMemoryStageController controller) throws InterruptedException {
+        final AtomicLong loaded = new AtomicLong(0);
+        final AtomicLong lastLoad = new AtomicLong(0);
+        final AtomicLong disorder = new AtomicLong(0);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final StageType stage : new StageType[] { StageType.SELECT, StageType.EXTRACT, StageType.TRANSFORM,
+                StageType.LOAD }) {
+            for (int i = 0; i < PARALLELISM; i++) {
+                threads.add(new Thread(new Runnable() {
+
+                    public void run() {
+                        try {
+                            while (!Thread.currentThread().isInterrupted()) {
+                                Long processId = controller.waitForProcess(stage);
+                                // 下一个processId只有在当前的single之后才会分配给load，这里的记录顺序即为load的顺序
+                                if (stage.isLoad() && lastLoad.getAndSet(processId) >= processId) {
+                                    disorder.incrementAndGet();
+                                }
+                                EtlEventData data = stage.isSelect() ? new EtlEventData() : controller.getLastData(processId);
+                                if (data == null) {
+                                    continue;
+                                }
+                                data.setPipelineId(PIPELINE_ID);
+                                data.setProcessId(processId);
+                                if (controller.single(stage, data) && stage.isLoad()) {
+                                    // 和LoadMemoryArbitrateEvent一致，load完成后发送termin信号
+                                    TerminEventData termin = new TerminEventData();
+                                    termin.setPipelineId(PIPELINE_ID);
+                                    termin.setProcessId(processId);
+                                    termin.setType(TerminType.NORMAL);
+                                    controller.offerTermin(termin);
+                                    loaded.incrementAndGet();
+                                }
+                            }
+                        } catch (InterruptedException e) {
+                            // ignore
+                        }
+                    }
+                }, "stage-" + stage + "-" + i));
+            }
+        }
+
+        threads.add(new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        controller.ackTermin(controller.waitTermin());
+                    }
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        }, "termin"));
+
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread.sleep(DURATION);
+        long result = loaded.get();
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join(1000);
+        }
+        controller.destory();
+        if (disorder.get() > 0) {
+            if (controller instanceof ConcurrentMemoryStageController) {
+                throw new IllegalStateException("ConcurrentMemoryStageController load out of order : " + disorder.get());
+            }
+            System.out.println(controller.getClass().getSimpleName() + " load out of order : " + disorder.get());
+        }
+        return result;
+    }
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.oro.text.regex.MalformedPatternException;
@@ -62,18 +63,16 @@ public class ConfigHelper {
                                                              }
                                                          }
                                                      });
+    private static Map<Long, DataMediaPairIndex> indexes = new ConcurrentHashMap<Long, DataMediaPairIndex>(); // pipelineId对应的pair索引
 
     /**
      * 根据DataMedia id得到对应的DataMedia
      */
     public static DataMedia<? extends DataMediaSource> findDataMedia(Pipeline pipeline, Long id) {
         Assert.notNull(pipeline);
-        for (DataMediaPair pair : pipeline.getPairs()) {
-            if (pair.getSource().getId().equals(id)) {
-                return pair.getSource();
-            } else if (pair.getTarget().getId().equals(id)) {
-                return pair.getTarget();
-            }
+        DataMedia<? extends DataMediaSource> dataMedia = getIndex(pipeline).findDataMedia(id);
+        if (dataMedia != null) {
+            return dataMedia;
         }
 
         throw new ConfigException("no such DataMedia , the tableId = " + id);
@@ -92,10 +91,9 @@ public class ConfigHelper {
      */
     public static DataMedia<? extends DataMediaSource> findSourceDataMedia(Pipeline pipeline, String namespace,
                                                                            String name, boolean notExistReturnNull) {
-        for (DataMediaPair pair : pipeline.getPairs()) {
-            if (isMatch(pair.getSource(), namespace, name)) {
-                return pair.getSource();
-            }
+        DataMediaPair pair = getIndex(pipeline).findDataMediaPairBySourceName(namespace, name);
+        if (pair != null) {
+            return pair.getSource();
         }
 
         if (notExistReturnNull) {
@@ -117,10 +115,9 @@ public class ConfigHelper {
      */
     public static DataMediaPair findDataMediaPairBySourceName(Pipeline pipeline, String namespace, String name,
                                                               boolean notExistReturnNull) {
-        for (DataMediaPair pair : pipeline.getPairs()) {
-            if (isMatch(pair.getSource(), namespace, name)) {
-                return pair;
-            }
+        DataMediaPair pair = getIndex(pipeline).findDataMediaPairBySourceName(namespace, name);
+        if (pair != null) {
+            return pair;
         }
 
         if (notExistReturnNull) {
@@ -135,16 +132,7 @@ public class ConfigHelper {
      */
     public static List<DataMediaPair> findDataMediaPairByMediaId(Pipeline pipeline, Long tid) {
         Assert.notNull(pipeline);
-        List<DataMediaPair> pairs = new ArrayList<DataMediaPair>();
-        for (DataMediaPair pair : pipeline.getPairs()) {
-            if (pair.getSource().getId().equals(tid)) {
-                pairs.add(pair);
-            } else if (pair.getTarget().getId().equals(tid)) {
-                pairs.add(pair);
-            }
-        }
-
-        return pairs;
+        return getIndex(pipeline).findDataMediaPairByMediaId(tid);
     }
 
     /**
@@ -152,10 +140,9 @@ public class ConfigHelper {
      */
     public static DataMediaPair findDataMediaPair(Pipeline pipeline, Long pairId) {
         Assert.notNull(pipeline);
-        for (DataMediaPair pair : pipeline.getPairs()) {
-            if (pair.getId().equals(pairId)) {
-                return pair;
-            }
+        DataMediaPair pair = getIndex(pipeline).findDataMediaPair(pairId);
+        if (pair != null) {
+            return pair;
         }
 
         throw new ConfigException("no such DataMediaPair , the pairId = " + pairId);
@@ -254,9 +241,33 @@ public class ConfigHelper {
         }
     }
 
+    /**
+     * pipeline配置发生变化后，清理对应的pair索引
+     */
+    public static void invalidateIndex(Long pipelineId) {
+        if (pipelineId != null) {
+            indexes.remove(pipelineId);
+        }
+    }
+
     // ===================== helper method ================
 
-    private static boolean isMatch(DataMedia dataMedia, String namespace, String name) {
+    /**
+     * 获取pipeline对应的pair索引，pipeline对象或者pair列表发生变化时重新构建
+     */
+    private static DataMediaPairIndex getIndex(Pipeline pipeline) {
+        DataMediaPairIndex index = pipeline.getId() == null ? null : indexes.get(pipeline.getId());
+        if (index == null || !index.isValid(pipeline)) {
+            index = new DataMediaPairIndex(pipeline);
+            if (pipeline.getId() != null) {
+                indexes.put(pipeline.getId(), index);
+            }
+        }
+
+        return index;
+    }
+
+    static boolean isMatch(DataMedia dataMedia, String namespace, String name) {
         boolean isMatch = true;
         if (StringUtils.isEmpty(namespace)) {
             isMatch &= StringUtils.isEmpty(dataMedia.getNamespace());
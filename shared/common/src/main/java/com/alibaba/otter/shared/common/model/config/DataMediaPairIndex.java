@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.shared.common.model.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.alibaba.otter.shared.common.model.config.data.DataMedia;
+import com.alibaba.otter.shared.common.model.config.data.DataMedia.ModeValue;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaPair;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaSource;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
+
+/**
+ * <pre>
+ * pipeline下DataMediaPair的查询索引，构建后不再变化
+ *
+ * 1. 按DataMedia id/pairId建立hash索引
+ * 2. 源端name为SINGLE/MULTI模式的，按name(忽略大小写)建立精确索引，WILDCARD模式的单独保存，查询时按pair的定义顺序合并比较
+ * 3. 按namespace+name记录查询结果，同一张表只需要匹配一次
+ * </pre>
+ *
+ * @author jianghang
+ */
+class DataMediaPairIndex {
+
+    private static final int                                MAX_CACHE_SIZE = 10000;                                                     // 查询结果的最大缓存数
+    private static final int                                NOT_FOUND      = -1;
+    private final Pipeline                                  pipeline;
+    private final List<DataMediaPair>                       pairs;
+    private final int                                       size;
+    private Map<Long, DataMedia<? extends DataMediaSource>> medias         = new HashMap<Long, DataMedia<? extends DataMediaSource>>();
+    private Map<Long, List<DataMediaPair>>                  mediaPairs     = new HashMap<Long, List<DataMediaPair>>();
+    private Map<Long, DataMediaPair>                        idPairs        = new HashMap<Long, DataMediaPair>();
+    private Map<String, List<Integer>>                      namePositions  = new HashMap<String, List<Integer>>();                     // 精确匹配的name -> pair下标
+    private List<Integer>                                   wildcards      = new ArrayList<Integer>();                                 // name为通配符的pair下标
+    private Map<String, Integer>                            sourceCache    = new ConcurrentHashMap<String, Integer>();
+
+    public DataMediaPairIndex(Pipeline pipeline){
+        this.pipeline = pipeline;
+        this.pairs = pipeline.getPairs();
+        this.size = pairs.size();
+
+        for (int i = 0; i < size; i++) {
+            DataMediaPair pair = pairs.get(i);
+            DataMedia<? extends DataMediaSource> source = pair.getSource();
+            DataMedia<? extends DataMediaSource> target = pair.getTarget();
+            // 按pair顺序，先source后target，和遍历查找的结果保持一致
+            putMedia(source);
+            putMedia(target);
+
+            addMediaPair(source.getId(), pair);
+            if (target.getId() != null && !target.getId().equals(source.getId())) {
+                addMediaPair(target.getId(), pair);
+            }
+
+            if (pair.getId() != null && !idPairs.containsKey(pair.getId())) {
+                idPairs.put(pair.getId(), pair);
+            }
+
+            if (StringUtils.isEmpty(source.getName())) {
+                addNamePosition(StringUtils.EMPTY, i);
+            } else {
+                ModeValue nameMode = source.getNameMode();
+                if (nameMode.getMode().isSingle()) {
+                    addNamePosition(source.getName(), i);
+                } else if (nameMode.getMode().isMulti()) {
+                    for (String value : nameMode.getMultiValue()) {
+                        addNamePosition(value, i);
+                    }
+                } else {
+                    wildcards.add(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * 当前索引是否对应pipeline当前的pair定义
+     */
+    public boolean isValid(Pipeline pipeline) {
+        return this.pipeline == pipeline && this.pairs == pipeline.getPairs() && this.size == pairs.size();
+    }
+
+    public DataMedia<? extends DataMediaSource> findDataMedia(Long id) {
+        return medias.get(id);
+    }
+
+    public List<DataMediaPair> findDataMediaPairByMediaId(Long id) {
+        List<DataMediaPair> result = mediaPairs.get(id);
+        return result == null ? new ArrayList<DataMediaPair>() : new ArrayList<DataMediaPair>(result);
+    }
+
+    public DataMediaPair findDataMediaPair(Long pairId) {
+        return idPairs.get(pairId);
+    }
+
+    /**
+     * 根据源端的namespace/name查找第一个匹配的pair，不存在返回null
+     */
+    public DataMediaPair findDataMediaPairBySourceName(String namespace, String name) {
+        String key = StringUtils.defaultString(namespace) + '\u0001' + StringUtils.defaultString(name);
+        Integer position = sourceCache.get(key);
+        if (position == null) {
+            position = matchSourceName(namespace, name);
+            if (sourceCache.size() < MAX_CACHE_SIZE) {
+                sourceCache.put(key, position);
+            }
+        }
+
+        return position.intValue() == NOT_FOUND ? null : pairs.get(position);
+    }
+
+    private int matchSourceName(String namespace, String name) {
+        List<Integer> exacts = namePositions.get(normalize(StringUtils.defaultString(name)));
+        if (exacts == null) {
+            exacts = Collections.emptyList();
+        }
+
+        // 精确索引和通配符都按pair下标有序，归并比较保证返回定义顺序上的第一个
+        int i = 0, j = 0;
+        while (i < exacts.size() || j < wildcards.size()) {
+            int position;
+            if (j >= wildcards.size() || (i < exacts.size() && exacts.get(i) < wildcards.get(j))) {
+                position = exacts.get(i++);
+            } else {
+                position = wildcards.get(j++);
+            }
+
+            if (ConfigHelper.isMatch(pairs.get(position).getSource(), namespace, name)) {
+                return position;
+            }
+        }
+
+        return NOT_FOUND;
+    }
+
+    private void putMedia(DataMedia<? extends DataMediaSource> media) {
+        if (media.getId() != null && !medias.containsKey(media.getId())) {
+            medias.put(media.getId(), media);
+        }
+    }
+
+    private void addMediaPair(Long id, DataMediaPair pair) {
+        if (id == null) {
+            return;
+        }
+
+        List<DataMediaPair> list = mediaPairs.get(id);
+        if (list == null) {
+            list = new ArrayList<DataMediaPair>();
+            mediaPairs.put(id, list);
+        }
+        list.add(pair);
+    }
+
+    private void addNamePosition(String name, int position) {
+        String key = normalize(name);
+        List<Integer> positions = namePositions.get(key);
+        if (positions == null) {
+            positions = new ArrayList<Integer>();
+            namePositions.put(key, positions);
+        }
+
+        // 同一个pair的multi值可能重复，下标保持有序且唯一
+        if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+            positions.add(position);
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase();
+    }
+}
@@ -71,6 +71,22 @@ public class PipelineParameter implements Serializable {
     private Boolean               useTableTransform          = false;                       // 是否启用转化机制，比如类型不同，默认为true，兼容老逻辑
     private Boolean               enableCompatibleMissColumn = true;                        // 是否启用兼容字段不匹配处理
     private Boolean               skipNoRow                  = false;                       // 跳过反查没记录的情况
+    private Boolean               useBatchExtract            = false;                       // 是否启用按表批量反查
+    private Boolean               useMultiValues             = false;                       // 是否启用mysql多值insert合并(insert
+                                                                                             // ... values(..),(..) on
+                                                                                             // duplicate key update)
+    private Boolean               useDependencyLoad          = false;                       // 是否启用基于主键依赖的并行load，不再区分delete/insert阶段
+    private Boolean               useColumnarBatch           = false;                       // 是否启用列式的http pipe数据文件格式
+    private Boolean               useStreamDownload          = false;                       // 是否启用http pipe流式下载解析，不落地文件
+    private Boolean               useOffHeapMemoryPipe       = false;                       // 是否启用堆外内存的memory pipe，同机传输不依赖软引用
+    private Boolean               useConcurrentMemoryArbitrate = false;                     // 是否启用无锁的memory仲裁器调度
+    private Boolean               useStreamingArchive        = false;                       // 是否启用附件并行压缩流式打包，不落地临时文件
+    private Boolean               useSharedDataSource        = false;                       // 是否启用跨pipeline共享的数据库连接池，相同url/user共用一个池
+    private Boolean               useTableMetaPreload        = false;                       // 是否在pipeline启动时批量预加载映射表的table meta
+    private Boolean               useParallelTransform       = false;                       // 是否按表拆分后并行进行transform
+    private Boolean               useAdaptiveLoad            = false;                       // 是否按目标表自适应调整load并发数
+    private Boolean               useContinuousLoad          = false;                       // 是否允许连续批次的load按表交叠执行
+    private Boolean               useRpcPushPipe             = false;                       // 是否启用rpc pipe主动推送数据到目标节点
     private String                channelInfo;                                              // 同步标记，设置该标记后会在retl_mark中记录，在messageParse时进行check，相同则忽略
     private Boolean               dryRun                     = false;                       // 是否启用dry
                                                                                              // run模型，只记录load日志，不同步数据
@@ -208,7 +224,9 @@ public class PipelineParameter implements Serializable {
         /** RPC */
         RPC,
         /** HTTP */
-        HTTP;
+        HTTP,
+        /** 根据实际传输耗时自适应选择RPC/HTTP */
+        ADAPTIVE;
 
         public boolean isAutomatic() {
             return this.equals(PipeChooseMode.AUTOMATIC);
@@ -221,6 +239,10 @@ public class PipelineParameter implements Serializable {
         public boolean isHttp() {
             return this.equals(PipeChooseMode.HTTP);
         }
+
+        public boolean isAdaptive() {
+            return this.equals(PipeChooseMode.ADAPTIVE);
+        }
     }
 
     public static enum SelectorMode {
@@ -454,6 +476,118 @@ public class PipelineParameter implements Serializable {
         this.skipNoRow = skipNoRow;
     }
 
+    public Boolean getUseBatchExtract() {
+        return useBatchExtract == null ? false : useBatchExtract;
+    }
+
+    public void setUseBatchExtract(Boolean useBatchExtract) {
+        this.useBatchExtract = useBatchExtract;
+    }
+
+    public Boolean getUseMultiValues() {
+        return useMultiValues == null ? false : useMultiValues;
+    }
+
+    public void setUseMultiValues(Boolean useMultiValues) {
+        this.useMultiValues = useMultiValues;
+    }
+
+    public Boolean getUseDependencyLoad() {
+        return useDependencyLoad == null ? false : useDependencyLoad;
+    }
+
+    public void setUseDependencyLoad(Boolean useDependencyLoad) {
+        this.useDependencyLoad = useDependencyLoad;
+    }
+
+    public Boolean getUseColumnarBatch() {
+        return useColumnarBatch == null ? false : useColumnarBatch;
+    }
+
+    public void setUseColumnarBatch(Boolean useColumnarBatch) {
+        this.useColumnarBatch = useColumnarBatch;
+    }
+
+    public Boolean getUseStreamDownload() {
+        return useStreamDownload == null ? false : useStreamDownload;
+    }
+
+    public void setUseStreamDownload(Boolean useStreamDownload) {
+        this.useStreamDownload = useStreamDownload;
+    }
+
+    public Boolean getUseOffHeapMemoryPipe() {
+        return useOffHeapMemoryPipe == null ? false : useOffHeapMemoryPipe;
+    }
+
+    public void setUseOffHeapMemoryPipe(Boolean useOffHeapMemoryPipe) {
+        this.useOffHeapMemoryPipe = useOffHeapMemoryPipe;
+    }
+
+    public Boolean getUseConcurrentMemoryArbitrate() {
+        return useConcurrentMemoryArbitrate == null ? false : useConcurrentMemoryArbitrate;
+    }
+
+    public void setUseConcurrentMemoryArbitrate(Boolean useConcurrentMemoryArbitrate) {
+        this.useConcurrentMemoryArbitrate = useConcurrentMemoryArbitrate;
+    }
+
+    public Boolean getUseStreamingArchive() {
+        return useStreamingArchive == null ? false : useStreamingArchive;
+    }
+
+    public void setUseStreamingArchive(Boolean useStreamingArchive) {
+        this.useStreamingArchive = useStreamingArchive;
+    }
+
+    public Boolean getUseSharedDataSource() {
+        return useSharedDataSource == null ? false : useSharedDataSource;
+    }
+
+    public void setUseSharedDataSource(Boolean useSharedDataSource) {
+        this.useSharedDataSource = useSharedDataSource;
+    }
+
+    public Boolean getUseTableMetaPreload() {
+        return useTableMetaPreload == null ? false : useTableMetaPreload;
+    }
+
+    public void setUseTableMetaPreload(Boolean useTableMetaPreload) {
+        this.useTableMetaPreload = useTableMetaPreload;
+    }
+
+    public Boolean getUseParallelTransform() {
+        return useParallelTransform == null ? false : useParallelTransform;
+    }
+
+    public void setUseParallelTransform(Boolean useParallelTransform) {
+        this.useParallelTransform = useParallelTransform;
+    }
+
+    public Boolean getUseAdaptiveLoad() {
+        return useAdaptiveLoad == null ? false : useAdaptiveLoad;
+    }
+
+    public void setUseAdaptiveLoad(Boolean useAdaptiveLoad) {
+        this.useAdaptiveLoad = useAdaptiveLoad;
+    }
+
+    public Boolean getUseContinuousLoad() {
+        return useContinuousLoad == null ? false : useContinuousLoad;
+    }
+
+    public void setUseContinuousLoad(Boolean useContinuousLoad) {
+        this.useContinuousLoad = useContinuousLoad;
+    }
+
+    public Boolean getUseRpcPushPipe() {
+        return useRpcPushPipe == null ? false : useRpcPushPipe;
+    }
+
+    public void setUseRpcPushPipe(Boolean useRpcPushPipe) {
+        this.useRpcPushPipe = useRpcPushPipe;
+    }
+
     public Boolean getEnableCompatibleMissColumn() {
         return enableCompatibleMissColumn == null ? true : enableCompatibleMissColumn;
     }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.common.model.statistics.datasource;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import com.alibaba.otter.shared.common.utils.OtterToStringStyle;
+
+/**
+ * 共享数据库连接池中单个pipeline的使用统计
+ * 
+ * @author jianghang
+ */
+public class DataSourceStat implements Serializable {
+
+    private static final long serialVersionUID = 4781203385612089517L;
+    private Long              pipelineId;                              // 同步任务组
+    private Long              nid;                                     // 上报统计的node节点
+    private String            url;                                     // 数据库连接地址
+    private String            username;                                // 数据库用户名
+    private Integer           maxActive;                               // 共享连接池的最大连接数
+    private Integer           quota;                                   // 当前pipeline的公平份额
+    private Integer           poolActive;                              // 连接池中正在使用的连接数
+    private Integer           poolIdle;                                // 连接池中空闲的连接数
+    private Integer           pipelineActive;                          // 当前pipeline正在使用的连接数
+    private Long              borrowCount;                             // 统计周期内获取连接的次数
+    private Long              waitCount;                               // 统计周期内因为超过份额而等待的次数
+    private Long              waitTime;                                // 统计周期内获取连接的总等待时间，单位ms
+    private Long              maxWaitTime;                             // 统计周期内获取连接的最大等待时间，单位ms
+    private Date              startTime;                               // 统计开始时间
+    private Date              endTime;                                 // 统计结束时间
+
+    public Long getPipelineId() {
+        return pipelineId;
+    }
+
+    public void setPipelineId(Long pipelineId) {
+        this.pipelineId = pipelineId;
+    }
+
+    public Long getNid() {
+        return nid;
+    }
+
+    public void setNid(Long nid) {
+        this.nid = nid;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Integer getMaxActive() {
+        return maxActive;
+    }
+
+    public void setMaxActive(Integer maxActive) {
+        this.maxActive = maxActive;
+    }
+
+    public Integer getQuota() {
+        return quota;
+    }
+
+    public void setQuota(Integer quota) {
+        this.quota = quota;
+    }
+
+    public Integer getPoolActive() {
+        return poolActive;
+    }
+
+    public void setPoolActive(Integer poolActive) {
+        this.poolActive = poolActive;
+    }
+
+    public Integer getPoolIdle() {
+        return poolIdle;
+    }
+
+    public void setPoolIdle(Integer poolIdle) {
+        this.poolIdle = poolIdle;
+    }
+
+    public Integer getPipelineActive() {
+        return pipelineActive;
+    }
+
+    public void setPipelineActive(Integer pipelineActive) {
+        this.pipelineActive = pipelineActive;
+    }
+
+    public Long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public void setBorrowCount(Long borrowCount) {
+        this.borrowCount = borrowCount;
+    }
+
+    public Long getWaitCount() {
+        return waitCount;
+    }
+
+    public void setWaitCount(Long waitCount) {
+        this.waitCount = waitCount;
+    }
+
+    public Long getWaitTime() {
+        return waitTime;
+    }
+
+    public void setWaitTime(Long waitTime) {
+        this.waitTime = waitTime;
+    }
+
+    public Long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public void setMaxWaitTime(Long maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Date startTime) {
+        this.startTime = startTime;
+    }
+
+    public Date getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(Date endTime) {
+        this.endTime = endTime;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, OtterToStringStyle.DEFAULT_STYLE);
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.common.model.statistics.pipe;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import com.alibaba.otter.shared.common.utils.OtterToStringStyle;
+
+/**
+ * 自适应rpc/http选择的统计，按pipeline + 接收节点区分
+ * 
+ * @author jianghang
+ */
+public class PipeChooseStat implements Serializable {
+
+    private static final long serialVersionUID = -5318736480871263950L;
+    private Long              pipelineId;                              // 同步任务组
+    private Long              nid;                                     // 上报统计的node节点，即发送数据的节点
+    private Long              targetNid;                               // 接收数据的node节点
+    private Long              rpcCount;                                // 统计周期内选择rpc的批次数
+    private Long              httpCount;                               // 统计周期内选择http的批次数
+    private Long              probeCount;                              // 统计周期内的探测次数
+    private Double            rpcLatency;                              // rpc预估的固定耗时(put+get)，单位ms
+    private Double            rpcCostPerKB;                            // rpc预估的每KB耗时(put+get)，单位ms
+    private Double            httpLatency;                             // http预估的固定耗时(put+get)，单位ms
+    private Double            httpCostPerKB;                           // http预估的每KB耗时(put+get)，单位ms
+    private Date              startTime;                               // 统计开始时间
+    private Date              endTime;                                 // 统计结束时间
+
+    public Long getPipelineId() {
+        return pipelineId;
+    }
+
+    public void setPipelineId(Long pipelineId) {
+        this.pipelineId = pipelineId;
+    }
+
+    public Long getNid() {
+        return nid;
+    }
+
+    public void setNid(Long nid) {
+        this.nid = nid;
+    }
+
+    public Long getTargetNid() {
+        return targetNid;
+    }
+
+    public void setTargetNid(Long targetNid) {
+        this.targetNid = targetNid;
+    }
+
+    public Long getRpcCount() {
+        return rpcCount;
+    }
+
+    public void setRpcCount(Long rpcCount) {
+        this.rpcCount = rpcCount;
+    }
+
+    public Long getHttpCount() {
+        return httpCount;
+    }
+
+    public void setHttpCount(Long httpCount) {
+        this.httpCount = httpCount;
+    }
+
+    public Long getProbeCount() {
+        return probeCount;
+    }
+
+    public void setProbeCount(Long probeCount) {
+        this.probeCount = probeCount;
+    }
+
+    public Double getRpcLatency() {
+        return rpcLatency;
+    }
+
+    public void setRpcLatency(Double rpcLatency) {
+        this.rpcLatency = rpcLatency;
+    }
+
+    public Double getRpcCostPerKB() {
+        return rpcCostPerKB;
+    }
+
+    public void setRpcCostPerKB(Double rpcCostPerKB) {
+        this.rpcCostPerKB = rpcCostPerKB;
+    }
+
+    public Double getHttpLatency() {
+        return httpLatency;
+    }
+
+    public void setHttpLatency(Double httpLatency) {
+        this.httpLatency = httpLatency;
+    }
+
+    public Double getHttpCostPerKB() {
+        return httpCostPerKB;
+    }
+
+    public void setHttpCostPerKB(Double httpCostPerKB) {
+        this.httpCostPerKB = httpCostPerKB;
+    }
+
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Date startTime) {
+        this.startTime = startTime;
+    }
+
+    public Date getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(Date endTime) {
+        this.endTime = endTime;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, OtterToStringStyle.DEFAULT_STYLE);
+    }
+
+}
@@ -16,6 +16,10 @@
 
 package com.alibaba.otter.shared.common.config;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.oro.text.regex.MalformedPatternException;
 import org.apache.oro.text.regex.Pattern;
 import org.apache.oro.text.regex.PatternCompiler;
@@ -27,7 +31,10 @@ import org.testng.annotations.Test;
 import com.alibaba.otter.shared.common.BaseOtterTest;
 import com.alibaba.otter.shared.common.model.config.ConfigException;
 import com.alibaba.otter.shared.common.model.config.ConfigHelper;
+import com.alibaba.otter.shared.common.model.config.data.DataMedia;
 import com.alibaba.otter.shared.common.model.config.data.DataMedia.ModeValue;
+import com.alibaba.otter.shared.common.model.config.data.DataMediaPair;
+import com.alibaba.otter.shared.common.model.config.pipeline.Pipeline;
 
 public class ConfigHelperTest extends BaseOtterTest {
 
@@ -75,4 +82,55 @@ public class ConfigHelperTest extends BaseOtterTest {
         boolean ismatch = matcher.matches("havana_us_0001", pattern);
         System.out.println(ismatch);
     }
+
+    @Test
+    public void testFindPair() {
+        DataMediaPair p1 = buildPair(1L, "offer", "offer[1-4]");
+        DataMediaPair p2 = buildPair(2L, "offer", "offer_.*");
+        DataMediaPair p3 = buildPair(3L, "offer", "offer_detail");
+        DataMediaPair p4 = buildPair(4L, "member", "offer2");
+        Pipeline pipeline = new Pipeline();
+        pipeline.setId(1L);
+        pipeline.setPairs(new ArrayList<DataMediaPair>(Arrays.asList(p1, p2, p3, p4)));
+
+        // 按pair的定义顺序返回第一个匹配
+        want.object(ConfigHelper.findDataMediaPairBySourceName(pipeline, "offer", "OFFER2")).isEqualTo(p1);
+        want.object(ConfigHelper.findDataMediaPairBySourceName(pipeline, "offer", "offer_detail")).isEqualTo(p2);
+        want.object(ConfigHelper.findDataMediaPairBySourceName(pipeline, "member", "offer2")).isEqualTo(p4);
+        want.object(ConfigHelper.findDataMediaPairBySourceName(pipeline, "offer", "offer5", true)).isNull();
+        want.object(ConfigHelper.findSourceDataMedia(pipeline, "offer", "offer_1")).isEqualTo(p2.getSource());
+
+        want.object(ConfigHelper.findDataMediaPair(pipeline, 3L)).isEqualTo(p3);
+        want.object(ConfigHelper.findDataMedia(pipeline, 4L)).isEqualTo(p4.getSource());
+        want.object(ConfigHelper.findDataMedia(pipeline, 1004L)).isEqualTo(p4.getTarget());
+        List<DataMediaPair> pairs = ConfigHelper.findDataMediaPairByMediaId(pipeline, 2L);
+        want.collection(pairs).sizeEq(1);
+
+        // pair变化后索引重新构建
+        pipeline.setPairs(new ArrayList<DataMediaPair>(Arrays.asList(p3, p4)));
+        want.object(ConfigHelper.findDataMediaPairBySourceName(pipeline, "offer", "offer_detail")).isEqualTo(p3);
+        want.object(ConfigHelper.findDataMediaPairBySourceName(pipeline, "offer", "offer2", true)).isNull();
+        try {
+            ConfigHelper.findDataMediaPair(pipeline, 1L);
+            want.fail();
+        } catch (ConfigException e) {
+        }
+    }
+
+    private DataMediaPair buildPair(Long id, String namespace, String name) {
+        DataMedia source = new DataMedia();
+        source.setId(id);
+        source.setNamespace(namespace);
+        source.setName(name);
+        DataMedia target = new DataMedia();
+        target.setId(1000 + id);
+        target.setNamespace(namespace);
+        target.setName(name);
+
+        DataMediaPair pair = new DataMediaPair();
+        pair.setId(id);
+        pair.setSource(source);
+        pair.setTarget(target);
+        return pair;
+    }
 }
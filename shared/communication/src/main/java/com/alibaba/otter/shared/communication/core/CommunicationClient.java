@@ -16,8 +16,11 @@
 
 package com.alibaba.otter.shared.communication.core;
 
+import java.util.List;
+
 import com.alibaba.otter.shared.communication.core.model.Callback;
 import com.alibaba.otter.shared.communication.core.model.Event;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * 通讯服务类
@@ -56,6 +59,18 @@ public interface CommunicationClient {
      */
     public void call(final String addr, Event event, final Callback callback);
 
+    /**
+     * 指定对应的地址，进行异步event调用，不占用调用线程，结果通过future获取. 地址格式为：127.0.0.1:1099
+     * 
+     * <pre>
+     * 同一个地址允许同时存在多个未返回的请求，失败后自动延迟重试
+     * </pre>
+     * 
+     * @param addr
+     * @param event
+     */
+    public ListenableFuture<Object> callAsync(final String addr, final Event event);
+
     /**
      * 指定对应的地址列表，进行event调用. 地址格式为：127.0.0.1:1099
      * 
@@ -76,4 +91,12 @@ public interface CommunicationClient {
      */
     public void call(final String[] serveraddrs, final Event event, final Callback callback);
 
+    /**
+     * 指定对应的地址列表，进行异步event调用，任意一个地址失败则整体失败. 地址格式为：127.0.0.1:1099
+     * 
+     * @param addrs
+     * @param event
+     */
+    public ListenableFuture<List<Object>> callAsync(final String[] addrs, final Event event);
+
 }
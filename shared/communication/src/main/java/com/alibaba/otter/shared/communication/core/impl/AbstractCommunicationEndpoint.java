@@ -28,6 +28,9 @@ import com.alibaba.otter.shared.communication.core.CommunicationRegistry;
 import com.alibaba.otter.shared.communication.core.exception.CommunicationException;
 import com.alibaba.otter.shared.communication.core.model.Event;
 import com.alibaba.otter.shared.communication.core.model.heart.HeartEvent;
+import com.alibaba.otter.shared.communication.core.serialize.CompactEvent;
+import com.alibaba.otter.shared.communication.core.serialize.CompactSerializer;
+import com.alibaba.otter.shared.communication.core.serialize.NegotiateEvent;
 
 /**
  * 默认的endpoint实现
@@ -53,6 +56,17 @@ public abstract class AbstractCommunicationEndpoint implements CommunicationEndp
             return event;
         }
 
+        if (event instanceof NegotiateEvent) {
+            // 序列化方式的协商请求，返回本地支持的codec
+            return CompactSerializer.negotiate();
+        }
+
+        if (event instanceof CompactEvent) {
+            // 紧凑编码的请求，还原后处理，返回结果按请求方支持的codec进行编码
+            CompactEvent compact = (CompactEvent) event;
+            return CompactSerializer.wrapResult(acceptEvent(CompactSerializer.unwrap(compact)), compact.getAccepts());
+        }
+
         try {
             Object action = CommunicationRegistry.getAction(event.getType());
             if (action != null) {
@@ -19,14 +19,20 @@ package com.alibaba.otter.shared.communication.core.impl;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -38,11 +44,23 @@ import org.springframework.util.Assert;
 import com.alibaba.otter.shared.common.utils.thread.NamedThreadFactory;
 import com.alibaba.otter.shared.communication.core.CommunicationClient;
 import com.alibaba.otter.shared.communication.core.exception.CommunicationException;
+import com.alibaba.otter.shared.communication.core.impl.connection.AsyncCommunicationConnection;
 import com.alibaba.otter.shared.communication.core.impl.connection.CommunicationConnection;
 import com.alibaba.otter.shared.communication.core.impl.connection.CommunicationConnectionFactory;
 import com.alibaba.otter.shared.communication.core.model.Callback;
 import com.alibaba.otter.shared.communication.core.model.CommunicationParam;
+import com.alibaba.otter.shared.communication.core.model.CommunicationParam.SerializationMethod;
 import com.alibaba.otter.shared.communication.core.model.Event;
+import com.alibaba.otter.shared.communication.core.model.heart.HeartEvent;
+import com.alibaba.otter.shared.communication.core.serialize.CompactSerializer;
+import com.alibaba.otter.shared.communication.core.serialize.NegotiateEvent;
+import com.google.common.base.Function;
+import com.google.common.collect.OtterMigrateMap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.SettableFuture;
 
 /**
  * 通讯交互的client的默认实现实现
@@ -51,14 +69,22 @@ import com.alibaba.otter.shared.communication.core.model.Event;
  */
 public class DefaultCommunicationClientImpl implements CommunicationClient {
 
-    private static final Logger            logger     = LoggerFactory.getLogger(DefaultCommunicationClientImpl.class);
-
-    private CommunicationConnectionFactory factory    = null;
-    private int                            poolSize   = 10;
-    private ExecutorService                executor   = null;
-    private int                            retry      = 3;
-    private int                            retryDelay = 1000;
-    private boolean                        discard    = false;
+    private static final Logger                      logger            = LoggerFactory.getLogger(DefaultCommunicationClientImpl.class);
+
+    private CommunicationConnectionFactory           factory           = null;
+    private int                                      poolSize          = 10;
+    private ExecutorService                          executor          = null;
+    private int                                      retry             = 3;
+    private int                                      retryDelay        = 1000;
+    private boolean                                  discard           = false;
+    private SerializationMethod                      serialization     = SerializationMethod.JAVA;
+    private long                                     negotiateInterval = 5 * 60 * 1000L;                                             // 协商结果的有效期，过期后重新协商
+    private Map<CommunicationParam, NegotiateEvent>  negotiations      = new ConcurrentHashMap<CommunicationParam, NegotiateEvent>();
+    private Map<CommunicationParam, Long>            negotiating       = new ConcurrentHashMap<CommunicationParam, Long>();
+    private int                                      maxInflight       = 64;                                                         // 单个地址允许同时异步调用的请求数
+    private int                                      maxPending        = 10 * 1000;                                                  // 单个地址允许排队的请求数，超过后按照discard策略处理
+    private ScheduledExecutorService                 scheduler         = null;                                                       // 异步调用的重试调度
+    private Map<String, Destination>                 destinations      = null;
 
     public DefaultCommunicationClientImpl(){
     }
@@ -70,7 +96,15 @@ public class DefaultCommunicationClientImpl implements CommunicationClient {
     public void initial() {
         RejectedExecutionHandler handler = null;
         if (discard) {
-            handler = new ThreadPoolExecutor.DiscardPolicy();
+            handler = new ThreadPoolExecutor.DiscardPolicy() {
+
+                public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+                    // 丢弃的任务如果有对应的future，需要通知等待方，避免一直等待
+                    if (r instanceof Future) {
+                        ((Future<?>) r).cancel(false);
+                    }
+                }
+            };
         } else {
             handler = new ThreadPoolExecutor.AbortPolicy();
         }
@@ -78,10 +112,18 @@ public class DefaultCommunicationClientImpl implements CommunicationClient {
         executor = new ThreadPoolExecutor(poolSize, poolSize, 60 * 1000L, TimeUnit.MILLISECONDS,
                                           new LinkedBlockingQueue<Runnable>(10 * 1000),
                                           new NamedThreadFactory("communication-async"), handler);
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("communication-schedule"));
+        destinations = OtterMigrateMap.makeComputingMap(new Function<String, Destination>() {
+
+            public Destination apply(String addr) {
+                return new Destination();
+            }
+        });
     }
 
     public void destory() {
         executor.shutdown();
+        scheduler.shutdownNow();
     }
 
     public Object call(final String addr, final Event event) {
@@ -93,8 +135,9 @@ public class DefaultCommunicationClientImpl implements CommunicationClient {
         while (count++ < retry) {
             try {
                 connection = factory.createConnection(params);
-                return connection.call(event);
+                return invoke(connection, event);
             } catch (Exception e) {
+                negotiations.remove(params); // 对方可能发生了升级/降级，重新协商
                 logger.error(String.format("call[%s] , retry[%s]", addr, count), e);
                 try {
                     Thread.sleep(count * retryDelay);
@@ -115,95 +158,71 @@ public class DefaultCommunicationClientImpl implements CommunicationClient {
 
     public void call(final String addr, final Event event, final Callback callback) {
         Assert.notNull(this.factory, "No factory specified");
-        submit(new Runnable() {
+        addCallback(callAsync(addr, event), callback);
+    }
 
-            @Override
-            public void run() {
-                Object obj = call(addr, event);
-                callback.call(obj);
-            }
-        });
+    public ListenableFuture<Object> callAsync(final String addr, final Event event) {
+        Assert.notNull(this.factory, "No factory specified");
+        SettableFuture<Object> future = SettableFuture.create();
+        new AsyncCall(addr, buildParams(addr), event, future).submit();
+        return future;
     }
 
     public Object call(final String[] addrs, final Event event) {
+        try {
+            return callAsync(addrs, event).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommunicationException("call addrs" + Arrays.toString(addrs) + " is interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CommunicationException) {
+                throw (CommunicationException) e.getCause();
+            }
+            throw new CommunicationException(e.getCause());
+        }
+    }
+
+    public void call(final String[] addrs, final Event event, final Callback callback) {
+        addCallback(callAsync(addrs, event), callback);
+    }
+
+    public ListenableFuture<List<Object>> callAsync(final String[] addrs, final Event event) {
         Assert.notNull(this.factory, "No factory specified");
         if (addrs == null || addrs.length == 0) {
             throw new IllegalArgumentException("addrs example: 127.0.0.1:1099");
         }
 
-        ExecutorCompletionService completionService = new ExecutorCompletionService(executor);
-        List<Future<Object>> futures = new ArrayList<Future<Object>>(addrs.length);
-        List result = new ArrayList(10);
-        for (final String addr : addrs) {
-            futures.add(completionService.submit((new Callable<Object>() {
-
-                @Override
-                public Object call() throws Exception {
-                    return DefaultCommunicationClientImpl.this.call(addr, event);
-                }
-            })));
+        // 各地址的请求同时发出，不再为每个地址占用一个线程
+        final List<ListenableFuture<Object>> futures = new ArrayList<ListenableFuture<Object>>(addrs.length);
+        for (String addr : addrs) {
+            futures.add(callAsync(addr, event));
         }
 
-        Exception ex = null;
-        int errorIndex = 0;
-        while (errorIndex < futures.size()) {
-            try {
-                Future future = completionService.take();// 它也可能被打断
-                future.get();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                ex = e;
-                break;
-            } catch (ExecutionException e) {
-                ex = e;
-                break;
-            }
+        final SettableFuture<List<Object>> result = SettableFuture.create();
+        Futures.addCallback(Futures.allAsList(futures), new FutureCallback<List<Object>>() {
 
-            errorIndex++;
-        }
-
-        if (errorIndex < futures.size()) {
-            for (int index = 0; index < futures.size(); index++) {
-                Future<Object> future = futures.get(index);
-                if (future.isDone() == false) {
-                    future.cancel(true);
-                }
-            }
-        } else {
-            for (int index = 0; index < futures.size(); index++) {
-                Future<Object> future = futures.get(index);
-                try {
-                    result.add(future.get());
-                } catch (InterruptedException e) {
-                    // ignore
-                    Thread.currentThread().interrupt();
-                } catch (ExecutionException e) {
-                    // ignore
-                }
+            public void onSuccess(List<Object> values) {
+                result.set(new ArrayList<Object>(values));
             }
-        }
 
-        if (ex != null) {
-            throw new CommunicationException(String.format("call addr[%s] error by %s", addrs[errorIndex],
-                                                           ex.getMessage()), ex);
-        } else {
-            return result;
-        }
-    }
-
-    public void call(final String[] addrs, final Event event, final Callback callback) {
-        Assert.notNull(this.factory, "No factory specified");
-        if (addrs == null || addrs.length == 0) {
-            throw new IllegalArgumentException("addrs example: 127.0.0.1:1099");
-        }
-        submit(new Runnable() {
+            public void onFailure(Throwable e) {
+                // 任意一个地址失败，取消其余的请求
+                String errorAddr = null;
+                for (int index = 0; index < futures.size(); index++) {
+                    Future<Object> future = futures.get(index);
+                    if (future.isDone() == false) {
+                        future.cancel(true);
+                    } else if (errorAddr == null && isFailed(future)) {
+                        errorAddr = addrs[index];
+                    }
+                }
 
-            @Override
-            public void run() {
-                Object obj = call(addrs, event);
-                callback.call(obj);
+                result.setException(new CommunicationException(String.format("call addr[%s] error by %s",
+                                                                              errorAddr,
+                                                                              e.getMessage()), e));
             }
         });
+        return result;
     }
 
     /**
@@ -224,6 +243,141 @@ public class DefaultCommunicationClientImpl implements CommunicationClient {
 
     // ===================== helper method ==================
 
+    private <T> void addCallback(ListenableFuture<T> future, final Callback callback) {
+        Futures.addCallback(future, new FutureCallback<T>() {
+
+            public void onSuccess(T result) {
+                callback.call(result);
+            }
+
+            public void onFailure(Throwable e) {
+                // 异步调用的失败已经记录过日志，和原先的行为保持一致，不回调callback
+            }
+        }, executor);
+    }
+
+    private boolean isFailed(Future<?> future) {
+        try {
+            future.get();
+            return false;
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    private Object invoke(CommunicationConnection connection, Event event) {
+        Object result = connection.call(encode(connection, event, true));
+        return CompactSerializer.unwrapResult(result);
+    }
+
+    private ListenableFuture<Object> invokeAsync(CommunicationParam params, final Event event) {
+        final CommunicationConnection connection = factory.createConnection(params);
+        if (connection instanceof AsyncCommunicationConnection) {
+            try {
+                Event request = encode(connection, event, false);
+                return Futures.transform(((AsyncCommunicationConnection) connection).asyncCall(request),
+                                         new Function<Object, Object>() {
+
+                                             public Object apply(Object result) {
+                                                 return CompactSerializer.unwrapResult(result);
+                                             }
+                                         });
+            } finally {
+                connection.close();
+            }
+        }
+
+        // 不支持异步的链接(比如rmi)，退化为在线程池中同步调用
+        ListenableFutureTask<Object> task = ListenableFutureTask.create(new Callable<Object>() {
+
+            public Object call() throws Exception {
+                try {
+                    return invoke(connection, event);
+                } finally {
+                    connection.close();
+                }
+            }
+        });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            connection.close();
+            throw e;
+        }
+
+        if (task.isCancelled()) {
+            connection.close(); // 被线程池丢弃，任务不会再执行
+        }
+        return task;
+    }
+
+    /**
+     * 根据协商结果选择是否使用紧凑编码，非阻塞模式下只使用已有的协商结果，没有则在后台发起协商
+     */
+    private Event encode(CommunicationConnection connection, Event event, boolean blocking) {
+        CommunicationParam params = connection.getParams();
+        if (!params.getSerialization().isCompact() || event instanceof HeartEvent) {
+            return event;
+        }
+
+        NegotiateEvent negotiate = blocking ? negotiate(connection) : negotiateAsync(params);
+        if (negotiate == null || !negotiate.isSupported()) {
+            return event;
+        }
+
+        return CompactSerializer.wrap(event, negotiate.getCodecs());
+    }
+
+    private NegotiateEvent negotiateAsync(final CommunicationParam params) {
+        NegotiateEvent negotiate = negotiations.get(params);
+        long now = System.currentTimeMillis();
+        if (negotiate == null || now - negotiate.getTimestamp() > negotiateInterval) {
+            // 线程池可能丢弃任务，超过有效期仍未完成的协商允许重新发起
+            Long start = negotiating.get(params);
+            if (start == null || now - start > negotiateInterval) {
+                negotiating.put(params, now);
+                executor.execute(new Runnable() {
+
+                    public void run() {
+                        CommunicationConnection connection = null;
+                        try {
+                            connection = factory.createConnection(params);
+                            negotiate(connection);
+                        } catch (Exception e) {
+                            logger.warn("negotiate[{}:{}] failed", params.getIp(), params.getPort());
+                        } finally {
+                            negotiating.remove(params);
+                            if (connection != null) {
+                                connection.close();
+                            }
+                        }
+                    }
+                });
+            }
+        }
+
+        return negotiate; // 过期的协商结果仍然可以使用，对方不支持时调用失败会触发重新协商
+    }
+
+    private NegotiateEvent negotiate(CommunicationConnection connection) {
+        CommunicationParam params = connection.getParams();
+        NegotiateEvent negotiate = negotiations.get(params);
+        if (negotiate == null || System.currentTimeMillis() - negotiate.getTimestamp() > negotiateInterval) {
+            try {
+                negotiate = (NegotiateEvent) connection.call(new NegotiateEvent());
+            } catch (Exception e) {
+                // 老版本的节点无法识别协商请求，退化为java序列化
+                logger.warn("negotiate[{}:{}] failed , use java serialization", params.getIp(), params.getPort());
+                negotiate = new NegotiateEvent();
+            }
+
+            negotiate.setTimestamp(System.currentTimeMillis());
+            negotiations.put(params, negotiate);
+        }
+
+        return negotiate;
+    }
+
     private CommunicationParam buildParams(String addr) {
         CommunicationParam params = new CommunicationParam();
         String[] strs = StringUtils.split(addr, ":");
@@ -238,9 +392,133 @@ public class DefaultCommunicationClientImpl implements CommunicationClient {
         }
         params.setIp(address.getHostAddress());
         params.setPort(Integer.valueOf(strs[1]));
+        params.setSerialization(serialization);
         return params;
     }
 
+    /**
+     * 一次异步调用，失败后通过scheduler延迟重试，不阻塞调用线程
+     */
+    private class AsyncCall implements Runnable {
+
+        private final String                 addr;
+        private final CommunicationParam     params;
+        private final Event                  event;
+        private final SettableFuture<Object> future;
+        private int                          count = 0;
+
+        public AsyncCall(String addr, CommunicationParam params, Event event, SettableFuture<Object> future){
+            this.addr = addr;
+            this.params = params;
+            this.event = event;
+            this.future = future;
+        }
+
+        public void submit() {
+            try {
+                destinations.get(addr).submit(this);
+            } catch (RejectedExecutionException e) {
+                if (count == 0 && !discard) {
+                    throw e; // 首次提交，和线程池的AbortPolicy保持一致直接抛给调用方
+                }
+
+                logger.error("call[{}] rejected , event[{}]!", addr, event.toString());
+                future.setException(new CommunicationException("call[" + addr + "] , Event[" + event.toString() + "]", e));
+            }
+        }
+
+        public void run() {
+            if (future.isCancelled()) {
+                destinations.get(addr).release();
+                return;
+            }
+
+            count++;
+            ListenableFuture<Object> result = null;
+            try {
+                result = invokeAsync(params, event);
+            } catch (Exception e) {
+                result = Futures.immediateFailedFuture(e);
+            }
+
+            Futures.addCallback(result, new FutureCallback<Object>() {
+
+                public void onSuccess(Object value) {
+                    destinations.get(addr).release();
+                    future.set(value);
+                }
+
+                public void onFailure(Throwable e) {
+                    destinations.get(addr).release();
+                    retry(e);
+                }
+            });
+        }
+
+        private void retry(Throwable e) {
+            negotiations.remove(params); // 对方可能发生了升级/降级，重新协商
+            logger.error(String.format("call[%s] , retry[%s]", addr, count), e);
+            if (count < retry && !future.isCancelled()) {
+                try {
+                    scheduler.schedule(new Runnable() {
+
+                        public void run() {
+                            submit();
+                        }
+                    }, count * retryDelay, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RejectedExecutionException ex) {
+                    // client已经关闭
+                }
+            }
+
+            logger.error("call[{}] failed , event[{}]!", addr, event.toString());
+            future.setException(new CommunicationException("call[" + addr + "] , Event[" + event.toString() + "]", e));
+        }
+    }
+
+    /**
+     * 单个目标地址的并发控制，超过maxInflight的请求排队，等待前面的请求返回后再发出，排队超过maxPending后拒绝
+     */
+    private class Destination {
+
+        private int                  inflight = 0;
+        private LinkedList<Runnable> pendings = new LinkedList<Runnable>();
+
+        public void submit(Runnable call) {
+            synchronized (this) {
+                if (inflight >= maxInflight) {
+                    if (pendings.size() >= maxPending) {
+                        throw new RejectedExecutionException("pending requests exceed " + maxPending);
+                    }
+                    pendings.add(call);
+                    return;
+                }
+                inflight++;
+            }
+
+            call.run();
+        }
+
+        public void release() {
+            final Runnable next;
+            synchronized (this) {
+                next = pendings.poll();
+                if (next == null) {
+                    inflight--;
+                    return;
+                }
+            }
+
+            // 名额直接转交给下一个排队的请求，在scheduler中发出，避免占用dubbo的回调线程
+            try {
+                scheduler.execute(next);
+            } catch (RejectedExecutionException e) {
+                next.run();
+            }
+        }
+    }
+
     // ============================= setter / getter ==========================
 
     public void setFactory(CommunicationConnectionFactory factory) {
@@ -267,4 +545,20 @@ public class DefaultCommunicationClientImpl implements CommunicationClient {
         this.discard = discard;
     }
 
+    public void setSerialization(String serialization) {
+        this.serialization = SerializationMethod.valueOf(StringUtils.upperCase(serialization));
+    }
+
+    public void setNegotiateInterval(long negotiateInterval) {
+        this.negotiateInterval = negotiateInterval;
+    }
+
+    public void setMaxInflight(int maxInflight) {
+        this.maxInflight = maxInflight;
+    }
+
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.core.impl.connection;
+
+import com.alibaba.otter.shared.communication.core.model.Event;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * 支持异步调用的通讯链接，同一个链接上允许同时存在多个未返回的请求
+ * 
+ * @author jianghang
+ */
+public interface AsyncCommunicationConnection extends CommunicationConnection {
+
+    /**
+     * 发送请求后立即返回，结果通过future获取，不占用调用线程
+     */
+    public ListenableFuture<Object> asyncCall(Event event);
+}
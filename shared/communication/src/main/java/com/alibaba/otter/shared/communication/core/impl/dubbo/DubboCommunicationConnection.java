@@ -16,17 +16,25 @@
 
 package com.alibaba.otter.shared.communication.core.impl.dubbo;
 
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.protocol.dubbo.FutureAdapter;
 import com.alibaba.otter.shared.communication.core.CommunicationEndpoint;
 import com.alibaba.otter.shared.communication.core.exception.CommunicationException;
-import com.alibaba.otter.shared.communication.core.impl.connection.CommunicationConnection;
+import com.alibaba.otter.shared.communication.core.impl.connection.AsyncCommunicationConnection;
 import com.alibaba.otter.shared.communication.core.model.CommunicationParam;
 import com.alibaba.otter.shared.communication.core.model.Event;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 /**
  * @author jianghang 2011-11-29 上午11:10:50
  * @version 4.0.0
  */
-public class DubboCommunicationConnection implements CommunicationConnection {
+public class DubboCommunicationConnection implements AsyncCommunicationConnection {
 
     private CommunicationEndpoint endpoint;
     private CommunicationParam    params;
@@ -45,6 +53,39 @@ public class DubboCommunicationConnection implements CommunicationConnection {
         return endpoint.acceptEvent(event);
     }
 
+    public ListenableFuture<Object> asyncCall(Event event) {
+        // 基于dubbo的异步调用，请求在同一个链接上按id复用，不需要等待上一个请求返回
+        final SettableFuture<Object> future = SettableFuture.create();
+        RpcContext context = RpcContext.getContext();
+        context.setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+        try {
+            endpoint.acceptEvent(event);
+            ResponseFuture responseFuture = ((FutureAdapter) context.getFuture()).getFuture();
+            responseFuture.setCallback(new ResponseCallback() {
+
+                public void done(Object response) {
+                    Result result = (Result) response;
+                    if (result.hasException()) {
+                        future.setException(result.getException());
+                    } else {
+                        future.set(result.getValue());
+                    }
+                }
+
+                public void caught(Throwable exception) {
+                    future.setException(exception);
+                }
+            });
+        } catch (Throwable e) {
+            future.setException(e);
+        } finally {
+            // 没有经过dubbo的filter链，需要自己清理一下上下文，避免影响当前线程后续的同步调用
+            context.removeAttachment(Constants.ASYNC_KEY);
+            context.setFuture(null);
+        }
+        return future;
+    }
+
     @Override
     public CommunicationParam getParams() {
         return params;
@@ -39,7 +39,7 @@ import com.google.common.collect.OtterMigrateMap;
  */
 public class DubboCommunicationConnectionFactory implements CommunicationConnectionFactory {
 
-    private final String                       DUBBO_SERVICE_URL = "dubbo://{0}:{1}/endpoint?client=netty&codec=dubbo&serialization=java&lazy=true&iothreads=4&threads=50&connections=30&acceptEvent.timeout=50000&payload={2}";
+    private final String                       DUBBO_SERVICE_URL = "dubbo://{0}:{1}/endpoint?client=netty&codec=dubbo&serialization={3}&lazy=true&iothreads=4&threads=50&connections=30&acceptEvent.timeout=50000&payload={2}";
 
     private DubboProtocol                      protocol          = DubboProtocol.getDubboProtocol();
     private ProxyFactory                       proxyFactory      = ExtensionLoader.getExtensionLoader(ProxyFactory.class)
@@ -47,6 +47,7 @@ public class DubboCommunicationConnectionFactory implements CommunicationConnect
 
     private Map<String, CommunicationEndpoint> connections       = null;
     private int                                payload           = Constants.DEFAULT_PAYLOAD;
+    private String                             serialization     = "java";            // dubbo传输层的序列化方式，需要和endpoint保持一致
 
     public DubboCommunicationConnectionFactory(){
         connections = OtterMigrateMap.makeComputingMap(new Function<String, CommunicationEndpoint>() {
@@ -63,7 +64,7 @@ public class DubboCommunicationConnectionFactory implements CommunicationConnect
         }
 
         // 构造对应的url， String.valueOf() 为避免数字包含千位符
-        String serviceUrl = MessageFormat.format(DUBBO_SERVICE_URL, params.getIp(), String.valueOf(params.getPort()), String.valueOf(payload));
+        String serviceUrl = MessageFormat.format(DUBBO_SERVICE_URL, params.getIp(), String.valueOf(params.getPort()), String.valueOf(payload), serialization);
         CommunicationEndpoint endpoint = connections.get(serviceUrl);
         return new DubboCommunicationConnection(params, endpoint);
 
@@ -79,4 +80,8 @@ public class DubboCommunicationConnectionFactory implements CommunicationConnect
         this.payload = payload;
     }
 
+    public void setSerialization(String serialization) {
+        this.serialization = serialization;
+    }
+
 }
@@ -35,13 +35,14 @@ import com.alibaba.otter.shared.communication.core.impl.AbstractCommunicationEnd
  */
 public class DubboCommunicationEndpoint extends AbstractCommunicationEndpoint {
 
-    private static final String             DUBBO_SERVICE_URL = "dubbo://127.0.0.1:{0}/endpoint?server=netty&codec=dubbo&serialization=java&heartbeat=5000&iothreads=4&threads=50&connections=30&payload={1}";
+    private static final String             DUBBO_SERVICE_URL = "dubbo://127.0.0.1:{0}/endpoint?server=netty&codec=dubbo&serialization={2}&heartbeat=5000&iothreads=4&threads=50&connections=30&payload={1}";
     private DubboProtocol                   protocol          = DubboProtocol.getDubboProtocol();
     private ProxyFactory                    proxyFactory      = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getExtension("javassist");
 
     private Exporter<CommunicationEndpoint> exporter          = null;
     private int                             port              = 2088;
     private int                             payload           = Constants.DEFAULT_PAYLOAD;
+    private String                          serialization     = "java";            // dubbo传输层的序列化方式，需要和client保持一致
 
     public DubboCommunicationEndpoint(){
 
@@ -54,7 +55,7 @@ public class DubboCommunicationEndpoint extends AbstractCommunicationEndpoint {
     @Override
     public void initial() {
         // 构造对应的url， String.valueOf() 为避免数字包含千位符
-        String url = MessageFormat.format(DUBBO_SERVICE_URL, String.valueOf(port), String.valueOf(payload));
+        String url = MessageFormat.format(DUBBO_SERVICE_URL, String.valueOf(port), String.valueOf(payload), serialization);
         exporter = protocol.export(proxyFactory.getInvoker(this, CommunicationEndpoint.class, URL.valueOf(url)));
     }
 
@@ -72,4 +73,8 @@ public class DubboCommunicationEndpoint extends AbstractCommunicationEndpoint {
         this.payload = payload;
     }
 
+    public void setSerialization(String serialization) {
+        this.serialization = serialization;
+    }
+
 }
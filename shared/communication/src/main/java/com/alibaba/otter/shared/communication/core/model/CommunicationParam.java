@@ -35,6 +35,10 @@ public class CommunicationParam {
      * 通讯方式
      */
     private CummunicationMethod comMethod = CummunicationMethod.RMI;
+    /**
+     * 序列化方式
+     */
+    private SerializationMethod serialization = SerializationMethod.JAVA;
     /**
      * 远程通讯方式
      */
@@ -42,6 +46,17 @@ public class CommunicationParam {
         RMI;
     }
 
+    /**
+     * 事件的序列化方式，COMPACT需要和对方协商，对方不支持时自动退化为JAVA
+     */
+    public static enum SerializationMethod {
+        JAVA, COMPACT;
+
+        public boolean isCompact() {
+            return this.equals(SerializationMethod.COMPACT);
+        }
+    }
+
     // ================ setter / getter ====================
 
     public CummunicationMethod getComMethod() {
@@ -72,6 +87,14 @@ public class CommunicationParam {
         this.port = port;
     }
 
+    public SerializationMethod getSerialization() {
+        return serialization;
+    }
+
+    public void setSerialization(SerializationMethod serialization) {
+        this.serialization = serialization;
+    }
+
     // ==================== hashcode & equals ===================
 
     @Override
@@ -81,6 +104,7 @@ public class CommunicationParam {
         result = prime * result + ((comMethod == null) ? 0 : comMethod.hashCode());
         result = prime * result + ((ip == null) ? 0 : ip.hashCode());
         result = prime * result + port;
+        result = prime * result + ((serialization == null) ? 0 : serialization.hashCode());
         return result;
     }
 
@@ -113,6 +137,9 @@ public class CommunicationParam {
         if (port != other.port) {
             return false;
         }
+        if (serialization != other.serialization) {
+            return false;
+        }
         return true;
     }
 
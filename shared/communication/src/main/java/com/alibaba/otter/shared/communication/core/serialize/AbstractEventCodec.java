@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.core.serialize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+
+/**
+ * 基于DataOutputStream的codec基类，提供可为null的基础类型读写
+ *
+ * @author jianghang
+ */
+public abstract class AbstractEventCodec<T> implements EventCodec<T> {
+
+    public byte[] encode(T object) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(output);
+        if (!write(out, object)) {
+            return null;
+        }
+
+        out.flush();
+        return output.toByteArray();
+    }
+
+    public T decode(byte[] data, int version) throws IOException {
+        return read(new DataInputStream(new ByteArrayInputStream(data)), version);
+    }
+
+    /**
+     * 写出对象，返回false代表不支持紧凑编码
+     */
+    protected abstract boolean write(DataOutputStream out, T object) throws IOException;
+
+    protected abstract T read(DataInputStream in, int version) throws IOException;
+
+    // ======================== helper method ====================
+
+    protected static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeVarLong(out, value);
+        }
+    }
+
+    protected static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readVarLong(in) : null;
+    }
+
+    protected static void writeDate(DataOutputStream out, Date value) throws IOException {
+        writeLong(out, value == null ? null : value.getTime());
+    }
+
+    protected static Date readDate(DataInputStream in) throws IOException {
+        Long value = readLong(in);
+        return value == null ? null : new Date(value);
+    }
+
+    protected static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    protected static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    protected static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        writeVarLong(out, value == null ? -1 : value.length);
+        if (value != null) {
+            out.write(value);
+        }
+    }
+
+    protected static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = (int) readVarLong(in);
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    /**
+     * 无法紧凑描述的字段(比如扩展属性)，退化为java序列化后写入
+     */
+    protected static void writeObject(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            writeBytes(out, null);
+            return;
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(128);
+        ObjectOutputStream objectOut = new ObjectOutputStream(output);
+        objectOut.writeObject(value);
+        objectOut.close();
+        writeBytes(out, output.toByteArray());
+    }
+
+    protected static Object readObject(DataInputStream in) throws IOException {
+        byte[] value = readBytes(in);
+        if (value == null) {
+            return null;
+        }
+
+        ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(value));
+        try {
+            return objectIn.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            objectIn.close();
+        }
+    }
+
+    /**
+     * zigzag + varint编码，绝大部分的id/时间戳只需要1~6个字节
+     */
+    protected static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    protected static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("malformed var long");
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.core.serialize;
+
+import java.util.Map;
+
+import com.alibaba.otter.shared.communication.core.model.Event;
+import com.alibaba.otter.shared.communication.core.model.EventType;
+
+/**
+ * 紧凑编码的请求事件，payload和event只会存在一个
+ *
+ * <pre>
+ * 1. 请求事件存在codec时，编码后放在payload中
+ * 2. 请求事件不存在codec时，原样放在event中，仍然需要包装一次，用于告诉对方返回结果可以使用的codec
+ * </pre>
+ *
+ * @author jianghang
+ */
+public class CompactEvent extends Event {
+
+    private static final long     serialVersionUID = -2718230498741602375L;
+    private CompactPayload        payload;
+    private Event                 event;
+    private Map<Integer, Integer> accepts;                                 // 发送方支持的codec及版本，用于编码返回结果
+
+    public CompactEvent(){
+        super(CompactEventType.COMPACT);
+    }
+
+    public static enum CompactEventType implements EventType {
+        COMPACT, NEGOTIATE;
+    }
+
+    public CompactPayload getPayload() {
+        return payload;
+    }
+
+    public void setPayload(CompactPayload payload) {
+        this.payload = payload;
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    public void setEvent(Event event) {
+        this.event = event;
+    }
+
+    public Map<Integer, Integer> getAccepts() {
+        return accepts;
+    }
+
+    public void setAccepts(Map<Integer, Integer> accepts) {
+        this.accepts = accepts;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.core.serialize;
+
+import java.io.Serializable;
+
+/**
+ * 紧凑编码后的数据，codec/version对应编码时使用的{@linkplain EventCodec}
+ *
+ * @author jianghang
+ */
+public class CompactPayload implements Serializable {
+
+    private static final long serialVersionUID = -5129672617813396128L;
+    private int               codec;
+    private int               version;
+    private byte[]            data;
+
+    public CompactPayload(){
+    }
+
+    public CompactPayload(int codec, int version, byte[] data){
+        this.codec = codec;
+        this.version = version;
+        this.data = data;
+    }
+
+    public int getCodec() {
+        return codec;
+    }
+
+    public void setCodec(int codec) {
+        this.codec = codec;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.core.serialize;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.shared.communication.core.exception.CommunicationException;
+import com.alibaba.otter.shared.communication.core.model.Event;
+import com.alibaba.otter.shared.communication.model.statistics.ThroughputStatEvent;
+import com.alibaba.otter.shared.communication.model.statistics.ThroughputStatEventCodec;
+
+/**
+ * <pre>
+ * 紧凑编码的注册中心，针对热点事件注册对应的{@linkplain EventCodec}
+ *
+ * 1. client第一次调用某个节点时发送{@linkplain NegotiateEvent}，获取对方支持的协议版本和codec列表
+ * 2. 只有对方支持的codec(且版本不低于本地)才会使用紧凑编码，其余对象仍然使用java序列化，保证不同版本的节点可以互通
+ * 3. 返回结果按请求方提交的accepts选择是否编码
+ *
+ * codec id分配:
+ * 1 : ThroughputStatEvent
+ * 2 : StageSingleEvent (shared.arbitrate)
+ *
+ * DbBatch在rpc/http pipe中已经使用列式编码(ColumnarRowBatchCodec)，不再重复注册
+ * </pre>
+ *
+ * @author jianghang
+ */
+public class CompactSerializer {
+
+    public static final int                 VERSION = 1;
+    private static final Logger             logger  = LoggerFactory.getLogger(CompactSerializer.class);
+    private static Map<Class<?>, Integer>   types   = new ConcurrentHashMap<Class<?>, Integer>();
+    private static Map<Integer, EventCodec> codecs  = new ConcurrentHashMap<Integer, EventCodec>();
+
+    static {
+        register(ThroughputStatEventCodec.ID, ThroughputStatEvent.class, new ThroughputStatEventCodec());
+    }
+
+    /**
+     * 注册一个对象类型对应的codec，按类型精确匹配，不处理子类
+     */
+    public static <T> void register(int id, Class<T> type, EventCodec<T> codec) {
+        Integer exist = types.get(type);
+        if (exist != null && exist.intValue() != id) {
+            throw new IllegalArgumentException("type " + type.getName() + " is already registed with codec " + exist);
+        }
+
+        if (logger.isInfoEnabled() && exist == null) {
+            logger.info(" Regist codec " + id + " For " + type.getName());
+        }
+        codecs.put(id, codec);
+        types.put(type, id);
+    }
+
+    /**
+     * 本地支持的codec及版本
+     */
+    public static Map<Integer, Integer> getCodecs() {
+        Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+        for (Map.Entry<Integer, EventCodec> entry : codecs.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getVersion());
+        }
+        return result;
+    }
+
+    /**
+     * 应答一个协商请求
+     */
+    public static NegotiateEvent negotiate() {
+        return new NegotiateEvent(VERSION, getCodecs());
+    }
+
+    /**
+     * 包装请求事件，remoteCodecs为协商得到的对方codec
+     */
+    public static CompactEvent wrap(Event event, Map<Integer, Integer> remoteCodecs) {
+        CompactEvent compact = new CompactEvent();
+        CompactPayload payload = encode(event, remoteCodecs);
+        if (payload != null) {
+            compact.setPayload(payload);
+        } else {
+            compact.setEvent(event);
+        }
+        compact.setAccepts(getCodecs());
+        return compact;
+    }
+
+    /**
+     * 还原请求事件
+     */
+    public static Event unwrap(CompactEvent compact) {
+        if (compact.getPayload() == null) {
+            return compact.getEvent();
+        }
+
+        return (Event) decode(compact.getPayload());
+    }
+
+    /**
+     * 按请求方的accepts编码返回结果
+     */
+    public static Object wrapResult(Object result, Map<Integer, Integer> accepts) {
+        CompactPayload payload = encode(result, accepts);
+        return payload != null ? payload : result;
+    }
+
+    /**
+     * 还原返回结果
+     */
+    public static Object unwrapResult(Object result) {
+        if (result instanceof CompactPayload) {
+            return decode((CompactPayload) result);
+        }
+
+        return result;
+    }
+
+    private static CompactPayload encode(Object object, Map<Integer, Integer> remoteCodecs) {
+        if (object == null || remoteCodecs == null) {
+            return null;
+        }
+
+        Integer id = types.get(object.getClass());
+        if (id == null) {
+            return null;
+        }
+
+        EventCodec codec = codecs.get(id);
+        Integer remoteVersion = remoteCodecs.get(id);
+        if (remoteVersion == null || remoteVersion < codec.getVersion()) {
+            return null; // 对方不支持或者版本较低，退化为java序列化
+        }
+
+        try {
+            byte[] data = codec.encode(object);
+            return data == null ? null : new CompactPayload(id, codec.getVersion(), data);
+        } catch (IOException e) {
+            throw new CommunicationException("encode_error", e);
+        }
+    }
+
+    private static Object decode(CompactPayload payload) {
+        EventCodec codec = codecs.get(payload.getCodec());
+        if (codec == null || codec.getVersion() < payload.getVersion()) {
+            throw new CommunicationException("decode_error", "codec[" + payload.getCodec() + "] version["
+                                                             + payload.getVersion() + "] is not supported");
+        }
+
+        try {
+            return codec.decode(payload.getData(), payload.getVersion());
+        } catch (IOException e) {
+            throw new CommunicationException("decode_error", e);
+        }
+    }
+}
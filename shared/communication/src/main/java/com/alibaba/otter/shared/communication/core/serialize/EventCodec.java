@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.core.serialize;
+
+import java.io.IOException;
+
+/**
+ * 针对热点事件的紧凑二进制编码，通过{@linkplain CompactSerializer}注册后生效
+ *
+ * <pre>
+ * 1. encode返回null代表当前对象不适合紧凑编码(比如包含了无法描述的字段)，退化为java序列化
+ * 2. decode需要兼容版本号小于等于{@linkplain #getVersion()}的数据，高版本的节点可以读取低版本节点的编码
+ * </pre>
+ *
+ * @author jianghang
+ */
+public interface EventCodec<T> {
+
+    /**
+     * 当前编码格式的版本
+     */
+    public int getVersion();
+
+    public byte[] encode(T object) throws IOException;
+
+    public T decode(byte[] data, int version) throws IOException;
+}
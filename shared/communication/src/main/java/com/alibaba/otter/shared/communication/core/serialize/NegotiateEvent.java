@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.core.serialize;
+
+import java.util.Map;
+
+import com.alibaba.otter.shared.communication.core.model.Event;
+import com.alibaba.otter.shared.communication.core.serialize.CompactEvent.CompactEventType;
+
+/**
+ * 序列化方式的协商请求，请求和应答都使用该对象，老版本的节点无法识别该事件，调用失败后即认为只支持java序列化
+ *
+ * @author jianghang
+ */
+public class NegotiateEvent extends Event {
+
+    private static final long     serialVersionUID = 6178520193372504915L;
+    private int                   version;                                 // 紧凑编码的协议版本
+    private Map<Integer, Integer> codecs;                                  // 支持的codec及版本
+    private long                  timestamp;                               // 协商完成的时间，只在本地使用
+
+    public NegotiateEvent(){
+        super(CompactEventType.NEGOTIATE);
+    }
+
+    public NegotiateEvent(int version, Map<Integer, Integer> codecs){
+        this();
+        this.version = version;
+        this.codecs = codecs;
+    }
+
+    /**
+     * 对方是否支持紧凑编码
+     */
+    public boolean isSupported() {
+        return version > 0 && codecs != null;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public Map<Integer, Integer> getCodecs() {
+        return codecs;
+    }
+
+    public void setCodecs(Map<Integer, Integer> codecs) {
+        this.codecs = codecs;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+}
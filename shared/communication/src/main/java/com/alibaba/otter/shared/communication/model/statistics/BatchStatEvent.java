@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.model.statistics;
+
+import java.util.List;
+import java.util.Map;
+
+import com.alibaba.otter.shared.common.model.statistics.delay.DelayCount;
+import com.alibaba.otter.shared.common.model.statistics.table.TableStat;
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputStat;
+import com.alibaba.otter.shared.communication.core.model.Event;
+
+/**
+ * 节点在一个聚合周期内的统计数据，合并为一次调用发送给manager
+ * 
+ * @author jianghang
+ */
+public class BatchStatEvent extends Event {
+
+    private static final long serialVersionUID = 4403596284620232421L;
+
+    public BatchStatEvent(){
+        super(StatisticsEventType.batchStat);
+    }
+
+    private List<DelayCount>     delayCounts;    // 每个pipeline一条，time为周期内的平均延迟
+    private List<ThroughputStat> throughputStats; // 按pipeline+type合并
+    private List<TableStat>      tableStats;     // 按pairId合并
+    private Map<Long, Long>      droppedStats;   // 节点堆积过多被丢弃的统计条数，按pipelineId记录
+
+    public List<DelayCount> getDelayCounts() {
+        return delayCounts;
+    }
+
+    public void setDelayCounts(List<DelayCount> delayCounts) {
+        this.delayCounts = delayCounts;
+    }
+
+    public List<ThroughputStat> getThroughputStats() {
+        return throughputStats;
+    }
+
+    public void setThroughputStats(List<ThroughputStat> throughputStats) {
+        this.throughputStats = throughputStats;
+    }
+
+    public List<TableStat> getTableStats() {
+        return tableStats;
+    }
+
+    public void setTableStats(List<TableStat> tableStats) {
+        this.tableStats = tableStats;
+    }
+
+    public Map<Long, Long> getDroppedStats() {
+        return droppedStats;
+    }
+
+    public void setDroppedStats(Map<Long, Long> droppedStats) {
+        this.droppedStats = droppedStats;
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.otter.shared.communication.model.statistics;
+
+import java.util.List;
+
+import com.alibaba.otter.shared.common.model.statistics.datasource.DataSourceStat;
+import com.alibaba.otter.shared.communication.core.model.Event;
+
+/**
+ * 数据库连接池统计事件，代表一个node当前所有连接池的完整快照
+ * 
+ * @author jianghang
+ */
+public class DataSourceStatEvent extends Event {
+
+    private static final long serialVersionUID = -2203915664580470392L;
+
+    public DataSourceStatEvent(){
+        super(StatisticsEventType.dataSourceStat);
+    }
+
+    private Long                 nid;  // 上报的node节点，stats为空时用于清理该节点之前的快照
+    private List<DataSourceStat> stats;
+
+    public Long getNid() {
+        return nid;
+    }
+
+    public void setNid(Long nid) {
+        this.nid = nid;
+    }
+
+    public List<DataSourceStat> getStats() {
+        return stats;
+    }
+
+    public void setStats(List<DataSourceStat> stats) {
+        this.stats = stats;
+    }
+
+}
@@ -29,5 +29,11 @@ public enum StatisticsEventType implements EventType {
     /** tableStat */
     tableStat,
     /** throughputStat */
-    throughputStat;
+    throughputStat,
+    /** dataSourceStat */
+    dataSourceStat,
+    /** batchStat */
+    batchStat,
+    /** pipeChooseStat */
+    pipeChooseStat;
 }
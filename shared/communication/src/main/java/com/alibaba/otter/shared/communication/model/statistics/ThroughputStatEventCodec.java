@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.model.statistics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputStat;
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputType;
+import com.alibaba.otter.shared.communication.core.serialize.AbstractEventCodec;
+
+/**
+ * 吞吐量事件的紧凑编码，每条统计只记录字段值，不再携带java序列化的类描述信息
+ *
+ * @author jianghang
+ */
+public class ThroughputStatEventCodec extends AbstractEventCodec<ThroughputStatEvent> {
+
+    public static final int ID = 1;
+
+    public int getVersion() {
+        return 1;
+    }
+
+    protected boolean write(DataOutputStream out, ThroughputStatEvent event) throws IOException {
+        List<ThroughputStat> stats = event.getStats();
+        writeVarLong(out, stats == null ? -1 : stats.size());
+        if (stats == null) {
+            return true;
+        }
+
+        for (ThroughputStat stat : stats) {
+            writeLong(out, stat.getId());
+            writeLong(out, stat.getPipelineId());
+            writeDate(out, stat.getStartTime());
+            writeDate(out, stat.getEndTime());
+            writeString(out, stat.getType() == null ? null : stat.getType().name());
+            writeLong(out, stat.getNumber());
+            writeLong(out, stat.getSize());
+            writeDate(out, stat.getGmtCreate());
+            writeDate(out, stat.getGmtModified());
+        }
+        return true;
+    }
+
+    protected ThroughputStatEvent read(DataInputStream in, int version) throws IOException {
+        ThroughputStatEvent event = new ThroughputStatEvent();
+        int size = (int) readVarLong(in);
+        if (size < 0) {
+            return event;
+        }
+
+        List<ThroughputStat> stats = new ArrayList<ThroughputStat>(size);
+        for (int i = 0; i < size; i++) {
+            ThroughputStat stat = new ThroughputStat();
+            stat.setId(readLong(in));
+            stat.setPipelineId(readLong(in));
+            stat.setStartTime(readDate(in));
+            stat.setEndTime(readDate(in));
+            String type = readString(in);
+            stat.setType(type == null ? null : ThroughputType.valueOf(type));
+            stat.setNumber(readLong(in));
+            stat.setSize(readLong(in));
+            stat.setGmtCreate(readDate(in));
+            stat.setGmtModified(readDate(in));
+            stats.add(stat);
+        }
+        event.setStats(stats);
+        return event;
+    }
+}
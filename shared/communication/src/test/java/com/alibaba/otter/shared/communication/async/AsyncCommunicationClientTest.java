@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.shared.communication.BaseOtterTest;
+import com.alibaba.otter.shared.communication.core.exception.CommunicationException;
+import com.alibaba.otter.shared.communication.core.impl.DefaultCommunicationClientImpl;
+import com.alibaba.otter.shared.communication.core.impl.connection.AsyncCommunicationConnection;
+import com.alibaba.otter.shared.communication.core.impl.connection.CommunicationConnection;
+import com.alibaba.otter.shared.communication.core.impl.connection.CommunicationConnectionFactory;
+import com.alibaba.otter.shared.communication.core.model.CommunicationParam;
+import com.alibaba.otter.shared.communication.core.model.Event;
+import com.alibaba.otter.shared.communication.core.model.heart.HeartEvent;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * 测试下异步调用的并发控制及重试
+ * 
+ * @author jianghang
+ */
+public class AsyncCommunicationClientTest extends BaseOtterTest {
+
+    @Test
+    public void test_inflight() throws Exception {
+        MockConnectionFactory factory = new MockConnectionFactory(true);
+        DefaultCommunicationClientImpl client = buildClient(factory);
+        client.setMaxInflight(4);
+        client.initial();
+
+        List<ListenableFuture<Object>> futures = new ArrayList<ListenableFuture<Object>>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(client.callAsync("127.0.0.1:2088", new HeartEvent()));
+        }
+        // 只有maxInflight个请求被发出，其余排队
+        want.number(factory.requests.size()).isEqualTo(4);
+
+        int completed = 0;
+        while (completed < 10) {
+            SettableFuture<Object> request = factory.requests.poll(5, TimeUnit.SECONDS);
+            want.bool(request != null).is(true);
+            request.set(completed++);
+        }
+        for (int i = 0; i < 10; i++) {
+            futures.get(i).get(5, TimeUnit.SECONDS);
+        }
+        want.number(factory.calls.get()).isEqualTo(10);
+        client.destory();
+    }
+
+    @Test
+    public void test_pending_discard() throws Exception {
+        MockConnectionFactory factory = new MockConnectionFactory(true);
+        DefaultCommunicationClientImpl client = buildClient(factory);
+        client.setMaxInflight(1);
+        client.setMaxPending(2);
+        client.setDiscard(true);
+        client.initial();
+
+        List<ListenableFuture<Object>> futures = new ArrayList<ListenableFuture<Object>>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(client.callAsync("127.0.0.1:2088", new HeartEvent()));
+        }
+        // 超过排队上限的请求直接失败，不会一直等待
+        try {
+            futures.get(3).get(5, TimeUnit.SECONDS);
+            want.fail();
+        } catch (ExecutionException e) {
+            want.bool(e.getCause() instanceof CommunicationException).is(true);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            SettableFuture<Object> request = factory.requests.poll(5, TimeUnit.SECONDS);
+            want.bool(request != null).is(true);
+            request.set(i);
+        }
+        for (int i = 0; i < 3; i++) {
+            want.number((Integer) futures.get(i).get(5, TimeUnit.SECONDS)).isEqualTo(i);
+        }
+        want.number(factory.calls.get()).isEqualTo(3);
+        client.destory();
+    }
+
+    @Test
+    public void test_pending_abort() throws Exception {
+        MockConnectionFactory factory = new MockConnectionFactory(true);
+        DefaultCommunicationClientImpl client = buildClient(factory);
+        client.setMaxInflight(1);
+        client.setMaxPending(1);
+        client.initial();
+
+        client.callAsync("127.0.0.1:2088", new HeartEvent());
+        client.callAsync("127.0.0.1:2088", new HeartEvent());
+        try {
+            client.callAsync("127.0.0.1:2088", new HeartEvent());
+            want.fail();
+        } catch (RejectedExecutionException e) {
+            // 和线程池的AbortPolicy保持一致
+        }
+
+        // 其他地址不受影响
+        client.callAsync("127.0.0.1:2089", new HeartEvent());
+        want.number(factory.requests.size()).isEqualTo(2);
+        client.destory();
+    }
+
+    @Test
+    public void test_retry() throws Exception {
+        MockConnectionFactory factory = new MockConnectionFactory(true);
+        factory.failures = 2;
+        DefaultCommunicationClientImpl client = buildClient(factory);
+        client.setRetryDelay(100);
+        client.initial();
+
+        long start = System.currentTimeMillis();
+        ListenableFuture<Object> future = client.callAsync("127.0.0.1:2088", new HeartEvent());
+        // 重试在后台调度，不阻塞调用线程
+        want.bool(System.currentTimeMillis() - start < 100).is(true);
+        want.bool(future.isDone()).is(false);
+
+        SettableFuture<Object> request = factory.requests.poll(5, TimeUnit.SECONDS);
+        request.set("ok");
+        want.string(future.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+        want.number(factory.calls.get()).isEqualTo(3);
+        client.destory();
+    }
+
+    @Test
+    public void test_addrs() throws Exception {
+        MockConnectionFactory factory = new MockConnectionFactory(true);
+        factory.failures = Integer.MAX_VALUE;
+        factory.failPort = 2089;
+        DefaultCommunicationClientImpl client = buildClient(factory);
+        client.setRetry(1);
+        client.initial();
+
+        ListenableFuture<List<Object>> future = client.callAsync(new String[] { "127.0.0.1:2088", "127.0.0.1:2089" },
+                                                                 new HeartEvent());
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            want.fail();
+        } catch (ExecutionException e) {
+            want.bool(e.getCause() instanceof CommunicationException).is(true);
+            want.bool(e.getCause().getMessage().contains("127.0.0.1:2089")).is(true);
+        }
+        client.destory();
+    }
+
+    @Test
+    public void test_sync_connection() throws Exception {
+        MockConnectionFactory factory = new MockConnectionFactory(false);
+        DefaultCommunicationClientImpl client = buildClient(factory);
+        client.initial();
+
+        List<Object> result = (List<Object>) client.call(new String[] { "127.0.0.1:2088", "127.0.0.1:2089" },
+                                                         new HeartEvent());
+        want.number(result.size()).isEqualTo(2);
+        want.number((Integer) result.get(0)).isEqualTo(2088);
+        want.number((Integer) result.get(1)).isEqualTo(2089);
+        client.destory();
+    }
+
+    private DefaultCommunicationClientImpl buildClient(CommunicationConnectionFactory factory) {
+        DefaultCommunicationClientImpl client = new DefaultCommunicationClientImpl(factory);
+        client.setRetryDelay(10);
+        return client;
+    }
+
+    /**
+     * 模拟的链接，async=true时请求挂起在requests中，由测试代码控制返回
+     */
+    private static class MockConnectionFactory implements CommunicationConnectionFactory {
+
+        private boolean                                      async;
+        private int                                          failures = 0;
+        private int                                          failPort = -1;
+        private AtomicInteger                                calls    = new AtomicInteger(0);
+        private LinkedBlockingQueue<SettableFuture<Object>> requests = new LinkedBlockingQueue<SettableFuture<Object>>();
+
+        public MockConnectionFactory(boolean async){
+            this.async = async;
+        }
+
+        public CommunicationConnection createConnection(final CommunicationParam params) {
+            if (!async) {
+                return new MockConnection(params);
+            }
+
+            return new MockAsyncConnection(params);
+        }
+
+        public void releaseConnection(CommunicationConnection connection) {
+        }
+
+        private class MockConnection implements CommunicationConnection {
+
+            protected CommunicationParam params;
+
+            public MockConnection(CommunicationParam params){
+                this.params = params;
+            }
+
+            public Object call(Event event) {
+                calls.incrementAndGet();
+                return params.getPort();
+            }
+
+            public CommunicationParam getParams() {
+                return params;
+            }
+
+            public void close() throws CommunicationException {
+            }
+        }
+
+        private class MockAsyncConnection extends MockConnection implements AsyncCommunicationConnection {
+
+            public MockAsyncConnection(CommunicationParam params){
+                super(params);
+            }
+
+            public ListenableFuture<Object> asyncCall(Event event) {
+                int count = calls.incrementAndGet();
+                if ((failPort < 0 || failPort == params.getPort()) && count <= failures) {
+                    return Futures.immediateFailedFuture(new CommunicationException("mock_error"));
+                }
+
+                SettableFuture<Object> future = SettableFuture.create();
+                requests.add(future);
+                return future;
+            }
+        }
+    }
+}
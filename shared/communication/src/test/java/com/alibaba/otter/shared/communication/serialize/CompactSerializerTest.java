@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2010-2101 Alibaba Group Holding Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.alibaba.otter.shared.communication.serialize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputStat;
+import com.alibaba.otter.shared.common.model.statistics.throughput.ThroughputType;
+import com.alibaba.otter.shared.communication.BaseOtterTest;
+import com.alibaba.otter.shared.communication.core.CommunicationEndpoint;
+import com.alibaba.otter.shared.communication.core.CommunicationRegistry;
+import com.alibaba.otter.shared.communication.core.exception.CommunicationException;
+import com.alibaba.otter.shared.communication.core.impl.AbstractCommunicationEndpoint;
+import com.alibaba.otter.shared.communication.core.impl.DefaultCommunicationClientImpl;
+import com.alibaba.otter.shared.communication.core.impl.connection.CommunicationConnection;
+import com.alibaba.otter.shared.communication.core.impl.connection.CommunicationConnectionFactory;
+import com.alibaba.otter.shared.communication.core.model.CommunicationParam;
+import com.alibaba.otter.shared.communication.core.model.Event;
+import com.alibaba.otter.shared.communication.core.serialize.CompactEvent;
+import com.alibaba.otter.shared.communication.core.serialize.CompactSerializer;
+import com.alibaba.otter.shared.communication.core.serialize.NegotiateEvent;
+import com.alibaba.otter.shared.communication.model.statistics.StatisticsEventType;
+import com.alibaba.otter.shared.communication.model.statistics.ThroughputStatEvent;
+import com.alibaba.otter.shared.communication.model.statistics.ThroughputStatEventCodec;
+
+/**
+ * 测试下紧凑编码及版本协商
+ *
+ * @author jianghang
+ */
+public class CompactSerializerTest extends BaseOtterTest {
+
+    @Test
+    public void test_codec() {
+        ThroughputStatEvent event = buildEvent(10);
+        CompactEvent compact = CompactSerializer.wrap(event, CompactSerializer.getCodecs());
+        want.bool(compact.getPayload() != null).is(true);
+        want.bool(compact.getEvent() == null).is(true);
+
+        ThroughputStatEvent result = (ThroughputStatEvent) CompactSerializer.unwrap(compact);
+        want.number(result.getStats().size()).isEqualTo(10);
+        for (int i = 0; i < 10; i++) {
+            ThroughputStat expect = event.getStats().get(i);
+            ThroughputStat actual = result.getStats().get(i);
+            want.number(actual.getPipelineId()).isEqualTo(expect.getPipelineId());
+            want.number(actual.getNumber()).isEqualTo(expect.getNumber());
+            want.number(actual.getSize()).isEqualTo(expect.getSize());
+            want.string(actual.getType().name()).isEqualTo(expect.getType().name());
+            want.number(actual.getStartTime().getTime()).isEqualTo(expect.getStartTime().getTime());
+            want.bool(actual.getId() == null).is(true);
+        }
+    }
+
+    @Test
+    public void test_version() {
+        ThroughputStatEvent event = buildEvent(1);
+        // 对方不支持该codec
+        CompactEvent compact = CompactSerializer.wrap(event, new HashMap<Integer, Integer>());
+        want.bool(compact.getPayload() == null).is(true);
+        want.bool(CompactSerializer.unwrap(compact) == event).is(true);
+
+        // 对方的codec版本较低
+        Map<Integer, Integer> codecs = new HashMap<Integer, Integer>();
+        codecs.put(ThroughputStatEventCodec.ID, 0);
+        compact = CompactSerializer.wrap(event, codecs);
+        want.bool(compact.getPayload() == null).is(true);
+
+        // 返回结果不在accepts中，原样返回
+        want.bool(CompactSerializer.wrapResult(event, null) == event).is(true);
+        Object result = CompactSerializer.wrapResult(event, CompactSerializer.getCodecs());
+        want.bool(result != event).is(true);
+        want.number(((ThroughputStatEvent) CompactSerializer.unwrapResult(result)).getStats().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_negotiate() {
+        ThroughputAction action = new ThroughputAction();
+        CommunicationRegistry.regist(StatisticsEventType.throughputStat, action);
+
+        // 新版本的节点，使用紧凑编码
+        LocalEndpoint endpoint = new LocalEndpoint(false);
+        DefaultCommunicationClientImpl client = new DefaultCommunicationClientImpl(new LocalConnectionFactory(endpoint));
+        client.setSerialization("compact");
+        client.initial();
+        for (int i = 0; i < 3; i++) {
+            want.number((Integer) client.call("127.0.0.1:2088", buildEvent(5))).isEqualTo(5);
+        }
+        want.number(endpoint.negotiates).isEqualTo(1);
+        want.number(endpoint.compacts).isEqualTo(3);
+        client.destory();
+
+        // 老版本的节点，无法识别协商请求，退化为java序列化
+        endpoint = new LocalEndpoint(true);
+        client = new DefaultCommunicationClientImpl(new LocalConnectionFactory(endpoint));
+        client.setSerialization("compact");
+        client.initial();
+        for (int i = 0; i < 3; i++) {
+            want.number((Integer) client.call("127.0.0.1:2088", buildEvent(5))).isEqualTo(5);
+        }
+        want.number(endpoint.negotiates).isEqualTo(1);
+        want.number(endpoint.compacts).isEqualTo(0);
+        client.destory();
+    }
+
+    private ThroughputStatEvent buildEvent(int size) {
+        List<ThroughputStat> stats = new ArrayList<ThroughputStat>();
+        for (int i = 0; i < size; i++) {
+            ThroughputStat stat = new ThroughputStat();
+            stat.setPipelineId(1L);
+            stat.setType(i % 2 == 0 ? ThroughputType.ROW : ThroughputType.FILE);
+            stat.setNumber((long) i * 100);
+            stat.setSize((long) i * -1024);
+            stat.setStartTime(new Date(System.currentTimeMillis() - i));
+            stat.setEndTime(new Date());
+            stats.add(stat);
+        }
+
+        ThroughputStatEvent event = new ThroughputStatEvent();
+        event.setStats(stats);
+        return event;
+    }
+
+    public static class ThroughputAction {
+
+        public Integer onThroughputStat(ThroughputStatEvent event) {
+            return event.getStats().size();
+        }
+    }
+
+    /**
+     * 模拟的endpoint，old=true时模拟不支持紧凑编码的老版本节点
+     */
+    private static class LocalEndpoint extends AbstractCommunicationEndpoint {
+
+        private boolean old;
+        private int     negotiates = 0;
+        private int     compacts   = 0;
+
+        public LocalEndpoint(boolean old){
+            this.old = old;
+        }
+
+        public Object acceptEvent(Event event) {
+            if (event instanceof NegotiateEvent) {
+                negotiates++;
+                if (old) {
+                    throw new CommunicationException("eventType_no_action", event.getType().name());
+                }
+            } else if (event instanceof CompactEvent) {
+                compacts++;
+            }
+            return super.acceptEvent(event);
+        }
+
+        public void initial() {
+        }
+
+        public void destory() {
+        }
+    }
+
+    /**
+     * 本地调用endpoint，请求和结果都经过一次java序列化，模拟dubbo的传输
+     */
+    private static class LocalConnectionFactory implements CommunicationConnectionFactory {
+
+        private CommunicationEndpoint endpoint;
+
+        public LocalConnectionFactory(CommunicationEndpoint endpoint){
+            this.endpoint = endpoint;
+        }
+
+        public CommunicationConnection createConnection(final CommunicationParam params) {
+            return new CommunicationConnection() {
+
+                public Object call(Event event) {
+                    return copy(endpoint.acceptEvent((Event) copy(event)));
+                }
+
+                public CommunicationParam getParams() {
+                    return params;
+                }
+
+                public void close() throws CommunicationException {
+                }
+            };
+        }
+
+        public void releaseConnection(CommunicationConnection connection) {
+        }
+
+        private Object copy(Object object) {
+            try {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(output);
+                out.writeObject(object);
+                out.close();
+                return new ObjectInputStream(new ByteArrayInputStream(output.toByteArray())).readObject();
+            } catch (IOException e) {
+                throw new CommunicationException(e);
+            } catch (ClassNotFoundException e) {
+                throw new CommunicationException(e);
+            }
+        }
+    }
+}